@@ -0,0 +1,128 @@
+package progress_body.benchmark;
+
+import progress_body.conexion.ConfiguracionConexion;
+import progress_body.conexion.PoolConexiones;
+import progress_body.datos.IRegistroDAO;
+import progress_body.dominio.Registro;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Base de datos H2 en memoria, en modo MySQL, que reemplaza al servidor MySQL en los benchmarks.
+ * Cada instancia crea su propia base con la tabla {@code registro} y un pool de conexiones.
+ */
+public final class BaseDatosPrueba implements AutoCloseable {
+
+    private static final String CREAR_TABLA = """
+            CREATE TABLE registro (
+                id INT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                peso DOUBLE NOT NULL,
+                bicepIzquierdo DOUBLE NOT NULL,
+                bicepDerecho DOUBLE NOT NULL,
+                cintura DOUBLE NOT NULL,
+                cuadriceps DOUBLE NOT NULL,
+                pantorrillas DOUBLE NOT NULL,
+                fecha TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                version INT NOT NULL DEFAULT 0,
+                usuario INT NOT NULL DEFAULT 0
+            )""";
+
+    private final String url;
+    private final PoolConexiones pool;
+
+    private BaseDatosPrueba(String url, PoolConexiones pool) {
+        this.url = url;
+        this.pool = pool;
+    }
+
+    /**
+     * Crea una base vacía con la tabla {@code registro}.
+     *
+     * @param nombre     Nombre de la base en memoria; debe ser único por instancia.
+     * @param tamanoPool Tamaño máximo del pool de conexiones.
+     * @return La base creada.
+     * @throws SQLException si no se pudo crear la tabla.
+     */
+    public static BaseDatosPrueba crear(String nombre, int tamanoPool) throws SQLException {
+        String url = "jdbc:h2:mem:" + nombre + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        ConfiguracionConexion config = new ConfiguracionConexion(url, "sa", "", tamanoPool, 0,
+                5_000, 600_000, 500, 0);
+        PoolConexiones pool = new PoolConexiones(config);
+        try (Connection con = pool.getConnection();
+             Statement st = con.createStatement()) {
+            st.execute(CREAR_TABLA);
+            st.execute("CREATE INDEX idx_registro_fecha_id ON registro (fecha, id)");
+            st.execute("CREATE INDEX idx_registro_usuario_fecha_id ON registro (usuario, fecha, id)");
+        }
+        return new BaseDatosPrueba(url, pool);
+    }
+
+    /**
+     * Inserta registros aleatorios por lotes.
+     *
+     * @param dao   El DAO con el que se insertan.
+     * @param filas El número de registros a insertar.
+     * @param semilla La semilla del generador, para que las ejecuciones sean comparables.
+     */
+    public void poblar(IRegistroDAO dao, int filas, long semilla) {
+        Random aleatorio = new Random(semilla);
+        List<Registro> lote = new ArrayList<>(IRegistroDAO.TAMANO_LOTE_POR_DEFECTO);
+        for (int i = 0; i < filas; i++) {
+            lote.add(registroAleatorio(aleatorio));
+            if (lote.size() == IRegistroDAO.TAMANO_LOTE_POR_DEFECTO || i == filas - 1) {
+                if (!dao.agregarRegistros(lote).exitoso()) {
+                    throw new IllegalStateException("No se pudo poblar la base de prueba.");
+                }
+                lote.clear();
+            }
+        }
+    }
+
+    /**
+     * Genera un registro con medidas corporales plausibles.
+     *
+     * @param aleatorio El generador de números aleatorios.
+     * @return Un registro sin ID ni fecha.
+     */
+    public static Registro registroAleatorio(Random aleatorio) {
+        double bicep = 28 + aleatorio.nextDouble() * 14;
+        return new Registro(
+                55 + aleatorio.nextDouble() * 50,
+                bicep,
+                bicep + aleatorio.nextGaussian() * 0.5 + 0.01,
+                65 + aleatorio.nextDouble() * 40,
+                45 + aleatorio.nextDouble() * 20,
+                32 + aleatorio.nextDouble() * 10);
+    }
+
+    public DataSource getDataSource() {
+        return pool;
+    }
+
+    public PoolConexiones getPool() {
+        return pool;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Elimina la base en memoria y cierra el pool.
+     */
+    @Override
+    public void close() throws SQLException {
+        try (Connection con = pool.getConnection();
+             Statement st = con.createStatement()) {
+            st.execute("DROP ALL OBJECTS");
+        } finally {
+            pool.close();
+        }
+    }
+}
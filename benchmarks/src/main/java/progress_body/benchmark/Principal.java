@@ -0,0 +1,36 @@
+package progress_body.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Ejecuta los benchmarks de {@code RegistroDAOBenchmark} con distintos números de hilos y el perfilador
+ * de GC activo, que reporta los bytes asignados por operación. Cada barrido se guarda en
+ * {@code resultados-<hilos>.json} para comparar ejecuciones.
+ * <p>
+ * Uso: {@code java -cp benchmarks.jar progress_body.benchmark.Principal [hilos...]}; por defecto 1, 4 y 16.
+ */
+public final class Principal {
+
+    private Principal() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String[] hilos = args.length == 0 ? new String[]{"1", "4", "16"} : args;
+        for (String valor : hilos) {
+            int cantidad = Integer.parseInt(valor);
+            Options opciones = new OptionsBuilder()
+                    .include("progress_body.datos.RegistroDAOBenchmark")
+                    .threads(cantidad)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("resultados-" + cantidad + ".json")
+                    .build();
+            new Runner(opciones).run();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package progress_body.carga;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parámetros de una {@link PruebaCarga}.
+ *
+ * @param tasa             Operaciones por segundo que se inician, sin importar cuántas sigan en curso.
+ * @param poisson          true si las llegadas siguen un proceso de Poisson; false si son equiespaciadas.
+ * @param duracion         Duración de la medición.
+ * @param calentamiento    Duración previa cuyas operaciones se reportan pero no entran en el resumen.
+ * @param intervaloReporte Cada cuánto se emite una línea por operación.
+ * @param hilosVirtuales   true para ejecutar cada operación en un hilo virtual; false para un pool de hilos de plataforma.
+ * @param hilos            Con hilos de plataforma, el tamaño del pool; con hilos virtuales, el máximo de
+ *                         operaciones simultáneas, o 0 para no limitarlas.
+ * @param mezcla           El peso relativo de cada operación; las que faltan no se ejecutan.
+ * @param base             {@code h2} para una base H2 en memoria en modo MySQL; {@code local} para un
+ *                         {@code RegistroDAOLocal} en un directorio temporal.
+ * @param tamanoPool       El tamaño del pool de conexiones de la base H2.
+ * @param usuarios         El número de usuarios del generador.
+ * @param filasIniciales   Los registros que se insertan antes de empezar.
+ * @param semilla          La semilla de las decisiones de la prueba, para repetir la misma secuencia.
+ * @param salida           El archivo de resultados, o null para la salida estándar.
+ */
+public record ConfiguracionCarga(double tasa, boolean poisson, Duration duracion, Duration calentamiento,
+                                 Duration intervaloReporte, boolean hilosVirtuales, int hilos,
+                                 Map<TipoOperacion, Integer> mezcla, String base, int tamanoPool, int usuarios,
+                                 int filasIniciales, long semilla, String salida) {
+
+    public ConfiguracionCarga {
+        if (!(tasa > 0) || Double.isInfinite(tasa)) {
+            throw new IllegalArgumentException("La tasa debe ser mayor a cero.");
+        }
+        if (duracion == null || calentamiento == null || intervaloReporte == null) {
+            throw new IllegalArgumentException("Las duraciones no pueden ser nulas.");
+        }
+        if (!duracion.isPositive() || calentamiento.isNegative() || !intervaloReporte.isPositive()) {
+            throw new IllegalArgumentException("La duración y el intervalo deben ser positivos y el calentamiento no puede ser negativo.");
+        }
+        if (hilos < 0 || (!hilosVirtuales && hilos == 0)) {
+            throw new IllegalArgumentException("El número de hilos no es válido.");
+        }
+        if (mezcla == null || mezcla.isEmpty() || mezcla.values().stream().anyMatch(peso -> peso == null || peso < 0)
+                || mezcla.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("La mezcla debe tener pesos no negativos y al menos uno positivo.");
+        }
+        if (!"h2".equals(base) && !"local".equals(base)) {
+            throw new IllegalArgumentException("La base debe ser h2 o local.");
+        }
+        if (tamanoPool <= 0 || usuarios <= 0 || filasIniciales < 0) {
+            throw new IllegalArgumentException("El pool y los usuarios deben ser positivos y las filas iniciales no negativas.");
+        }
+        mezcla = Map.copyOf(mezcla);
+    }
+
+    /**
+     * Lee la configuración de argumentos {@code clave=valor}; las claves que faltan toman su valor por
+     * defecto. Las duraciones se escriben en segundos ({@code 30}) o en ISO-8601 ({@code PT5M}); la mezcla,
+     * como {@code agregar:20,buscar:60,paginar:10,modificar:5,de_usuario:5}.
+     *
+     * @param args Los argumentos de la línea de comandos.
+     * @return La configuración.
+     * @throws IllegalArgumentException si una clave no existe o un valor no es válido.
+     */
+    public static ConfiguracionCarga desdeArgumentos(String... args) {
+        double tasa = 200;
+        boolean poisson = true;
+        Duration duracion = Duration.ofSeconds(60);
+        Duration calentamiento = Duration.ofSeconds(10);
+        Duration intervalo = Duration.ofSeconds(1);
+        boolean virtuales = true;
+        int hilos = 0;
+        Map<TipoOperacion, Integer> mezcla = mezcla("agregar:20,buscar:60,paginar:10,modificar:5,de_usuario:5");
+        String base = "h2";
+        int tamanoPool = 16;
+        int usuarios = 1000;
+        int filas = 50_000;
+        long semilla = 42;
+        String salida = null;
+
+        for (String arg : args) {
+            int igual = arg.indexOf('=');
+            if (igual <= 0) {
+                throw new IllegalArgumentException("Argumento no válido, se esperaba clave=valor: " + arg);
+            }
+            String valor = arg.substring(igual + 1);
+            try {
+                switch (arg.substring(0, igual)) {
+                    case "tasa" -> tasa = Double.parseDouble(valor);
+                    case "llegadas" -> poisson = switch (valor) {
+                        case "poisson" -> true;
+                        case "constante" -> false;
+                        default -> throw new IllegalArgumentException("Las llegadas deben ser poisson o constante.");
+                    };
+                    case "duracion" -> duracion = duracion(valor);
+                    case "calentamiento" -> calentamiento = duracion(valor);
+                    case "intervalo" -> intervalo = duracion(valor);
+                    case "hilos" -> {
+                        // "virtuales" o "virtuales:64" para limitar la concurrencia; "plataforma:32"
+                        String[] partes = valor.split(":", 2);
+                        virtuales = switch (partes[0]) {
+                            case "virtuales" -> true;
+                            case "plataforma" -> false;
+                            default -> throw new IllegalArgumentException("Los hilos deben ser virtuales o plataforma.");
+                        };
+                        hilos = partes.length > 1 ? Integer.parseInt(partes[1]) : (virtuales ? 0 : 32);
+                    }
+                    case "mezcla" -> mezcla = mezcla(valor);
+                    case "base" -> base = valor;
+                    case "pool" -> tamanoPool = Integer.parseInt(valor);
+                    case "usuarios" -> usuarios = Integer.parseInt(valor);
+                    case "filas" -> filas = Integer.parseInt(valor);
+                    case "semilla" -> semilla = Long.parseLong(valor);
+                    case "salida" -> salida = valor;
+                    default -> throw new IllegalArgumentException("Clave desconocida: " + arg.substring(0, igual));
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Valor no válido en " + arg, e);
+            }
+        }
+        return new ConfiguracionCarga(tasa, poisson, duracion, calentamiento, intervalo, virtuales, hilos,
+                mezcla, base, tamanoPool, usuarios, filas, semilla, salida);
+    }
+
+    private static Duration duracion(String valor) {
+        return valor.startsWith("P") ? Duration.parse(valor) : Duration.ofMillis(Math.round(Double.parseDouble(valor) * 1000));
+    }
+
+    private static Map<TipoOperacion, Integer> mezcla(String valor) {
+        Map<TipoOperacion, Integer> mezcla = new EnumMap<>(TipoOperacion.class);
+        for (String parte : valor.split(",")) {
+            String[] par = parte.split(":", 2);
+            if (par.length != 2) {
+                throw new IllegalArgumentException("La mezcla se escribe operacion:peso, separadas por comas.");
+            }
+            mezcla.put(TipoOperacion.valueOf(par[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(par[1].trim()));
+        }
+        return mezcla;
+    }
+}
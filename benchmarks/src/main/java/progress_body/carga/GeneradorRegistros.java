@@ -0,0 +1,99 @@
+package progress_body.carga;
+
+import progress_body.dominio.Registro;
+
+import java.sql.Timestamp;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Genera registros realistas para las pruebas de carga: cada usuario parte de medidas plausibles y
+ * avanza con pequeñas variaciones diarias, como una persona que se mide con regularidad.
+ * <p>
+ * Las medidas siempre son positivas y las fechas crecen estrictamente en el orden en que se generan,
+ * aunque se llame desde varios hilos. Es seguro para usarse desde varios hilos.
+ */
+public final class GeneradorRegistros {
+
+    private static final double MINIMO = 1.0; // Ninguna medida baja de aquí
+    private static final double[] VARIACION = {0.3, 0.08, 0.08, 0.25, 0.12, 0.06}; // Desviación por paso
+
+    private final double[][] medidas; // Por usuario: peso, bíceps izq., bíceps der., cintura, cuádriceps, pantorrillas
+    private final AtomicLong reloj; // Fecha del último registro generado, en milisegundos
+    private final long pasoMillis;
+
+    /**
+     * @param usuarios      El número de usuarios, numerados desde 1.
+     * @param fechaInicial  La fecha del primer registro, en milisegundos.
+     * @param pasoMillis    Cuánto avanza la fecha con cada registro; al menos 1.
+     * @param semilla       La semilla de las medidas iniciales.
+     * @throws IllegalArgumentException si no hay usuarios o el paso no es positivo.
+     */
+    public GeneradorRegistros(int usuarios, long fechaInicial, long pasoMillis, long semilla) {
+        if (usuarios <= 0) {
+            throw new IllegalArgumentException("Debe haber al menos un usuario.");
+        }
+        if (pasoMillis <= 0) {
+            throw new IllegalArgumentException("El paso debe ser mayor a cero.");
+        }
+        Random aleatorio = new Random(semilla);
+        this.medidas = new double[usuarios][];
+        for (int i = 0; i < usuarios; i++) {
+            double bicep = 28 + aleatorio.nextDouble() * 14;
+            medidas[i] = new double[]{
+                    55 + aleatorio.nextDouble() * 50,
+                    bicep,
+                    bicep + aleatorio.nextGaussian() * 0.5,
+                    65 + aleatorio.nextDouble() * 40,
+                    45 + aleatorio.nextDouble() * 20,
+                    32 + aleatorio.nextDouble() * 10};
+        }
+        this.reloj = new AtomicLong(fechaInicial - pasoMillis);
+        this.pasoMillis = pasoMillis;
+    }
+
+    /**
+     * Genera el siguiente registro de un usuario elegido al azar.
+     *
+     * @param aleatorio El generador que elige el usuario y las variaciones.
+     * @return Un registro sin ID, con usuario, medidas y fecha.
+     */
+    public Registro siguiente(SplittableRandom aleatorio) {
+        int usuario = 1 + aleatorio.nextInt(medidas.length);
+        double[] actual = medidas[usuario - 1];
+        double[] valores = new double[actual.length];
+        synchronized (actual) {
+            for (int i = 0; i < actual.length; i++) {
+                actual[i] = Math.max(MINIMO, actual[i] + gaussiana(aleatorio) * VARIACION[i]);
+                valores[i] = actual[i];
+            }
+        }
+        Registro registro = new Registro(valores[0], valores[1], valores[2], valores[3], valores[4], valores[5]);
+        registro.setUsuario(usuario);
+        registro.setFecha(new Timestamp(reloj.addAndGet(pasoMillis)));
+        return registro;
+    }
+
+    /**
+     * @return El número de usuarios.
+     */
+    public int getUsuarios() {
+        return medidas.length;
+    }
+
+    /**
+     * @return La fecha del último registro generado, en milisegundos.
+     */
+    public long getUltimaFecha() {
+        return reloj.get();
+    }
+
+    /**
+     * Normal estándar por el método de Box-Muller; {@link SplittableRandom} no la ofrece.
+     */
+    private static double gaussiana(SplittableRandom aleatorio) {
+        double u = 1.0 - aleatorio.nextDouble(); // En (0, 1], para que el logaritmo sea finito
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * aleatorio.nextDouble());
+    }
+}
@@ -0,0 +1,415 @@
+package progress_body.carga;
+
+import progress_body.almacen.RegistroDAOLocal;
+import progress_body.benchmark.BaseDatosPrueba;
+import progress_body.datos.IRegistroDAO;
+import progress_body.datos.RegistroDAO;
+import progress_body.dominio.Registro;
+import progress_body.metricas.HistogramaLatencia;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Prueba de carga y de resistencia de la capa de datos con llegadas de lazo abierto.
+ * <p>
+ * Las operaciones se inician a la tasa configurada sin esperar a que terminen las anteriores, como lo
+ * harían usuarios independientes. La latencia de cada operación se mide desde el momento en que debía
+ * iniciarse, no desde que un hilo la tomó, de modo que las esperas en la cola y los retrasos del
+ * planificador cuentan como latencia en lugar de ocultarse (omisión coordinada). Si el sistema no
+ * sostiene la tasa, las operaciones pendientes y las latencias crecen, en lugar de bajar la tasa.
+ * <p>
+ * Los resultados se escriben en JSON Lines: una línea {@code configuracion}, una línea {@code intervalo}
+ * por operación y por intervalo de reporte, agrupadas por el momento en que terminan, y una línea
+ * {@code resumen} por operación con la fase de medición completa, sin el calentamiento. Los tiempos van
+ * en milisegundos. Las latencias solo incluyen las operaciones exitosas; las que lanzan una excepción, no
+ * encuentran su registro o aumentan {@link IRegistroDAO#getFallosDelHilo()} cuentan como errores.
+ * <p>
+ * Uso: {@code java -cp benchmarks.jar progress_body.carga.PruebaCarga [clave=valor...]}, con las claves
+ * de {@link ConfiguracionCarga#desdeArgumentos(String...)}; por ejemplo
+ * {@code tasa=500 duracion=PT30M hilos=plataforma:64 salida=carga.jsonl}.
+ */
+public final class PruebaCarga {
+
+    /** El número de registros de cada página de {@link TipoOperacion#PAGINAR}. */
+    public static final int TAMANO_PAGINA = 50;
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final long PASO_FECHA_MILLIS = 60_000; // Un registro por minuto entre todos los usuarios
+    private static final TipoOperacion[] OPERACIONES = TipoOperacion.values();
+    private static final int TODAS = OPERACIONES.length; // Índice de las cuentas de todas las operaciones
+
+    private final ConfiguracionCarga config;
+    private final IRegistroDAO dao;
+    private final GeneradorRegistros generador;
+    private final PrintStream salida;
+    private final AtomicInteger ultimoId = new AtomicInteger();
+    private final long primeraFecha;
+
+    private final Map<Long, Mediciones> intervalos = new ConcurrentHashMap<>();
+    private final Mediciones resumen = new Mediciones();
+    private final LongAdder enviadas = new LongAdder();
+    private final LongAdder terminadas = new LongAdder();
+    private final AtomicLong atraso = new AtomicLong(); // Cuánto iba retrasado el planificador en su último envío
+    private long inicio; // Momento en que debía iniciarse la primera operación, en nanosegundos
+    private long inicioMedicion;
+    private long nanosIntervalo;
+    private volatile boolean terminado;
+
+    /**
+     * Cuentas y latencias de un intervalo, o de toda la fase de medición, por operación.
+     */
+    private static final class Mediciones {
+        final HistogramaLatencia[] latencias = new HistogramaLatencia[TODAS + 1];
+        final LongAdder[] exitosas = new LongAdder[TODAS + 1];
+        final LongAdder[] errores = new LongAdder[TODAS + 1];
+
+        Mediciones() {
+            for (int i = 0; i <= TODAS; i++) {
+                latencias[i] = new HistogramaLatencia();
+                exitosas[i] = new LongAdder();
+                errores[i] = new LongAdder();
+            }
+        }
+
+        void registrar(int operacion, long nanos, boolean exitosa) {
+            contar(operacion, nanos, exitosa);
+            contar(TODAS, nanos, exitosa);
+        }
+
+        private void contar(int indice, long nanos, boolean exitosa) {
+            if (exitosa) {
+                latencias[indice].registrar(nanos);
+                exitosas[indice].increment();
+            } else {
+                errores[indice].increment();
+            }
+        }
+    }
+
+    private PruebaCarga(ConfiguracionCarga config, IRegistroDAO dao, PrintStream salida) {
+        this.config = config;
+        this.dao = dao;
+        this.salida = salida;
+        this.primeraFecha = System.currentTimeMillis() / 1000 * 1000;
+        this.generador = new GeneradorRegistros(config.usuarios(), primeraFecha, PASO_FECHA_MILLIS, config.semilla());
+    }
+
+    public static void main(String[] args) throws IOException, SQLException, InterruptedException {
+        ConfiguracionCarga config;
+        try {
+            config = ConfiguracionCarga.desdeArgumentos(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        try (PrintStream salida = config.salida() == null
+                ? new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8)
+                : new PrintStream(new FileOutputStream(config.salida()), true, StandardCharsets.UTF_8)) {
+            if ("h2".equals(config.base())) {
+                try (BaseDatosPrueba base = BaseDatosPrueba.crear("carga", config.tamanoPool())) {
+                    new PruebaCarga(config, new RegistroDAO(base.getDataSource()), salida).ejecutar();
+                }
+            } else {
+                Path directorio = Files.createTempDirectory("progress-body-carga");
+                try (RegistroDAOLocal local = RegistroDAOLocal.abrir(directorio)) {
+                    if (local == null) {
+                        throw new IOException("No se pudo abrir el almacén local en " + directorio);
+                    }
+                    new PruebaCarga(config, local, salida).ejecutar();
+                } finally {
+                    borrar(directorio);
+                }
+            }
+        }
+    }
+
+    private void ejecutar() throws InterruptedException {
+        escribirConfiguracion();
+        poblar();
+
+        int[] acumulados = new int[OPERACIONES.length];
+        int total = 0;
+        for (int i = 0; i < OPERACIONES.length; i++) {
+            total += config.mezcla().getOrDefault(OPERACIONES[i], 0);
+            acumulados[i] = total;
+        }
+
+        Semaphore limite = config.hilosVirtuales() && config.hilos() > 0 ? new Semaphore(config.hilos()) : null;
+        ExecutorService ejecutor = config.hilosVirtuales()
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(config.hilos());
+
+        nanosIntervalo = config.intervaloReporte().toNanos();
+        long nanosCalentamiento = config.calentamiento().toNanos();
+        long nanosTotal = nanosCalentamiento + config.duracion().toNanos();
+        double nanosPorOperacion = 1e9 / config.tasa();
+        SplittableRandom aleatorio = new SplittableRandom(config.semilla());
+
+        inicio = System.nanoTime();
+        inicioMedicion = inicio + nanosCalentamiento;
+        Thread reportero = Thread.ofPlatform().name("carga-reporte").daemon().start(this::reportar);
+
+        // El planificador nunca espera a que terminen las operaciones: si se atrasa, envía de inmediato
+        // las que debían haber empezado, y su latencia incluye el atraso.
+        double desplazamiento = 0;
+        while (desplazamiento < nanosTotal) {
+            long programada = inicio + (long) desplazamiento;
+            long ahora;
+            while ((ahora = System.nanoTime()) < programada) {
+                LockSupport.parkNanos(programada - ahora);
+            }
+            atraso.set(ahora - programada);
+
+            int sorteo = aleatorio.nextInt(total);
+            int operacion = 0;
+            while (acumulados[operacion] <= sorteo) {
+                operacion++;
+            }
+            SplittableRandom propio = aleatorio.split();
+            int elegida = operacion;
+            enviadas.increment();
+            ejecutor.execute(() -> ejecutarOperacion(elegida, programada, propio, limite));
+
+            desplazamiento += config.poisson()
+                    ? -Math.log(1.0 - aleatorio.nextDouble()) * nanosPorOperacion
+                    : nanosPorOperacion;
+        }
+
+        ejecutor.close(); // Espera a que terminen las operaciones en curso
+        terminado = true;
+        reportero.interrupt();
+        reportero.join();
+
+        List<Long> restantes = new ArrayList<>(intervalos.keySet());
+        restantes.sort(Comparator.naturalOrder());
+        for (long indice : restantes) {
+            escribirIntervalo(indice, intervalos.remove(indice));
+        }
+        escribirResumen();
+    }
+
+    private void ejecutarOperacion(int operacion, long programada, SplittableRandom aleatorio, Semaphore limite) {
+        boolean exitosa = false;
+        try {
+            if (limite != null) {
+                limite.acquire();
+            }
+            try {
+                exitosa = ejecutar(OPERACIONES[operacion], aleatorio);
+            } finally {
+                if (limite != null) {
+                    limite.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Una excepción de la capa de datos es un error de la operación, no de la prueba
+        }
+        long fin = System.nanoTime();
+        long latencia = fin - programada;
+
+        intervalos.computeIfAbsent((fin - inicio) / nanosIntervalo, k -> new Mediciones())
+                .registrar(operacion, latencia, exitosa);
+        if (programada >= inicioMedicion) {
+            resumen.registrar(operacion, latencia, exitosa);
+        }
+        terminadas.increment();
+    }
+
+    private boolean ejecutar(TipoOperacion operacion, SplittableRandom aleatorio) {
+        switch (operacion) {
+            case AGREGAR -> {
+                Registro guardado = dao.agregarYObtener(generador.siguiente(aleatorio));
+                if (guardado == null) {
+                    return false;
+                }
+                ultimoId.accumulateAndGet(guardado.getId(), Math::max);
+                return true;
+            }
+            case BUSCAR -> {
+                return dao.buscarRegistro(new Registro(idExistente(aleatorio)));
+            }
+            case MODIFICAR -> {
+                Registro registro = generador.siguiente(aleatorio);
+                registro.setId(idExistente(aleatorio));
+                return dao.modificarRegistro(registro);
+            }
+            // Los listados devuelven una lista vacía tanto si no hay filas como si fallan: el error se
+            // distingue por el contador de fallos del hilo
+            case PAGINAR -> {
+                long fecha = primeraFecha + (long) (aleatorio.nextDouble() * (generador.getUltimaFecha() - primeraFecha + 1));
+                long fallos = dao.getFallosDelHilo();
+                dao.listarRegistrosPorFechaDespuesDe(new Timestamp(fecha), 0, TAMANO_PAGINA);
+                return dao.getFallosDelHilo() == fallos;
+            }
+            case DE_USUARIO -> {
+                long fallos = dao.getFallosDelHilo();
+                dao.listarRegistrosDeUsuario(1 + aleatorio.nextInt(config.usuarios()));
+                return dao.getFallosDelHilo() == fallos;
+            }
+            default -> throw new IllegalStateException("Operación desconocida: " + operacion);
+        }
+    }
+
+    private int idExistente(SplittableRandom aleatorio) {
+        int maximo = ultimoId.get();
+        return maximo == 0 ? 1 : 1 + aleatorio.nextInt(maximo);
+    }
+
+    /**
+     * Inserta las filas iniciales por lotes. Los lotes no envían la fecha, así que en MySQL y H2 estas
+     * filas quedan con la fecha de la inserción, anterior a la de los registros que se agregan durante la prueba.
+     */
+    private void poblar() {
+        if (config.filasIniciales() == 0) {
+            return;
+        }
+        SplittableRandom aleatorio = new SplittableRandom(config.semilla() ^ 0x5DEECE66DL);
+        List<Registro> lote = new ArrayList<>(IRegistroDAO.TAMANO_LOTE_POR_DEFECTO);
+        for (int i = 0; i < config.filasIniciales(); i++) {
+            lote.add(generador.siguiente(aleatorio));
+            if (lote.size() == IRegistroDAO.TAMANO_LOTE_POR_DEFECTO || i == config.filasIniciales() - 1) {
+                if (!dao.agregarRegistros(lote).exitoso()) {
+                    throw new IllegalStateException("No se pudo poblar la base de prueba.");
+                }
+                lote.clear();
+            }
+        }
+        // Los IDs se asignan desde 1 sin huecos, porque la prueba nunca elimina registros
+        ultimoId.set(config.filasIniciales());
+        System.err.println("Base poblada con " + config.filasIniciales() + " registros.");
+    }
+
+    /**
+     * Escribe cada intervalo un intervalo después de que termina, para que las operaciones que terminaron
+     * en su último instante alcancen a registrarse.
+     */
+    private void reportar() {
+        long siguiente = 0;
+        while (!terminado) {
+            long ahora;
+            long limite = inicio + (siguiente + 2) * nanosIntervalo;
+            while (!terminado && (ahora = System.nanoTime()) < limite) {
+                LockSupport.parkNanos(limite - ahora);
+            }
+            if (terminado) {
+                return;
+            }
+            Mediciones mediciones = intervalos.remove(siguiente);
+            escribirIntervalo(siguiente, mediciones == null ? new Mediciones() : mediciones);
+            siguiente++;
+        }
+    }
+
+    private void escribirConfiguracion() {
+        StringJoiner mezcla = new StringJoiner(",", "{", "}");
+        for (TipoOperacion operacion : OPERACIONES) {
+            if (config.mezcla().containsKey(operacion)) {
+                mezcla.add("\"" + nombre(operacion.ordinal()) + "\":" + config.mezcla().get(operacion));
+            }
+        }
+        escribir(String.format(Locale.ROOT,
+                "{\"tipo\":\"configuracion\",\"base\":\"%s\",\"tasa\":%.3f,\"llegadas\":\"%s\",\"duracion_s\":%.3f,"
+                        + "\"calentamiento_s\":%.3f,\"intervalo_s\":%.3f,\"hilos\":\"%s\",\"limite_hilos\":%d,"
+                        + "\"mezcla\":%s,\"usuarios\":%d,\"filas_iniciales\":%d,\"pool\":%d,\"semilla\":%d,"
+                        + "\"procesadores\":%d,\"java\":\"%s\"}",
+                config.base(), config.tasa(), config.poisson() ? "poisson" : "constante",
+                segundos(config.duracion().toNanos()), segundos(config.calentamiento().toNanos()),
+                segundos(config.intervaloReporte().toNanos()), config.hilosVirtuales() ? "virtuales" : "plataforma",
+                config.hilos(), mezcla, config.usuarios(), config.filasIniciales(), config.tamanoPool(),
+                config.semilla(), Runtime.getRuntime().availableProcessors(), Runtime.version()));
+    }
+
+    private void escribirIntervalo(long indice, Mediciones mediciones) {
+        long finIntervalo = (indice + 1) * nanosIntervalo;
+        String fase = inicio + indice * nanosIntervalo < inicioMedicion ? "calentamiento" : "medicion";
+        long pendientes = enviadas.sum() - terminadas.sum();
+        for (int i = 0; i <= TODAS; i++) {
+            if (i == TODAS || config.mezcla().getOrDefault(OPERACIONES[i], 0) > 0) {
+                escribir(String.format(Locale.ROOT,
+                        "{\"tipo\":\"intervalo\",\"fase\":\"%s\",\"segundo\":%.3f,%s,\"pendientes\":%d,\"atraso_ms\":%.3f}",
+                        fase, segundos(finIntervalo), medidas(mediciones, i, nanosIntervalo), pendientes,
+                        milisegundos(atraso.get())));
+            }
+        }
+    }
+
+    private void escribirResumen() {
+        for (int i = 0; i <= TODAS; i++) {
+            if (i == TODAS || config.mezcla().getOrDefault(OPERACIONES[i], 0) > 0) {
+                long exitosas = resumen.exitosas[i].sum();
+                long errores = resumen.errores[i].sum();
+                escribir(String.format(Locale.ROOT, "{\"tipo\":\"resumen\",%s,\"tasa_errores\":%.6f}",
+                        medidas(resumen, i, config.duracion().toNanos()),
+                        exitosas + errores == 0 ? 0.0 : (double) errores / (exitosas + errores)));
+            }
+        }
+    }
+
+    /**
+     * Los campos comunes a las líneas de intervalo y de resumen, sin llaves.
+     */
+    private static String medidas(Mediciones mediciones, int operacion, long nanosVentana) {
+        long exitosas = mediciones.exitosas[operacion].sum();
+        long[] valores = mediciones.latencias[operacion].percentiles(PERCENTILES);
+        return String.format(Locale.ROOT,
+                "\"operacion\":\"%s\",\"completadas\":%d,\"errores\":%d,\"rendimiento\":%.3f,"
+                        + "\"p50_ms\":%.3f,\"p90_ms\":%.3f,\"p99_ms\":%.3f,\"p999_ms\":%.3f,\"max_ms\":%.3f",
+                nombre(operacion), exitosas, mediciones.errores[operacion].sum(), exitosas / segundos(nanosVentana),
+                milisegundos(valores[0]), milisegundos(valores[1]), milisegundos(valores[2]),
+                milisegundos(valores[3]), milisegundos(mediciones.latencias[operacion].maximo()));
+    }
+
+    private void escribir(String linea) {
+        synchronized (salida) {
+            salida.println(linea);
+        }
+    }
+
+    private static String nombre(int operacion) {
+        return operacion == TODAS ? "todas" : OPERACIONES[operacion].name().toLowerCase(Locale.ROOT);
+    }
+
+    private static double segundos(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static double milisegundos(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static void borrar(Path directorio) throws IOException {
+        try (Stream<Path> rutas = Files.walk(directorio)) {
+            for (Path ruta : rutas.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(ruta);
+            }
+        }
+    }
+}
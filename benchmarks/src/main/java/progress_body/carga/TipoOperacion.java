@@ -0,0 +1,17 @@
+package progress_body.carga;
+
+/**
+ * Operaciones que mezcla {@link PruebaCarga}.
+ */
+public enum TipoOperacion {
+    /** Alta con {@code agregarYObtener}, con la fecha del generador. */
+    AGREGAR,
+    /** Lectura de un ID existente al azar con {@code buscarRegistro}. */
+    BUSCAR,
+    /** Modificación de un ID existente al azar con {@code modificarRegistro}. */
+    MODIFICAR,
+    /** Página de {@value PruebaCarga#TAMANO_PAGINA} registros por fecha desde una fecha al azar. */
+    PAGINAR,
+    /** Historial completo de un usuario al azar con {@code listarRegistrosDeUsuario}. */
+    DE_USUARIO
+}
@@ -0,0 +1,60 @@
+package progress_body.conexion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import progress_body.benchmark.BaseDatosPrueba;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara obtener y cerrar una conexión del {@link PoolConexiones} con abrir una conexión nueva por
+ * {@link DriverManager}, como hacía {@code Conexion} antes del pool. Con H2 en memoria abrir una conexión
+ * es mucho más barato que con MySQL por red, así que la diferencia real es mayor que la medida aquí.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConexionBenchmark {
+
+    private BaseDatosPrueba base;
+
+    @Setup(Level.Trial)
+    public void preparar() throws SQLException {
+        base = BaseDatosPrueba.crear("conexion_" + System.nanoTime(), 16);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws SQLException {
+        base.close();
+    }
+
+    @Benchmark
+    public boolean prestamoDelPool() throws SQLException {
+        try (Connection con = base.getPool().getConnection()) {
+            return con.isReadOnly();
+        }
+    }
+
+    @Benchmark
+    public boolean conexionNueva() throws SQLException {
+        try (Connection con = DriverManager.getConnection(base.getUrl(), "sa", "")) {
+            return con.isReadOnly();
+        }
+    }
+}
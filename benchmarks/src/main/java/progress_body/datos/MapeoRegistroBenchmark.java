@@ -0,0 +1,113 @@
+package progress_body.datos;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import progress_body.benchmark.BaseDatosPrueba;
+import progress_body.dominio.Registro;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el costo por fila de convertir un {@link ResultSet} en objetos {@code Registro}, sin incluir
+ * la ejecución de la consulta: el resultado se lee una vez y se recorre de nuevo en cada invocación.
+ * <p>
+ * {@code mapearPorNombre} reproduce el mapeo anterior (columnas por nombre y setters con validación)
+ * como referencia para {@link MapeadorRegistro}. Con {@code -prof gc} se compara también la memoria
+ * asignada por fila.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapeoRegistroBenchmark {
+
+    private static final int FILAS = 1000;
+
+    private BaseDatosPrueba base;
+    private Connection con;
+    private PreparedStatement ps;
+    private ResultSet rs;
+
+    @Setup(Level.Trial)
+    public void preparar() throws SQLException {
+        base = BaseDatosPrueba.crear("mapeo_" + System.nanoTime(), 2);
+        base.poblar(new RegistroDAO(base.getDataSource()), FILAS, 42);
+        con = base.getDataSource().getConnection();
+        ps = con.prepareStatement("SELECT " + MapeadorRegistro.PROYECCION + " FROM registro ORDER BY id",
+                ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        rs = ps.executeQuery();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws SQLException {
+        rs.close();
+        ps.close();
+        con.close();
+        base.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILAS)
+    public void mapearPorNombre(Blackhole bh) throws SQLException {
+        rs.beforeFirst();
+        while (rs.next()) {
+            bh.consume(new Registro(
+                    rs.getInt("id"),
+                    rs.getDouble("peso"),
+                    rs.getDouble("bicepIzquierdo"),
+                    rs.getDouble("bicepDerecho"),
+                    rs.getDouble("cintura"),
+                    rs.getDouble("cuadriceps"),
+                    rs.getDouble("pantorrillas"),
+                    rs.getTimestamp("fecha")));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILAS)
+    public void mapearPorIndice(Blackhole bh) throws SQLException {
+        rs.beforeFirst();
+        MapeadorRegistro mapeo = MapeadorRegistro.PROYECCION_ESTANDAR;
+        while (rs.next()) {
+            bh.consume(mapeo.registro(rs));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILAS)
+    public void mapearResolviendoIndices(Blackhole bh) throws SQLException {
+        rs.beforeFirst();
+        MapeadorRegistro mapeo = MapeadorRegistro.para(rs); // Una búsqueda por columna y resultado
+        while (rs.next()) {
+            bh.consume(mapeo.registro(rs));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILAS)
+    public void mapearInmutable(Blackhole bh) throws SQLException {
+        rs.beforeFirst();
+        MapeadorRegistro mapeo = MapeadorRegistro.PROYECCION_ESTANDAR;
+        while (rs.next()) {
+            bh.consume(mapeo.inmutable(rs));
+        }
+    }
+}
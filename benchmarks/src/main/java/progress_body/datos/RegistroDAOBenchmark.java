@@ -0,0 +1,111 @@
+package progress_body.datos;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import progress_body.benchmark.BaseDatosPrueba;
+import progress_body.dominio.Registro;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide las operaciones de {@link RegistroDAO} contra una base H2 en memoria de {@code tamanoTabla} filas.
+ * El número de hilos se elige al ejecutar ({@code -t}) o con {@link progress_body.benchmark.Principal}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegistroDAOBenchmark {
+
+    @Param({"1000", "100000"})
+    public int tamanoTabla;
+
+    @Param({"16"})
+    public int tamanoPool;
+
+    private BaseDatosPrueba base;
+    private RegistroDAO dao;
+    private List<Registro> lote;
+
+    @Setup(Level.Trial)
+    public void preparar() throws SQLException {
+        base = BaseDatosPrueba.crear("registro_dao_" + System.nanoTime(), tamanoPool);
+        dao = new RegistroDAO(base.getDataSource());
+        base.poblar(dao, tamanoTabla, 42);
+
+        Random aleatorio = new Random(7);
+        lote = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            lote.add(BaseDatosPrueba.registroAleatorio(aleatorio));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws SQLException {
+        base.close();
+    }
+
+    @Benchmark
+    public boolean agregarRegistro() {
+        return dao.agregarRegistro(BaseDatosPrueba.registroAleatorio(ThreadLocalRandom.current()));
+    }
+
+    /**
+     * Inserta 100 registros de a uno; se compara con {@link #agregarRegistrosLote100()}.
+     */
+    @Benchmark
+    public int agregarRegistroIndividual100() {
+        int agregados = 0;
+        for (Registro registro : lote) {
+            if (dao.agregarRegistro(registro)) {
+                agregados++;
+            }
+        }
+        return agregados;
+    }
+
+    /**
+     * Inserta los mismos 100 registros en una sola transacción con {@code INSERT} de varias filas.
+     */
+    @Benchmark
+    public int agregarRegistrosLote100() {
+        return dao.agregarRegistros(lote).totalInsertados();
+    }
+
+    @Benchmark
+    public List<Registro> listarRegistros() {
+        return dao.listarRegistros();
+    }
+
+    @Benchmark
+    public boolean buscarRegistro() {
+        return dao.buscarRegistro(new Registro(idAleatorio()));
+    }
+
+    @Benchmark
+    public boolean registroExiste() {
+        return dao.registroExiste(idAleatorio());
+    }
+
+    private int idAleatorio() {
+        return 1 + ThreadLocalRandom.current().nextInt(tamanoTabla);
+    }
+}
@@ -0,0 +1,55 @@
+package progress_body.dominio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide {@link Registro#equals(Object)} y {@link Registro#hashCode()}, que se usan al guardar registros
+ * en colecciones y cachés.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistroBenchmark {
+
+    private Registro registro;
+    private Registro igual;
+    private Registro distinto;
+
+    @Setup
+    public void preparar() {
+        Timestamp fecha = new Timestamp(1_700_000_000_000L);
+        registro = new Registro(1, 80.5, 35.1, 35.4, 82.0, 55.3, 38.2, fecha);
+        igual = new Registro(1, 80.5, 35.1, 35.4, 82.0, 55.3, 38.2, new Timestamp(fecha.getTime()));
+        distinto = new Registro(1, 80.5, 35.1, 35.4, 82.0, 55.3, 38.3, fecha);
+    }
+
+    @Benchmark
+    public boolean equalsIguales() {
+        return registro.equals(igual);
+    }
+
+    @Benchmark
+    public boolean equalsDistintos() {
+        return registro.equals(distinto);
+    }
+
+    @Benchmark
+    public int hashCodeRegistro() {
+        return registro.hashCode();
+    }
+}
@@ -0,0 +1,100 @@
+package progress_body.metricas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import progress_body.datos.IRegistroDAO;
+import progress_body.datos.ResultadoLote;
+import progress_body.dominio.Registro;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el costo que agrega {@link RegistroDAOInstrumentado} a cada llamada, comparando un DAO que no hace
+ * nada con el mismo DAO instrumentado. Se ejecuta con varios hilos para exponer la contención en los contadores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class InstrumentacionBenchmark {
+
+    private IRegistroDAO directo;
+    private IRegistroDAO instrumentado;
+
+    @Setup
+    public void preparar() {
+        directo = new DAOVacio();
+        instrumentado = new RegistroDAOInstrumentado(directo, Duration.ofSeconds(1), null);
+    }
+
+    @Benchmark
+    public boolean existeDirecto() {
+        return directo.registroExiste(1);
+    }
+
+    @Benchmark
+    public boolean existeInstrumentado() {
+        return instrumentado.registroExiste(1);
+    }
+
+    /**
+     * DAO que responde sin acceder a ninguna base de datos.
+     */
+    private static final class DAOVacio implements IRegistroDAO {
+
+        @Override
+        public List<Registro> listarRegistros() {
+            return List.of();
+        }
+
+        @Override
+        public boolean buscarRegistro(Registro registro) {
+            return false;
+        }
+
+        @Override
+        public boolean registroExiste(int id) {
+            return true;
+        }
+
+        @Override
+        public boolean agregarRegistro(Registro registro) {
+            return true;
+        }
+
+        @Override
+        public boolean modificarRegistro(Registro registro) {
+            return true;
+        }
+
+        @Override
+        public boolean eliminarRegistro(Registro registro) {
+            return true;
+        }
+
+        @Override
+        public Registro guardarRegistro(Registro registro) {
+            return registro;
+        }
+
+        @Override
+        public ResultadoLote agregarRegistros(Iterator<Registro> registros, int tamanoLote) {
+            return new ResultadoLote(List.of(), List.of());
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package progress_body.almacen;
+
+import progress_body.datos.IRegistroDAO;
+import progress_body.dominio.Medida;
+import progress_body.dominio.Registro;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.sql.Timestamp;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Almacén en memoria de registros organizado por columnas.
+ * <p>
+ * Cada campo de {@link Registro} se guarda en una columna de primitivos contigua: el ID como {@code int},
+ * la fecha como milisegundos desde la época en un {@code long} y cada {@link Medida} como {@code double}.
+ * Las columnas pueden vivir en el heap (respaldadas por arreglos) o fuera de él, en memoria nativa
+ * administrada por un {@link Arena}. En ambos casos los recorridos y agregados no crean objetos.
+ * <p>
+ * Fuera del heap cada capacidad tiene su propio {@link Arena}: al crecer se copian las columnas a una
+ * arena nueva y se cierra la anterior, así que la memoria nativa ocupada es la de la capacidad actual y
+ * no la suma de todas las anteriores. Las vistas de {@link #columna(Medida)} tomadas antes de crecer
+ * fallan con {@link IllegalStateException} en lugar de leer memoria liberada.
+ * <p>
+ * Las filas se agregan al final y no se modifican. Esta clase no es segura para hilos: debe haber un
+ * único escritor y las lecturas concurrentes solo son seguras cuando no hay escrituras en curso.
+ */
+public class AlmacenColumnar implements AutoCloseable {
+
+    /**
+     * Valor que se guarda en la columna de fechas cuando el registro no tiene fecha.
+     */
+    public static final long SIN_FECHA = Long.MIN_VALUE;
+
+    private static final int CAPACIDAD_INICIAL = 1024;
+    private static final Medida[] MEDIDAS = Medida.values();
+
+    private final boolean fueraDelHeap;
+    private Arena arena; // La de la capacidad actual; null si las columnas están en el heap
+    private MemorySegment ids;
+    private MemorySegment fechas;
+    private final MemorySegment[] medidas = new MemorySegment[MEDIDAS.length];
+    private int capacidad;
+    private int tamano;
+
+    // Permiten búsquedas binarias mientras las filas lleguen ordenadas
+    private boolean ordenadoPorId = true;
+    private boolean ordenadoPorFecha = true;
+
+    /**
+     * Crea un almacén vacío con las columnas en el heap.
+     */
+    public AlmacenColumnar() {
+        this(false, CAPACIDAD_INICIAL);
+    }
+
+    /**
+     * Crea un almacén vacío.
+     *
+     * @param fueraDelHeap     true para guardar las columnas en memoria nativa; false para usar arreglos del heap.
+     * @param capacidadInicial El número de filas reservadas inicialmente. Debe ser mayor a cero.
+     * @throws IllegalArgumentException si la capacidad no es positiva.
+     */
+    public AlmacenColumnar(boolean fueraDelHeap, int capacidadInicial) {
+        if (capacidadInicial <= 0) {
+            throw new IllegalArgumentException("La capacidad inicial debe ser mayor a cero.");
+        }
+        this.fueraDelHeap = fueraDelHeap;
+        reservar(capacidadInicial);
+    }
+
+    /**
+     * Crea un almacén con todos los registros que devuelve el DAO, leyéndolos sin materializar una lista.
+     *
+     * @param dao          El DAO del que se leen los registros. No debe ser nulo.
+     * @param fueraDelHeap true para guardar las columnas en memoria nativa.
+     * @return El almacén cargado, o null si no se pudieron leer todos los registros.
+     * @throws IllegalArgumentException si el DAO es nulo.
+     */
+    public static AlmacenColumnar cargar(IRegistroDAO dao, boolean fueraDelHeap) {
+        if (dao == null) {
+            throw new IllegalArgumentException("El DAO no puede ser nulo.");
+        }
+        AlmacenColumnar almacen = new AlmacenColumnar(fueraDelHeap, CAPACIDAD_INICIAL);
+        if (dao.recorrerRegistros(almacen::agregar) < 0) {
+            almacen.close();
+            return null;
+        }
+        return almacen;
+    }
+
+    /**
+     * Agrega un registro al final del almacén.
+     *
+     * @param registro El registro a agregar. No debe ser nulo.
+     * @throws IllegalArgumentException si el registro es nulo.
+     */
+    public void agregar(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        Timestamp fecha = registro.getFecha();
+        agregar(registro.getId(), fecha == null ? SIN_FECHA : fecha.getTime(),
+                registro.getPeso(), registro.getBicepIzquierdo(), registro.getBicepDerecho(),
+                registro.getCintura(), registro.getCuadriceps(), registro.getPantorrillas());
+    }
+
+    /**
+     * Agrega una fila al final del almacén a partir de sus valores primitivos.
+     *
+     * @param id             El ID del registro.
+     * @param fechaMillis    La fecha en milisegundos desde la época, o {@link #SIN_FECHA}.
+     * @param peso           Peso en kilogramos.
+     * @param bicepIzquierdo Medida del bíceps izquierdo en centímetros.
+     * @param bicepDerecho   Medida del bíceps derecho en centímetros.
+     * @param cintura        Medida de la cintura en centímetros.
+     * @param cuadriceps     Medida del cuadríceps en centímetros.
+     * @param pantorrillas   Medida de las pantorrillas en centímetros.
+     */
+    public void agregar(int id, long fechaMillis, double peso, double bicepIzquierdo, double bicepDerecho,
+                        double cintura, double cuadriceps, double pantorrillas) {
+        if (tamano == capacidad) {
+            reservar(capacidad + (capacidad >> 1) + 1);
+        }
+        if (tamano > 0) {
+            ordenadoPorId &= id > id(tamano - 1);
+            ordenadoPorFecha &= fechaMillis >= fecha(tamano - 1);
+        }
+
+        ids.setAtIndex(ValueLayout.JAVA_INT, tamano, id);
+        fechas.setAtIndex(ValueLayout.JAVA_LONG, tamano, fechaMillis);
+        medidas[Medida.PESO.ordinal()].setAtIndex(ValueLayout.JAVA_DOUBLE, tamano, peso);
+        medidas[Medida.BICEP_IZQUIERDO.ordinal()].setAtIndex(ValueLayout.JAVA_DOUBLE, tamano, bicepIzquierdo);
+        medidas[Medida.BICEP_DERECHO.ordinal()].setAtIndex(ValueLayout.JAVA_DOUBLE, tamano, bicepDerecho);
+        medidas[Medida.CINTURA.ordinal()].setAtIndex(ValueLayout.JAVA_DOUBLE, tamano, cintura);
+        medidas[Medida.CUADRICEPS.ordinal()].setAtIndex(ValueLayout.JAVA_DOUBLE, tamano, cuadriceps);
+        medidas[Medida.PANTORRILLAS.ordinal()].setAtIndex(ValueLayout.JAVA_DOUBLE, tamano, pantorrillas);
+        tamano++;
+    }
+
+    // Acceso por fila
+
+    public int tamano() {
+        return tamano;
+    }
+
+    public boolean fueraDelHeap() {
+        return fueraDelHeap;
+    }
+
+    public int id(int fila) {
+        return ids.getAtIndex(ValueLayout.JAVA_INT, verificarFila(fila));
+    }
+
+    public long fecha(int fila) {
+        return fechas.getAtIndex(ValueLayout.JAVA_LONG, verificarFila(fila));
+    }
+
+    public double valor(Medida medida, int fila) {
+        return medidas[medida.ordinal()].getAtIndex(ValueLayout.JAVA_DOUBLE, verificarFila(fila));
+    }
+
+    /**
+     * Reconstruye el objeto {@link Registro} de una fila.
+     *
+     * @param fila La fila a leer.
+     * @return Un nuevo Registro con los valores de la fila.
+     */
+    public Registro registro(int fila) {
+        long fecha = fecha(fila);
+        return new Registro(id(fila),
+                valor(Medida.PESO, fila), valor(Medida.BICEP_IZQUIERDO, fila), valor(Medida.BICEP_DERECHO, fila),
+                valor(Medida.CINTURA, fila), valor(Medida.CUADRICEPS, fila), valor(Medida.PANTORRILLAS, fila),
+                fecha == SIN_FECHA ? null : new Timestamp(fecha));
+    }
+
+    /**
+     * Busca la fila de un ID. Usa búsqueda binaria si las filas se agregaron en orden de ID.
+     *
+     * @param id El ID a buscar.
+     * @return La fila del ID, o -1 si no está en el almacén.
+     */
+    public int filaDeId(int id) {
+        if (ordenadoPorId) {
+            int bajo = 0;
+            int alto = tamano - 1;
+            while (bajo <= alto) {
+                int medio = (bajo + alto) >>> 1;
+                int actual = ids.getAtIndex(ValueLayout.JAVA_INT, medio);
+                if (actual < id) {
+                    bajo = medio + 1;
+                } else if (actual > id) {
+                    alto = medio - 1;
+                } else {
+                    return medio;
+                }
+            }
+            return -1;
+        }
+        for (int i = 0; i < tamano; i++) {
+            if (ids.getAtIndex(ValueLayout.JAVA_INT, i) == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Devuelve la primera fila cuya fecha es mayor o igual a la indicada.
+     *
+     * @param fechaMillis La fecha en milisegundos desde la época.
+     * @return La primera fila con fecha {@code >= fechaMillis}, o {@link #tamano()} si no hay ninguna.
+     * @throws IllegalStateException si las filas no se agregaron en orden de fecha.
+     */
+    public int primeraFilaDesde(long fechaMillis) {
+        if (!ordenadoPorFecha) {
+            throw new IllegalStateException("Las filas no están ordenadas por fecha.");
+        }
+        int bajo = 0;
+        int alto = tamano;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (fechas.getAtIndex(ValueLayout.JAVA_LONG, medio) < fechaMillis) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    public boolean ordenadoPorFecha() {
+        return ordenadoPorFecha;
+    }
+
+    // Recorridos y agregados sin asignación de objetos
+
+    /**
+     * Entrega al consumidor los valores de una medida en las filas {@code [desde, hasta)}.
+     *
+     * @param medida     La medida a recorrer.
+     * @param desde      La primera fila, incluida.
+     * @param hasta      La última fila, excluida.
+     * @param consumidor El consumidor de los valores.
+     */
+    public void recorrer(Medida medida, int desde, int hasta, DoubleConsumer consumidor) {
+        verificarRango(desde, hasta);
+        MemorySegment columna = medidas[medida.ordinal()];
+        for (int i = desde; i < hasta; i++) {
+            consumidor.accept(columna.getAtIndex(ValueLayout.JAVA_DOUBLE, i));
+        }
+    }
+
+    public double sumar(Medida medida) {
+        return sumar(medida, 0, tamano);
+    }
+
+    /**
+     * Suma los valores de una medida en las filas {@code [desde, hasta)}.
+     *
+     * @param medida La medida a sumar.
+     * @param desde  La primera fila, incluida.
+     * @param hasta  La última fila, excluida.
+     * @return La suma de los valores.
+     */
+    public double sumar(Medida medida, int desde, int hasta) {
+        verificarRango(desde, hasta);
+        MemorySegment columna = medidas[medida.ordinal()];
+        double suma = 0;
+        for (int i = desde; i < hasta; i++) {
+            suma += columna.getAtIndex(ValueLayout.JAVA_DOUBLE, i);
+        }
+        return suma;
+    }
+
+    /**
+     * Calcula la media de una medida en las filas {@code [desde, hasta)}.
+     *
+     * @return La media, o {@link Double#NaN} si el rango está vacío.
+     */
+    public double media(Medida medida, int desde, int hasta) {
+        return desde == hasta ? Double.NaN : sumar(medida, desde, hasta) / (hasta - desde);
+    }
+
+    /**
+     * Calcula el mínimo de una medida en las filas {@code [desde, hasta)}.
+     *
+     * @return El mínimo, o {@link Double#NaN} si el rango está vacío.
+     */
+    public double minimo(Medida medida, int desde, int hasta) {
+        verificarRango(desde, hasta);
+        MemorySegment columna = medidas[medida.ordinal()];
+        double minimo = desde == hasta ? Double.NaN : Double.POSITIVE_INFINITY;
+        for (int i = desde; i < hasta; i++) {
+            minimo = Math.min(minimo, columna.getAtIndex(ValueLayout.JAVA_DOUBLE, i));
+        }
+        return minimo;
+    }
+
+    /**
+     * Calcula el máximo de una medida en las filas {@code [desde, hasta)}.
+     *
+     * @return El máximo, o {@link Double#NaN} si el rango está vacío.
+     */
+    public double maximo(Medida medida, int desde, int hasta) {
+        verificarRango(desde, hasta);
+        MemorySegment columna = medidas[medida.ordinal()];
+        double maximo = desde == hasta ? Double.NaN : Double.NEGATIVE_INFINITY;
+        for (int i = desde; i < hasta; i++) {
+            maximo = Math.max(maximo, columna.getAtIndex(ValueLayout.JAVA_DOUBLE, i));
+        }
+        return maximo;
+    }
+
+    /**
+     * Copia los valores de una medida en las filas {@code [desde, hasta)} a un arreglo.
+     *
+     * @param medida  La medida a copiar.
+     * @param desde   La primera fila, incluida.
+     * @param hasta   La última fila, excluida.
+     * @param destino El arreglo de destino.
+     * @param inicio  La posición del destino donde se copia la primera fila.
+     */
+    public void copiar(Medida medida, int desde, int hasta, double[] destino, int inicio) {
+        verificarRango(desde, hasta);
+        MemorySegment.copy(medidas[medida.ordinal()], ValueLayout.JAVA_DOUBLE, (long) desde * Double.BYTES,
+                destino, inicio, hasta - desde);
+    }
+
+    /**
+     * Devuelve una vista de solo lectura de las filas ocupadas de una medida, apta para cálculos vectoriales.
+     * La vista deja de ser válida si el almacén crece o se cierra.
+     *
+     * @param medida La medida.
+     * @return Un segmento de {@link #tamano()} valores {@code double}.
+     */
+    public MemorySegment columna(Medida medida) {
+        return medidas[medida.ordinal()].asSlice(0, (long) tamano * Double.BYTES).asReadOnly();
+    }
+
+    /**
+     * Devuelve una vista de solo lectura de la columna de fechas en milisegundos.
+     * La vista deja de ser válida si el almacén crece o se cierra.
+     *
+     * @return Un segmento de {@link #tamano()} valores {@code long}.
+     */
+    public MemorySegment columnaFechas() {
+        return fechas.asSlice(0, (long) tamano * Long.BYTES).asReadOnly();
+    }
+
+    /**
+     * Libera la memoria nativa si las columnas están fuera del heap.
+     */
+    @Override
+    public void close() {
+        if (arena != null) {
+            arena.close();
+        }
+    }
+
+    private void reservar(int nuevaCapacidad) {
+        // Compartida y no confinada: las lecturas pueden hacerse desde otros hilos
+        Arena nueva = fueraDelHeap ? Arena.ofShared() : null;
+        MemorySegment nuevosIds;
+        MemorySegment nuevasFechas;
+        MemorySegment[] nuevasMedidas = new MemorySegment[medidas.length];
+        try {
+            nuevosIds = crecer(nueva, ids, nuevaCapacidad, ValueLayout.JAVA_INT);
+            nuevasFechas = crecer(nueva, fechas, nuevaCapacidad, ValueLayout.JAVA_LONG);
+            for (int i = 0; i < medidas.length; i++) {
+                nuevasMedidas[i] = crecer(nueva, medidas[i], nuevaCapacidad, ValueLayout.JAVA_DOUBLE);
+            }
+        } catch (RuntimeException | OutOfMemoryError e) {
+            // Si no se pudo reservar, el almacén sigue con las columnas anteriores
+            if (nueva != null) {
+                nueva.close();
+            }
+            throw e;
+        }
+        ids = nuevosIds;
+        fechas = nuevasFechas;
+        System.arraycopy(nuevasMedidas, 0, medidas, 0, medidas.length);
+        capacidad = nuevaCapacidad;
+        if (arena != null) {
+            arena.close();
+        }
+        arena = nueva;
+    }
+
+    private MemorySegment crecer(Arena destino, MemorySegment actual, int nuevaCapacidad, ValueLayout tipo) {
+        MemorySegment nuevo;
+        if (destino != null) {
+            nuevo = destino.allocate(tipo.byteSize() * nuevaCapacidad, tipo.byteAlignment());
+        } else if (tipo == ValueLayout.JAVA_INT) {
+            nuevo = MemorySegment.ofArray(new int[nuevaCapacidad]);
+        } else if (tipo == ValueLayout.JAVA_LONG) {
+            nuevo = MemorySegment.ofArray(new long[nuevaCapacidad]);
+        } else {
+            nuevo = MemorySegment.ofArray(new double[nuevaCapacidad]);
+        }
+        if (actual != null) {
+            MemorySegment.copy(actual, 0, nuevo, 0, tipo.byteSize() * tamano);
+        }
+        return nuevo;
+    }
+
+    private int verificarFila(int fila) {
+        if (fila < 0 || fila >= tamano) {
+            throw new IndexOutOfBoundsException("Fila fuera de rango: " + fila);
+        }
+        return fila;
+    }
+
+    private void verificarRango(int desde, int hasta) {
+        if (desde < 0 || hasta > tamano || desde > hasta) {
+            throw new IndexOutOfBoundsException("Rango de filas fuera de rango: [" + desde + ", " + hasta + ")");
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package progress_body.almacen;
+
+import progress_body.datos.IRegistroDAO;
+import progress_body.datos.UncheckedSQLException;
+import progress_body.dominio.Medida;
+import progress_body.dominio.Registro;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * Archivo binario con una copia de los registros, para arrancar sin recorrer toda la tabla.
+ * <p>
+ * El archivo tiene un encabezado de {@value #TAMANO_ENCABEZADO} bytes seguido de registros de ancho
+ * fijo de {@value #TAMANO_REGISTRO} bytes, todo en little endian:
+ * <pre>
+ * Encabezado                          Registro
+ *  0  int   magia ("PBSR")             0  int    id
+ *  4  int   versión                    4  int    usuario
+ *  8  int   tamaño de registro         8  long   fecha en milisegundos, o AlmacenColumnar.SIN_FECHA
+ * 12  int   mayor ID                  16  double peso
+ * 16  long  cantidad de registros     24  double bíceps izquierdo
+ * 24  long  creado (milisegundos)     32  double bíceps derecho
+ * 32  long  CRC32C de los registros   40  double cintura
+ * 40  ...   reservado (0)             48  double cuadríceps
+ * 56  long  CRC32C de los bytes 0-55  56  double pantorrillas
+ * </pre>
+ * {@link #abrir(Path)} proyecta el archivo en memoria y verifica ambas sumas de control; los accesos
+ * posteriores leen directamente de la proyección, sin copiar ni crear objetos. Con
+ * {@link #actualizar(Path, IRegistroDAO)} se agregan al final los registros que el archivo no tiene,
+ * buscándolos desde {@value #VENTANA_RETRASO} IDs antes del mayor guardado, y
+ * {@link #cargarAlmacen(Path, IRegistroDAO, boolean)} combina ambos pasos en el arranque.
+ * <p>
+ * La actualización incremental solo incorpora altas: las modificaciones y bajas de registros ya
+ * guardados se reflejan al volver a escribir el archivo completo con {@link #escribir(Path, IRegistroDAO)}.
+ * Un alta confirmada con un ID menor que otros ya guardados se incorpora si está dentro de la ventana;
+ * por eso las filas agregadas no quedan necesariamente en orden de ID. La versión de los registros no
+ * se guarda.
+ */
+public final class InstantaneaRegistros implements AutoCloseable {
+
+    public static final int MAGIA = 0x52534250; // "PBSR" en little endian
+    public static final int VERSION = 2; // La 1 no guardaba el usuario; sus archivos se descartan
+    public static final int TAMANO_ENCABEZADO = 64;
+    public static final int TAMANO_REGISTRO = 64;
+
+    /**
+     * IDs por debajo del mayor guardado que cada actualización vuelve a leer. Cubre las altas que se
+     * confirman después de otras con un ID mayor, como las de transacciones largas que compiten con
+     * transacciones cortas; un alta que se confirma más atrasada solo aparece al reescribir el archivo.
+     */
+    public static final int VENTANA_RETRASO = 10_000;
+
+    private static final int PAGINA_DELTA = 1000;
+    private static final int TAMANO_BUFER = 1 << 20; // 1 MiB, múltiplo del tamaño de registro
+    private static final int BLOQUE_CRC = 1 << 16;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final Arena arena;
+    private final MemorySegment datos; // Solo los registros, sin el encabezado
+    private final long cantidad;
+    private final int ultimoId;
+    private final long creado;
+    private final long crcDatos;
+
+    private InstantaneaRegistros(Arena arena, MemorySegment datos, long cantidad, int ultimoId, long creado, long crcDatos) {
+        this.arena = arena;
+        this.datos = datos;
+        this.cantidad = cantidad;
+        this.ultimoId = ultimoId;
+        this.creado = creado;
+        this.crcDatos = crcDatos;
+    }
+
+    /**
+     * Proyecta un archivo en memoria y verifica su encabezado y la suma de control de los registros.
+     *
+     * @param archivo El archivo. No debe ser nulo.
+     * @return La instantánea, que debe cerrarse para liberar la proyección; o null si el archivo no existe,
+     * no tiene el formato esperado o está dañado.
+     * @throws IllegalArgumentException si el archivo es nulo.
+     */
+    public static InstantaneaRegistros abrir(Path archivo) {
+        if (archivo == null) {
+            throw new IllegalArgumentException("El archivo no puede ser nulo.");
+        }
+        return abrir(archivo, new CRC32C());
+    }
+
+    /**
+     * Abre y verifica el archivo; al terminar, {@code crc} contiene la suma de control de los registros
+     * y puede seguir actualizándose con los que se agreguen.
+     */
+    private static InstantaneaRegistros abrir(Path archivo, CRC32C crc) {
+        if (!Files.exists(archivo)) {
+            return null;
+        }
+        Arena arena = Arena.ofShared();
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            MemorySegment proyeccion = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size(), arena);
+            String error = verificarEncabezado(proyeccion);
+            if (error == null) {
+                long cantidad = proyeccion.get(LONG, 16);
+                MemorySegment datos = proyeccion.asSlice(TAMANO_ENCABEZADO, cantidad * TAMANO_REGISTRO);
+                long esperado = proyeccion.get(LONG, 32);
+                if (crc(crc, datos) == esperado) {
+                    return new InstantaneaRegistros(arena, datos, cantidad, proyeccion.get(INT, 12), proyeccion.get(LONG, 24), esperado);
+                }
+                error = "la suma de control de los registros no coincide";
+            }
+            System.out.println("Se descarta la instantánea " + archivo + ": " + error + ".");
+        } catch (IOException e) {
+            System.out.println("No se pudo abrir la instantánea. \n" + e.getMessage());
+        }
+        arena.close();
+        return null;
+    }
+
+    /**
+     * Escribe en un archivo todos los registros que devuelve el DAO, reemplazándolo si existe.
+     * El archivo se escribe con la extensión {@code .tmp} y se renombra al terminar; si la lectura
+     * de los registros se interrumpe, el temporal se borra y el archivo anterior queda intacto.
+     *
+     * @param archivo El archivo de destino. No debe ser nulo.
+     * @param dao     El DAO del que se leen los registros. No debe ser nulo.
+     * @return El número de registros escritos, o -1 si ocurrió un error.
+     * @throws IllegalArgumentException si algún argumento es nulo.
+     */
+    public static long escribir(Path archivo, IRegistroDAO dao) {
+        if (dao == null) {
+            throw new IllegalArgumentException("El DAO no puede ser nulo.");
+        }
+        return escribirCompleto(archivo, escritor -> {
+            if (dao.recorrerRegistros(escritor::agregar) < 0) {
+                throw new IOException("Se interrumpió la lectura de los registros.");
+            }
+        });
+    }
+
+    /**
+     * Agrega al final del archivo los registros que no tiene, leyendo desde {@value #VENTANA_RETRASO} IDs
+     * antes del mayor guardado.
+     * <p>
+     * Los registros nuevos se escriben y sincronizan antes de reescribir el encabezado, así que una
+     * caída a mitad de la actualización, o un error al leer los registros del DAO, deja el archivo con
+     * su contenido anterior.
+     *
+     * @param archivo El archivo a actualizar; debe ser una instantánea válida. No debe ser nulo.
+     * @param dao     El DAO del que se leen los registros nuevos. No debe ser nulo.
+     * @return El número de registros agregados, o -1 si el archivo no es válido u ocurrió un error.
+     * @throws IllegalArgumentException si algún argumento es nulo.
+     */
+    public static long actualizar(Path archivo, IRegistroDAO dao) {
+        if (archivo == null || dao == null) {
+            throw new IllegalArgumentException("El archivo y el DAO no pueden ser nulos.");
+        }
+        CRC32C crc = new CRC32C();
+        long cantidad;
+        int ultimoId;
+        Set<Integer> recientes;
+        try (InstantaneaRegistros actual = abrir(archivo, crc)) {
+            if (actual == null) {
+                return -1;
+            }
+            cantidad = actual.cantidad;
+            ultimoId = actual.ultimoId;
+            recientes = actual.idsDesde(inicioVentana(ultimoId));
+        }
+        return anexar(archivo, cantidad, ultimoId, recientes, crc, dao, null);
+    }
+
+    /**
+     * Arranque en caliente: carga un almacén desde la instantánea y le agrega los registros que le faltan
+     * según el DAO, actualizando también el archivo. Si no hay una instantánea válida, carga el almacén
+     * desde el DAO y escribe una nueva en la misma pasada.
+     *
+     * @param archivo      El archivo de la instantánea. No debe ser nulo.
+     * @param dao          El DAO con los registros actuales. No debe ser nulo.
+     * @param fueraDelHeap true para guardar las columnas del almacén en memoria nativa.
+     * @return El almacén con todos los registros, o null si no se pudieron leer del DAO.
+     * @throws IllegalArgumentException si algún argumento es nulo.
+     */
+    public static AlmacenColumnar cargarAlmacen(Path archivo, IRegistroDAO dao, boolean fueraDelHeap) {
+        if (archivo == null || dao == null) {
+            throw new IllegalArgumentException("El archivo y el DAO no pueden ser nulos.");
+        }
+        CRC32C crc = new CRC32C();
+        AlmacenColumnar almacen;
+        long cantidad;
+        int ultimoId;
+        Set<Integer> recientes;
+        try (InstantaneaRegistros instantanea = abrir(archivo, crc)) {
+            if (instantanea == null) {
+                return cargarYEscribir(archivo, dao, fueraDelHeap);
+            }
+            almacen = new AlmacenColumnar(fueraDelHeap, (int) Math.max(1, instantanea.tamano()));
+            instantanea.cargarEn(almacen);
+            cantidad = instantanea.cantidad;
+            ultimoId = instantanea.ultimoId;
+            recientes = instantanea.idsDesde(inicioVentana(ultimoId));
+        }
+        if (anexar(archivo, cantidad, ultimoId, recientes, crc, dao, almacen) < 0) {
+            almacen.close(); // El almacén puede haber quedado a medias
+            return AlmacenColumnar.cargar(dao, fueraDelHeap);
+        }
+        return almacen;
+    }
+
+    public long tamano() {
+        return cantidad;
+    }
+
+    /**
+     * @return El mayor ID guardado, desde el que continúa la próxima actualización incremental.
+     */
+    public int ultimoId() {
+        return ultimoId;
+    }
+
+    /**
+     * @return El momento en que se escribió o actualizó el archivo, en milisegundos desde la época.
+     */
+    public long creado() {
+        return creado;
+    }
+
+    public long crcDatos() {
+        return crcDatos;
+    }
+
+    public int id(long fila) {
+        return datos.get(INT, desplazamiento(fila));
+    }
+
+    public int usuario(long fila) {
+        return datos.get(INT, desplazamiento(fila) + 4);
+    }
+
+    /**
+     * @return La fecha de la fila en milisegundos, o {@link AlmacenColumnar#SIN_FECHA}.
+     */
+    public long fecha(long fila) {
+        return datos.get(LONG, desplazamiento(fila) + 8);
+    }
+
+    public double valor(Medida medida, long fila) {
+        return datos.get(DOUBLE, desplazamiento(fila) + desplazamiento(medida));
+    }
+
+    /**
+     * Reconstruye el objeto {@link Registro} de una fila. La versión no se guarda en el archivo, así
+     * que el registro tiene versión 0.
+     *
+     * @param fila La fila a leer.
+     * @return Un nuevo Registro con los valores de la fila.
+     */
+    public Registro registro(long fila) {
+        long fecha = fecha(fila);
+        return Registro.sinValidar(id(fila),
+                valor(Medida.PESO, fila), valor(Medida.BICEP_IZQUIERDO, fila), valor(Medida.BICEP_DERECHO, fila),
+                valor(Medida.CINTURA, fila), valor(Medida.CUADRICEPS, fila), valor(Medida.PANTORRILLAS, fila),
+                fecha == AlmacenColumnar.SIN_FECHA ? null : new Timestamp(fecha), 0, usuario(fila));
+    }
+
+    /**
+     * Agrega todas las filas al final de un almacén columnar, en una sola pasada secuencial.
+     *
+     * @param almacen El almacén de destino. No debe ser nulo.
+     * @throws IllegalArgumentException si el almacén es nulo.
+     */
+    public void cargarEn(AlmacenColumnar almacen) {
+        if (almacen == null) {
+            throw new IllegalArgumentException("El almacén no puede ser nulo.");
+        }
+        for (long d = 0; d < cantidad * TAMANO_REGISTRO; d += TAMANO_REGISTRO) {
+            almacen.agregar(datos.get(INT, d), datos.get(LONG, d + 8),
+                    datos.get(DOUBLE, d + 16), datos.get(DOUBLE, d + 24), datos.get(DOUBLE, d + 32),
+                    datos.get(DOUBLE, d + 40), datos.get(DOUBLE, d + 48), datos.get(DOUBLE, d + 56));
+        }
+    }
+
+    /**
+     * Libera la proyección del archivo. Las lecturas posteriores fallan.
+     */
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    /**
+     * @return Los IDs guardados mayores que {@code desde}, en un recorrido secuencial de la proyección.
+     */
+    private Set<Integer> idsDesde(int desde) {
+        Set<Integer> ids = new HashSet<>();
+        for (long d = 0; d < cantidad * TAMANO_REGISTRO; d += TAMANO_REGISTRO) {
+            int id = datos.get(INT, d);
+            if (id > desde) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private static int inicioVentana(int ultimoId) {
+        return Math.max(0, ultimoId - VENTANA_RETRASO);
+    }
+
+    private long desplazamiento(long fila) {
+        if (fila < 0 || fila >= cantidad) {
+            throw new IndexOutOfBoundsException("Fila fuera de rango: " + fila);
+        }
+        return fila * TAMANO_REGISTRO;
+    }
+
+    /**
+     * Posición de una medida dentro del registro. Es parte del formato y no depende del orden de {@link Medida}.
+     */
+    private static long desplazamiento(Medida medida) {
+        return switch (medida) {
+            case PESO -> 16;
+            case BICEP_IZQUIERDO -> 24;
+            case BICEP_DERECHO -> 32;
+            case CINTURA -> 40;
+            case CUADRICEPS -> 48;
+            case PANTORRILLAS -> 56;
+        };
+    }
+
+    /**
+     * @return null si el encabezado es válido; en caso contrario, el motivo.
+     */
+    private static String verificarEncabezado(MemorySegment archivo) {
+        if (archivo.byteSize() < TAMANO_ENCABEZADO || archivo.get(INT, 0) != MAGIA) {
+            return "no es un archivo de instantánea";
+        }
+        if (crc(new CRC32C(), archivo.asSlice(0, 56)) != archivo.get(LONG, 56)) {
+            return "la suma de control del encabezado no coincide";
+        }
+        if (archivo.get(INT, 4) != VERSION || archivo.get(INT, 8) != TAMANO_REGISTRO) {
+            return "versión de formato no admitida";
+        }
+        long cantidad = archivo.get(LONG, 16);
+        if (cantidad < 0 || cantidad > (archivo.byteSize() - TAMANO_ENCABEZADO) / TAMANO_REGISTRO) {
+            return "el archivo está truncado";
+        }
+        return null;
+    }
+
+    /**
+     * Agrega a la suma de control el contenido de un segmento. Se copia por bloques a un arreglo porque
+     * {@link CRC32C} no acepta búferes de segmentos con un {@link Arena} compartido.
+     */
+    private static long crc(CRC32C crc, MemorySegment segmento) {
+        byte[] bloque = new byte[(int) Math.min(BLOQUE_CRC, segmento.byteSize())];
+        for (long d = 0; d < segmento.byteSize(); d += BLOQUE_CRC) {
+            int n = (int) Math.min(BLOQUE_CRC, segmento.byteSize() - d);
+            MemorySegment.copy(segmento, ValueLayout.JAVA_BYTE, d, bloque, 0, n);
+            crc.update(bloque, 0, n);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Agrega al final del archivo, y si se indica también al almacén, los registros con ID mayor al inicio
+     * de la ventana de {@code ultimoId} que no están entre los {@code recientes} ya guardados. Los registros
+     * se escriben y sincronizan antes de reescribir el encabezado. Como una página vacía no distingue el
+     * final de los registros de un error, cada página se acepta solo si el DAO no informó fallos al leerla
+     * ({@link IRegistroDAO#getFallosDelHilo()}).
+     */
+    private static long anexar(Path archivo, long cantidad, int ultimoId, Set<Integer> recientes, CRC32C crc,
+                               IRegistroDAO dao, AlmacenColumnar almacen) {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE)) {
+            long fin = TAMANO_ENCABEZADO + cantidad * TAMANO_REGISTRO;
+            canal.truncate(fin); // Descarta restos de una actualización interrumpida
+            canal.position(fin);
+            Escritor escritor = new Escritor(canal, crc, ultimoId);
+            int anterior = inicioVentana(ultimoId);
+            List<Registro> pagina;
+            do {
+                long fallos = dao.getFallosDelHilo();
+                pagina = dao.listarRegistrosDespuesDe(anterior, PAGINA_DELTA);
+                if (dao.getFallosDelHilo() != fallos) {
+                    throw new IOException("No se pudieron leer los registros posteriores al " + anterior + ".");
+                }
+                for (Registro registro : pagina) {
+                    if (!recientes.contains(registro.getId())) {
+                        escritor.agregar(registro);
+                        if (almacen != null) {
+                            almacen.agregar(registro);
+                        }
+                    }
+                }
+                if (!pagina.isEmpty()) {
+                    anterior = pagina.getLast().getId();
+                }
+            } while (pagina.size() == PAGINA_DELTA);
+            escritor.vaciar();
+            if (escritor.cantidad > 0) {
+                canal.force(false);
+                escritor.escribirEncabezado(cantidad + escritor.cantidad);
+                canal.force(false);
+            }
+            return escritor.cantidad;
+        } catch (IOException | UncheckedIOException | UncheckedSQLException e) {
+            System.out.println("No se pudo actualizar la instantánea. \n" + e.getMessage());
+        }
+        return -1;
+    }
+
+    /**
+     * Carga un almacén desde el DAO y escribe la instantánea en la misma pasada. Si falla la lectura o
+     * la escritura, se descarta lo leído y el almacén se carga solo desde el DAO.
+     */
+    private static AlmacenColumnar cargarYEscribir(Path archivo, IRegistroDAO dao, boolean fueraDelHeap) {
+        AlmacenColumnar almacen = new AlmacenColumnar(fueraDelHeap, PAGINA_DELTA);
+        long escritos = escribirCompleto(archivo, escritor -> {
+            if (dao.recorrerRegistros(registro -> {
+                escritor.agregar(registro);
+                almacen.agregar(registro);
+            }) < 0) {
+                throw new IOException("Se interrumpió la lectura de los registros.");
+            }
+        });
+        if (escritos < 0) {
+            almacen.close();
+            return AlmacenColumnar.cargar(dao, fueraDelHeap);
+        }
+        return almacen;
+    }
+
+    @FunctionalInterface
+    private interface Contenido {
+        void escribir(Escritor escritor) throws IOException;
+    }
+
+    private static long escribirCompleto(Path archivo, Contenido contenido) {
+        if (archivo == null) {
+            throw new IllegalArgumentException("El archivo no puede ser nulo.");
+        }
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        long cantidad;
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            canal.position(TAMANO_ENCABEZADO);
+            Escritor escritor = new Escritor(canal, new CRC32C(), 0);
+            contenido.escribir(escritor);
+            escritor.vaciar();
+            escritor.escribirEncabezado(escritor.cantidad);
+            canal.force(true);
+            cantidad = escritor.cantidad;
+        } catch (IOException | UncheckedIOException | UncheckedSQLException e) {
+            System.out.println("No se pudo escribir la instantánea. \n" + e.getMessage());
+            borrar(temporal);
+            return -1;
+        }
+        try {
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("No se pudo renombrar la instantánea. \n" + e.getMessage());
+            borrar(temporal);
+            return -1;
+        }
+        return cantidad;
+    }
+
+    private static void borrar(Path archivo) {
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            System.out.println("No se pudo borrar el archivo temporal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Codifica registros en un búfer directo, actualiza la suma de control y los escribe en la
+     * posición actual del canal.
+     */
+    private static final class Escritor {
+
+        private final FileChannel canal;
+        private final CRC32C crc;
+        private final ByteBuffer bufer = ByteBuffer.allocateDirect(TAMANO_BUFER).order(ByteOrder.LITTLE_ENDIAN);
+        private int ultimoId;
+        private long cantidad; // Registros escritos por este escritor
+
+        Escritor(FileChannel canal, CRC32C crc, int ultimoId) {
+            this.canal = canal;
+            this.crc = crc;
+            this.ultimoId = ultimoId;
+        }
+
+        void agregar(Registro r) {
+            if (bufer.remaining() < TAMANO_REGISTRO) {
+                vaciar();
+            }
+            Timestamp fecha = r.getFecha();
+            bufer.putInt(r.getId()).putInt(r.getUsuario())
+                    .putLong(fecha == null ? AlmacenColumnar.SIN_FECHA : fecha.getTime())
+                    .putDouble(r.getPeso()).putDouble(r.getBicepIzquierdo()).putDouble(r.getBicepDerecho())
+                    .putDouble(r.getCintura()).putDouble(r.getCuadriceps()).putDouble(r.getPantorrillas());
+            ultimoId = Math.max(ultimoId, r.getId());
+            cantidad++;
+        }
+
+        void vaciar() {
+            bufer.flip();
+            crc.update(bufer.duplicate());
+            try {
+                while (bufer.hasRemaining()) {
+                    canal.write(bufer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // Detiene el recorrido de los registros
+            }
+            bufer.clear();
+        }
+
+        /**
+         * Escribe el encabezado al principio del archivo con la cantidad total de registros.
+         */
+        void escribirEncabezado(long total) throws IOException {
+            ByteBuffer encabezado = ByteBuffer.allocate(TAMANO_ENCABEZADO).order(ByteOrder.LITTLE_ENDIAN);
+            encabezado.putInt(MAGIA).putInt(VERSION).putInt(TAMANO_REGISTRO).putInt(ultimoId)
+                    .putLong(total).putLong(System.currentTimeMillis()).putLong(crc.getValue());
+            CRC32C crcEncabezado = new CRC32C();
+            crcEncabezado.update(encabezado.array(), 0, 56);
+            encabezado.putLong(56, crcEncabezado.getValue());
+            encabezado.clear();
+            while (encabezado.hasRemaining()) {
+                canal.write(encabezado, encabezado.position()); // Escritura posicional: no mueve el canal
+            }
+        }
+    }
+}
@@ -0,0 +1,1452 @@
+package progress_body.almacen;
+
+import progress_body.datos.ConflictoVersionException;
+import progress_body.datos.FalloLote;
+import progress_body.datos.FallosPorHilo;
+import progress_body.datos.IRegistroDAO;
+import progress_body.datos.RegistroDAO;
+import progress_body.datos.ResultadoLote;
+import progress_body.dominio.Registro;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Implementación de {@link IRegistroDAO} sobre archivos locales, sin base de datos, para instalaciones
+ * sin MySQL y para pruebas.
+ * <p>
+ * Los registros se guardan en un registro de escritura (log) dividido en segmentos a los que solo se
+ * agrega al final. Cada escritura agrega entradas de ancho fijo de {@value #TAMANO_ENTRADA} bytes, en
+ * little endian:
+ * <pre>
+ * Encabezado del segmento              Entrada
+ *  0  int   magia ("PBLG")              0  long   secuencia
+ *  4  int   versión                     8  int    id
+ *  8  int   tamaño de entrada          12  int    versión del registro
+ * 12  int   número de segmento         16  long   fecha en milisegundos
+ * 16  int   mayor ID al crearse        24  double peso ... 64 double pantorrillas
+ * 20  int   reemplaza hasta (0 si no)  72  int    usuario dueño
+ * 24  int   excepto el segmento
+ * 28  ...   reservado (0)
+ *                                      76  byte   tipo (1 valor, 2 baja)
+ *                                      77  byte   marcas (1 si la transacción continúa)
+ *                                      78  ...    reservado (0)
+ *                                      84  int    CRC32C de los bytes 0-83
+ * </pre>
+ * Un índice en memoria, ordenado por ID, guarda la ubicación de la última entrada de cada registro
+ * vivo: {@link #registroExiste(int)} no lee el disco y las demás lecturas hacen una lectura posicional
+ * por registro. Las escrituras se serializan entre sí, pero cada una espera la sincronización con el
+ * disco fuera del cerrojo: un hilo hace un solo {@code fsync} por todas las escrituras que llegaron
+ * mientras tanto. Las lecturas pueden ver una escritura que todavía no terminó de sincronizarse.
+ * <p>
+ * Al abrir, se reproducen los segmentos y se descarta cualquier transacción incompleta o dañada al
+ * final de un segmento, de modo que una inserción por lotes se recupera completa o no se recupera.
+ * Un hilo en segundo plano compacta los segmentos cerrados cuando acumulan demasiadas entradas
+ * reemplazadas o bajas: copia las entradas vivas a un segmento nuevo y borra los anteriores. El
+ * segmento compactado anota en su encabezado los segmentos que reemplaza (todos los de número menor o
+ * igual a "reemplaza hasta", salvo el que estaba activo), y al abrir se borran antes de reproducir: si
+ * la compactación se interrumpió a medio borrar, un segmento que sobrevivió no puede devolver un
+ * registro cuya baja estaba en otro que ya se borró.
+ * <p>
+ * Si falla una sincronización, el almacén deja de aceptar escrituras hasta volver a abrirse. Las
+ * fechas se truncan a segundos, como en {@link RegistroDAO}, y las altas sin fecha de
+ * {@link #agregarRegistro(Registro)} y {@link #agregarRegistros(Iterator, int)} reciben la hora actual.
+ */
+public class RegistroDAOLocal implements IRegistroDAO, AutoCloseable {
+
+    public static final int MAGIA = 0x474C4250; // "PBLG" en little endian
+    public static final int VERSION = 3;
+    public static final int TAMANO_ENCABEZADO = 32;
+    public static final int TAMANO_ENTRADA = 88;
+
+    /**
+     * Tamaño máximo de un segmento; las ubicaciones del índice guardan la posición en 32 bits.
+     */
+    public static final long TAMANO_SEGMENTO_MAXIMO = 1L << 30;
+
+    private static final long TAMANO_SEGMENTO_POR_DEFECTO = 64L << 20; // 64 MiB
+    private static final Duration INTERVALO_COMPACTACION_POR_DEFECTO = Duration.ofSeconds(30);
+    private static final double UMBRAL_COMPACTACION_POR_DEFECTO = 0.5;
+    private static final int MAXIMO_SELLADOS = 16; // Por encima se compacta aunque haya poca basura
+
+    private static final byte VALOR = 1;
+    private static final byte BAJA = 2;
+    private static final byte CONTINUA = 1;
+    private static final int POSICION_TIPO = 76;
+    private static final int POSICION_MARCAS = 77;
+    private static final String PREFIJO = "segmento-";
+    private static final String EXTENSION = ".log";
+    private static final String TEMPORAL = ".compactando";
+    private static final int TAMANO_BUFER = TAMANO_ENTRADA * 8192; // 704 KiB
+    private static final int VERSION_SIN_REEMPLAZOS = 2; // Igual a la actual, con los campos de reemplazo en 0
+
+    /**
+     * Un archivo del log. Sus contadores se protegen con el cerrojo del almacén.
+     */
+    private static final class Segmento {
+        final int numero;
+        final Path ruta;
+        final FileChannel canal;
+        long tamano; // Posición de la próxima entrada
+        int entradas;
+        int vivas; // Entradas a las que apunta el índice
+
+        Segmento(int numero, Path ruta, FileChannel canal, long tamano) {
+            this.numero = numero;
+            this.ruta = ruta;
+            this.canal = canal;
+            this.tamano = tamano;
+        }
+    }
+
+    /**
+     * Estado del almacén.
+     *
+     * @param segmentos        Archivos del log, incluido el activo.
+     * @param entradas         Entradas en todos los segmentos.
+     * @param vivas            Registros vivos, es decir, entradas a las que apunta el índice.
+     * @param sincronizaciones Llamadas a {@code fsync} del hilo de sincronización.
+     * @param escrituras       Escrituras confirmadas; dividido entre sincronizaciones da el tamaño medio de grupo.
+     * @param compactaciones   Compactaciones terminadas.
+     */
+    public record EstadisticasLocal(int segmentos, long entradas, int vivas, long sincronizaciones,
+                                    long escrituras, long compactaciones) {
+    }
+
+    private final Path directorio;
+    private final long tamanoSegmento;
+    private final long ventanaGrupoNanos;
+    private final double umbralCompactacion;
+    private final long intervaloCompactacionNanos;
+
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Long> indice = new TreeMap<>(); // ID -> segmento << 32 | posición
+    private final Map<Integer, Segmento> segmentos = new TreeMap<>();
+    private final AtomicInteger ultimoSegmento = new AtomicInteger();
+    private Segmento activo;
+    private int ultimoId;
+    private long ultimaSecuencia;
+
+    // Un ReentrantLock y no un monitor, para que los hilos virtuales que esperan no retengan su portador
+    private final ReentrantLock sincronia = new ReentrantLock();
+    private final Condition pedida = sincronia.newCondition(); // Hay una secuencia por sincronizar o se cierra
+    private final Condition sincronizada = sincronia.newCondition(); // Avanzó la secuencia durable o hubo una avería
+    private long solicitada; // Mayor secuencia que espera sincronizarse
+    private long durable; // Mayor secuencia sincronizada
+    private volatile boolean averiado;
+    private volatile boolean cerrado;
+    private final Thread sincronizador;
+    private final Thread compactador;
+    private final Object compactando = new Object(); // Una sola compactación a la vez
+
+    private final FallosPorHilo fallosPorHilo = new FallosPorHilo();
+    private final AtomicLong sincronizaciones = new AtomicLong();
+    private final AtomicLong escrituras = new AtomicLong();
+    private final AtomicLong compactaciones = new AtomicLong();
+
+    private RegistroDAOLocal(Path directorio, long tamanoSegmento, Duration ventanaGrupo,
+                             double umbralCompactacion, Duration intervaloCompactacion) {
+        this.directorio = directorio;
+        this.tamanoSegmento = tamanoSegmento;
+        this.ventanaGrupoNanos = ventanaGrupo.toNanos();
+        this.umbralCompactacion = umbralCompactacion;
+        this.intervaloCompactacionNanos = intervaloCompactacion.toNanos();
+        this.sincronizador = new Thread(this::sincronizar, "registro-local-sincronizacion");
+        this.sincronizador.setDaemon(true);
+        this.compactador = new Thread(this::compactarPeriodicamente, "registro-local-compactacion");
+        this.compactador.setDaemon(true);
+    }
+
+    /**
+     * Abre el almacén de un directorio con la configuración por defecto: segmentos de 64 MiB,
+     * sin ventana de agrupación y compactación cada 30 segundos si la mitad de las entradas cerradas es basura.
+     *
+     * @param directorio El directorio del almacén; se crea si no existe. No debe ser nulo.
+     * @return El almacén, que debe cerrarse; o null si no se pudo abrir.
+     */
+    public static RegistroDAOLocal abrir(Path directorio) {
+        return abrir(directorio, TAMANO_SEGMENTO_POR_DEFECTO, Duration.ZERO,
+                UMBRAL_COMPACTACION_POR_DEFECTO, INTERVALO_COMPACTACION_POR_DEFECTO);
+    }
+
+    /**
+     * Abre el almacén de un directorio, reproduciendo sus segmentos, e inicia los hilos de
+     * sincronización y compactación. Cada apertura empieza un segmento activo nuevo.
+     *
+     * @param directorio            El directorio del almacén; se crea si no existe. No debe ser nulo.
+     * @param tamanoSegmento        El tamaño a partir del cual se cierra el segmento activo y se empieza
+     *                              otro, entre una entrada y {@link #TAMANO_SEGMENTO_MAXIMO}. Una
+     *                              transacción nunca se divide, así que un segmento puede superarlo.
+     * @param ventanaGrupo          Cuánto espera el hilo de sincronización antes de cada {@code fsync} para
+     *                              reunir más escrituras; cero para sincronizar en cuanto se pide.
+     * @param umbralCompactacion    La fracción de basura en los segmentos cerrados que dispara una
+     *                              compactación, mayor que 0 y hasta 1.
+     * @param intervaloCompactacion Cada cuánto se revisa si hay que compactar.
+     * @return El almacén, que debe cerrarse; o null si no se pudo abrir.
+     * @throws IllegalArgumentException si algún argumento es nulo o está fuera de rango.
+     */
+    public static RegistroDAOLocal abrir(Path directorio, long tamanoSegmento, Duration ventanaGrupo,
+                                         double umbralCompactacion, Duration intervaloCompactacion) {
+        if (directorio == null || ventanaGrupo == null || intervaloCompactacion == null) {
+            throw new IllegalArgumentException("El directorio y los tiempos no pueden ser nulos.");
+        }
+        if (tamanoSegmento < TAMANO_ENCABEZADO + TAMANO_ENTRADA || tamanoSegmento > TAMANO_SEGMENTO_MAXIMO) {
+            throw new IllegalArgumentException("El tamaño de segmento debe estar entre "
+                    + (TAMANO_ENCABEZADO + TAMANO_ENTRADA) + " y " + TAMANO_SEGMENTO_MAXIMO + " bytes.");
+        }
+        if (!(umbralCompactacion > 0 && umbralCompactacion <= 1)) {
+            throw new IllegalArgumentException("El umbral de compactación debe ser mayor que 0 y hasta 1.");
+        }
+        if (ventanaGrupo.isNegative() || intervaloCompactacion.isNegative() || intervaloCompactacion.isZero()) {
+            throw new IllegalArgumentException("La ventana no puede ser negativa y el intervalo debe ser positivo.");
+        }
+
+        RegistroDAOLocal almacen = new RegistroDAOLocal(directorio, tamanoSegmento, ventanaGrupo,
+                umbralCompactacion, intervaloCompactacion);
+        try {
+            Files.createDirectories(directorio);
+            almacen.recuperar();
+        } catch (IOException e) {
+            System.out.println("No se pudo abrir el almacén local. \n" + e.getMessage());
+            almacen.cerrarCanales();
+            return null;
+        }
+        almacen.sincronizador.start();
+        almacen.compactador.start();
+        return almacen;
+    }
+
+    @Override
+    public long getFallosDelHilo() {
+        return fallosPorHilo.delHilo();
+    }
+
+    @Override
+    public List<Registro> listarRegistros() {
+        List<Registro> registros = new ArrayList<>();
+        cerrojo.readLock().lock();
+        try {
+            ByteBuffer entrada = nuevaEntrada();
+            for (long ubicacion : indice.values()) {
+                registros.add(leer(ubicacion, entrada));
+            }
+        } catch (IOException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se listaron los registros. \n" + e.getMessage());
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+        return registros;
+    }
+
+    /**
+     * Busca un registro por su ID y, si existe, reemplaza los campos del objeto con los guardados.
+     *
+     * @param registro El objeto Registro que contiene el ID a buscar. No debe ser nulo.
+     * @return true si se encontró el registro; false en caso contrario.
+     * @throws IllegalArgumentException si el objeto registro es nulo.
+     */
+    @Override
+    public boolean buscarRegistro(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo");
+        }
+        cerrojo.readLock().lock();
+        try {
+            Long ubicacion = indice.get(registro.getId());
+            if (ubicacion == null) {
+                return false;
+            }
+            Registro guardado = leer(ubicacion, nuevaEntrada());
+            registro.asignarSinValidar(guardado.getId(), guardado.getPeso(), guardado.getBicepIzquierdo(),
+                    guardado.getBicepDerecho(), guardado.getCintura(), guardado.getCuadriceps(),
+                    guardado.getPantorrillas(), guardado.getFecha(), guardado.getVersion(), guardado.getUsuario());
+            return true;
+        } catch (IOException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se encontró el registro. \n" + e.getMessage());
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+        return false;
+    }
+
+    /**
+     * Verifica si un ID existe consultando solo el índice en memoria.
+     *
+     * @param id El ID a buscar. Debe ser mayor a cero.
+     * @return true si el ID existe; false en caso contrario.
+     * @throws IllegalArgumentException si el id es menor o igual a cero.
+     */
+    @Override
+    public boolean registroExiste(int id) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("El ID debe ser mayor a cero.");
+        }
+        cerrojo.readLock().lock();
+        try {
+            return indice.containsKey(id);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Registro> listarRegistrosDespuesDe(int idAnterior, int limite) {
+        IRegistroDAO.validarPagina(idAnterior, limite);
+
+        List<Registro> registros = new ArrayList<>(Math.min(limite, 1024));
+        cerrojo.readLock().lock();
+        try {
+            ByteBuffer entrada = nuevaEntrada();
+            for (long ubicacion : indice.tailMap(idAnterior, false).values()) {
+                if (registros.size() == limite) {
+                    break;
+                }
+                registros.add(leer(ubicacion, entrada));
+            }
+        } catch (IOException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se listaron los registros. \n" + e.getMessage());
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+        return registros;
+    }
+
+    /**
+     * Agrega un registro con el siguiente ID y la hora actual como fecha.
+     *
+     * @param registro El registro a agregar. No debe ser nulo.
+     * @return true si el registro se agregó y se sincronizó con el disco; false en caso contrario.
+     * @throws IllegalArgumentException si el objeto registro es nulo.
+     */
+    @Override
+    public boolean agregarRegistro(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        return agregar(registro, truncarASegundos(System.currentTimeMillis())) != null;
+    }
+
+    /**
+     * Agrega un registro con el siguiente ID; si no tiene fecha se usa la hora actual.
+     *
+     * @param registro El registro a agregar. No debe ser nulo.
+     * @return Un nuevo objeto con el ID, la fecha y la versión guardados, o null si no se pudo agregar.
+     * @throws IllegalArgumentException si el objeto registro es nulo.
+     */
+    @Override
+    public Registro agregarYObtener(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        return agregar(registro, fechaParaGuardar(registro));
+    }
+
+    /**
+     * Inserta el registro con su ID o reemplaza el que tenga ese ID, incrementando su versión.
+     * Si el ID es 0 equivale a {@link #agregarYObtener(Registro)}.
+     *
+     * @param registro El registro a guardar. No debe ser nulo.
+     * @return Un nuevo objeto con el registro guardado, o null si no se pudo guardar.
+     * @throws IllegalArgumentException si el objeto registro es nulo.
+     */
+    @Override
+    public Registro guardarRegistro(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        if (registro.getId() == 0) {
+            return agregarYObtener(registro);
+        }
+
+        Registro guardado;
+        long secuencia;
+        cerrojo.writeLock().lock();
+        try {
+            if (!aceptaEscrituras()) {
+                return null;
+            }
+            Long ubicacion = indice.get(registro.getId());
+            int version = ubicacion == null ? 0 : leer(ubicacion, nuevaEntrada()).getVersion() + 1;
+            guardado = copia(registro, registro.getId(), fechaParaGuardar(registro), version, registro.getUsuario());
+            secuencia = anexar(guardado, VALOR);
+        } catch (IOException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se pudo guardar el registro. \n" + e.getMessage());
+            return null;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+        return esperarDurable(secuencia) ? guardado : null;
+    }
+
+    /**
+     * Modifica las medidas de un registro existente e incrementa su versión. La fecha y el usuario no se modifican.
+     *
+     * @param registro El objeto Registro con los datos actualizados. No debe ser nulo.
+     * @return true si el registro fue modificado; false si no existe o si ocurrió un error.
+     * @throws IllegalArgumentException si el objeto registro es nulo.
+     */
+    @Override
+    public boolean modificarRegistro(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        return modificar(registro, false) != null;
+    }
+
+    /**
+     * Modifica un registro solo si su versión guardada es la del objeto.
+     *
+     * @param registro El registro con los datos nuevos y la versión leída. No debe ser nulo.
+     * @return Un nuevo objeto con los datos guardados y su nueva versión, o null si ocurrió un error.
+     * @throws IllegalArgumentException si el objeto registro es nulo.
+     * @throws ConflictoVersionException si la versión guardada es otra o el registro ya no existe.
+     */
+    @Override
+    public Registro modificarConVersion(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        return modificar(registro, true);
+    }
+
+    /**
+     * Elimina un registro agregando una baja al log.
+     *
+     * @param registro El objeto Registro a eliminar. No debe ser nulo.
+     * @return true si el registro existía y se eliminó; false en caso contrario.
+     * @throws IllegalArgumentException si el objeto registro es nulo.
+     */
+    @Override
+    public boolean eliminarRegistro(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+
+        long secuencia;
+        cerrojo.writeLock().lock();
+        try {
+            if (!aceptaEscrituras() || !indice.containsKey(registro.getId())) {
+                return false;
+            }
+            secuencia = anexar(new Registro(registro.getId()), BAJA);
+        } catch (IOException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se pudo eliminar el registro: " + e.getMessage());
+            return false;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+        return esperarDurable(secuencia);
+    }
+
+    /**
+     * Agrega los registros en una sola transacción: se escriben en bloques del tamaño indicado, pero
+     * solo la última entrada cierra la transacción, así que tras una caída se recuperan todos o ninguno.
+     * Se sincroniza con el disco una vez, al final.
+     *
+     * @param registros  Los registros a agregar. No debe ser nulo ni contener elementos nulos.
+     * @param tamanoLote El número de registros por bloque, entre 1 y {@link RegistroDAO#TAMANO_LOTE_MAXIMO}.
+     * @return El resultado con los IDs generados; si la escritura falla, un solo fallo que abarca todo.
+     * @throws IllegalArgumentException si el iterador es nulo, contiene un registro nulo o el tamaño de bloque no es válido.
+     */
+    @Override
+    public ResultadoLote agregarRegistros(Iterator<Registro> registros, int tamanoLote) {
+        if (registros == null) {
+            throw new IllegalArgumentException("El iterador de registros no puede ser nulo.");
+        }
+        if (tamanoLote <= 0 || tamanoLote > RegistroDAO.TAMANO_LOTE_MAXIMO) {
+            throw new IllegalArgumentException("El tamaño del lote debe estar entre 1 y " + RegistroDAO.TAMANO_LOTE_MAXIMO + ".");
+        }
+
+        ByteBuffer bloque = ByteBuffer.allocate(tamanoLote * TAMANO_ENTRADA).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32C crc = new CRC32C();
+        long fecha = truncarASegundos(System.currentTimeMillis());
+        int cantidad = 0;
+        long secuencia;
+        List<Integer> ids;
+
+        cerrojo.writeLock().lock();
+        try {
+            if (!aceptaEscrituras()) {
+                return new ResultadoLote(List.of(), List.of(new FalloLote(0, contar(registros), "El almacén local no acepta escrituras.")));
+            }
+            Segmento segmento = activo;
+            long inicio = segmento.tamano;
+            int primerId = ultimoId + 1;
+            try {
+                while (registros.hasNext()) {
+                    Registro registro = registros.next();
+                    if (registro == null) {
+                        throw new IllegalArgumentException("El registro no puede ser nulo.");
+                    }
+                    if (!bloque.hasRemaining()) {
+                        escribirBloque(segmento, bloque);
+                    }
+                    Registro alta = copia(registro, primerId + cantidad, fecha, 0, registro.getUsuario());
+                    // La marca de continuación se quita a la última entrada antes de escribirla
+                    codificar(bloque, crc, ultimaSecuencia + cantidad + 1, alta, VALOR, CONTINUA);
+                    cantidad++;
+                }
+                if (cantidad == 0) {
+                    return new ResultadoLote(List.of(), List.of());
+                }
+                cerrarTransaccion(bloque, crc);
+                escribirBloque(segmento, bloque);
+            } catch (IOException | RuntimeException e) {
+                deshacer(segmento, inicio);
+                if (e instanceof RuntimeException error) {
+                    throw error;
+                }
+                fallosPorHilo.registrar();
+                System.out.println("No se pudieron agregar los registros. \n" + e.getMessage());
+                return new ResultadoLote(List.of(), List.of(new FalloLote(0, cantidad + contar(registros), e.getMessage())));
+            }
+
+            segmento.entradas += cantidad;
+            ids = new ArrayList<>(cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                indexar(primerId + i, ubicacion(segmento.numero, inicio + (long) i * TAMANO_ENTRADA));
+                ids.add(primerId + i);
+            }
+            ultimoId = primerId + cantidad - 1;
+            ultimaSecuencia += cantidad;
+            secuencia = ultimaSecuencia;
+            rodarSiLleno();
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+
+        if (!esperarDurable(secuencia)) {
+            return new ResultadoLote(List.of(), List.of(new FalloLote(0, cantidad, "No se pudo sincronizar con el disco.")));
+        }
+        return new ResultadoLote(ids, List.of());
+    }
+
+    /**
+     * Agrega los registros con su ID, fecha, versión y usuario en una sola transacción del log. Si un
+     * ID ya existe o se repite en la lista, no se agrega ninguno. Un ID mayor que los generados
+     * hace que los siguientes IDs generados empiecen después de él.
+     *
+     * @param registros Los registros a agregar. No debe ser nula ni contener registros nulos o con ID 0.
+     * @return El resultado con los IDs agregados; si no se agregan, un solo fallo que abarca todo.
+     * @throws IllegalArgumentException si la lista es nula o contiene un registro nulo o sin ID.
+     */
+    @Override
+    public ResultadoLote agregarRegistrosConId(List<Registro> registros) {
+        IRegistroDAO.validarConId(registros);
+        if (registros.isEmpty()) {
+            return new ResultadoLote(List.of(), List.of());
+        }
+
+        List<Registro> altas = new ArrayList<>(registros.size());
+        List<Integer> ids = new ArrayList<>(registros.size());
+        long secuencia;
+        cerrojo.writeLock().lock();
+        try {
+            if (!aceptaEscrituras()) {
+                return new ResultadoLote(List.of(), List.of(new FalloLote(0, registros.size(), "El almacén local no acepta escrituras.")));
+            }
+            Set<Integer> vistos = new HashSet<>();
+            for (Registro registro : registros) {
+                if (indice.containsKey(registro.getId()) || !vistos.add(registro.getId())) {
+                    fallosPorHilo.registrar();
+                    String mensaje = "Ya existe el registro con ID " + registro.getId() + ".";
+                    System.out.println("No se agregaron los registros con ID: " + mensaje);
+                    return new ResultadoLote(List.of(), List.of(new FalloLote(0, registros.size(), mensaje)));
+                }
+                altas.add(copia(registro, registro.getId(), fechaParaGuardar(registro), registro.getVersion(), registro.getUsuario()));
+                ids.add(registro.getId());
+            }
+            secuencia = anexarTransaccion(altas, VALOR);
+        } catch (IOException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se pudieron agregar los registros con ID. \n" + e.getMessage());
+            return new ResultadoLote(List.of(), List.of(new FalloLote(0, registros.size(), e.getMessage())));
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+
+        if (!esperarDurable(secuencia)) {
+            return new ResultadoLote(List.of(), List.of(new FalloLote(0, registros.size(), "No se pudo sincronizar con el disco.")));
+        }
+        return new ResultadoLote(ids, List.of());
+    }
+
+    /**
+     * Elimina los registros con una baja por ID en una sola transacción del log, sincronizada una vez.
+     *
+     * @param ids Los IDs a eliminar. No debe ser nula ni contener nulos.
+     * @return El número de registros eliminados, o -1 si ocurrió un error y no se eliminó ninguno.
+     * @throws IllegalArgumentException si la colección es nula o contiene un ID nulo.
+     */
+    @Override
+    public int eliminarRegistros(Collection<Integer> ids) {
+        IRegistroDAO.validarIds(ids);
+
+        List<Registro> bajas = new ArrayList<>(ids.size());
+        long secuencia;
+        cerrojo.writeLock().lock();
+        try {
+            if (!aceptaEscrituras()) {
+                return -1;
+            }
+            for (int id : new HashSet<>(ids)) {
+                if (indice.containsKey(id)) {
+                    bajas.add(new Registro(id));
+                }
+            }
+            if (bajas.isEmpty()) {
+                return 0;
+            }
+            secuencia = anexarTransaccion(bajas, BAJA);
+        } catch (IOException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se pudieron eliminar los registros: " + e.getMessage());
+            return -1;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+        return esperarDurable(secuencia) ? bajas.size() : -1;
+    }
+
+    /**
+     * Copia las entradas vivas de todos los segmentos cerrados a un segmento nuevo y borra los
+     * anteriores. Las escrituras continúan en el segmento activo mientras se copian las entradas.
+     *
+     * @return El número de entradas eliminadas, o -1 si ocurrió un error.
+     */
+    public long compactar() {
+        synchronized (compactando) {
+            List<Segmento> sellados;
+            TreeMap<Integer, Long> vivas = new TreeMap<>();
+            Map<Integer, FileChannel> canales = new HashMap<>();
+            int numero = ultimoSegmento.incrementAndGet();
+            int mayorId;
+            int reemplazaHasta = 0;
+            int excepto;
+
+            cerrojo.readLock().lock();
+            try {
+                if (cerrado) {
+                    return 0;
+                }
+                sellados = new ArrayList<>(segmentos.values());
+                sellados.remove(activo);
+                if (sellados.isEmpty()) {
+                    return 0;
+                }
+                for (Segmento sellado : sellados) {
+                    canales.put(sellado.numero, sellado.canal);
+                    reemplazaHasta = Math.max(reemplazaHasta, sellado.numero);
+                }
+                // Los segmentos que se creen después tienen números mayores que este
+                excepto = activo.numero;
+                for (Map.Entry<Integer, Long> entrada : indice.entrySet()) {
+                    if (segmento(entrada.getValue()) != activo.numero) {
+                        vivas.put(entrada.getKey(), entrada.getValue());
+                    }
+                }
+                mayorId = ultimoId;
+            } finally {
+                cerrojo.readLock().unlock();
+            }
+
+            // Los segmentos cerrados no cambian: se copian sin bloquear las escrituras
+            Path temporal = directorio.resolve(nombre(numero) + TEMPORAL);
+            Map<Integer, Long> nuevas = new HashMap<>(vivas.size() * 2);
+            try {
+                copiarVivas(temporal, encabezado(numero, mayorId, reemplazaHasta, excepto), canales, vivas, nuevas);
+            } catch (IOException e) {
+                System.out.println("No se pudo compactar el almacén local. \n" + e.getMessage());
+                try {
+                    Files.deleteIfExists(temporal);
+                } catch (IOException ignorado) {
+                    // Se borra al volver a abrir el almacén
+                }
+                return -1;
+            }
+
+            long eliminadas = 0;
+            cerrojo.writeLock().lock();
+            try {
+                Path ruta = directorio.resolve(nombre(numero) + EXTENSION);
+                Files.move(temporal, ruta, StandardCopyOption.ATOMIC_MOVE);
+                forzarDirectorio();
+                Segmento nuevo = new Segmento(numero, ruta,
+                        FileChannel.open(ruta, StandardOpenOption.READ, StandardOpenOption.WRITE),
+                        TAMANO_ENCABEZADO + (long) vivas.size() * TAMANO_ENTRADA);
+                nuevo.entradas = vivas.size();
+                segmentos.put(numero, nuevo);
+
+                for (Map.Entry<Integer, Long> entrada : vivas.entrySet()) {
+                    // Un registro modificado o eliminado durante la copia ya no apunta a su entrada anterior
+                    if (entrada.getValue().equals(indice.get(entrada.getKey()))) {
+                        indice.put(entrada.getKey(), nuevas.get(entrada.getKey()));
+                        nuevo.vivas++;
+                    }
+                }
+                for (Segmento sellado : sellados) {
+                    eliminadas += sellado.entradas;
+                    segmentos.remove(sellado.numero);
+                    sellado.canal.close();
+                    Files.delete(sellado.ruta);
+                }
+                forzarDirectorio();
+            } catch (IOException e) {
+                // Los segmentos que no se borraron se borran al abrir, según el encabezado del compactado
+                System.out.println("No se completó la compactación del almacén local. \n" + e.getMessage());
+                return -1;
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+            compactaciones.incrementAndGet();
+            return eliminadas - vivas.size();
+        }
+    }
+
+    /**
+     * Hace que los IDs generados a partir de ahora sean mayores o iguales a {@code primerId}, por ejemplo
+     * para repartir rangos de IDs entre particiones. No tiene efecto si ya se generaron IDs mayores.
+     * El nuevo mínimo se guarda en el encabezado de un segmento nuevo, así que sobrevive al reabrir.
+     *
+     * @param primerId El menor ID que se puede generar. Debe ser mayor a cero.
+     * @return true si el mínimo quedó guardado; false si ocurrió un error.
+     * @throws IllegalArgumentException si el ID no es positivo.
+     */
+    public boolean reservarIds(int primerId) {
+        if (primerId <= 0) {
+            throw new IllegalArgumentException("El ID debe ser mayor a cero.");
+        }
+        cerrojo.writeLock().lock();
+        try {
+            if (ultimoId >= primerId - 1) {
+                return true;
+            }
+            if (!aceptaEscrituras()) {
+                return false;
+            }
+            ultimoId = primerId - 1;
+            activo.canal.force(false);
+            activo = crearSegmento(ultimoSegmento.incrementAndGet());
+            return true;
+        } catch (IOException e) {
+            System.out.println("No se pudo reservar el rango de IDs. \n" + e.getMessage());
+            return false;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Una instantánea del estado del almacén.
+     */
+    public EstadisticasLocal getEstadisticas() {
+        cerrojo.readLock().lock();
+        try {
+            long entradas = 0;
+            for (Segmento segmento : segmentos.values()) {
+                entradas += segmento.entradas;
+            }
+            return new EstadisticasLocal(segmentos.size(), entradas, indice.size(), sincronizaciones.get(),
+                    escrituras.get(), compactaciones.get());
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Espera a que se sincronicen las escrituras pendientes, detiene los hilos y cierra los archivos.
+     */
+    @Override
+    public void close() {
+        cerrado = true;
+        // Las escrituras que ya pasaron la verificación terminan de anexar antes de seguir
+        cerrojo.writeLock().lock();
+        cerrojo.writeLock().unlock();
+        sincronia.lock();
+        try {
+            pedida.signal();
+        } finally {
+            sincronia.unlock();
+        }
+        LockSupport.unpark(compactador);
+        try {
+            sincronizador.join();
+            compactador.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (compactando) {
+            cerrojo.writeLock().lock();
+            try {
+                cerrarCanales();
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        }
+    }
+
+    private Registro agregar(Registro registro, long fecha) {
+        Registro guardado;
+        long secuencia;
+        cerrojo.writeLock().lock();
+        try {
+            if (!aceptaEscrituras()) {
+                return null;
+            }
+            guardado = copia(registro, ultimoId + 1, fecha, 0, registro.getUsuario());
+            secuencia = anexar(guardado, VALOR);
+        } catch (IOException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se pudo agregar el registro. \n" + e.getMessage());
+            return null;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+        return esperarDurable(secuencia) ? guardado : null;
+    }
+
+    private Registro modificar(Registro registro, boolean conVersion) {
+        Registro guardado;
+        long secuencia;
+        cerrojo.writeLock().lock();
+        try {
+            Long ubicacion = indice.get(registro.getId());
+            Registro actual = ubicacion == null ? null : leer(ubicacion, nuevaEntrada());
+            if (conVersion && (actual == null || actual.getVersion() != registro.getVersion())) {
+                throw new ConflictoVersionException(registro.getId(), registro.getVersion());
+            }
+            if (actual == null || !aceptaEscrituras()) {
+                return null;
+            }
+            // Como en RegistroDAO, modificar no cambia la fecha ni el usuario dueño
+            guardado = copia(registro, registro.getId(), actual.getFecha().getTime(), actual.getVersion() + 1,
+                    actual.getUsuario());
+            secuencia = anexar(guardado, VALOR);
+        } catch (IOException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se pudo modificar el registro: " + e.getMessage());
+            return null;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+        return esperarDurable(secuencia) ? guardado : null;
+    }
+
+    /**
+     * Agrega una entrada como transacción propia y actualiza el índice. Se llama con el cerrojo de escritura.
+     *
+     * @return La secuencia asignada a la entrada.
+     */
+    private long anexar(Registro registro, byte tipo) throws IOException {
+        ByteBuffer entrada = nuevaEntrada();
+        long secuencia = ultimaSecuencia + 1;
+        codificar(entrada, new CRC32C(), secuencia, registro, tipo, (byte) 0);
+        Segmento segmento = activo;
+        long posicion = segmento.tamano;
+        try {
+            escribirBloque(segmento, entrada);
+        } catch (IOException e) {
+            deshacer(segmento, posicion);
+            throw e;
+        }
+        segmento.entradas++;
+        indexar(registro.getId(), tipo == VALOR ? ubicacion(segmento.numero, posicion) : -1);
+        ultimoId = Math.max(ultimoId, registro.getId());
+        ultimaSecuencia = secuencia;
+        rodarSiLleno();
+        return secuencia;
+    }
+
+    /**
+     * Escribe las entradas como una sola transacción: solo la última no lleva la marca de continuación,
+     * así que tras una caída se recuperan todas o ninguna. Se llama con el cerrojo de escritura.
+     *
+     * @return La secuencia de la última entrada.
+     */
+    private long anexarTransaccion(List<Registro> entradas, byte tipo) throws IOException {
+        ByteBuffer bloque = ByteBuffer.allocate(Math.min(entradas.size() * TAMANO_ENTRADA, TAMANO_BUFER)).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32C crc = new CRC32C();
+        Segmento segmento = activo;
+        long inicio = segmento.tamano;
+        try {
+            for (int i = 0; i < entradas.size(); i++) {
+                if (!bloque.hasRemaining()) {
+                    escribirBloque(segmento, bloque);
+                }
+                codificar(bloque, crc, ultimaSecuencia + i + 1, entradas.get(i), tipo, CONTINUA);
+            }
+            cerrarTransaccion(bloque, crc);
+            escribirBloque(segmento, bloque);
+        } catch (IOException e) {
+            deshacer(segmento, inicio);
+            throw e;
+        }
+
+        segmento.entradas += entradas.size();
+        for (int i = 0; i < entradas.size(); i++) {
+            int id = entradas.get(i).getId();
+            indexar(id, tipo == VALOR ? ubicacion(segmento.numero, inicio + (long) i * TAMANO_ENTRADA) : -1);
+            ultimoId = Math.max(ultimoId, id);
+        }
+        ultimaSecuencia += entradas.size();
+        rodarSiLleno();
+        return ultimaSecuencia;
+    }
+
+    /**
+     * Apunta el índice a una nueva ubicación, o quita el ID si es -1, y ajusta las entradas vivas de los segmentos.
+     */
+    private void indexar(int id, long ubicacion) {
+        Long anterior = ubicacion < 0 ? indice.remove(id) : indice.put(id, ubicacion);
+        if (anterior != null) {
+            segmentos.get(segmento(anterior)).vivas--;
+        }
+        if (ubicacion >= 0) {
+            segmentos.get(segmento(ubicacion)).vivas++;
+        }
+    }
+
+    /**
+     * Escribe el contenido del búfer al final del segmento y lo deja listo para volver a llenarse.
+     */
+    private static void escribirBloque(Segmento segmento, ByteBuffer bloque) throws IOException {
+        bloque.flip();
+        while (bloque.hasRemaining()) {
+            segmento.tamano += segmento.canal.write(bloque, segmento.tamano);
+        }
+        bloque.clear();
+    }
+
+    /**
+     * Descarta lo escrito en el segmento desde una posición. Si no se puede, el almacén deja de aceptar escrituras.
+     */
+    private void deshacer(Segmento segmento, long posicion) {
+        try {
+            segmento.canal.truncate(posicion);
+            segmento.tamano = posicion;
+        } catch (IOException e) {
+            System.out.println("No se pudo deshacer una escritura incompleta. \n" + e.getMessage());
+            averiar();
+        }
+    }
+
+    /**
+     * Cierra el segmento activo si alcanzó su tamaño y empieza otro. Se llama con el cerrojo de escritura.
+     */
+    private void rodarSiLleno() {
+        if (activo.tamano < tamanoSegmento) {
+            return;
+        }
+        // El segmento cerrado queda sincronizado, así que el hilo de sincronización solo atiende al activo
+        try {
+            activo.canal.force(false);
+        } catch (IOException e) {
+            System.out.println("No se pudo sincronizar el segmento " + activo.ruta + ". \n" + e.getMessage());
+            averiar();
+            return;
+        }
+        try {
+            activo = crearSegmento(ultimoSegmento.incrementAndGet());
+        } catch (IOException e) {
+            System.out.println("No se pudo crear un segmento nuevo; se sigue escribiendo en " + activo.ruta + ". \n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Deja de aceptar escrituras y despierta a las que esperan su sincronización.
+     */
+    private void averiar() {
+        sincronia.lock();
+        try {
+            averiado = true;
+            pedida.signal();
+            sincronizada.signalAll();
+        } finally {
+            sincronia.unlock();
+        }
+    }
+
+    private Segmento crearSegmento(int numero) throws IOException {
+        Path ruta = directorio.resolve(nombre(numero) + EXTENSION);
+        FileChannel canal = FileChannel.open(ruta, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer encabezado = encabezado(numero, ultimoId, 0, 0);
+        while (encabezado.hasRemaining()) {
+            canal.write(encabezado, encabezado.position());
+        }
+        canal.force(true);
+        forzarDirectorio();
+        Segmento segmento = new Segmento(numero, ruta, canal, TAMANO_ENCABEZADO);
+        segmentos.put(numero, segmento);
+        return segmento;
+    }
+
+    /**
+     * Escribe en un archivo temporal las entradas vivas, en orden de ID y cada una como transacción propia.
+     */
+    private static void copiarVivas(Path temporal, ByteBuffer encabezado, Map<Integer, FileChannel> canales,
+                                    TreeMap<Integer, Long> vivas, Map<Integer, Long> nuevas) throws IOException {
+        int numero = encabezado.getInt(12);
+        try (FileChannel destino = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer bloque = ByteBuffer.allocate(TAMANO_BUFER).order(ByteOrder.LITTLE_ENDIAN);
+            bloque.put(encabezado);
+            CRC32C crc = new CRC32C();
+            long posicion = TAMANO_ENCABEZADO;
+            for (Map.Entry<Integer, Long> viva : vivas.entrySet()) {
+                if (bloque.remaining() < TAMANO_ENTRADA) {
+                    vaciar(destino, bloque);
+                }
+                int inicio = bloque.position();
+                leerCompleto(canales.get(segmento(viva.getValue())), bloque.limit(inicio + TAMANO_ENTRADA), posicion(viva.getValue()));
+                bloque.limit(bloque.capacity());
+                bloque.put(inicio + POSICION_MARCAS, (byte) 0);
+                crc.reset();
+                crc.update(bloque.array(), inicio, TAMANO_ENTRADA - 4);
+                bloque.putInt(inicio + TAMANO_ENTRADA - 4, (int) crc.getValue());
+                nuevas.put(viva.getKey(), ubicacion(numero, posicion));
+                posicion += TAMANO_ENTRADA;
+            }
+            vaciar(destino, bloque);
+            destino.force(true);
+        }
+    }
+
+    /**
+     * Espera a que la secuencia se sincronice con el disco.
+     *
+     * @return true si se sincronizó; false si falló la sincronización o se interrumpió la espera.
+     */
+    private boolean esperarDurable(long secuencia) {
+        sincronia.lock();
+        try {
+            if (secuencia > solicitada) {
+                solicitada = secuencia;
+                pedida.signal();
+            }
+            while (durable < secuencia && !averiado) {
+                try {
+                    sincronizada.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    fallosPorHilo.registrar();
+                    return false;
+                }
+            }
+        } finally {
+            sincronia.unlock();
+        }
+        if (durable < secuencia) {
+            fallosPorHilo.registrar();
+            System.out.println("La escritura no se pudo sincronizar con el disco.");
+            return false;
+        }
+        escrituras.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Ciclo del hilo de sincronización: un {@code fsync} atiende a todas las escrituras pendientes.
+     */
+    private void sincronizar() {
+        while (true) {
+            sincronia.lock();
+            try {
+                while (solicitada <= durable && !cerrado && !averiado) {
+                    try {
+                        pedida.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (averiado) {
+                    return;
+                }
+            } finally {
+                sincronia.unlock();
+            }
+            if (ventanaGrupoNanos > 0) {
+                LockSupport.parkNanos(ventanaGrupoNanos);
+            }
+
+            long objetivo;
+            FileChannel canal;
+            cerrojo.readLock().lock();
+            try {
+                objetivo = ultimaSecuencia;
+                canal = activo.canal;
+            } finally {
+                cerrojo.readLock().unlock();
+            }
+            if (cerrado && objetivo <= durableActual()) {
+                return; // Al cerrar se sincroniza todo lo anexado, aunque nadie lo haya pedido todavía
+            }
+            boolean exito = true;
+            try {
+                canal.force(false);
+            } catch (ClosedChannelException e) {
+                // El segmento se cerró y se sincronizó al rodar, y luego se compactó
+            } catch (IOException e) {
+                System.out.println("No se pudo sincronizar el almacén local. \n" + e.getMessage());
+                exito = false;
+            }
+            sincronizaciones.incrementAndGet();
+
+            sincronia.lock();
+            try {
+                if (exito) {
+                    durable = Math.max(durable, objetivo);
+                } else {
+                    averiado = true;
+                }
+                sincronizada.signalAll();
+            } finally {
+                sincronia.unlock();
+            }
+        }
+    }
+
+    private long durableActual() {
+        sincronia.lock();
+        try {
+            return durable;
+        } finally {
+            sincronia.unlock();
+        }
+    }
+
+    private void compactarPeriodicamente() {
+        while (!cerrado) {
+            LockSupport.parkNanos(intervaloCompactacionNanos);
+            if (!cerrado && debeCompactar()) {
+                compactar();
+            }
+        }
+    }
+
+    private boolean debeCompactar() {
+        cerrojo.readLock().lock();
+        try {
+            long entradas = 0;
+            long vivas = 0;
+            int sellados = 0;
+            for (Segmento segmento : segmentos.values()) {
+                if (segmento != activo) {
+                    entradas += segmento.entradas;
+                    vivas += segmento.vivas;
+                    sellados++;
+                }
+            }
+            return sellados >= MAXIMO_SELLADOS || (entradas > 0 && (entradas - vivas) >= umbralCompactacion * entradas);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    private boolean aceptaEscrituras() {
+        if (averiado || cerrado) {
+            fallosPorHilo.registrar();
+            System.out.println("El almacén local no acepta escrituras: está cerrado o falló una sincronización.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Borra los segmentos que reemplazó una compactación, reproduce los demás en orden y reconstruye el
+     * índice. Como una compactación puede dejar entradas repetidas o antiguas en segmentos posteriores,
+     * cada ID conserva la entrada de mayor secuencia.
+     */
+    private void recuperar() throws IOException {
+        TreeMap<Integer, Path> encontrados = new TreeMap<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, PREFIJO + "*")) {
+            for (Path archivo : archivos) {
+                String nombre = archivo.getFileName().toString();
+                if (nombre.endsWith(TEMPORAL)) {
+                    Files.delete(archivo); // Compactación interrumpida
+                } else if (nombre.endsWith(EXTENSION)) {
+                    encontrados.put(Integer.parseInt(nombre.substring(PREFIJO.length(), nombre.length() - EXTENSION.length())), archivo);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Hay un segmento con un nombre no válido en " + directorio + ".", e);
+        }
+
+        borrarReemplazados(encontrados);
+
+        Map<Integer, Long> secuencias = new HashMap<>();
+        for (Map.Entry<Integer, Path> encontrado : encontrados.entrySet()) {
+            reproducir(encontrado.getKey(), encontrado.getValue(), secuencias);
+            ultimoSegmento.set(encontrado.getKey());
+        }
+        activo = crearSegmento(ultimoSegmento.incrementAndGet());
+    }
+
+    /**
+     * Borra, y quita de {@code encontrados}, los segmentos que un segmento compactado anota como
+     * reemplazados. El compactado se sincronizó antes de empezar a borrarlos, así que contiene sus
+     * entradas vivas y las bajas de las demás ya no hacen falta.
+     */
+    private void borrarReemplazados(TreeMap<Integer, Path> encontrados) throws IOException {
+        Set<Integer> reemplazados = new HashSet<>();
+        ByteBuffer encabezado = ByteBuffer.allocate(TAMANO_ENCABEZADO).order(ByteOrder.LITTLE_ENDIAN);
+        for (Map.Entry<Integer, Path> encontrado : encontrados.entrySet()) {
+            try (FileChannel canal = FileChannel.open(encontrado.getValue(), StandardOpenOption.READ)) {
+                if (canal.size() < TAMANO_ENCABEZADO) {
+                    continue; // Lo descarta la reproducción
+                }
+                leerCompleto(canal, encabezado.clear(), 0);
+            }
+            int reemplazaHasta = encabezado.getInt(20);
+            int excepto = encabezado.getInt(24);
+            for (int numero : encontrados.headMap(reemplazaHasta, true).keySet()) {
+                if (numero != excepto && numero != encontrado.getKey()) {
+                    reemplazados.add(numero);
+                }
+            }
+        }
+        if (reemplazados.isEmpty()) {
+            return;
+        }
+        for (int numero : reemplazados) {
+            System.out.println("Se borra " + encontrados.get(numero) + ", que reemplazó una compactación interrumpida.");
+            Files.delete(encontrados.remove(numero));
+        }
+        forzarDirectorio();
+    }
+
+    private void reproducir(int numero, Path ruta, Map<Integer, Long> secuencias) throws IOException {
+        FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long tamano = canal.size();
+        if (tamano < TAMANO_ENCABEZADO) {
+            // El segmento se estaba creando cuando se interrumpió el proceso
+            canal.close();
+            Files.delete(ruta);
+            return;
+        }
+        ByteBuffer encabezado = ByteBuffer.allocate(TAMANO_ENCABEZADO).order(ByteOrder.LITTLE_ENDIAN);
+        leerCompleto(canal, encabezado, 0);
+        int version = encabezado.getInt(4);
+        if (encabezado.getInt(0) != MAGIA || (version != VERSION && version != VERSION_SIN_REEMPLAZOS)
+                || encabezado.getInt(8) != TAMANO_ENTRADA || encabezado.getInt(12) != numero) {
+            canal.close();
+            throw new IOException("El segmento " + ruta + " no tiene el formato esperado.");
+        }
+        ultimoId = Math.max(ultimoId, encabezado.getInt(16));
+
+        Segmento segmento = new Segmento(numero, ruta, canal, TAMANO_ENCABEZADO);
+        segmentos.put(numero, segmento);
+        ByteBuffer bufer = ByteBuffer.allocate(TAMANO_BUFER).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32C crc = new CRC32C();
+        List<long[]> transaccion = new ArrayList<>(); // {secuencia, id, tipo, posición} de la transacción en curso
+        long leido = TAMANO_ENCABEZADO;
+        boolean danado = false;
+
+        while (leido < tamano && !danado) {
+            bufer.clear().limit((int) Math.min(bufer.capacity(), tamano - leido));
+            leerCompleto(canal, bufer, leido);
+            int completas = bufer.limit() / TAMANO_ENTRADA;
+            if (completas == 0) {
+                break; // Entrada final incompleta
+            }
+            for (int i = 0; i < completas; i++) {
+                int inicio = i * TAMANO_ENTRADA;
+                crc.reset();
+                crc.update(bufer.array(), inicio, TAMANO_ENTRADA - 4);
+                if ((int) crc.getValue() != bufer.getInt(inicio + TAMANO_ENTRADA - 4)) {
+                    danado = true;
+                    break;
+                }
+                transaccion.add(new long[]{bufer.getLong(inicio), bufer.getInt(inicio + 8), bufer.get(inicio + POSICION_TIPO), leido + inicio});
+                if ((bufer.get(inicio + POSICION_MARCAS) & CONTINUA) == 0) {
+                    for (long[] entrada : transaccion) {
+                        aplicar(segmento, entrada, secuencias);
+                    }
+                    transaccion.clear();
+                    segmento.tamano = leido + inicio + TAMANO_ENTRADA;
+                }
+            }
+            leido += (long) completas * TAMANO_ENTRADA;
+        }
+
+        if (segmento.tamano < tamano) {
+            System.out.println("Se descartan " + (tamano - segmento.tamano) + " bytes incompletos o dañados al final de " + ruta + ".");
+            canal.truncate(segmento.tamano);
+            canal.force(true);
+        }
+    }
+
+    private void aplicar(Segmento segmento, long[] entrada, Map<Integer, Long> secuencias) {
+        long secuencia = entrada[0];
+        int id = (int) entrada[1];
+        segmento.entradas++;
+        ultimaSecuencia = Math.max(ultimaSecuencia, secuencia);
+        ultimoId = Math.max(ultimoId, id);
+        Long previa = secuencias.get(id);
+        if (previa != null && previa >= secuencia) {
+            return; // Copia antigua o repetida por una compactación
+        }
+        secuencias.put(id, secuencia);
+        indexar(id, entrada[2] == VALOR ? ubicacion(segmento.numero, entrada[3]) : -1);
+    }
+
+    private static void codificar(ByteBuffer destino, CRC32C crc, long secuencia, Registro registro, byte tipo, byte marcas) {
+        int inicio = destino.position();
+        Timestamp fecha = registro.getFecha();
+        destino.putLong(secuencia)
+                .putInt(registro.getId())
+                .putInt(registro.getVersion())
+                .putLong(fecha == null ? 0 : fecha.getTime())
+                .putDouble(registro.getPeso())
+                .putDouble(registro.getBicepIzquierdo())
+                .putDouble(registro.getBicepDerecho())
+                .putDouble(registro.getCintura())
+                .putDouble(registro.getCuadriceps())
+                .putDouble(registro.getPantorrillas())
+                .putInt(registro.getUsuario())
+                .put(tipo)
+                .put(marcas)
+                .putShort((short) 0)
+                .putInt(0);
+        crc.reset();
+        crc.update(destino.array(), inicio, TAMANO_ENTRADA - 4);
+        destino.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Quita la marca de continuación a la última entrada del búfer y recalcula su suma de control.
+     */
+    private static void cerrarTransaccion(ByteBuffer bloque, CRC32C crc) {
+        int inicio = bloque.position() - TAMANO_ENTRADA;
+        bloque.put(inicio + POSICION_MARCAS, (byte) 0);
+        crc.reset();
+        crc.update(bloque.array(), inicio, TAMANO_ENTRADA - 4);
+        bloque.putInt(inicio + TAMANO_ENTRADA - 4, (int) crc.getValue());
+    }
+
+    private Registro leer(long ubicacion, ByteBuffer entrada) throws IOException {
+        entrada.clear();
+        leerCompleto(segmentos.get(segmento(ubicacion)).canal, entrada, posicion(ubicacion));
+        return Registro.sinValidar(entrada.getInt(8), entrada.getDouble(24), entrada.getDouble(32),
+                entrada.getDouble(40), entrada.getDouble(48), entrada.getDouble(56), entrada.getDouble(64),
+                new Timestamp(entrada.getLong(16)), entrada.getInt(12), entrada.getInt(72));
+    }
+
+    private static ByteBuffer encabezado(int numero, int ultimoId, int reemplazaHasta, int excepto) {
+        return ByteBuffer.allocate(TAMANO_ENCABEZADO).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIA).putInt(VERSION).putInt(TAMANO_ENTRADA).putInt(numero).putInt(ultimoId)
+                .putInt(reemplazaHasta).putInt(excepto)
+                .position(TAMANO_ENCABEZADO).flip();
+    }
+
+    private static ByteBuffer nuevaEntrada() {
+        return ByteBuffer.allocate(TAMANO_ENTRADA).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void leerCompleto(FileChannel canal, ByteBuffer destino, long posicion) throws IOException {
+        while (destino.hasRemaining()) {
+            int leidos = canal.read(destino, posicion);
+            if (leidos < 0) {
+                throw new IOException("Fin de archivo inesperado.");
+            }
+            posicion += leidos;
+        }
+    }
+
+    private static void vaciar(FileChannel canal, ByteBuffer bloque) throws IOException {
+        bloque.flip();
+        while (bloque.hasRemaining()) {
+            canal.write(bloque);
+        }
+        bloque.clear();
+    }
+
+    private void forzarDirectorio() {
+        try (FileChannel canal = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException e) {
+            // Algunos sistemas no permiten sincronizar un directorio; el renombrado sigue siendo atómico
+        }
+    }
+
+    private void cerrarCanales() {
+        for (Segmento segmento : segmentos.values()) {
+            try {
+                segmento.canal.close();
+            } catch (IOException e) {
+                System.out.println("No se pudo cerrar el segmento " + segmento.ruta + ". \n" + e.getMessage());
+            }
+        }
+    }
+
+    private static int contar(Iterator<Registro> registros) {
+        int restantes = 0;
+        while (registros.hasNext()) {
+            registros.next();
+            restantes++;
+        }
+        return restantes;
+    }
+
+    private static long ubicacion(int segmento, long posicion) {
+        return ((long) segmento << 32) | posicion;
+    }
+
+    private static int segmento(long ubicacion) {
+        return (int) (ubicacion >>> 32);
+    }
+
+    private static long posicion(long ubicacion) {
+        return ubicacion & 0xFFFF_FFFFL;
+    }
+
+    private static String nombre(int numero) {
+        return PREFIJO + String.format("%06d", numero);
+    }
+
+    private static long truncarASegundos(long millis) {
+        return Math.floorDiv(millis, 1000) * 1000;
+    }
+
+    /**
+     * Devuelve la fecha a guardar: la del registro o la hora actual, truncada a segundos.
+     */
+    private static long fechaParaGuardar(Registro registro) {
+        return truncarASegundos(registro.getFecha() != null ? registro.getFecha().getTime() : System.currentTimeMillis());
+    }
+
+    private static Registro copia(Registro registro, int id, long fecha, int version, int usuario) {
+        return Registro.sinValidar(id, registro.getPeso(), registro.getBicepIzquierdo(), registro.getBicepDerecho(),
+                registro.getCintura(), registro.getCuadriceps(), registro.getPantorrillas(), new Timestamp(fecha),
+                version, usuario);
+    }
+}
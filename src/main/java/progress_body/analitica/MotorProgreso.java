@@ -0,0 +1,463 @@
+package progress_body.analitica;
+
+import progress_body.datos.IRegistroDAO;
+import progress_body.dominio.Medida;
+import progress_body.dominio.Registro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Motor de analítica de progreso que mantiene los indicadores actualizados en cada alta, modificación
+ * o baja, en lugar de recalcularlos sobre todo el historial en cada consulta.
+ * <p>
+ * Los registros se ordenan por fecha y, a igual fecha, por ID. La ventana son los últimos
+ * {@code tamanoVentana} registros de ese orden; sobre ella se mantienen la media, el mínimo, el máximo,
+ * la variación, la pendiente de regresión y la asimetría de bíceps. La media móvil exponencial (EWMA)
+ * se calcula sobre todo el historial.
+ * <p>
+ * Las sumas se actualizan al entrar y salir cada registro de la ventana y el mínimo y el máximo se
+ * mantienen con un multiconjunto ordenado, por lo que cada cambio cuesta O(log n). La EWMA es secuencial:
+ * se actualiza en O(1) cuando el registro se agrega al final y se recalcula completa cuando un cambio
+ * afecta a un registro anterior. Tras cada cambio se publica un resumen inmutable, así que las consultas
+ * son O(1). {@link #verificar(double)} compara el estado con un recálculo completo.
+ * <p>
+ * Todos los métodos públicos son seguros para hilos.
+ */
+public class MotorProgreso {
+
+    private static final Medida[] MEDIDAS = Medida.values();
+    private static final double MILIS_POR_DIA = 86_400_000d;
+
+    private final int tamanoVentana;
+    private final double alfa;
+
+    // Historial completo
+    private final TreeMap<Clave, double[]> filas = new TreeMap<>();
+    private final Map<Integer, Clave> clavesPorId = new HashMap<>();
+    private long origen = Long.MIN_VALUE; // Fecha de referencia para el eje de tiempo de la regresión
+
+    // Estado de la ventana
+    private Clave inicioVentana; // Primera clave dentro de la ventana
+    private int enVentana;
+    private final double[] suma = new double[MEDIDAS.length];
+    private final double[] sumaTY = new double[MEDIDAS.length];
+    private double sumaT;
+    private double sumaTT;
+    private double sumaAsimetria;
+    private final List<TreeMap<Double, Integer>> valores = new ArrayList<>(MEDIDAS.length); // Multiconjunto por medida
+
+    private final double[] ewma = new double[MEDIDAS.length];
+
+    // Resultados publicados
+    private volatile ResumenMedida[] resumenes;
+    private volatile double asimetriaBiceps = Double.NaN;
+
+    /**
+     * Crea un motor vacío.
+     *
+     * @param tamanoVentana El número de registros más recientes que forman la ventana. Debe ser mayor a cero.
+     * @param alfa          El factor de suavizado de la EWMA, en el intervalo (0, 1].
+     * @throws IllegalArgumentException si algún parámetro está fuera de rango.
+     */
+    public MotorProgreso(int tamanoVentana, double alfa) {
+        if (tamanoVentana <= 0) {
+            throw new IllegalArgumentException("El tamaño de la ventana debe ser mayor a cero.");
+        }
+        if (!(alfa > 0 && alfa <= 1)) {
+            throw new IllegalArgumentException("El factor alfa debe estar en el intervalo (0, 1].");
+        }
+        this.tamanoVentana = tamanoVentana;
+        this.alfa = alfa;
+        for (int m = 0; m < MEDIDAS.length; m++) {
+            valores.add(new TreeMap<>());
+        }
+        publicar();
+    }
+
+    /**
+     * Crea un motor y lo alimenta con todos los registros del DAO.
+     *
+     * @param dao           El DAO del que se leen los registros. No debe ser nulo.
+     * @param tamanoVentana El número de registros más recientes que forman la ventana.
+     * @param alfa          El factor de suavizado de la EWMA.
+     * @return El motor cargado, o null si no se pudieron leer todos los registros.
+     */
+    public static MotorProgreso cargar(IRegistroDAO dao, int tamanoVentana, double alfa) {
+        if (dao == null) {
+            throw new IllegalArgumentException("El DAO no puede ser nulo.");
+        }
+        MotorProgreso motor = new MotorProgreso(tamanoVentana, alfa);
+        return dao.recorrerRegistros(motor::agregar) < 0 ? null : motor;
+    }
+
+    /**
+     * Incorpora un registro nuevo. Si ya había un registro con el mismo ID, se reemplaza.
+     *
+     * @param registro El registro. No debe ser nulo y debe tener fecha.
+     * @throws IllegalArgumentException si el registro es nulo o no tiene fecha.
+     */
+    public synchronized void agregar(Registro registro) {
+        validar(registro);
+        boolean reemplazo = clavesPorId.containsKey(registro.getId());
+        if (reemplazo) {
+            quitar(registro.getId());
+        }
+        Clave clave = new Clave(registro.getFecha().getTime(), registro.getId());
+        boolean alFinal = !reemplazo && (filas.isEmpty() || clave.compareTo(filas.lastKey()) > 0);
+        insertar(clave, medidas(registro));
+        if (alFinal) {
+            actualizarEwma(filas.get(clave), filas.size() == 1);
+        } else {
+            recalcularEwma();
+        }
+        publicar();
+    }
+
+    /**
+     * Actualiza las medidas de un registro conocido. Si la fecha del registro es nula se conserva la anterior.
+     *
+     * @param registro El registro con las medidas actualizadas. No debe ser nulo.
+     * @return true si el registro era conocido; false en caso contrario.
+     * @throws IllegalArgumentException si el registro es nulo.
+     */
+    public synchronized boolean modificar(Registro registro) {
+        return reemplazar(registro, registro != null && registro.getFecha() == null);
+    }
+
+    /**
+     * Actualiza las medidas de un registro conocido y conserva su fecha, como las modificaciones de
+     * {@link IRegistroDAO}, que no cambian la fecha guardada.
+     *
+     * @param registro El registro con las medidas actualizadas. No debe ser nulo.
+     * @return true si el registro era conocido; false en caso contrario.
+     * @throws IllegalArgumentException si el registro es nulo.
+     */
+    public synchronized boolean modificarMedidas(Registro registro) {
+        return reemplazar(registro, true);
+    }
+
+    /**
+     * Quita un registro del historial.
+     *
+     * @param id El ID del registro.
+     * @return true si el registro era conocido; false en caso contrario.
+     */
+    public synchronized boolean eliminar(int id) {
+        if (!clavesPorId.containsKey(id)) {
+            return false;
+        }
+        quitar(id);
+        recalcularEwma();
+        publicar();
+        return true;
+    }
+
+    /**
+     * Devuelve los indicadores de una medida.
+     *
+     * @param medida La medida.
+     * @return El resumen de la medida.
+     */
+    public ResumenMedida resumen(Medida medida) {
+        return resumenes[medida.ordinal()];
+    }
+
+    /**
+     * Devuelve la asimetría media de los bíceps en la ventana, como fracción de la media de ambos brazos.
+     * Un valor positivo indica que el izquierdo es mayor.
+     *
+     * @return La asimetría media, o {@link Double#NaN} si la ventana está vacía.
+     */
+    public double asimetriaBiceps() {
+        return asimetriaBiceps;
+    }
+
+    /**
+     * @param id El ID de un registro.
+     * @return true si el registro está en el historial.
+     */
+    public synchronized boolean contiene(int id) {
+        return clavesPorId.containsKey(id);
+    }
+
+    /**
+     * Devuelve el número de registros del historial.
+     *
+     * @return La cantidad de registros.
+     */
+    public synchronized int tamano() {
+        return filas.size();
+    }
+
+    public int getTamanoVentana() {
+        return tamanoVentana;
+    }
+
+    public double getAlfa() {
+        return alfa;
+    }
+
+    /**
+     * Recalcula todos los indicadores desde cero y los compara con los mantenidos de forma incremental.
+     *
+     * @param tolerancia El error relativo admitido, por la acumulación de redondeos en las sumas.
+     * @return true si todos los indicadores coinciden dentro de la tolerancia; false en caso contrario.
+     */
+    public synchronized boolean verificar(double tolerancia) {
+        ResumenMedida[] esperado = calcularCompleto();
+        for (int m = 0; m < MEDIDAS.length; m++) {
+            ResumenMedida real = resumenes[m];
+            ResumenMedida bruto = esperado[m];
+            if (real.cantidad() != bruto.cantidad()
+                    || !cerca(real.media(), bruto.media(), tolerancia)
+                    || !cerca(real.minimo(), bruto.minimo(), tolerancia)
+                    || !cerca(real.maximo(), bruto.maximo(), tolerancia)
+                    || !cerca(real.variacion(), bruto.variacion(), tolerancia)
+                    || !cerca(real.pendientePorDia(), bruto.pendientePorDia(), tolerancia)
+                    || !cerca(real.ewma(), bruto.ewma(), tolerancia)) {
+                System.out.println("Indicadores inconsistentes.\n  incremental: " + real + "\n  completo:    " + bruto);
+                return false;
+            }
+        }
+        return cerca(asimetriaBiceps, asimetriaCompleta(), tolerancia);
+    }
+
+    // Mantenimiento de la ventana
+
+    private boolean reemplazar(Registro registro, boolean conservarFecha) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        Clave anterior = clavesPorId.get(registro.getId());
+        if (anterior == null) {
+            return false;
+        }
+        long fecha = conservarFecha ? anterior.fecha() : registro.getFecha().getTime();
+        quitar(registro.getId());
+        insertar(new Clave(fecha, registro.getId()), medidas(registro));
+        recalcularEwma();
+        publicar();
+        return true;
+    }
+
+    private void insertar(Clave clave, double[] medidas) {
+        if (origen == Long.MIN_VALUE) {
+            origen = clave.fecha();
+        }
+        filas.put(clave, medidas);
+        clavesPorId.put(clave.id(), clave);
+
+        if (enVentana < tamanoVentana) {
+            entrar(clave, medidas);
+            if (inicioVentana == null || clave.compareTo(inicioVentana) < 0) {
+                inicioVentana = clave;
+            }
+        } else if (clave.compareTo(inicioVentana) > 0) {
+            // El nuevo registro desplaza al más antiguo de la ventana
+            Clave saliente = inicioVentana;
+            salir(saliente, filas.get(saliente));
+            inicioVentana = filas.higherKey(saliente);
+            entrar(clave, medidas);
+        }
+    }
+
+    private void quitar(int id) {
+        Clave clave = clavesPorId.remove(id);
+        double[] medidas = filas.get(clave);
+
+        if (clave.compareTo(inicioVentana) >= 0) {
+            salir(clave, medidas);
+            Clave entrante = filas.lowerKey(inicioVentana);
+            if (entrante != null) {
+                // El registro anterior a la ventana ocupa el lugar libre
+                entrar(entrante, filas.get(entrante));
+                inicioVentana = entrante;
+            } else if (clave.equals(inicioVentana)) {
+                inicioVentana = filas.higherKey(clave);
+            }
+        }
+        filas.remove(clave);
+    }
+
+    private void entrar(Clave clave, double[] medidas) {
+        double t = dias(clave);
+        enVentana++;
+        sumaT += t;
+        sumaTT += t * t;
+        for (int m = 0; m < MEDIDAS.length; m++) {
+            suma[m] += medidas[m];
+            sumaTY[m] += t * medidas[m];
+            valores.get(m).merge(medidas[m], 1, Integer::sum);
+        }
+        sumaAsimetria += asimetria(medidas);
+    }
+
+    private void salir(Clave clave, double[] medidas) {
+        double t = dias(clave);
+        enVentana--;
+        sumaT -= t;
+        sumaTT -= t * t;
+        for (int m = 0; m < MEDIDAS.length; m++) {
+            suma[m] -= medidas[m];
+            sumaTY[m] -= t * medidas[m];
+            valores.get(m).computeIfPresent(medidas[m], (v, c) -> c == 1 ? null : c - 1);
+        }
+        sumaAsimetria -= asimetria(medidas);
+        if (enVentana == 0) {
+            // Se descartan los residuos de redondeo acumulados
+            sumaT = sumaTT = sumaAsimetria = 0;
+            Arrays.fill(suma, 0);
+            Arrays.fill(sumaTY, 0);
+        }
+    }
+
+    private void actualizarEwma(double[] medidas, boolean primero) {
+        for (int m = 0; m < MEDIDAS.length; m++) {
+            ewma[m] = primero ? medidas[m] : alfa * medidas[m] + (1 - alfa) * ewma[m];
+        }
+    }
+
+    private void recalcularEwma() {
+        boolean primero = true;
+        for (double[] medidas : filas.values()) {
+            actualizarEwma(medidas, primero);
+            primero = false;
+        }
+    }
+
+    /**
+     * Publica los resúmenes inmutables que leen las consultas.
+     */
+    private void publicar() {
+        ResumenMedida[] nuevos = new ResumenMedida[MEDIDAS.length];
+        if (enVentana == 0) {
+            for (int m = 0; m < MEDIDAS.length; m++) {
+                nuevos[m] = ResumenMedida.vacio(MEDIDAS[m]);
+            }
+            resumenes = nuevos;
+            asimetriaBiceps = Double.NaN;
+            return;
+        }
+
+        double[] primero = filas.get(inicioVentana);
+        double[] ultimo = filas.lastEntry().getValue();
+        double denominador = enVentana * sumaTT - sumaT * sumaT;
+        for (int m = 0; m < MEDIDAS.length; m++) {
+            double pendiente = denominador == 0 ? 0 : (enVentana * sumaTY[m] - sumaT * suma[m]) / denominador;
+            nuevos[m] = new ResumenMedida(MEDIDAS[m], enVentana, suma[m] / enVentana,
+                    valores.get(m).firstKey(), valores.get(m).lastKey(),
+                    ultimo[m] - primero[m], pendiente, ewma[m]);
+        }
+        resumenes = nuevos;
+        asimetriaBiceps = sumaAsimetria / enVentana;
+    }
+
+    // Recálculo completo para verificar
+
+    private ResumenMedida[] calcularCompleto() {
+        ResumenMedida[] resultado = new ResumenMedida[MEDIDAS.length];
+        int n = Math.min(tamanoVentana, filas.size());
+        for (int m = 0; m < MEDIDAS.length; m++) {
+            if (n == 0) {
+                resultado[m] = ResumenMedida.vacio(MEDIDAS[m]);
+                continue;
+            }
+            double s = 0, st = 0, stt = 0, sty = 0;
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            double primero = 0, ultimo = 0;
+            Iterator<Map.Entry<Clave, double[]>> it = filas.descendingMap().entrySet().iterator();
+            for (int i = 0; i < n; i++) {
+                Map.Entry<Clave, double[]> fila = it.next();
+                double y = fila.getValue()[m];
+                double t = dias(fila.getKey());
+                s += y;
+                st += t;
+                stt += t * t;
+                sty += t * y;
+                min = Math.min(min, y);
+                max = Math.max(max, y);
+                if (i == 0) {
+                    ultimo = y;
+                }
+                primero = y;
+            }
+            double denominador = n * stt - st * st;
+            double pendiente = denominador == 0 ? 0 : (n * sty - st * s) / denominador;
+
+            double e = 0;
+            boolean inicio = true;
+            for (double[] medidas : filas.values()) {
+                e = inicio ? medidas[m] : alfa * medidas[m] + (1 - alfa) * e;
+                inicio = false;
+            }
+            resultado[m] = new ResumenMedida(MEDIDAS[m], n, s / n, min, max, ultimo - primero, pendiente, e);
+        }
+        return resultado;
+    }
+
+    private double asimetriaCompleta() {
+        int n = Math.min(tamanoVentana, filas.size());
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double s = 0;
+        Iterator<double[]> it = filas.descendingMap().values().iterator();
+        for (int i = 0; i < n; i++) {
+            s += asimetria(it.next());
+        }
+        return s / n;
+    }
+
+    private static boolean cerca(double real, double esperado, double tolerancia) {
+        if (Double.isNaN(real) || Double.isNaN(esperado)) {
+            return Double.isNaN(real) && Double.isNaN(esperado);
+        }
+        return Math.abs(real - esperado) <= tolerancia * Math.max(1, Math.abs(esperado));
+    }
+
+    // Utilidades
+
+    private double dias(Clave clave) {
+        return (clave.fecha() - origen) / MILIS_POR_DIA;
+    }
+
+    private static double asimetria(double[] medidas) {
+        double izquierdo = medidas[Medida.BICEP_IZQUIERDO.ordinal()];
+        double derecho = medidas[Medida.BICEP_DERECHO.ordinal()];
+        return (izquierdo - derecho) / ((izquierdo + derecho) / 2);
+    }
+
+    private static double[] medidas(Registro registro) {
+        double[] medidas = new double[MEDIDAS.length];
+        for (int m = 0; m < MEDIDAS.length; m++) {
+            medidas[m] = MEDIDAS[m].de(registro);
+        }
+        return medidas;
+    }
+
+    private static void validar(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        if (registro.getFecha() == null) {
+            throw new IllegalArgumentException("La fecha no puede ser nula");
+        }
+    }
+
+    /**
+     * Posición de un registro en el orden por fecha e ID.
+     */
+    private record Clave(long fecha, int id) implements Comparable<Clave> {
+        @Override
+        public int compareTo(Clave otra) {
+            int porFecha = Long.compare(fecha, otra.fecha);
+            return porFecha != 0 ? porFecha : Integer.compare(id, otra.id);
+        }
+    }
+}
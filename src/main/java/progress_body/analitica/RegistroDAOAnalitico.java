@@ -0,0 +1,237 @@
+package progress_body.analitica;
+
+import progress_body.datos.IRegistroDAO;
+import progress_body.datos.RegistroDAODecorador;
+import progress_body.datos.ResultadoLote;
+import progress_body.dominio.Registro;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Decorador de {@link IRegistroDAO} que mantiene un {@link MotorProgreso} al día con las escrituras.
+ * <p>
+ * Cada escritura incorpora al motor lo que guardó el delegado: las altas individuales usan el registro
+ * que devuelve {@link IRegistroDAO#agregarYObtener(Registro)}, con el ID y la fecha asignados, y las altas
+ * en lote leen los IDs generados con {@link IRegistroDAO#listarRegistrosDespuesDe(int, int)}. Las
+ * modificaciones conservan en el motor la fecha guardada, porque el DAO no la cambia al modificar.
+ * No se usa una marca de último ID leído: con escritores concurrentes un ID menor puede confirmarse
+ * después de uno mayor, y la marca lo saltaría.
+ * <p>
+ * {@link #sincronizar()} incorpora los registros que se escribieron sin pasar por este decorador.
+ */
+public class RegistroDAOAnalitico extends RegistroDAODecorador {
+
+    private static final int PAGINA = 1000;
+
+    private final MotorProgreso motor;
+
+    // Las escrituras toman el cerrojo de lectura y pueden ir en paralelo; sincronizar() toma el de
+    // escritura para que una baja concurrente no deje en el motor un registro que ya leyó
+    private final ReadWriteLock cerrojo = new ReentrantReadWriteLock();
+
+    private RegistroDAOAnalitico(IRegistroDAO delegado, MotorProgreso motor) {
+        super(delegado);
+        this.motor = motor;
+    }
+
+    /**
+     * Crea el decorador y carga en el motor todos los registros existentes.
+     *
+     * @param delegado El DAO decorado. No debe ser nulo.
+     * @param motor    El motor a mantener. No debe ser nulo; se espera que esté vacío.
+     * @return El decorador, o null si no se pudieron leer los registros existentes.
+     * @throws IllegalArgumentException si algún argumento es nulo.
+     */
+    public static RegistroDAOAnalitico crear(IRegistroDAO delegado, MotorProgreso motor) {
+        if (delegado == null) {
+            throw new IllegalArgumentException("El DAO delegado no puede ser nulo.");
+        }
+        if (motor == null) {
+            throw new IllegalArgumentException("El motor no puede ser nulo.");
+        }
+        RegistroDAOAnalitico analitico = new RegistroDAOAnalitico(delegado, motor);
+        return analitico.sincronizar() < 0 ? null : analitico;
+    }
+
+    public MotorProgreso getMotor() {
+        return motor;
+    }
+
+    @Override
+    public boolean agregarRegistro(Registro registro) {
+        return agregarYObtener(registro) != null;
+    }
+
+    @Override
+    public Registro agregarYObtener(Registro registro) {
+        cerrojo.readLock().lock();
+        try {
+            Registro guardado = delegado.agregarYObtener(registro);
+            if (guardado != null) {
+                motor.agregar(guardado);
+            }
+            return guardado;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ResultadoLote agregarRegistros(Iterator<Registro> registros, int tamanoLote) {
+        cerrojo.readLock().lock();
+        try {
+            ResultadoLote resultado = delegado.agregarRegistros(registros, tamanoLote);
+            incorporar(resultado.idsGenerados());
+            return resultado;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ResultadoLote agregarRegistrosConId(List<Registro> registros) {
+        cerrojo.readLock().lock();
+        try {
+            ResultadoLote resultado = delegado.agregarRegistrosConId(registros);
+            incorporar(resultado.idsGenerados());
+            return resultado;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean modificarRegistro(Registro registro) {
+        cerrojo.readLock().lock();
+        try {
+            boolean modificado = delegado.modificarRegistro(registro);
+            if (modificado) {
+                motor.modificarMedidas(registro);
+            }
+            return modificado;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Registro modificarConVersion(Registro registro) {
+        cerrojo.readLock().lock();
+        try {
+            Registro guardado = delegado.modificarConVersion(registro);
+            if (guardado != null) {
+                motor.modificarMedidas(guardado);
+            }
+            return guardado;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Registro guardarRegistro(Registro registro) {
+        cerrojo.readLock().lock();
+        try {
+            // El reemplazo escribe también la fecha, así que el registro devuelto trae la guardada
+            Registro guardado = delegado.guardarRegistro(registro);
+            if (guardado != null) {
+                motor.agregar(guardado);
+            }
+            return guardado;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean eliminarRegistro(Registro registro) {
+        cerrojo.readLock().lock();
+        try {
+            boolean eliminado = delegado.eliminarRegistro(registro);
+            if (eliminado) {
+                motor.eliminar(registro.getId());
+            }
+            return eliminado;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int eliminarRegistros(Collection<Integer> ids) {
+        cerrojo.readLock().lock();
+        try {
+            int eliminados = delegado.eliminarRegistros(ids);
+            // Ante un error no se sabe cuáles se eliminaron: se quitan del motor los que ya no existen
+            for (int id : ids) {
+                if (eliminados >= 0 || !delegado.registroExiste(id)) {
+                    motor.eliminar(id);
+                }
+            }
+            return eliminados;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recorre todos los registros del delegado e incorpora al motor los que no conoce, por ejemplo los
+     * que agregó otro proceso. Bloquea las escrituras de este decorador mientras dura el recorrido.
+     *
+     * @return El número de registros incorporados, o -1 si no se pudieron leer todos.
+     */
+    public int sincronizar() {
+        cerrojo.writeLock().lock();
+        try {
+            int[] incorporados = {0};
+            long leidos = delegado.recorrerRegistros(registro -> {
+                if (!motor.contiene(registro.getId())) {
+                    motor.agregar(registro);
+                    incorporados[0]++;
+                }
+            });
+            if (leidos < 0) {
+                System.out.println("No se pudieron leer todos los registros; el motor puede estar incompleto.");
+                return -1;
+            }
+            return incorporados[0];
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lee los registros recién agregados, en páginas por ID desde el menor, y los incorpora al motor.
+     * Las filas de otros escritores que caen en el mismo rango se saltan.
+     */
+    private void incorporar(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Set<Integer> pendientes = new HashSet<>(ids);
+        int anterior = Collections.min(ids) - 1;
+        long fallos = delegado.getFallosDelHilo();
+        List<Registro> pagina;
+        do {
+            pagina = delegado.listarRegistrosDespuesDe(anterior, PAGINA);
+            for (Registro registro : pagina) {
+                if (pendientes.remove(registro.getId())) {
+                    motor.agregar(registro);
+                }
+                anterior = registro.getId();
+            }
+        } while (!pendientes.isEmpty() && pagina.size() == PAGINA);
+
+        if (delegado.getFallosDelHilo() != fallos) {
+            System.out.println("No se pudieron leer los registros agregados; el motor puede estar incompleto "
+                    + "hasta la próxima sincronización.");
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package progress_body.analitica;
+
+import progress_body.dominio.Medida;
+
+/**
+ * Indicadores de progreso de una medida, calculados sobre la ventana de los últimos registros.
+ *
+ * @param medida         La medida resumida.
+ * @param cantidad       Registros dentro de la ventana.
+ * @param media          Media de la ventana.
+ * @param minimo         Mínimo de la ventana.
+ * @param maximo         Máximo de la ventana.
+ * @param variacion      Diferencia entre el último y el primer valor de la ventana.
+ * @param pendientePorDia Pendiente de la recta de regresión de la ventana, en unidades por día.
+ * @param ewma           Media móvil exponencial de todo el historial.
+ */
+public record ResumenMedida(Medida medida, int cantidad, double media, double minimo, double maximo,
+                            double variacion, double pendientePorDia, double ewma) {
+
+    /**
+     * Crea el resumen de una medida sin registros.
+     *
+     * @param medida La medida.
+     * @return Un resumen con cantidad 0 y valores {@link Double#NaN}.
+     */
+    static ResumenMedida vacio(Medida medida) {
+        return new ResumenMedida(medida, 0, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+    }
+}
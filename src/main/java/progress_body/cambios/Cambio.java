@@ -0,0 +1,17 @@
+package progress_body.cambios;
+
+import progress_body.dominio.RegistroInmutable;
+
+import java.time.Instant;
+
+/**
+ * Una escritura sobre la tabla {@code registro}, tal como la publica {@link FeedCambios}.
+ *
+ * @param secuencia Número de secuencia: creciente, sin huecos y único dentro del feed.
+ * @param tipo      El tipo de escritura.
+ * @param id        El ID del registro afectado.
+ * @param registro  Los valores guardados, o null en una baja.
+ * @param instante  El momento en que se publicó el cambio.
+ */
+public record Cambio(long secuencia, TipoCambio tipo, int id, RegistroInmutable registro, Instant instante) {
+}
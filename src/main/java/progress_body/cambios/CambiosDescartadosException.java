@@ -0,0 +1,31 @@
+package progress_body.cambios;
+
+/**
+ * Indica que se pidieron cambios que el feed ya descartó por su límite de retención. El consumidor
+ * debe reconstruir su estado desde la tabla y continuar con {@link Suscripcion#reiniciarEn(long)}.
+ */
+public class CambiosDescartadosException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long pedida;
+    private final long primeraDisponible;
+
+    /**
+     * @param pedida            La secuencia pedida.
+     * @param primeraDisponible La secuencia más antigua que conserva el feed.
+     */
+    public CambiosDescartadosException(long pedida, long primeraDisponible) {
+        super("Se pidió la secuencia " + pedida + " pero el feed conserva desde la " + primeraDisponible + ".");
+        this.pedida = pedida;
+        this.primeraDisponible = primeraDisponible;
+    }
+
+    public long getPedida() {
+        return pedida;
+    }
+
+    public long getPrimeraDisponible() {
+        return primeraDisponible;
+    }
+}
@@ -0,0 +1,293 @@
+package progress_body.cambios;
+
+import progress_body.dominio.Registro;
+import progress_body.dominio.RegistroInmutable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Registro ordenado de los cambios de la tabla {@code registro}, para que cachés, tableros y otros
+ * consumidores procesen solo lo que cambió en lugar de volver a listar la tabla.
+ * <p>
+ * Cada cambio recibe una secuencia creciente y sin huecos. El feed conserva los últimos
+ * {@code retencion} cambios en un anillo, de modo que un consumidor puede releerlos desde cualquier
+ * secuencia que siga disponible; si pide una más antigua recibe {@link CambiosDescartadosException} y debe
+ * reconstruir su estado desde la tabla. El feed vive en memoria: las secuencias y las posiciones
+ * confirmadas de los consumidores se pierden al terminar el proceso.
+ * <p>
+ * Una escritura toma una {@link Reserva} antes de ir a la base de datos y le agrega sus cambios al
+ * confirmarse. Las reservas fijan el orden del feed sin retener ningún cerrojo durante la escritura: los
+ * cambios de una reserva cerrada se publican, y reciben su secuencia, cuando todas las reservas tomadas
+ * antes también se cerraron. Así una escritura lenta demora la publicación de las posteriores pero no
+ * las bloquea, y un cambio solo se publica después de confirmarse.
+ * <p>
+ * Normalmente lo alimenta {@link RegistroDAOConCambios}; otras rutas de escritura pueden llamar a
+ * {@link #reservar()} o a {@link #publicar(TipoCambio, int, Registro)} directamente.
+ */
+public class FeedCambios {
+
+    private final Cambio[] anillo;
+    private long siguiente = 1; // Secuencia del próximo cambio
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private final Condition hayCambios = cerrojo.newCondition();
+    private final Map<String, Long> confirmados = new ConcurrentHashMap<>();
+    private final ArrayDeque<Reserva> abiertas = new ArrayDeque<>(); // En orden de reserva. Guardado por 'cerrojo'
+
+    /**
+     * @param retencion El número de cambios que se conservan para releer.
+     * @throws IllegalArgumentException si la retención no es positiva.
+     */
+    public FeedCambios(int retencion) {
+        if (retencion <= 0) {
+            throw new IllegalArgumentException("La retención debe ser mayor a cero.");
+        }
+        this.anillo = new Cambio[retencion];
+    }
+
+    /**
+     * Reserva el siguiente lugar en el orden del feed. Se debe llamar antes de la escritura y cerrar la
+     * reserva al terminarla, haya tenido éxito o no, normalmente con try-with-resources.
+     *
+     * @return La reserva abierta.
+     */
+    public Reserva reservar() {
+        cerrojo.lock();
+        try {
+            Reserva reserva = new Reserva();
+            abiertas.addLast(reserva);
+            return reserva;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Agrega un cambio al final del feed, detrás de las reservas abiertas, y despierta a los consumidores
+     * que esperan cuando se publica.
+     *
+     * @param tipo     El tipo de escritura. No debe ser nulo.
+     * @param id       El ID del registro afectado.
+     * @param registro Los valores guardados, o null en una baja. Se guarda una copia inmutable.
+     * @throws IllegalArgumentException si el tipo es nulo, o si falta el registro en un alta o modificación.
+     */
+    public void publicar(TipoCambio tipo, int id, Registro registro) {
+        try (Reserva reserva = reservar()) {
+            reserva.agregar(tipo, id, registro);
+        }
+    }
+
+    /**
+     * @return La secuencia del último cambio publicado, o 0 si no hay ninguno.
+     */
+    public long ultimaSecuencia() {
+        cerrojo.lock();
+        try {
+            return siguiente - 1;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * @return La secuencia más antigua que todavía se puede leer.
+     */
+    public long primeraSecuencia() {
+        cerrojo.lock();
+        try {
+            return primeraDisponible();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Lee hasta {@code maximo} cambios a partir de una secuencia, sin esperar.
+     *
+     * @param desde  La primera secuencia a leer.
+     * @param maximo El máximo de cambios a devolver.
+     * @return Los cambios en orden de secuencia; vacía si todavía no hay cambios desde esa secuencia.
+     * @throws IllegalArgumentException    si la secuencia o el máximo no son positivos.
+     * @throws CambiosDescartadosException si la secuencia ya se descartó.
+     */
+    public List<Cambio> leer(long desde, int maximo) {
+        validarLectura(desde, maximo);
+        cerrojo.lock();
+        try {
+            return copiar(desde, maximo);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Como {@link #leer(long, int)}, pero si no hay cambios espera a que se publique alguno.
+     *
+     * @param espera El tiempo máximo de espera. No debe ser nulo.
+     * @return Los cambios leídos; vacía si se agotó la espera.
+     * @throws InterruptedException si el hilo se interrumpe mientras espera.
+     */
+    public List<Cambio> esperar(long desde, int maximo, Duration espera) throws InterruptedException {
+        validarLectura(desde, maximo);
+        if (espera == null) {
+            throw new IllegalArgumentException("La espera no puede ser nula.");
+        }
+        long restante = espera.toNanos();
+        cerrojo.lock();
+        try {
+            while (desde >= siguiente && restante > 0) {
+                restante = hayCambios.awaitNanos(restante);
+            }
+            return copiar(desde, maximo);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Crea una suscripción para un consumidor con nombre. Si el consumidor ya confirmó alguna posición
+     * en este feed, la suscripción continúa desde ella; si no, empieza en {@code desdeSiNuevo}.
+     *
+     * @param consumidor   El nombre del consumidor. No debe ser nulo ni vacío.
+     * @param desdeSiNuevo La primera secuencia a leer si el consumidor no tiene posición confirmada;
+     *                     {@code ultimaSecuencia() + 1} para recibir solo cambios nuevos.
+     * @return La suscripción.
+     * @throws IllegalArgumentException si el nombre es nulo o vacío, o la secuencia no es positiva.
+     */
+    public Suscripcion suscribir(String consumidor, long desdeSiNuevo) {
+        if (consumidor == null || consumidor.isBlank()) {
+            throw new IllegalArgumentException("El nombre del consumidor no puede estar vacío.");
+        }
+        if (desdeSiNuevo <= 0) {
+            throw new IllegalArgumentException("La secuencia debe ser mayor a cero.");
+        }
+        Long confirmado = confirmados.get(consumidor);
+        return new Suscripcion(this, consumidor, confirmado == null ? desdeSiNuevo : confirmado + 1);
+    }
+
+    /**
+     * @param consumidor El nombre del consumidor.
+     * @return La última secuencia que confirmó el consumidor, o 0 si no ha confirmado ninguna.
+     */
+    public long posicionConfirmada(String consumidor) {
+        return confirmados.getOrDefault(consumidor, 0L);
+    }
+
+    /**
+     * @return Las posiciones confirmadas de todos los consumidores, por nombre.
+     */
+    public Map<String, Long> posicionesConfirmadas() {
+        return Map.copyOf(confirmados);
+    }
+
+    void confirmar(String consumidor, long secuencia) {
+        confirmados.merge(consumidor, secuencia, Math::max);
+    }
+
+    void reiniciar(String consumidor, long secuencia) {
+        confirmados.put(consumidor, secuencia);
+    }
+
+    /**
+     * Publica, en orden, los cambios de las reservas cerradas que ya no tienen reservas abiertas delante.
+     * Se llama con el cerrojo tomado.
+     */
+    private void publicarCerradas() {
+        boolean publicados = false;
+        while (!abiertas.isEmpty() && abiertas.peekFirst().cerrada) {
+            for (Pendiente pendiente : abiertas.pollFirst().pendientes) {
+                Cambio cambio = new Cambio(siguiente, pendiente.tipo(), pendiente.id(), pendiente.registro(), Instant.now());
+                anillo[(int) (siguiente % anillo.length)] = cambio;
+                siguiente++;
+                publicados = true;
+            }
+        }
+        if (publicados) {
+            hayCambios.signalAll();
+        }
+    }
+
+    private long primeraDisponible() {
+        return Math.max(1, siguiente - anillo.length);
+    }
+
+    private List<Cambio> copiar(long desde, int maximo) {
+        long primera = primeraDisponible();
+        if (desde < primera) {
+            throw new CambiosDescartadosException(desde, primera);
+        }
+        long hasta = Math.min(siguiente, desde + maximo);
+        List<Cambio> cambios = new ArrayList<>((int) Math.max(0, hasta - desde));
+        for (long secuencia = desde; secuencia < hasta; secuencia++) {
+            cambios.add(anillo[(int) (secuencia % anillo.length)]);
+        }
+        return cambios;
+    }
+
+    private static void validarLectura(long desde, int maximo) {
+        if (desde <= 0 || maximo <= 0) {
+            throw new IllegalArgumentException("La secuencia y el máximo deben ser mayores a cero.");
+        }
+    }
+
+    /**
+     * Un lugar en el orden del feed, tomado por una escritura antes de ejecutarse. La usa un solo hilo.
+     */
+    public final class Reserva implements AutoCloseable {
+
+        private final List<Pendiente> pendientes = new ArrayList<>(1);
+        private boolean cerrada; // Se escribe con el cerrojo del feed tomado
+
+        private Reserva() {
+        }
+
+        /**
+         * Agrega un cambio confirmado a la reserva. Se publica al cerrarla.
+         *
+         * @param tipo     El tipo de escritura. No debe ser nulo.
+         * @param id       El ID del registro afectado.
+         * @param registro Los valores guardados, o null en una baja. Se guarda una copia inmutable.
+         * @throws IllegalArgumentException si el tipo es nulo, o si falta el registro en un alta o modificación.
+         * @throws IllegalStateException    si la reserva ya se cerró.
+         */
+        public void agregar(TipoCambio tipo, int id, Registro registro) {
+            if (tipo == null) {
+                throw new IllegalArgumentException("El tipo de cambio no puede ser nulo.");
+            }
+            if (registro == null && tipo != TipoCambio.BAJA) {
+                throw new IllegalArgumentException("Un alta o modificación debe incluir el registro.");
+            }
+            if (cerrada) {
+                throw new IllegalStateException("La reserva ya se cerró.");
+            }
+            pendientes.add(new Pendiente(tipo, id, registro == null ? null : RegistroInmutable.de(registro)));
+        }
+
+        /**
+         * Cierra la reserva. Sus cambios se publican ahora o cuando se cierren las reservas anteriores;
+         * una reserva sin cambios solo deja de retener a las posteriores.
+         */
+        @Override
+        public void close() {
+            cerrojo.lock();
+            try {
+                if (!cerrada) {
+                    cerrada = true;
+                    publicarCerradas();
+                }
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+    }
+
+    private record Pendiente(TipoCambio tipo, int id, RegistroInmutable registro) {
+    }
+}
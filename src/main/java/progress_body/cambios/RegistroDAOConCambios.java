@@ -0,0 +1,280 @@
+package progress_body.cambios;
+
+import progress_body.datos.FalloLote;
+import progress_body.datos.IRegistroDAO;
+import progress_body.datos.RegistroDAODecorador;
+import progress_body.datos.ResultadoLote;
+import progress_body.dominio.Registro;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decorador de {@link IRegistroDAO} que publica en un {@link FeedCambios} cada escritura que se
+ * confirma con éxito.
+ * <p>
+ * Cada escritura toma una {@link FeedCambios.Reserva} antes de ir al delegado y la cierra al volver, así
+ * que las escrituras se ejecutan en paralelo y el feed las ordena por reserva. Las que afectan a un ID
+ * conocido toman además el cerrojo de la franja de ese ID, de modo que dos escrituras sobre el mismo
+ * registro se confirman y se publican en el mismo orden. Un alta reserva antes de conocer su ID y
+ * cualquier escritura posterior sobre ese registro reserva después, así que un consumidor nunca ve una
+ * modificación antes que el alta. Entre registros distintos el feed sigue el orden en que empezaron
+ * las escrituras, que puede diferir del orden en que se confirmaron. Las escrituras hechas por otras
+ * rutas no aparecen en el feed.
+ * <p>
+ * {@link #agregarRegistro(Registro)}, {@link #agregarYObtener(Registro)}, {@link #guardarRegistro(Registro)}
+ * y {@link #modificarConVersion(Registro)} publican los valores guardados.
+ * {@link #agregarRegistros(Iterator, int)} publica los valores enviados con el ID asignado: la fecha es
+ * null si la asignó la base de datos. {@link #agregarRegistrosConId(List)} y
+ * {@link #modificarRegistro(Registro)} publican los valores enviados, con la versión que traía el registro.
+ * {@link #eliminarRegistros(Collection)} publica una baja por cada registro que eliminó.
+ */
+public class RegistroDAOConCambios extends RegistroDAODecorador {
+
+    private static final int FRANJAS = 64;
+
+    private final FeedCambios feed;
+    private final ReentrantLock[] franjas = new ReentrantLock[FRANJAS];
+
+    /**
+     * @param delegado El DAO decorado. No debe ser nulo.
+     * @param feed     El feed donde se publican los cambios. No debe ser nulo.
+     * @throws IllegalArgumentException si algún argumento es nulo.
+     */
+    public RegistroDAOConCambios(IRegistroDAO delegado, FeedCambios feed) {
+        super(delegado);
+        if (feed == null) {
+            throw new IllegalArgumentException("El feed no puede ser nulo.");
+        }
+        this.feed = feed;
+        for (int i = 0; i < FRANJAS; i++) {
+            franjas[i] = new ReentrantLock();
+        }
+    }
+
+    public FeedCambios getFeed() {
+        return feed;
+    }
+
+    @Override
+    public boolean agregarRegistro(Registro registro) {
+        // Se usa agregarYObtener para conocer el ID asignado
+        return agregarYObtener(registro) != null;
+    }
+
+    @Override
+    public Registro agregarYObtener(Registro registro) {
+        try (FeedCambios.Reserva reserva = feed.reservar()) {
+            Registro guardado = delegado.agregarYObtener(registro);
+            if (guardado != null) {
+                reserva.agregar(TipoCambio.ALTA, guardado.getId(), guardado);
+            }
+            return guardado;
+        }
+    }
+
+    @Override
+    public ResultadoLote agregarRegistros(Iterator<Registro> registros, int tamanoLote) {
+        if (registros == null) {
+            throw new IllegalArgumentException("El iterador de registros no puede ser nulo.");
+        }
+        List<Registro> enviados = new ArrayList<>();
+        Iterator<Registro> registrando = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return registros.hasNext();
+            }
+
+            @Override
+            public Registro next() {
+                Registro registro = registros.next();
+                enviados.add(registro);
+                return registro;
+            }
+        };
+
+        try (FeedCambios.Reserva reserva = feed.reservar()) {
+            ResultadoLote resultado = delegado.agregarRegistros(registrando, tamanoLote);
+            publicarAltas(reserva, enviados, resultado);
+            return resultado;
+        }
+    }
+
+    /**
+     * Agrega los registros con su ID en el delegado y publica un alta por cada uno insertado. Toma las
+     * franjas de todos los IDs, en orden, para que una escritura concurrente sobre alguno de ellos se
+     * publique antes del alta solo si falló por no existir el registro.
+     */
+    @Override
+    public ResultadoLote agregarRegistrosConId(List<Registro> registros) {
+        IRegistroDAO.validarConId(registros);
+        SortedSet<Integer> indices = new TreeSet<>();
+        Map<Integer, Registro> porId = new HashMap<>();
+        for (Registro registro : registros) {
+            indices.add(Math.floorMod(registro.getId(), FRANJAS));
+            porId.put(registro.getId(), registro);
+        }
+        bloquear(indices);
+        try (FeedCambios.Reserva reserva = feed.reservar()) {
+            ResultadoLote resultado = delegado.agregarRegistrosConId(registros);
+            for (int id : resultado.idsGenerados()) {
+                reserva.agregar(TipoCambio.ALTA, id, porId.get(id));
+            }
+            return resultado;
+        } finally {
+            desbloquear(indices);
+        }
+    }
+
+    /**
+     * Elimina los registros de uno en uno en el delegado, porque el feed necesita saber cuáles existían y
+     * la eliminación en bloque solo devuelve cuántos. Toma las franjas de todos los IDs, en orden, y se
+     * detiene en el primer error; las bajas anteriores quedan publicadas.
+     */
+    @Override
+    public int eliminarRegistros(Collection<Integer> ids) {
+        IRegistroDAO.validarIds(ids);
+        SortedSet<Integer> indices = new TreeSet<>();
+        for (int id : ids) {
+            indices.add(Math.floorMod(id, FRANJAS));
+        }
+        bloquear(indices);
+        try (FeedCambios.Reserva reserva = feed.reservar()) {
+            int eliminados = 0;
+            for (int id : ids) {
+                long fallos = delegado.getFallosDelHilo();
+                if (delegado.eliminarRegistro(new Registro(id))) {
+                    reserva.agregar(TipoCambio.BAJA, id, null);
+                    eliminados++;
+                } else if (delegado.getFallosDelHilo() != fallos) {
+                    return -1;
+                }
+            }
+            return eliminados;
+        } finally {
+            desbloquear(indices);
+        }
+    }
+
+    @Override
+    public boolean modificarRegistro(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        ReentrantLock franja = franja(registro.getId());
+        franja.lock();
+        try (FeedCambios.Reserva reserva = feed.reservar()) {
+            boolean modificado = delegado.modificarRegistro(registro);
+            if (modificado) {
+                reserva.agregar(TipoCambio.MODIFICACION, registro.getId(), registro);
+            }
+            return modificado;
+        } finally {
+            franja.unlock();
+        }
+    }
+
+    @Override
+    public Registro guardarRegistro(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        if (registro.getId() == 0) {
+            return agregarYObtener(registro);
+        }
+        ReentrantLock franja = franja(registro.getId());
+        franja.lock();
+        try (FeedCambios.Reserva reserva = feed.reservar()) {
+            Registro guardado = delegado.guardarRegistro(registro);
+            if (guardado != null) {
+                // Una fila nueva empieza en la versión 0; reemplazar una existente la incrementa
+                TipoCambio tipo = guardado.getVersion() == 0 ? TipoCambio.ALTA : TipoCambio.MODIFICACION;
+                reserva.agregar(tipo, guardado.getId(), guardado);
+            }
+            return guardado;
+        } finally {
+            franja.unlock();
+        }
+    }
+
+    @Override
+    public Registro modificarConVersion(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        ReentrantLock franja = franja(registro.getId());
+        franja.lock();
+        try (FeedCambios.Reserva reserva = feed.reservar()) {
+            Registro guardado = delegado.modificarConVersion(registro);
+            if (guardado != null) {
+                reserva.agregar(TipoCambio.MODIFICACION, guardado.getId(), guardado);
+            }
+            return guardado;
+        } finally {
+            franja.unlock();
+        }
+    }
+
+    @Override
+    public boolean eliminarRegistro(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        ReentrantLock franja = franja(registro.getId());
+        franja.lock();
+        try (FeedCambios.Reserva reserva = feed.reservar()) {
+            boolean eliminado = delegado.eliminarRegistro(registro);
+            if (eliminado) {
+                reserva.agregar(TipoCambio.BAJA, registro.getId(), null);
+            }
+            return eliminado;
+        } finally {
+            franja.unlock();
+        }
+    }
+
+    /**
+     * Publica un alta por cada registro insertado. Los IDs generados siguen el orden de los registros
+     * enviados, saltando los bloques que fallaron.
+     */
+    private void publicarAltas(FeedCambios.Reserva reserva, List<Registro> enviados, ResultadoLote resultado) {
+        boolean[] fallido = new boolean[enviados.size()];
+        for (FalloLote fallo : resultado.fallos()) {
+            int fin = Math.min(fallido.length, fallo.indiceInicio() + fallo.cantidad());
+            for (int i = fallo.indiceInicio(); i < fin; i++) {
+                fallido[i] = true;
+            }
+        }
+        Iterator<Integer> ids = resultado.idsGenerados().iterator();
+        for (int i = 0; i < enviados.size() && ids.hasNext(); i++) {
+            if (!fallido[i]) {
+                Registro alta = new Registro(enviados.get(i));
+                alta.setId(ids.next());
+                reserva.agregar(TipoCambio.ALTA, alta.getId(), alta);
+            }
+        }
+    }
+
+    private void bloquear(SortedSet<Integer> indices) {
+        for (int indice : indices) {
+            franjas[indice].lock();
+        }
+    }
+
+    private void desbloquear(SortedSet<Integer> indices) {
+        for (int indice : indices) {
+            franjas[indice].unlock();
+        }
+    }
+
+    private ReentrantLock franja(int id) {
+        return franjas[Math.floorMod(id, FRANJAS)];
+    }
+}
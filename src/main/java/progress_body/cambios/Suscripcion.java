@@ -0,0 +1,123 @@
+package progress_body.cambios;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Lector de un {@link FeedCambios} para un consumidor con nombre.
+ * <p>
+ * La suscripción lleva dos posiciones: la de lectura, que avanza con cada lote entregado, y la
+ * confirmada, que el feed guarda por consumidor y solo avanza con {@link #confirmar()}. Una nueva
+ * suscripción del mismo consumidor continúa desde la posición confirmada, así que los cambios leídos
+ * pero no confirmados se vuelven a entregar: cada cambio se procesa al menos una vez. No es segura
+ * para usarse desde varios hilos a la vez.
+ */
+public final class Suscripcion {
+
+    private final FeedCambios feed;
+    private final String consumidor;
+    private long siguiente; // Secuencia del próximo cambio a leer
+
+    Suscripcion(FeedCambios feed, String consumidor, long siguiente) {
+        this.feed = feed;
+        this.consumidor = consumidor;
+        this.siguiente = siguiente;
+    }
+
+    /**
+     * Lee el siguiente lote de cambios, esperando si todavía no hay ninguno.
+     *
+     * @param maximo El máximo de cambios del lote.
+     * @param espera El tiempo máximo de espera. No debe ser nulo.
+     * @return Los cambios en orden de secuencia; vacía si se agotó la espera.
+     * @throws CambiosDescartadosException si el consumidor se retrasó más que la retención del feed.
+     * @throws InterruptedException        si el hilo se interrumpe mientras espera.
+     */
+    public List<Cambio> siguienteLote(int maximo, Duration espera) throws InterruptedException {
+        List<Cambio> lote = feed.esperar(siguiente, maximo, espera);
+        if (!lote.isEmpty()) {
+            siguiente = lote.getLast().secuencia() + 1;
+        }
+        return lote;
+    }
+
+    /**
+     * Lee un lote, lo entrega al procesador y, si este termina sin excepción, confirma la posición.
+     *
+     * @param maximo     El máximo de cambios del lote.
+     * @param espera     El tiempo máximo de espera por cambios.
+     * @param procesador Recibe el lote. No debe ser nulo. Si lanza una excepción, la posición de lectura
+     *                   vuelve a la confirmada y el lote se entregará otra vez.
+     * @return El número de cambios procesados.
+     * @throws InterruptedException si el hilo se interrumpe mientras espera.
+     */
+    public int procesar(int maximo, Duration espera, Consumer<? super List<Cambio>> procesador) throws InterruptedException {
+        if (procesador == null) {
+            throw new IllegalArgumentException("El procesador no puede ser nulo.");
+        }
+        long inicio = siguiente;
+        List<Cambio> lote = siguienteLote(maximo, espera);
+        if (lote.isEmpty()) {
+            return 0;
+        }
+        try {
+            procesador.accept(lote);
+        } catch (RuntimeException e) {
+            siguiente = inicio;
+            throw e;
+        }
+        confirmar();
+        return lote.size();
+    }
+
+    /**
+     * Confirma en el feed todos los cambios leídos hasta ahora.
+     */
+    public void confirmar() {
+        if (siguiente > 1) {
+            feed.confirmar(consumidor, siguiente - 1);
+        }
+    }
+
+    /**
+     * Mueve la lectura a otra secuencia y la confirma, por ejemplo tras reconstruir el estado del
+     * consumidor después de una {@link CambiosDescartadosException}. También permite retroceder para
+     * volver a procesar cambios que el feed todavía conserva.
+     *
+     * @param secuencia La próxima secuencia a leer.
+     * @throws IllegalArgumentException si la secuencia no es positiva.
+     */
+    public void reiniciarEn(long secuencia) {
+        if (secuencia <= 0) {
+            throw new IllegalArgumentException("La secuencia debe ser mayor a cero.");
+        }
+        siguiente = secuencia;
+        feed.reiniciar(consumidor, secuencia - 1);
+    }
+
+    /**
+     * @return La secuencia del próximo cambio que se leerá.
+     */
+    public long getPosicion() {
+        return siguiente;
+    }
+
+    /**
+     * @return La última secuencia confirmada por este consumidor, o 0 si no ha confirmado ninguna.
+     */
+    public long getConfirmada() {
+        return feed.posicionConfirmada(consumidor);
+    }
+
+    /**
+     * @return Los cambios publicados que este consumidor todavía no ha leído.
+     */
+    public long getPendientes() {
+        return Math.max(0, feed.ultimaSecuencia() - siguiente + 1);
+    }
+
+    public String getConsumidor() {
+        return consumidor;
+    }
+}
@@ -0,0 +1,10 @@
+package progress_body.cambios;
+
+/**
+ * Tipo de escritura que originó un {@link Cambio}.
+ */
+public enum TipoCambio {
+    ALTA,
+    MODIFICACION,
+    BAJA
+}
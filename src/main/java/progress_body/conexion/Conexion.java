@@ -1,32 +1,60 @@
 package progress_body.conexion;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
  * Esta clase proporciona un método para establecer y gestionar la conexión a una base de datos MySQL.
+ * <p>
+ * Las conexiones se toman de un {@link PoolConexiones} compartido que se crea la primera vez que se
+ * solicita una conexión, usando la configuración cargada por {@link ConfiguracionConexion#cargar()}.
  */
 public class Conexion {
+
+    /**
+     * Inicialización perezosa del pool compartido.
+     */
+    private static final class Holder {
+        private static final PoolConexiones POOL = new PoolConexiones(ConfiguracionConexion.cargar());
+    }
+
     /**
-     * Establece una conexión a la base de datos MySQL.
+     * Obtiene una conexión del pool. Al cerrarla, la conexión vuelve al pool.
      *
      * @return Connection - Un objeto de tipo Connection si se establece la conexión correctamente.
-     * @throws SQLException - Si no se puede establecer la conexión, ya sea por credenciales incorrectas o por el servidor apagado.
+     * @throws SQLException - Si no se puede establecer la conexión, ya sea por credenciales incorrectas,
+     *                      por el servidor apagado o porque no quedan conexiones libres en el pool.
      */
     public static Connection getConexion() throws SQLException {
-        String db = "progress_body_db"; // Nombre de la base de datos
-        String url = "jdbc:mysql://localhost:3306/" + db; // URL de conexión a la base de datos MySQL
-        String user = "root"; // Usuario de la base de datos
-        String pass = "root1234"; // Contraseña del usuario
-
-        try {
-            // Se retorna un objeto de tipo Connection si la conexión se establece correctamente.
-            return DriverManager.getConnection(url, user, pass);
-        } catch (SQLException e) {
-            System.out.println("Error al establecer la conexión a la base de datos MySQL: " + e.getMessage());
-            throw new SQLException("Error: Credenciales incorrectas o el servidor está apagado.");
-        }
+        return Holder.POOL.getConnection();
+    }
+
+    /**
+     * Devuelve el pool compartido como {@link DataSource}.
+     *
+     * @return El DataSource compartido.
+     */
+    public static DataSource getDataSource() {
+        return Holder.POOL;
+    }
+
+    /**
+     * Devuelve la configuración del pool compartido.
+     *
+     * @return La configuración con la que se creó el pool.
+     */
+    public static ConfiguracionConexion getConfiguracion() {
+        return Holder.POOL.getConfiguracion();
+    }
+
+    /**
+     * Devuelve las métricas actuales del pool compartido.
+     *
+     * @return Una instantánea de las métricas del pool.
+     */
+    public static MetricasPool getMetricas() {
+        return Holder.POOL.getMetricas();
     }
 
 //    public static void main(String[] args) {
@@ -0,0 +1,111 @@
+package progress_body.conexion;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Configuración externalizada de la conexión y del pool.
+ * <p>
+ * Los valores se resuelven en este orden: propiedades del sistema ({@code -Dprogressbody.db.url=...}),
+ * variables de entorno ({@code PROGRESSBODY_DB_URL}), el archivo {@code progress_body.properties}
+ * del classpath y, por último, los valores por defecto.
+ *
+ * @param url                  URL JDBC de la base de datos.
+ * @param usuario              Usuario de la base de datos.
+ * @param contrasena           Contraseña del usuario.
+ * @param tamanoMaximo         Número máximo de conexiones abiertas a la vez.
+ * @param minimoInactivas      Número mínimo de conexiones inactivas que se conservan al desalojar.
+ * @param tiempoEsperaMs       Tiempo máximo que se espera por una conexión libre.
+ * @param tiempoInactividadMs  Tiempo tras el cual una conexión inactiva se cierra.
+ * @param umbralValidacionMs   Inactividad a partir de la cual se valida la conexión antes de prestarla.
+ * @param umbralFugaMs         Tiempo prestada a partir del cual se reporta una posible fuga (0 la desactiva).
+ */
+public record ConfiguracionConexion(String url, String usuario, String contrasena,
+                                    int tamanoMaximo, int minimoInactivas,
+                                    long tiempoEsperaMs, long tiempoInactividadMs,
+                                    long umbralValidacionMs, long umbralFugaMs) {
+
+    private static final String ARCHIVO = "progress_body.properties";
+
+    public ConfiguracionConexion {
+        if (url == null || url.isBlank()) {
+            throw new IllegalArgumentException("La URL de conexión no puede estar vacía.");
+        }
+        if (tamanoMaximo <= 0) {
+            throw new IllegalArgumentException("El tamaño máximo del pool debe ser mayor que 0.");
+        }
+        if (minimoInactivas < 0 || minimoInactivas > tamanoMaximo) {
+            throw new IllegalArgumentException("El mínimo de conexiones inactivas debe estar entre 0 y el tamaño máximo.");
+        }
+        if (tiempoEsperaMs <= 0 || tiempoInactividadMs <= 0 || umbralValidacionMs < 0 || umbralFugaMs < 0) {
+            throw new IllegalArgumentException("Los tiempos del pool no pueden ser negativos.");
+        }
+    }
+
+    /**
+     * Carga la configuración desde las fuentes externas disponibles.
+     *
+     * @return La configuración resultante.
+     */
+    public static ConfiguracionConexion cargar() {
+        Properties archivo = new Properties();
+        try (InputStream in = ConfiguracionConexion.class.getClassLoader().getResourceAsStream(ARCHIVO)) {
+            if (in != null) {
+                archivo.load(in);
+            }
+        } catch (IOException e) {
+            System.out.println("No se pudo leer " + ARCHIVO + ": " + e.getMessage());
+        }
+
+        return new ConfiguracionConexion(
+                valor(archivo, "progressbody.db.url", "jdbc:mysql://localhost:3306/progress_body_db"),
+                valor(archivo, "progressbody.db.user", "root"),
+                valor(archivo, "progressbody.db.password", ""),
+                Integer.parseInt(valor(archivo, "progressbody.pool.max", "10")),
+                Integer.parseInt(valor(archivo, "progressbody.pool.minIdle", "2")),
+                Long.parseLong(valor(archivo, "progressbody.pool.timeoutMs", "5000")),
+                Long.parseLong(valor(archivo, "progressbody.pool.idleTimeoutMs", "600000")),
+                Long.parseLong(valor(archivo, "progressbody.pool.validationMs", "500")),
+                Long.parseLong(valor(archivo, "progressbody.pool.leakMs", "60000"))
+        );
+    }
+
+    /**
+     * Devuelve una copia de esta configuración apuntando a otra URL.
+     *
+     * @param nuevaUrl La URL JDBC a utilizar.
+     * @return Una nueva configuración con la URL indicada.
+     */
+    public ConfiguracionConexion conUrl(String nuevaUrl) {
+        return new ConfiguracionConexion(nuevaUrl, usuario, contrasena, tamanoMaximo, minimoInactivas,
+                tiempoEsperaMs, tiempoInactividadMs, umbralValidacionMs, umbralFugaMs);
+    }
+
+    private static String valor(Properties archivo, String clave, String porDefecto) {
+        String sistema = System.getProperty(clave);
+        if (sistema != null) {
+            return sistema;
+        }
+        String entorno = System.getenv(clave.toUpperCase().replace('.', '_'));
+        if (entorno != null) {
+            return entorno;
+        }
+        return archivo.getProperty(clave, porDefecto);
+    }
+
+    @Override
+    public String toString() {
+        // La contraseña nunca se imprime.
+        return "ConfiguracionConexion{" +
+                "url='" + url + '\'' +
+                ", usuario='" + usuario + '\'' +
+                ", tamanoMaximo=" + tamanoMaximo +
+                ", minimoInactivas=" + minimoInactivas +
+                ", tiempoEsperaMs=" + tiempoEsperaMs +
+                ", tiempoInactividadMs=" + tiempoInactividadMs +
+                ", umbralValidacionMs=" + umbralValidacionMs +
+                ", umbralFugaMs=" + umbralFugaMs +
+                '}';
+    }
+}
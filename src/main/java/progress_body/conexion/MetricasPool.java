@@ -0,0 +1,27 @@
+package progress_body.conexion;
+
+/**
+ * Instantánea de las métricas del pool de conexiones.
+ *
+ * @param activas           Conexiones prestadas en este momento.
+ * @param inactivas         Conexiones abiertas disponibles para préstamo.
+ * @param esperando         Hilos que esperan una conexión libre.
+ * @param prestamos         Total de préstamos realizados.
+ * @param tiemposAgotados   Préstamos que fallaron por agotar el tiempo de espera.
+ * @param fugasDetectadas   Conexiones reportadas como posibles fugas.
+ * @param esperaTotalNanos  Suma de los tiempos de espera de todos los préstamos.
+ * @param esperaMaximaNanos Mayor tiempo de espera observado.
+ */
+public record MetricasPool(int activas, int inactivas, int esperando, long prestamos,
+                           long tiemposAgotados, long fugasDetectadas,
+                           long esperaTotalNanos, long esperaMaximaNanos) {
+
+    /**
+     * Calcula el tiempo medio de espera por préstamo.
+     *
+     * @return Tiempo medio de espera en nanosegundos, o 0 si no hubo préstamos.
+     */
+    public double esperaMediaNanos() {
+        return prestamos == 0 ? 0 : (double) esperaTotalNanos / prestamos;
+    }
+}
@@ -0,0 +1,342 @@
+package progress_body.conexion;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Pool acotado de conexiones JDBC.
+ * <p>
+ * Las conexiones prestadas se devuelven al pool al invocar {@link Connection#close()}, por lo que
+ * el código que usa try-with-resources no necesita cambios. El pool valida las conexiones que
+ * llevan tiempo inactivas antes de prestarlas, cierra las que superan el tiempo de inactividad
+ * y reporta las conexiones que permanecen prestadas más allá del umbral de fuga.
+ */
+public class PoolConexiones implements DataSource, AutoCloseable {
+
+    private final ConfiguracionConexion config;
+    private final Semaphore permisos; // Limita el total de conexiones prestadas
+    private final ConcurrentLinkedDeque<ConexionFisica> inactivas = new ConcurrentLinkedDeque<>();
+    private final Set<ConexionFisica> prestadas = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService mantenimiento;
+    private volatile boolean cerrado;
+
+    // Métricas
+    private final AtomicInteger esperando = new AtomicInteger();
+    private final LongAdder prestamos = new LongAdder();
+    private final LongAdder tiemposAgotados = new LongAdder();
+    private final LongAdder fugasDetectadas = new LongAdder();
+    private final LongAdder esperaTotalNanos = new LongAdder();
+    private final AtomicLong esperaMaximaNanos = new AtomicLong();
+
+    /**
+     * Crea un pool con la configuración indicada. Las conexiones se abren bajo demanda.
+     *
+     * @param config La configuración del pool. No debe ser nula.
+     * @throws IllegalArgumentException si la configuración es nula.
+     */
+    public PoolConexiones(ConfiguracionConexion config) {
+        if (config == null) {
+            throw new IllegalArgumentException("La configuración no puede ser nula.");
+        }
+        this.config = config;
+        this.permisos = new Semaphore(config.tamanoMaximo(), true);
+
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "pool-conexiones-mantenimiento");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        long periodo = Math.max(1000, Math.min(30_000, config.tiempoInactividadMs() / 2));
+        mantenimiento.scheduleWithFixedDelay(this::mantener, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Presta una conexión del pool, abriendo una nueva si no hay ninguna inactiva.
+     *
+     * @return Una conexión que vuelve al pool al cerrarse.
+     * @throws SQLException si el pool está cerrado, se agota el tiempo de espera o no se puede abrir la conexión.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (cerrado) {
+            throw new SQLException("El pool de conexiones está cerrado.");
+        }
+
+        long inicio = System.nanoTime();
+        esperando.incrementAndGet();
+        try {
+            if (!permisos.tryAcquire(config.tiempoEsperaMs(), TimeUnit.MILLISECONDS)) {
+                tiemposAgotados.increment();
+                throw new SQLException("Tiempo de espera agotado: no hay conexiones libres en el pool.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Se interrumpió la espera de una conexión.", e);
+        } finally {
+            esperando.decrementAndGet();
+        }
+        registrarEspera(System.nanoTime() - inicio);
+
+        try {
+            ConexionFisica fisica = tomarInactiva();
+            if (fisica == null) {
+                fisica = abrir();
+            }
+            fisica.prestadaEn = System.nanoTime();
+            fisica.origen = config.umbralFugaMs() > 0 ? new Throwable("Conexión prestada aquí") : null;
+            fisica.fugaReportada = false;
+            prestadas.add(fisica);
+            prestamos.increment();
+            return fisica.prestar(this);
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve una instantánea de las métricas del pool.
+     *
+     * @return Las métricas actuales.
+     */
+    public MetricasPool getMetricas() {
+        return new MetricasPool(prestadas.size(), inactivas.size(), esperando.get(),
+                prestamos.sum(), tiemposAgotados.sum(), fugasDetectadas.sum(),
+                esperaTotalNanos.sum(), esperaMaximaNanos.get());
+    }
+
+    /**
+     * Devuelve la configuración con la que se creó el pool.
+     *
+     * @return La configuración del pool.
+     */
+    public ConfiguracionConexion getConfiguracion() {
+        return config;
+    }
+
+    /**
+     * Cierra el pool y todas las conexiones inactivas. Las conexiones prestadas se cierran al devolverse.
+     */
+    @Override
+    public void close() {
+        cerrado = true;
+        mantenimiento.shutdownNow();
+        ConexionFisica fisica;
+        while ((fisica = inactivas.pollFirst()) != null) {
+            cerrarSilencioso(fisica.real);
+        }
+    }
+
+    private ConexionFisica tomarInactiva() {
+        ConexionFisica fisica;
+        while ((fisica = inactivas.pollFirst()) != null) { // LIFO: se reutiliza la conexión más reciente
+            long inactivaMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - fisica.ultimoUso);
+            if (inactivaMs < config.umbralValidacionMs() || esValida(fisica.real)) {
+                return fisica;
+            }
+            cerrarSilencioso(fisica.real);
+        }
+        return null;
+    }
+
+    private ConexionFisica abrir() throws SQLException {
+        try {
+            return new ConexionFisica(DriverManager.getConnection(config.url(), config.usuario(), config.contrasena()));
+        } catch (SQLException e) {
+            System.out.println("Error al establecer la conexión a la base de datos MySQL: " + e.getMessage());
+            throw new SQLException("Error: Credenciales incorrectas o el servidor está apagado.", e);
+        }
+    }
+
+    private void devolver(ConexionFisica fisica) {
+        prestadas.remove(fisica);
+        try {
+            if (cerrado || fisica.real.isClosed()) {
+                cerrarSilencioso(fisica.real);
+                return;
+            }
+            // Se restablece el estado que el préstamo pudo haber cambiado
+            if (!fisica.real.getAutoCommit()) {
+                fisica.real.rollback();
+                fisica.real.setAutoCommit(true);
+            }
+            fisica.real.clearWarnings();
+            fisica.ultimoUso = System.nanoTime();
+            inactivas.offerFirst(fisica);
+        } catch (SQLException e) {
+            System.out.println("Se descartó una conexión al devolverla al pool: " + e.getMessage());
+            cerrarSilencioso(fisica.real);
+        } finally {
+            permisos.release();
+        }
+    }
+
+    private void mantener() {
+        long ahora = System.nanoTime();
+
+        // Desalojo de conexiones inactivas, empezando por las más antiguas
+        Iterator<ConexionFisica> it = inactivas.descendingIterator();
+        while (it.hasNext() && inactivas.size() > config.minimoInactivas()) {
+            ConexionFisica fisica = it.next();
+            if (TimeUnit.NANOSECONDS.toMillis(ahora - fisica.ultimoUso) > config.tiempoInactividadMs()
+                    && inactivas.removeFirstOccurrence(fisica)) {
+                cerrarSilencioso(fisica.real);
+            }
+        }
+
+        // Detección de fugas
+        if (config.umbralFugaMs() > 0) {
+            for (ConexionFisica fisica : prestadas) {
+                if (!fisica.fugaReportada
+                        && TimeUnit.NANOSECONDS.toMillis(ahora - fisica.prestadaEn) > config.umbralFugaMs()) {
+                    fisica.fugaReportada = true;
+                    fugasDetectadas.increment();
+                    System.out.println("Posible fuga de conexión: lleva más de " + config.umbralFugaMs() + " ms prestada.");
+                    if (fisica.origen != null) {
+                        fisica.origen.printStackTrace(System.out);
+                    }
+                }
+            }
+        }
+    }
+
+    private void registrarEspera(long nanos) {
+        esperaTotalNanos.add(nanos);
+        esperaMaximaNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static boolean esValida(Connection con) {
+        try {
+            return con.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void cerrarSilencioso(Connection con) {
+        try {
+            con.close();
+        } catch (SQLException e) {
+            System.out.println("No se pudo cerrar la conexión: " + e.getMessage());
+        }
+    }
+
+    // Métodos de DataSource no soportados por el pool
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("El pool usa las credenciales de su configuración.");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("El pool no implementa " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * Conexión física abierta contra la base de datos y su estado dentro del pool.
+     */
+    private static final class ConexionFisica {
+        private final Connection real;
+        private volatile long ultimoUso = System.nanoTime();
+        private volatile long prestadaEn;
+        private volatile Throwable origen;
+        private volatile boolean fugaReportada;
+
+        private ConexionFisica(Connection real) {
+            this.real = real;
+        }
+
+        /**
+         * Crea la vista de un único préstamo. Cada préstamo tiene su propio proxy para que
+         * cerrar dos veces, o usar una referencia antigua, no afecte al siguiente préstamo.
+         */
+        private Connection prestar(PoolConexiones pool) {
+            AtomicBoolean devuelta = new AtomicBoolean();
+            InvocationHandler manejador = (proxy, metodo, args) -> {
+                switch (metodo.getName()) {
+                    case "close":
+                        if (devuelta.compareAndSet(false, true)) {
+                            pool.devolver(this);
+                        }
+                        return null;
+                    case "isClosed":
+                        return devuelta.get() || real.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "ConexionAgrupada[" + real + "]";
+                    default:
+                        if (devuelta.get()) {
+                            throw new SQLException("La conexión ya fue devuelta al pool.");
+                        }
+                        return invocar(metodo, args);
+                }
+            };
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, manejador);
+        }
+
+        private Object invocar(Method metodo, Object[] args) throws Throwable {
+            try {
+                return metodo.invoke(real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
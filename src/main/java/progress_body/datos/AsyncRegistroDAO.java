@@ -0,0 +1,234 @@
+package progress_body.datos;
+
+import progress_body.conexion.Conexion;
+import progress_body.dominio.Registro;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Versión asíncrona de {@link IRegistroDAO}: cada operación devuelve un {@link CompletableFuture}
+ * y se ejecuta en un hilo virtual.
+ * <p>
+ * Un semáforo limita cuántas operaciones acceden a la vez al DAO, de modo que no se pidan más
+ * conexiones de las que el pool puede dar; las demás esperan en su hilo virtual sin ocupar hilos
+ * del sistema. Cancelar un futuro, o agotar su tiempo límite, interrumpe el hilo que lo ejecuta.
+ * <p>
+ * El tiempo límite y la cancelación son solo del lado del cliente: el futuro termina enseguida, pero
+ * JDBC no atiende las interrupciones, así que una consulta ya iniciada sigue ejecutándose en el
+ * servidor y conserva su conexión del pool y su turno del semáforo hasta que el DAO devuelve el
+ * control. Una operación cancelada mientras espera turno, en cambio, nunca llega a ejecutarse. Para
+ * acotar lo que dura la consulta en el servidor hay que configurar un tiempo límite en el DAO o en
+ * el driver (por ejemplo, {@link java.sql.Statement#setQueryTimeout(int)}).
+ */
+public class AsyncRegistroDAO implements AutoCloseable {
+
+    private final IRegistroDAO dao;
+    private final Semaphore limitador;
+    private final Duration tiempoLimite; // null si no hay límite
+    private final ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Crea un DAO asíncrono sobre un {@link RegistroDAO} con el pool compartido, limitado al tamaño del pool.
+     */
+    public AsyncRegistroDAO() {
+        this(new RegistroDAO(), Conexion.getConfiguracion().tamanoMaximo(), null);
+    }
+
+    /**
+     * Crea un DAO asíncrono.
+     *
+     * @param dao             El DAO que ejecuta las operaciones. No debe ser nulo.
+     * @param maxConcurrencia El máximo de operaciones simultáneas, normalmente el tamaño del pool de conexiones.
+     * @param tiempoLimite    El tiempo máximo que se espera cada operación, o null para no limitarlo. No
+     *                        detiene la consulta en el servidor ni libera su turno antes de que termine.
+     * @throws IllegalArgumentException si el DAO es nulo, la concurrencia no es positiva o el tiempo límite no es positivo.
+     */
+    public AsyncRegistroDAO(IRegistroDAO dao, int maxConcurrencia, Duration tiempoLimite) {
+        if (dao == null) {
+            throw new IllegalArgumentException("El DAO no puede ser nulo.");
+        }
+        if (maxConcurrencia <= 0) {
+            throw new IllegalArgumentException("La concurrencia máxima debe ser mayor a cero.");
+        }
+        if (tiempoLimite != null && (tiempoLimite.isNegative() || tiempoLimite.isZero())) {
+            throw new IllegalArgumentException("El tiempo límite debe ser positivo.");
+        }
+        this.dao = dao;
+        this.limitador = new Semaphore(maxConcurrencia, true);
+        this.tiempoLimite = tiempoLimite;
+    }
+
+    public CompletableFuture<List<Registro>> listarRegistros() {
+        return ejecutar(dao::listarRegistros);
+    }
+
+    public CompletableFuture<List<Registro>> listarRegistrosDeUsuario(int usuario) {
+        return ejecutar(() -> dao.listarRegistrosDeUsuario(usuario));
+    }
+
+    public CompletableFuture<Boolean> buscarRegistro(Registro registro) {
+        return ejecutar(() -> dao.buscarRegistro(registro));
+    }
+
+    public CompletableFuture<Boolean> registroExiste(int id) {
+        return ejecutar(() -> dao.registroExiste(id));
+    }
+
+    public CompletableFuture<Boolean> agregarRegistro(Registro registro) {
+        return ejecutar(() -> dao.agregarRegistro(registro));
+    }
+
+    public CompletableFuture<Boolean> modificarRegistro(Registro registro) {
+        return ejecutar(() -> dao.modificarRegistro(registro));
+    }
+
+    public CompletableFuture<Boolean> eliminarRegistro(Registro registro) {
+        return ejecutar(() -> dao.eliminarRegistro(registro));
+    }
+
+    public CompletableFuture<Registro> agregarYObtener(Registro registro) {
+        return ejecutar(() -> dao.agregarYObtener(registro));
+    }
+
+    public CompletableFuture<Registro> guardarRegistro(Registro registro) {
+        return ejecutar(() -> dao.guardarRegistro(registro));
+    }
+
+    /**
+     * @return Un futuro con el registro guardado; falla con {@link ConflictoVersionException} si la versión no coincide.
+     */
+    public CompletableFuture<Registro> modificarConVersion(Registro registro) {
+        return ejecutar(() -> dao.modificarConVersion(registro));
+    }
+
+    /**
+     * Verifica la existencia de varios IDs en paralelo, respetando el límite de concurrencia.
+     *
+     * @param ids Los IDs a verificar. No debe ser nulo.
+     * @return Un futuro con la existencia de cada ID, en el orden recibido.
+     */
+    public CompletableFuture<Map<Integer, Boolean>> registrosExisten(Collection<Integer> ids) {
+        if (ids == null) {
+            throw new IllegalArgumentException("La colección de IDs no puede ser nula.");
+        }
+        List<Integer> lista = List.copyOf(ids);
+        return enParalelo(lista, dao::registroExiste).thenApply(existencias -> {
+            Map<Integer, Boolean> resultado = new LinkedHashMap<>();
+            for (int i = 0; i < lista.size(); i++) {
+                resultado.put(lista.get(i), existencias.get(i));
+            }
+            return resultado;
+        });
+    }
+
+    /**
+     * Aplica una operación del DAO a cada elemento en paralelo y reúne los resultados.
+     * Si una operación falla, el futuro combinado falla y se cancelan las demás; si el futuro
+     * combinado se cancela, también se cancelan todas las operaciones.
+     *
+     * @param elementos Los elementos a procesar. No debe ser nulo.
+     * @param operacion La operación a aplicar a cada elemento.
+     * @return Un futuro con los resultados en el orden de los elementos.
+     */
+    public <T, R> CompletableFuture<List<R>> enParalelo(Collection<T> elementos, Function<? super T, ? extends R> operacion) {
+        if (elementos == null || operacion == null) {
+            throw new IllegalArgumentException("Los elementos y la operación no pueden ser nulos.");
+        }
+        List<CompletableFuture<R>> parciales = new ArrayList<>(elementos.size());
+        for (T elemento : elementos) {
+            parciales.add(ejecutar(() -> operacion.apply(elemento)));
+        }
+
+        CompletableFuture<List<R>> combinado = new CompletableFuture<>();
+        CompletableFuture.allOf(parciales.toArray(CompletableFuture[]::new)).whenComplete((nada, error) -> {
+            if (error != null) {
+                combinado.completeExceptionally(error);
+                return;
+            }
+            List<R> resultados = new ArrayList<>(parciales.size());
+            for (CompletableFuture<R> parcial : parciales) {
+                resultados.add(parcial.join());
+            }
+            combinado.complete(resultados);
+        });
+        combinado.whenComplete((r, error) -> {
+            if (error != null) {
+                parciales.forEach(parcial -> parcial.cancel(true));
+            }
+        });
+        for (CompletableFuture<R> parcial : parciales) {
+            // Falla rápido: el primer error completa el combinado sin esperar a los demás
+            parcial.whenComplete((r, error) -> {
+                if (error != null) {
+                    combinado.completeExceptionally(error);
+                }
+            });
+        }
+        return combinado;
+    }
+
+    /**
+     * Deja de aceptar operaciones y espera a que terminen las que están en curso.
+     */
+    @Override
+    public void close() {
+        ejecutor.close();
+    }
+
+    private <T> CompletableFuture<T> ejecutar(Callable<T> tarea) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        Future<?> hilo;
+        try {
+            hilo = ejecutor.submit(() -> correr(tarea, resultado));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new IllegalStateException("El DAO asíncrono está cerrado.", e));
+        }
+
+        resultado.whenComplete((r, error) -> {
+            if (resultado.isCancelled() || error instanceof TimeoutException) {
+                hilo.cancel(true); // Interrumpe la espera del semáforo o la operación en curso
+            }
+        });
+        if (tiempoLimite != null) {
+            resultado.orTimeout(tiempoLimite.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        return resultado;
+    }
+
+    private <T> void correr(Callable<T> tarea, CompletableFuture<T> resultado) {
+        if (resultado.isDone()) {
+            return; // Se canceló antes de empezar
+        }
+        try {
+            limitador.acquire();
+        } catch (InterruptedException e) {
+            resultado.completeExceptionally(new CancellationException("Operación cancelada mientras esperaba turno."));
+            return;
+        }
+        try {
+            if (!resultado.isDone()) {
+                resultado.complete(tarea.call());
+            }
+        } catch (Throwable e) {
+            resultado.completeExceptionally(e);
+        } finally {
+            limitador.release();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package progress_body.datos;
+
+/**
+ * Indica que un registro no se modificó porque su versión guardada ya no es la que leyó el llamador:
+ * otra escritura lo cambió o lo eliminó. El llamador debe volver a leerlo y decidir si reintenta.
+ */
+public class ConflictoVersionException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int id;
+    private final int versionEsperada;
+
+    /**
+     * @param id              El ID del registro.
+     * @param versionEsperada La versión con la que se intentó modificar.
+     */
+    public ConflictoVersionException(int id, int versionEsperada) {
+        super("El registro " + id + " ya no tiene la versión " + versionEsperada + ": fue modificado o eliminado.");
+        this.id = id;
+        this.versionEsperada = versionEsperada;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getVersionEsperada() {
+        return versionEsperada;
+    }
+}
@@ -0,0 +1,149 @@
+package progress_body.datos;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Crea la tabla {@code registro}, las columnas que le falten y los índices que usan las consultas de {@link RegistroDAO}.
+ * Todas las operaciones son idempotentes y pueden ejecutarse en cada arranque.
+ */
+public final class EsquemaRegistro {
+
+    private static final String CREAR_TABLA = """
+            CREATE TABLE IF NOT EXISTS registro (
+                id INT NOT NULL AUTO_INCREMENT,
+                peso DOUBLE NOT NULL,
+                bicepIzquierdo DOUBLE NOT NULL,
+                bicepDerecho DOUBLE NOT NULL,
+                cintura DOUBLE NOT NULL,
+                cuadriceps DOUBLE NOT NULL,
+                pantorrillas DOUBLE NOT NULL,
+                fecha TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                version INT NOT NULL DEFAULT 0,
+                usuario INT NOT NULL DEFAULT 0,
+                PRIMARY KEY (id)
+            ) ENGINE=InnoDB""";
+
+    /**
+     * Columnas agregadas después de la primera versión de la tabla: nombre y definición. Se agregan
+     * a las tablas creadas antes de que existieran.
+     */
+    private static final String[][] COLUMNAS = {
+            {"version", "ALTER TABLE registro ADD COLUMN version INT NOT NULL DEFAULT 0"},
+            {"usuario", "ALTER TABLE registro ADD COLUMN usuario INT NOT NULL DEFAULT 0"}
+    };
+
+    /**
+     * Índices secundarios: nombre y definición. El índice por (fecha, id) sostiene la paginación
+     * por fecha y las consultas por rango de fechas; el de (usuario, fecha, id), los registros de un usuario.
+     */
+    private static final String[][] INDICES = {
+            {"idx_registro_fecha_id", "CREATE INDEX idx_registro_fecha_id ON registro (fecha, id)"},
+            {"idx_registro_usuario_fecha_id", "CREATE INDEX idx_registro_usuario_fecha_id ON registro (usuario, fecha, id)"}
+    };
+
+    private EsquemaRegistro() {
+    }
+
+    /**
+     * Crea la tabla, las columnas y los índices que falten.
+     *
+     * @param dataSource El origen de las conexiones. No debe ser nulo.
+     * @return true si el esquema quedó completo; false si ocurrió un error.
+     * @throws IllegalArgumentException si el dataSource es nulo.
+     */
+    public static boolean crearEsquema(DataSource dataSource) {
+        if (dataSource == null) {
+            throw new IllegalArgumentException("El DataSource no puede ser nulo.");
+        }
+
+        try (Connection con = dataSource.getConnection();
+             Statement st = con.createStatement()) {
+
+            st.execute(CREAR_TABLA);
+            for (String[] columna : COLUMNAS) {
+                if (!existeColumna(con, "registro", columna[0])) {
+                    st.execute(columna[1]);
+                }
+            }
+            for (String[] indice : INDICES) {
+                if (!existeIndice(con, "registro", indice[0])) {
+                    st.execute(indice[1]);
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            System.out.println("No se pudo crear el esquema. \n" + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Hace que los IDs que genere la tabla a partir de ahora sean mayores o iguales a {@code primerId},
+     * para que varias bases de datos repartan rangos de IDs sin repetirlos. No tiene efecto si la tabla
+     * ya tiene IDs mayores. InnoDB conserva el contador desde MySQL 8.0; en versiones anteriores se
+     * recalcula al reiniciar el servidor, así que debe llamarse en cada arranque.
+     *
+     * @param dataSource El origen de las conexiones. No debe ser nulo.
+     * @param primerId   El menor ID que se puede generar. Debe ser mayor a cero.
+     * @return true si el contador quedó ajustado; false si ocurrió un error.
+     * @throws IllegalArgumentException si el dataSource es nulo o el ID no es positivo.
+     */
+    public static boolean reservarIds(DataSource dataSource, int primerId) {
+        if (dataSource == null) {
+            throw new IllegalArgumentException("El DataSource no puede ser nulo.");
+        }
+        if (primerId <= 0) {
+            throw new IllegalArgumentException("El ID debe ser mayor a cero.");
+        }
+
+        try (Connection con = dataSource.getConnection();
+             Statement st = con.createStatement()) {
+
+            try (ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id), 0) FROM registro")) {
+                if (rs.next() && rs.getInt(1) >= primerId - 1) {
+                    return true;
+                }
+            }
+            // ALTER TABLE no admite parámetros; primerId es un entero validado
+            st.execute("ALTER TABLE registro AUTO_INCREMENT = " + primerId);
+            return true;
+        } catch (SQLException e) {
+            System.out.println("No se pudo reservar el rango de IDs. \n" + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Verifica si existe un índice en una tabla del esquema actual. MySQL no admite
+     * {@code CREATE INDEX IF NOT EXISTS}, por lo que se consultan los metadatos de JDBC, que a diferencia
+     * de {@code information_schema.statistics} también existen en la base H2 de las pruebas.
+     */
+    public static boolean existeIndice(Connection con, String tabla, String indice) throws SQLException {
+        try (ResultSet rs = con.getMetaData().getIndexInfo(con.getCatalog(), null, tabla, false, true)) {
+            while (rs.next()) {
+                if (indice.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Verifica si existe una columna en una tabla del esquema actual, también con los metadatos de JDBC.
+     */
+    public static boolean existeColumna(Connection con, String tabla, String columna) throws SQLException {
+        try (ResultSet rs = con.getMetaData().getColumns(con.getCatalog(), null, tabla, null)) {
+            while (rs.next()) {
+                if (columna.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package progress_body.datos;
+
+/**
+ * Instantánea de las estadísticas de {@link RegistroDAOCache}.
+ *
+ * @param aciertos            Búsquedas resueltas desde la caché de registros.
+ * @param fallos              Búsquedas que tuvieron que consultar la base de datos.
+ * @param desalojos           Registros expulsados de la caché por falta de capacidad.
+ * @param aciertosExistencia  Verificaciones de existencia resueltas desde el índice.
+ * @param fallosExistencia    Verificaciones de existencia que tuvieron que consultar la base de datos.
+ * @param tamano              Registros actualmente en caché.
+ * @param capacidad           Máximo de registros en caché.
+ */
+public record EstadisticasCache(long aciertos, long fallos, long desalojos,
+                                long aciertosExistencia, long fallosExistencia,
+                                int tamano, int capacidad) {
+
+    /**
+     * Calcula la proporción de búsquedas resueltas desde la caché.
+     *
+     * @return Un valor entre 0 y 1, o 0 si no hubo búsquedas.
+     */
+    public double tasaAciertos() {
+        long total = aciertos + fallos;
+        return total == 0 ? 0 : (double) aciertos / total;
+    }
+
+    /**
+     * Calcula la proporción de verificaciones de existencia resueltas desde el índice.
+     *
+     * @return Un valor entre 0 y 1, o 0 si no hubo verificaciones.
+     */
+    public double tasaAciertosExistencia() {
+        long total = aciertosExistencia + fallosExistencia;
+        return total == 0 ? 0 : (double) aciertosExistencia / total;
+    }
+}
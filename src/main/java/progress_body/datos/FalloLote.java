@@ -0,0 +1,11 @@
+package progress_body.datos;
+
+/**
+ * Describe un bloque de registros que no se pudo insertar dentro de una inserción por lotes.
+ *
+ * @param indiceInicio Posición, dentro de la entrada, del primer registro del bloque.
+ * @param cantidad     Número de registros del bloque.
+ * @param mensaje      Mensaje del error que provocó el fallo.
+ */
+public record FalloLote(int indiceInicio, int cantidad, String mensaje) {
+}
@@ -0,0 +1,38 @@
+package progress_body.datos;
+
+/**
+ * Cuenta, por hilo, las operaciones de un DAO que fallaron por un error de la base de datos o del
+ * almacenamiento. Sostiene {@link IRegistroDAO#getFallosDelHilo()}: como cada hilo solo ve sus propios
+ * fallos, quien lee el contador antes y después de una llamada sabe si esa llamada falló aunque otros
+ * hilos usen el mismo DAO.
+ */
+public final class FallosPorHilo {
+
+    private final ThreadLocal<long[]> fallos = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Suma un fallo al hilo actual.
+     */
+    public void registrar() {
+        fallos.get()[0]++;
+    }
+
+    /**
+     * Suma varios fallos al hilo actual, por ejemplo los que ocurrieron en otros hilos por cuenta de este.
+     *
+     * @param cantidad El número de fallos. No debe ser negativo.
+     */
+    public void registrar(long cantidad) {
+        if (cantidad < 0) {
+            throw new IllegalArgumentException("La cantidad de fallos no puede ser negativa.");
+        }
+        fallos.get()[0] += cantidad;
+    }
+
+    /**
+     * @return Los fallos registrados en el hilo actual desde que se creó el contador.
+     */
+    public long delHilo() {
+        return fallos.get()[0];
+    }
+}
@@ -1,13 +1,32 @@
 package progress_body.datos;
 
 import progress_body.dominio.Registro;
+import progress_body.dominio.RegistroInmutable;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Interfaz para las operaciones de acceso a datos relacionadas con la entidad Registro.
  */
 public interface IRegistroDAO {
 
+    /**
+     * Número de registros por bloque que se usa cuando no se indica otro.
+     */
+    int TAMANO_LOTE_POR_DEFECTO = 500;
+
+    /**
+     * Orden por fecha y, a igual fecha, por ID.
+     */
+    Comparator<Registro> ORDEN_FECHA_ID = Comparator.comparing(Registro::getFecha).thenComparingInt(Registro::getId);
+
     /**
      * Lista todos los registros almacenados.
      *
@@ -15,6 +34,17 @@ public interface IRegistroDAO {
      */
     List<Registro> listarRegistros();
 
+    /**
+     * Lista todos los registros almacenados, ordenados por ID, en su versión inmutable.
+     * <p>
+     * La implementación por defecto convierte el resultado de {@link #listarRegistros()}.
+     *
+     * @return Una lista inmutable de objetos RegistroInmutable.
+     */
+    default List<RegistroInmutable> listarRegistrosInmutables() {
+        return listarRegistros().stream().map(RegistroInmutable::de).toList();
+    }
+
     /**
      * Busca un registro por su objeto Registro.
      *
@@ -54,4 +84,346 @@ public interface IRegistroDAO {
      * @return true si la operación fue exitosa, false en caso contrario.
      */
     boolean eliminarRegistro(Registro registro);
+
+    /**
+     * Devuelve cuántas operaciones de este DAO fallaron en el hilo actual por un error de la base de datos
+     * o del almacenamiento. Los métodos informan esos errores con el mismo valor que un resultado negativo
+     * (false, null, una lista vacía); quien necesite distinguirlos, como un decorador que mide errores,
+     * lee el contador antes y después de la llamada. Las operaciones que solo lanzan
+     * {@link IllegalArgumentException} o {@link ConflictoVersionException} no cuentan.
+     * <p>
+     * La implementación por defecto devuelve 0, es decir, no informa sus fallos.
+     *
+     * @return El número de fallos del hilo actual desde que se creó el DAO.
+     * @see FallosPorHilo
+     */
+    default long getFallosDelHilo() {
+        return 0;
+    }
+
+    /**
+     * Agrega un registro y devuelve el registro guardado, con el ID, la fecha y la versión asignados,
+     * para no tener que volver a leerlo.
+     * <p>
+     * La implementación por defecto inserta con {@link #agregarRegistros(Collection)} y lee el registro
+     * guardado con {@link #buscarRegistro(Registro)}, en dos operaciones.
+     *
+     * @param registro El registro a agregar. No debe ser nulo.
+     * @return Un nuevo objeto con el registro guardado, o null si no se pudo agregar.
+     */
+    default Registro agregarYObtener(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        ResultadoLote resultado = agregarRegistros(List.of(registro));
+        if (resultado.totalInsertados() == 0) {
+            return null;
+        }
+        Registro guardado = new Registro(resultado.idsGenerados().get(0));
+        return buscarRegistro(guardado) ? guardado : null;
+    }
+
+    /**
+     * Inserta el registro o, si ya existe uno con su ID, lo reemplaza por completo, y devuelve el
+     * registro guardado. Si el ID es 0 equivale a {@link #agregarYObtener(Registro)}.
+     * <p>
+     * No tiene implementación por defecto: insertar con un ID elegido por el llamador no se puede
+     * componer con las demás operaciones, que asignan el ID al insertar.
+     *
+     * @param registro El registro a guardar. No debe ser nulo.
+     * @return Un nuevo objeto con el registro guardado, o null si no se pudo guardar.
+     * @throws IllegalArgumentException si el registro es nulo.
+     */
+    Registro guardarRegistro(Registro registro);
+
+    /**
+     * Modifica un registro solo si su versión guardada sigue siendo {@link Registro#getVersion()},
+     * es decir, si nadie lo cambió desde que se leyó. Como {@link #modificarRegistro(Registro)}, solo
+     * cambia las medidas: la fecha y el usuario del argumento se ignoran.
+     * <p>
+     * La implementación por defecto compara la versión y modifica en dos operaciones, por lo que no
+     * detecta una escritura concurrente entre ambas.
+     *
+     * @param registro El registro con los datos nuevos y la versión leída. No debe ser nulo.
+     * @return Un nuevo objeto con el registro guardado: el ID y las medidas del argumento, la fecha y el
+     * usuario que ya tenía guardados y la nueva versión; o null si ocurrió un error.
+     * @throws ConflictoVersionException si la versión guardada es otra o el registro ya no existe.
+     */
+    default Registro modificarConVersion(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        Registro actual = new Registro(registro.getId());
+        if (!buscarRegistro(actual) || actual.getVersion() != registro.getVersion()) {
+            throw new ConflictoVersionException(registro.getId(), registro.getVersion());
+        }
+        return modificarRegistro(registro) && buscarRegistro(actual) ? actual : null;
+    }
+
+    /**
+     * Agrega varios registros en una sola transacción, en bloques de {@link #TAMANO_LOTE_POR_DEFECTO}.
+     *
+     * @param registros Los registros a agregar.
+     * @return El resultado con los IDs generados y los bloques que fallaron.
+     */
+    default ResultadoLote agregarRegistros(Collection<Registro> registros) {
+        if (registros == null) {
+            throw new IllegalArgumentException("La colección de registros no puede ser nula.");
+        }
+        return agregarRegistros(registros.iterator(), TAMANO_LOTE_POR_DEFECTO);
+    }
+
+    /**
+     * Agrega los registros que produce el iterador en una sola transacción, en bloques del tamaño indicado.
+     * Un bloque que falla se descarta sin afectar a los demás.
+     *
+     * @param registros  Los registros a agregar.
+     * @param tamanoLote El número de registros por bloque.
+     * @return El resultado con los IDs generados y los bloques que fallaron.
+     */
+    ResultadoLote agregarRegistros(Iterator<Registro> registros, int tamanoLote);
+
+    /**
+     * Agrega registros que ya tienen ID, conservando su ID, fecha, versión y usuario; si la fecha es
+     * nula se usa la hora actual. Sirve para mover registros entre bases sin cambiar su identidad.
+     * Un ID que ya existe no se reemplaza: el registro falla.
+     * <p>
+     * La implementación por defecto los guarda de uno en uno con {@link #guardarRegistro(Registro)},
+     * sin una transacción que los abarque, y los guardados quedan con la versión que asigne ese método.
+     *
+     * @param registros Los registros a agregar. No debe ser nula ni contener registros nulos o con ID 0.
+     * @return El resultado con los IDs agregados y los registros que fallaron.
+     * @throws IllegalArgumentException si la lista es nula o contiene un registro nulo o sin ID.
+     */
+    default ResultadoLote agregarRegistrosConId(List<Registro> registros) {
+        validarConId(registros);
+        List<Integer> ids = new ArrayList<>(registros.size());
+        List<FalloLote> fallos = new ArrayList<>();
+        for (int i = 0; i < registros.size(); i++) {
+            Registro registro = registros.get(i);
+            if (registroExiste(registro.getId())) {
+                fallos.add(new FalloLote(i, 1, "Ya existe el registro con ID " + registro.getId() + "."));
+            } else if (guardarRegistro(registro) != null) {
+                ids.add(registro.getId());
+            } else {
+                fallos.add(new FalloLote(i, 1, "No se pudo guardar el registro con ID " + registro.getId() + "."));
+            }
+        }
+        return new ResultadoLote(ids, fallos);
+    }
+
+    /**
+     * Elimina los registros con los IDs indicados. Los IDs que no existen se ignoran.
+     * <p>
+     * La implementación por defecto los elimina de uno en uno con {@link #eliminarRegistro(Registro)}
+     * y se detiene en el primer error; los anteriores quedan eliminados.
+     *
+     * @param ids Los IDs a eliminar. No debe ser nula ni contener nulos.
+     * @return El número de registros eliminados, o -1 si ocurrió un error.
+     * @throws IllegalArgumentException si la colección es nula o contiene un ID nulo.
+     */
+    default int eliminarRegistros(Collection<Integer> ids) {
+        validarIds(ids);
+        int eliminados = 0;
+        for (int id : ids) {
+            long fallos = getFallosDelHilo();
+            if (eliminarRegistro(new Registro(id))) {
+                eliminados++;
+            } else if (getFallosDelHilo() != fallos) {
+                return -1;
+            }
+        }
+        return eliminados;
+    }
+
+    /**
+     * Devuelve todos los registros ordenados por ID como un flujo que se lee bajo demanda.
+     * El flujo debe cerrarse para liberar los recursos, por ejemplo con try-with-resources.
+     * <p>
+     * La implementación por defecto materializa {@link #listarRegistros()}.
+     *
+     * @return Un flujo de objetos Registro.
+     * @throws UncheckedSQLException al consumir el flujo, si la lectura se interrumpe a mitad.
+     */
+    default Stream<Registro> streamRegistros() {
+        return listarRegistros().stream();
+    }
+
+    /**
+     * Recorre todos los registros ordenados por ID, entregándolos uno a uno al consumidor.
+     * <p>
+     * La implementación por defecto se apoya en {@link #streamRegistros()}.
+     *
+     * @param consumidor El consumidor que recibe cada registro.
+     * @return El número de registros recorridos, o -1 si la lectura se interrumpió; en ese caso el
+     * consumidor pudo recibir solo una parte.
+     */
+    default long recorrerRegistros(Consumer<? super Registro> consumidor) {
+        if (consumidor == null) {
+            throw new IllegalArgumentException("El consumidor no puede ser nulo.");
+        }
+        try (Stream<Registro> registros = streamRegistros()) {
+            long[] total = {0};
+            registros.forEach(registro -> {
+                consumidor.accept(registro);
+                total[0]++;
+            });
+            return total[0];
+        } catch (UncheckedSQLException e) {
+            System.out.println("No se recorrieron todos los registros. \n" + e.getCause().getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Lista la página de registros que sigue al ID indicado, ordenada por ID (paginación por clave).
+     * Para la primera página se usa 0; para las siguientes, el ID del último registro recibido.
+     * <p>
+     * La implementación por defecto filtra {@link #streamRegistros()}.
+     *
+     * @param idAnterior El ID del último registro de la página anterior.
+     * @param limite     El número máximo de registros de la página.
+     * @return Una lista con, como máximo, {@code limite} registros.
+     */
+    default List<Registro> listarRegistrosDespuesDe(int idAnterior, int limite) {
+        validarPagina(idAnterior, limite);
+        try (Stream<Registro> registros = streamRegistros()) {
+            return registros.filter(r -> r.getId() > idAnterior).limit(limite).toList();
+        }
+    }
+
+    /**
+     * Lista la página de registros que sigue a la posición {@code (fechaAnterior, idAnterior)},
+     * ordenada por fecha y, a igual fecha, por ID. Para la primera página se pasa una fecha nula.
+     * <p>
+     * La implementación por defecto ordena y filtra {@link #streamRegistros()}.
+     *
+     * @param fechaAnterior La fecha del último registro de la página anterior, o null para empezar desde el principio.
+     * @param idAnterior    El ID del último registro de la página anterior.
+     * @param limite        El número máximo de registros de la página.
+     * @return Una lista con, como máximo, {@code limite} registros.
+     */
+    default List<Registro> listarRegistrosPorFechaDespuesDe(Timestamp fechaAnterior, int idAnterior, int limite) {
+        validarPagina(idAnterior, limite);
+        try (Stream<Registro> registros = streamRegistros()) {
+            return registros
+                    .filter(r -> fechaAnterior == null
+                            || r.getFecha().after(fechaAnterior)
+                            || (r.getFecha().equals(fechaAnterior) && r.getId() > idAnterior))
+                    .sorted(ORDEN_FECHA_ID)
+                    .limit(limite)
+                    .toList();
+        }
+    }
+
+    /**
+     * Lista los registros cuya fecha está en el intervalo {@code [desde, hasta)}, ordenados por fecha e ID.
+     * <p>
+     * La implementación por defecto ordena y filtra {@link #streamRegistros()}.
+     *
+     * @param desde El inicio del intervalo, incluido.
+     * @param hasta El final del intervalo, excluido.
+     * @return Una lista con los registros del intervalo.
+     */
+    default List<Registro> listarRegistrosEntreFechas(Timestamp desde, Timestamp hasta) {
+        validarIntervalo(desde, hasta);
+        try (Stream<Registro> registros = streamRegistros()) {
+            return registros
+                    .filter(r -> !r.getFecha().before(desde) && r.getFecha().before(hasta))
+                    .sorted(ORDEN_FECHA_ID)
+                    .toList();
+        }
+    }
+
+    /**
+     * Lista los registros de un usuario, ordenados por fecha y, a igual fecha, por ID.
+     * <p>
+     * La implementación por defecto ordena y filtra {@link #streamRegistros()}.
+     *
+     * @param usuario El usuario dueño de los registros.
+     * @return Una lista con los registros del usuario.
+     */
+    default List<Registro> listarRegistrosDeUsuario(int usuario) {
+        validarUsuario(usuario);
+        try (Stream<Registro> registros = streamRegistros()) {
+            return registros
+                    .filter(r -> r.getUsuario() == usuario)
+                    .sorted(ORDEN_FECHA_ID)
+                    .toList();
+        }
+    }
+
+    /**
+     * Valida los parámetros de una consulta paginada.
+     *
+     * @throws IllegalArgumentException si el ID es negativo o el límite no es positivo.
+     */
+    static void validarPagina(int idAnterior, int limite) {
+        if (idAnterior < 0) {
+            throw new IllegalArgumentException("El ID anterior no puede ser negativo.");
+        }
+        if (limite <= 0) {
+            throw new IllegalArgumentException("El límite debe ser mayor a cero.");
+        }
+    }
+
+    /**
+     * Valida el usuario de una consulta.
+     *
+     * @throws IllegalArgumentException si el usuario es negativo.
+     */
+    static void validarUsuario(int usuario) {
+        if (usuario < 0) {
+            throw new IllegalArgumentException("El usuario no puede ser negativo.");
+        }
+    }
+
+    /**
+     * Valida los registros de {@link #agregarRegistrosConId(List)}.
+     *
+     * @throws IllegalArgumentException si la lista es nula o contiene un registro nulo o con ID 0.
+     */
+    static void validarConId(List<Registro> registros) {
+        if (registros == null) {
+            throw new IllegalArgumentException("La lista de registros no puede ser nula.");
+        }
+        for (Registro registro : registros) {
+            if (registro == null) {
+                throw new IllegalArgumentException("El registro no puede ser nulo.");
+            }
+            if (registro.getId() <= 0) {
+                throw new IllegalArgumentException("Cada registro debe tener un ID mayor a cero.");
+            }
+        }
+    }
+
+    /**
+     * Valida los IDs de {@link #eliminarRegistros(Collection)}.
+     *
+     * @throws IllegalArgumentException si la colección es nula o contiene un ID nulo.
+     */
+    static void validarIds(Collection<Integer> ids) {
+        if (ids == null) {
+            throw new IllegalArgumentException("La colección de IDs no puede ser nula.");
+        }
+        for (Integer id : ids) {
+            if (id == null) {
+                throw new IllegalArgumentException("El ID no puede ser nulo.");
+            }
+        }
+    }
+
+    /**
+     * Valida un intervalo de fechas.
+     *
+     * @throws IllegalArgumentException si alguna fecha es nula o el intervalo está invertido.
+     */
+    static void validarIntervalo(Timestamp desde, Timestamp hasta) {
+        if (desde == null || hasta == null) {
+            throw new IllegalArgumentException("Las fechas del intervalo no pueden ser nulas.");
+        }
+        if (hasta.before(desde)) {
+            throw new IllegalArgumentException("La fecha final no puede ser anterior a la inicial.");
+        }
+    }
 }
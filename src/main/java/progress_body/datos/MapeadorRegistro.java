@@ -0,0 +1,97 @@
+package progress_body.datos;
+
+import progress_body.dominio.Registro;
+import progress_body.dominio.RegistroInmutable;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Convierte filas de la tabla {@code registro} en objetos, leyendo cada columna por su posición.
+ * <p>
+ * Resolver una columna por nombre obliga al driver a buscarla en cada llamada; aquí las posiciones se
+ * resuelven una sola vez. Las consultas que seleccionan {@link #PROYECCION} usan
+ * {@link #PROYECCION_ESTANDAR}, cuyas posiciones son fijas; para otras consultas,
+ * {@link #para(ResultSet)} las busca una vez por resultado. Los valores no se vuelven a validar,
+ * porque ya se validaron al guardarse.
+ */
+public final class MapeadorRegistro {
+
+    /**
+     * Columnas de la tabla en el orden que espera {@link #PROYECCION_ESTANDAR}.
+     */
+    public static final String PROYECCION = "id, peso, bicepIzquierdo, bicepDerecho, cintura, cuadriceps, pantorrillas, fecha, version, usuario";
+
+    /**
+     * Mapeador para consultas que seleccionan exactamente {@link #PROYECCION}.
+     */
+    public static final MapeadorRegistro PROYECCION_ESTANDAR = new MapeadorRegistro(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+
+    private final int id;
+    private final int peso;
+    private final int bicepIzquierdo;
+    private final int bicepDerecho;
+    private final int cintura;
+    private final int cuadriceps;
+    private final int pantorrillas;
+    private final int fecha;
+    private final int version;
+    private final int usuario;
+
+    private MapeadorRegistro(int id, int peso, int bicepIzquierdo, int bicepDerecho,
+                             int cintura, int cuadriceps, int pantorrillas, int fecha, int version, int usuario) {
+        this.id = id;
+        this.peso = peso;
+        this.bicepIzquierdo = bicepIzquierdo;
+        this.bicepDerecho = bicepDerecho;
+        this.cintura = cintura;
+        this.cuadriceps = cuadriceps;
+        this.pantorrillas = pantorrillas;
+        this.fecha = fecha;
+        this.version = version;
+        this.usuario = usuario;
+    }
+
+    /**
+     * Crea un mapeador para un resultado cuyas columnas pueden estar en cualquier orden.
+     *
+     * @param rs El resultado. Debe incluir todas las columnas de la tabla.
+     * @return Un mapeador con las posiciones de las columnas en ese resultado.
+     * @throws SQLException si falta alguna columna.
+     */
+    public static MapeadorRegistro para(ResultSet rs) throws SQLException {
+        return new MapeadorRegistro(rs.findColumn("id"), rs.findColumn("peso"),
+                rs.findColumn("bicepIzquierdo"), rs.findColumn("bicepDerecho"), rs.findColumn("cintura"),
+                rs.findColumn("cuadriceps"), rs.findColumn("pantorrillas"), rs.findColumn("fecha"),
+                rs.findColumn("version"), rs.findColumn("usuario"));
+    }
+
+    /**
+     * Crea un objeto Registro a partir de la fila actual del ResultSet.
+     */
+    public Registro registro(ResultSet rs) throws SQLException {
+        return Registro.sinValidar(rs.getInt(id), rs.getDouble(peso), rs.getDouble(bicepIzquierdo),
+                rs.getDouble(bicepDerecho), rs.getDouble(cintura), rs.getDouble(cuadriceps),
+                rs.getDouble(pantorrillas), rs.getTimestamp(fecha), rs.getInt(version), rs.getInt(usuario));
+    }
+
+    /**
+     * Crea un objeto RegistroInmutable a partir de la fila actual del ResultSet.
+     */
+    public RegistroInmutable inmutable(ResultSet rs) throws SQLException {
+        Timestamp instante = rs.getTimestamp(fecha);
+        return new RegistroInmutable(rs.getInt(id), rs.getDouble(peso), rs.getDouble(bicepIzquierdo),
+                rs.getDouble(bicepDerecho), rs.getDouble(cintura), rs.getDouble(cuadriceps),
+                rs.getDouble(pantorrillas), instante == null ? null : instante.toInstant(), rs.getInt(version), rs.getInt(usuario));
+    }
+
+    /**
+     * Reemplaza los campos de un registro existente con los de la fila actual del ResultSet.
+     */
+    public void llenar(ResultSet rs, Registro destino) throws SQLException {
+        destino.asignarSinValidar(rs.getInt(id), rs.getDouble(peso), rs.getDouble(bicepIzquierdo),
+                rs.getDouble(bicepDerecho), rs.getDouble(cintura), rs.getDouble(cuadriceps),
+                rs.getDouble(pantorrillas), rs.getTimestamp(fecha), rs.getInt(version), rs.getInt(usuario));
+    }
+}
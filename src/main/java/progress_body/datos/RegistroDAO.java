@@ -2,10 +2,19 @@ package progress_body.datos;
 
 import progress_body.conexion.Conexion;
 import progress_body.dominio.Registro;
+import progress_body.dominio.RegistroInmutable;
 
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Clase que implementa las operaciones de acceso a datos para la entidad Registro.
@@ -13,6 +22,46 @@ import java.util.List;
  */
 public class RegistroDAO implements IRegistroDAO {
 
+    /**
+     * Máximo de registros por bloque: MySQL admite hasta 65535 parámetros por sentencia y cada fila usa 7.
+     */
+    public static final int TAMANO_LOTE_MAXIMO = 9_000;
+
+    /**
+     * Máximo de registros por sentencia de {@link #agregarRegistrosConId(List)}, que usa 10 parámetros por fila.
+     */
+    private static final int TAMANO_LOTE_CON_ID = 6_500;
+
+    private static final MapeadorRegistro MAPEO = MapeadorRegistro.PROYECCION_ESTANDAR;
+
+    private final DataSource dataSource; // Origen de las conexiones
+    private final FallosPorHilo fallosPorHilo = new FallosPorHilo();
+
+    /**
+     * Crea un DAO que toma sus conexiones del pool compartido de {@link Conexion}.
+     */
+    public RegistroDAO() {
+        this(Conexion.getDataSource());
+    }
+
+    /**
+     * Crea un DAO que toma sus conexiones del DataSource indicado.
+     *
+     * @param dataSource El origen de las conexiones. No debe ser nulo.
+     * @throws IllegalArgumentException si el dataSource es nulo.
+     */
+    public RegistroDAO(DataSource dataSource) {
+        if (dataSource == null) {
+            throw new IllegalArgumentException("El DataSource no puede ser nulo.");
+        }
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public long getFallosDelHilo() {
+        return fallosPorHilo.delHilo();
+    }
+
     /**
      * Lista todos los registros de la base de datos.
      *
@@ -21,32 +70,47 @@ public class RegistroDAO implements IRegistroDAO {
     @Override
     public List<Registro> listarRegistros() {
         List<Registro> registros = new ArrayList<>(); // Se instancia la lista
-        String sql = "SELECT * FROM registro ORDER BY id";
+        String sql = "SELECT " + MapeadorRegistro.PROYECCION + " FROM registro ORDER BY id";
 
-        try (Connection con = Conexion.getConexion();
+        try (Connection con = dataSource.getConnection();
              PreparedStatement ps = con.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
 
             while (rs.next()) {
-                // Se obtienen los datos del ResultSet y se crean objetos Registro
-                Registro registro = new Registro(
-                        rs.getInt("id"),
-                        rs.getDouble("peso"),
-                        rs.getDouble("bicepIzquierdo"),
-                        rs.getDouble("bicepDerecho"),
-                        rs.getDouble("cintura"),
-                        rs.getDouble("cuadriceps"),
-                        rs.getDouble("pantorrillas"),
-                        rs.getTimestamp("fecha")
-                );
+                Registro registro = MAPEO.registro(rs); // Se crea el objeto Registro con los datos de la fila
                 registros.add(registro); // Se añade el registro a la lista
             }
         } catch (SQLException e) {
+            fallosPorHilo.registrar();
             System.out.println("No se listaron los registros. \n" + e.getMessage());
         }
         return registros; // Retorna la lista de registros
     }
 
+    /**
+     * Lista todos los registros de la base de datos en su versión inmutable, sin pasar por {@link Registro}.
+     *
+     * @return Una lista inmutable con todos los registros, ordenados por ID.
+     */
+    @Override
+    public List<RegistroInmutable> listarRegistrosInmutables() {
+        List<RegistroInmutable> registros = new ArrayList<>();
+        String sql = "SELECT " + MapeadorRegistro.PROYECCION + " FROM registro ORDER BY id";
+
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement ps = con.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+
+            while (rs.next()) {
+                registros.add(MAPEO.inmutable(rs));
+            }
+        } catch (SQLException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se listaron los registros. \n" + e.getMessage());
+        }
+        return List.copyOf(registros);
+    }
+
     /**
      * Busca un registro en la base de datos utilizando el ID del objeto proporcionado.
      *
@@ -60,9 +124,9 @@ public class RegistroDAO implements IRegistroDAO {
             throw new IllegalArgumentException("El registro no puede ser nulo");
         }
 
-        String sql = "SELECT * FROM registro WHERE id=?";
+        String sql = "SELECT " + MapeadorRegistro.PROYECCION + " FROM registro WHERE id=?";
 
-        try (Connection con = Conexion.getConexion();
+        try (Connection con = dataSource.getConnection();
              PreparedStatement ps = con.prepareStatement(sql)) {
 
             ps.setInt(1, registro.getId());
@@ -70,16 +134,11 @@ public class RegistroDAO implements IRegistroDAO {
 
             if (rs.next()) { // Si se encuentra el registro
                 // Se actualizan los campos del objeto Registro con los datos de la base de datos
-                registro.setPeso(rs.getDouble("peso"));
-                registro.setBicepIzquierdo(rs.getDouble("bicepIzquierdo"));
-                registro.setBicepDerecho(rs.getDouble("bicepDerecho"));
-                registro.setCintura(rs.getDouble("cintura"));
-                registro.setCuadriceps(rs.getDouble("cuadriceps"));
-                registro.setPantorrillas(rs.getDouble("pantorrillas"));
-                registro.setFecha(rs.getTimestamp("fecha"));
+                MAPEO.llenar(rs, registro);
                 return true;
             }
         } catch (SQLException e) {
+            fallosPorHilo.registrar();
             System.out.println("No se encontró el registro. \n" + e.getMessage());
         }
         return false; // Retorna false si no se encontró el registro
@@ -100,7 +159,7 @@ public class RegistroDAO implements IRegistroDAO {
 
         String sql = "SELECT 1 FROM registro WHERE id = ? LIMIT 1";
 
-        try (Connection con = Conexion.getConexion();
+        try (Connection con = dataSource.getConnection();
              PreparedStatement ps = con.prepareStatement(sql)) {
 
             ps.setInt(1, id);
@@ -109,6 +168,8 @@ public class RegistroDAO implements IRegistroDAO {
             return rs.next(); // Retorna true si hay un resultado
 
         } catch (SQLException e) {
+
+            fallosPorHilo.registrar();
             System.out.println("No se encontró el registro. \n" + e.getMessage());
         }
 
@@ -130,9 +191,9 @@ public class RegistroDAO implements IRegistroDAO {
             throw new IllegalArgumentException("El registro no puede ser nulo.");
         }
 
-        String sql = "INSERT INTO registro (peso, bicepIzquierdo, bicepDerecho, cintura, cuadriceps, pantorrillas) VALUES (?, ?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO registro (peso, bicepIzquierdo, bicepDerecho, cintura, cuadriceps, pantorrillas, usuario) VALUES (?, ?, ?, ?, ?, ?, ?)";
 
-        try (Connection con = Conexion.getConexion();
+        try (Connection con = dataSource.getConnection();
              PreparedStatement ps = con.prepareStatement(sql)) {
 
             ps.setDouble(1, registro.getPeso());
@@ -141,16 +202,117 @@ public class RegistroDAO implements IRegistroDAO {
             ps.setDouble(4, registro.getCintura());
             ps.setDouble(5, registro.getCuadriceps());
             ps.setDouble(6, registro.getPantorrillas());
+            ps.setInt(7, registro.getUsuario());
 
             int filasAfectadas = ps.executeUpdate();
             return filasAfectadas > 0; // Retorna true si se afectó al menos una fila
 
         } catch (SQLException e) {
+
+            fallosPorHilo.registrar();
             System.out.println("No se pudo agregar el registro. \n" + e.getMessage());
         }
         return false; // Retorna false si ocurrió un error
     }
 
+    /**
+     * Agrega un registro y devuelve el registro guardado en una sola ida y vuelta: el ID se obtiene con
+     * {@link Statement#RETURN_GENERATED_KEYS} y la fecha se envía en la sentencia en lugar de dejarla
+     * a la base de datos.
+     * <p>
+     * Si el registro no tiene fecha se usa la hora actual de la aplicación. La fecha se trunca a
+     * segundos, que es la precisión de la columna, para que la devuelta coincida con la guardada.
+     *
+     * @param registro El registro a agregar. No debe ser nulo.
+     * @return Un nuevo objeto con el ID, la fecha y la versión guardados, o null si no se pudo agregar.
+     * @throws IllegalArgumentException si el objeto registro es nulo.
+     */
+    @Override
+    public Registro agregarYObtener(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+
+        String sql = "INSERT INTO registro (peso, bicepIzquierdo, bicepDerecho, cintura, cuadriceps, pantorrillas, fecha, usuario) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        Timestamp fecha = fechaParaGuardar(registro);
+
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            asignarMedidas(ps, 1, registro);
+            ps.setTimestamp(7, fecha);
+            ps.setInt(8, registro.getUsuario());
+            ps.executeUpdate();
+
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (rs.next()) {
+                    return copiaGuardada(registro, rs.getInt(1), fecha, 0);
+                }
+            }
+        } catch (SQLException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se pudo agregar el registro. \n" + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Inserta el registro o reemplaza el que tenga su ID con {@code INSERT ... ON DUPLICATE KEY UPDATE},
+     * en una sola sentencia. Si el ID es 0 equivale a {@link #agregarYObtener(Registro)}.
+     * <p>
+     * Al reemplazar, la versión se incrementa con {@code LAST_INSERT_ID(version + 1)}, de modo que
+     * la nueva versión llega como clave generada y no hace falta leerla. Se escriben todas las
+     * columnas, incluidos la fecha y el usuario, con las mismas reglas que {@link #agregarYObtener(Registro)}.
+     *
+     * @param registro El registro a guardar. No debe ser nulo.
+     * @return Un nuevo objeto con el registro guardado, o null si no se pudo guardar.
+     * @throws IllegalArgumentException si el objeto registro es nulo.
+     */
+    @Override
+    public Registro guardarRegistro(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        if (registro.getId() == 0) {
+            return agregarYObtener(registro);
+        }
+
+        // VALUES(col) se usa en lugar del alias de fila de MySQL 8.0.19 para admitir servidores anteriores
+        String sql = "INSERT INTO registro (id, peso, bicepIzquierdo, bicepDerecho, cintura, cuadriceps, pantorrillas, fecha, usuario) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE peso=VALUES(peso), " +
+                "bicepIzquierdo=VALUES(bicepIzquierdo), bicepDerecho=VALUES(bicepDerecho), cintura=VALUES(cintura), " +
+                "cuadriceps=VALUES(cuadriceps), pantorrillas=VALUES(pantorrillas), fecha=VALUES(fecha), " +
+                "usuario=VALUES(usuario), version=LAST_INSERT_ID(version+1)";
+        Timestamp fecha = fechaParaGuardar(registro);
+
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            ps.setInt(1, registro.getId());
+            asignarMedidas(ps, 2, registro);
+            ps.setTimestamp(8, fecha);
+            ps.setInt(9, registro.getUsuario());
+            int filasAfectadas = ps.executeUpdate(); // 1 si se insertó, 2 si se reemplazó
+
+            int version = 0;
+            if (filasAfectadas > 1) {
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    version = rs.next() ? rs.getInt(1) : leerVersion(con, registro.getId());
+                }
+                if (version < 0) {
+                    fallosPorHilo.registrar();
+                    System.out.println("No se obtuvo la versión del registro guardado.");
+                    return null;
+                }
+            }
+            return copiaGuardada(registro, registro.getId(), fecha, version);
+        } catch (SQLException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se pudo guardar el registro. \n" + e.getMessage());
+        }
+        return null;
+    }
+
     /**
      * Modifica un registro existente en la base de datos.
      *
@@ -164,9 +326,9 @@ public class RegistroDAO implements IRegistroDAO {
             throw new IllegalArgumentException("El registro no puede ser nulo.");
         }
 
-        String sql = "UPDATE registro SET peso=?, bicepIzquierdo=?, bicepDerecho=?, cintura=?, cuadriceps=?, pantorrillas=? WHERE id=?";
+        String sql = "UPDATE registro SET peso=?, bicepIzquierdo=?, bicepDerecho=?, cintura=?, cuadriceps=?, pantorrillas=?, version=version+1 WHERE id=?";
 
-        try (Connection con = Conexion.getConexion();
+        try (Connection con = dataSource.getConnection();
              PreparedStatement ps = con.prepareStatement(sql)) {
 
             ps.setDouble(1, registro.getPeso());
@@ -181,11 +343,73 @@ public class RegistroDAO implements IRegistroDAO {
             return filasAfectadas > 0; // Retorna true si se afectó al menos una fila
 
         } catch (SQLException e) {
+
+            fallosPorHilo.registrar();
             System.out.println("No se pudo modificar el registro: " + e.getMessage());
         }
         return false; // Retorna false si ocurrió un error
     }
 
+    /**
+     * Modifica un registro solo si su versión guardada es la del objeto, con una sentencia
+     * {@code UPDATE ... WHERE id = ? AND version = ?} que también incrementa la versión. La fecha y el
+     * usuario guardados se leen en la misma transacción, con la fila todavía bloqueada por la modificación.
+     *
+     * @param registro El registro con los datos nuevos y la versión leída. No debe ser nulo.
+     * @return Un nuevo objeto con los datos guardados y su nueva versión, o null si ocurrió un error.
+     * @throws IllegalArgumentException si el objeto registro es nulo.
+     * @throws ConflictoVersionException si la versión guardada es otra o el registro ya no existe.
+     */
+    @Override
+    public Registro modificarConVersion(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+
+        String sql = "UPDATE registro SET peso=?, bicepIzquierdo=?, bicepDerecho=?, cintura=?, cuadriceps=?, pantorrillas=?, version=version+1 WHERE id=? AND version=?";
+        Timestamp fecha = null;
+        int usuario = 0;
+        boolean modificado = false;
+
+        try (Connection con = dataSource.getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = con.prepareStatement(sql)) {
+                    asignarMedidas(ps, 1, registro);
+                    ps.setInt(7, registro.getId());
+                    ps.setInt(8, registro.getVersion());
+                    modificado = ps.executeUpdate() > 0;
+                }
+                if (modificado) {
+                    try (PreparedStatement ps = con.prepareStatement("SELECT fecha, usuario FROM registro WHERE id = ?")) {
+                        ps.setInt(1, registro.getId());
+                        try (ResultSet rs = ps.executeQuery()) {
+                            if (!rs.next()) {
+                                throw new SQLException("No se encontró el registro modificado " + registro.getId() + ".");
+                            }
+                            fecha = rs.getTimestamp(1);
+                            usuario = rs.getInt(2);
+                        }
+                    }
+                }
+                con.commit();
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se pudo modificar el registro: " + e.getMessage());
+            return null;
+        }
+        if (!modificado) {
+            throw new ConflictoVersionException(registro.getId(), registro.getVersion());
+        }
+        return Registro.sinValidar(registro.getId(), registro.getPeso(), registro.getBicepIzquierdo(),
+                registro.getBicepDerecho(), registro.getCintura(), registro.getCuadriceps(), registro.getPantorrillas(),
+                fecha, registro.getVersion() + 1, usuario);
+    }
+
     /**
      * Elimina un registro de la base de datos utilizando su ID.
      *
@@ -201,7 +425,7 @@ public class RegistroDAO implements IRegistroDAO {
 
         String sql = "DELETE FROM registro WHERE id = ?";
 
-        try (Connection con = Conexion.getConexion();
+        try (Connection con = dataSource.getConnection();
              PreparedStatement ps = con.prepareStatement(sql)) {
 
             ps.setInt(1, registro.getId());
@@ -210,9 +434,499 @@ public class RegistroDAO implements IRegistroDAO {
             return filasAfectadas > 0; // Retorna true si se afectó al menos una fila
 
         } catch (SQLException e) {
+
+            fallosPorHilo.registrar();
             System.out.println("No se pudo eliminar el registro: " + e.getMessage());
         }
 
         return false; // Retorna false si ocurrió un error
     }
-}
\ No newline at end of file
+
+    /**
+     * Agrega los registros en una sola transacción usando sentencias {@code INSERT} de varias filas.
+     * <p>
+     * Cada bloque se protege con un punto de guardado: si falla, se deshace solo ese bloque, se reporta
+     * en el resultado y se continúa con el siguiente. Al final se confirma la transacción completa.
+     *
+     * @param registros  Los registros a agregar. No debe ser nulo ni contener elementos nulos.
+     * @param tamanoLote El número de registros por bloque, entre 1 y {@link #TAMANO_LOTE_MAXIMO}.
+     * @return El resultado con los IDs generados y los bloques que fallaron.
+     * @throws IllegalArgumentException si el iterador es nulo, contiene un registro nulo o el tamaño de bloque no es válido.
+     */
+    @Override
+    public ResultadoLote agregarRegistros(Iterator<Registro> registros, int tamanoLote) {
+        if (registros == null) {
+            throw new IllegalArgumentException("El iterador de registros no puede ser nulo.");
+        }
+        if (tamanoLote <= 0 || tamanoLote > TAMANO_LOTE_MAXIMO) {
+            throw new IllegalArgumentException("El tamaño del lote debe estar entre 1 y " + TAMANO_LOTE_MAXIMO + ".");
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        List<FalloLote> fallos = new ArrayList<>();
+        List<Registro> lote = new ArrayList<>(tamanoLote);
+        int indice = 0; // Posición del primer registro del bloque actual
+
+        try (Connection con = dataSource.getConnection()) {
+            con.setAutoCommit(false);
+
+            PreparedStatement completo = null; // Se prepara solo si se llega a llenar un bloque
+            try {
+                while (registros.hasNext()) {
+                    Registro registro = registros.next();
+                    if (registro == null) {
+                        throw new IllegalArgumentException("El registro no puede ser nulo.");
+                    }
+                    lote.add(registro);
+                    if (lote.size() == tamanoLote) {
+                        if (completo == null) {
+                            completo = con.prepareStatement(sqlInsercionMultiple(tamanoLote), Statement.RETURN_GENERATED_KEYS);
+                        }
+                        insertarLote(con, completo, lote, indice, ids, fallos);
+                        indice += lote.size();
+                        lote.clear();
+                    }
+                }
+            } finally {
+                if (completo != null) {
+                    completo.close();
+                }
+            }
+
+            if (!lote.isEmpty()) { // Último bloque incompleto
+                try (PreparedStatement ps = con.prepareStatement(sqlInsercionMultiple(lote.size()), Statement.RETURN_GENERATED_KEYS)) {
+                    insertarLote(con, ps, lote, indice, ids, fallos);
+                }
+                indice += lote.size();
+            }
+
+            con.commit();
+        } catch (SQLException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se pudieron agregar los registros. \n" + e.getMessage());
+            // Sin confirmación no queda ningún registro insertado
+            return new ResultadoLote(List.of(), List.of(new FalloLote(0, indice + lote.size(), e.getMessage())));
+        }
+        return new ResultadoLote(ids, fallos);
+    }
+
+    /**
+     * Inserta un bloque dentro de la transacción en curso, protegido por un punto de guardado.
+     */
+    private void insertarLote(Connection con, PreparedStatement ps, List<Registro> lote, int indice,
+                              List<Integer> ids, List<FalloLote> fallos) throws SQLException {
+        Savepoint punto = con.setSavepoint();
+        try {
+            int p = 1;
+            for (Registro registro : lote) {
+                ps.setDouble(p++, registro.getPeso());
+                ps.setDouble(p++, registro.getBicepIzquierdo());
+                ps.setDouble(p++, registro.getBicepDerecho());
+                ps.setDouble(p++, registro.getCintura());
+                ps.setDouble(p++, registro.getCuadriceps());
+                ps.setDouble(p++, registro.getPantorrillas());
+                ps.setInt(p++, registro.getUsuario());
+            }
+            ps.executeUpdate();
+
+            List<Integer> generados = new ArrayList<>(lote.size());
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                while (rs.next()) {
+                    generados.add(rs.getInt(1));
+                }
+            }
+            con.releaseSavepoint(punto);
+            ids.addAll(generados);
+        } catch (SQLException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se pudo agregar el bloque que empieza en " + indice + ": " + e.getMessage());
+            con.rollback(punto);
+            fallos.add(new FalloLote(indice, lote.size(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Construye un {@code INSERT} con tantos grupos {@code VALUES} como filas.
+     */
+    private static String sqlInsercionMultiple(int filas) {
+        StringBuilder sql = new StringBuilder(100 + filas * 23)
+                .append("INSERT INTO registro (peso, bicepIzquierdo, bicepDerecho, cintura, cuadriceps, pantorrillas, usuario) VALUES ");
+        for (int i = 0; i < filas; i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?, ?)");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Agrega los registros con su ID, fecha, versión y usuario en una sola transacción, con sentencias
+     * {@code INSERT} de varias filas. Si falla una sentencia, por ejemplo por un ID repetido, se deshace
+     * la transacción y no se agrega ninguno.
+     *
+     * @param registros Los registros a agregar. No debe ser nula ni contener registros nulos o con ID 0.
+     * @return El resultado con los IDs agregados; si la transacción falla, un solo fallo que abarca todo.
+     * @throws IllegalArgumentException si la lista es nula o contiene un registro nulo o sin ID.
+     */
+    @Override
+    public ResultadoLote agregarRegistrosConId(List<Registro> registros) {
+        IRegistroDAO.validarConId(registros);
+        if (registros.isEmpty()) {
+            return new ResultadoLote(List.of(), List.of());
+        }
+
+        try (Connection con = dataSource.getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                for (int inicio = 0; inicio < registros.size(); inicio += TAMANO_LOTE_CON_ID) {
+                    List<Registro> bloque = registros.subList(inicio, Math.min(registros.size(), inicio + TAMANO_LOTE_CON_ID));
+                    try (PreparedStatement ps = con.prepareStatement(sqlInsercionConId(bloque.size()))) {
+                        int p = 1;
+                        for (Registro registro : bloque) {
+                            ps.setInt(p++, registro.getId());
+                            asignarMedidas(ps, p, registro);
+                            p += 6;
+                            ps.setTimestamp(p++, fechaParaGuardar(registro));
+                            ps.setInt(p++, registro.getUsuario());
+                            ps.setInt(p++, registro.getVersion());
+                        }
+                        ps.executeUpdate();
+                    }
+                }
+                con.commit();
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se pudieron agregar los registros con ID. \n" + e.getMessage());
+            return new ResultadoLote(List.of(), List.of(new FalloLote(0, registros.size(), e.getMessage())));
+        }
+        List<Integer> ids = new ArrayList<>(registros.size());
+        for (Registro registro : registros) {
+            ids.add(registro.getId());
+        }
+        return new ResultadoLote(ids, List.of());
+    }
+
+    /**
+     * Elimina los registros con {@code DELETE ... WHERE id IN (...)} en una sola transacción.
+     *
+     * @param ids Los IDs a eliminar. No debe ser nula ni contener nulos.
+     * @return El número de registros eliminados, o -1 si ocurrió un error y no se eliminó ninguno.
+     * @throws IllegalArgumentException si la colección es nula o contiene un ID nulo.
+     */
+    @Override
+    public int eliminarRegistros(Collection<Integer> ids) {
+        IRegistroDAO.validarIds(ids);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Integer> lista = List.copyOf(ids);
+
+        try (Connection con = dataSource.getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                int eliminados = 0;
+                for (int inicio = 0; inicio < lista.size(); inicio += TAMANO_LOTE_MAXIMO) {
+                    List<Integer> bloque = lista.subList(inicio, Math.min(lista.size(), inicio + TAMANO_LOTE_MAXIMO));
+                    StringBuilder sql = new StringBuilder(40 + bloque.size() * 3).append("DELETE FROM registro WHERE id IN (");
+                    for (int i = 0; i < bloque.size(); i++) {
+                        sql.append(i == 0 ? "?" : ", ?");
+                    }
+                    try (PreparedStatement ps = con.prepareStatement(sql.append(')').toString())) {
+                        for (int i = 0; i < bloque.size(); i++) {
+                            ps.setInt(i + 1, bloque.get(i));
+                        }
+                        eliminados += ps.executeUpdate();
+                    }
+                }
+                con.commit();
+                return eliminados;
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se pudieron eliminar los registros: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    /**
+     * Construye el {@code INSERT} de varias filas de {@link #agregarRegistrosConId(List)}.
+     */
+    private static String sqlInsercionConId(int filas) {
+        StringBuilder sql = new StringBuilder(120 + filas * 32)
+                .append("INSERT INTO registro (id, peso, bicepIzquierdo, bicepDerecho, cintura, cuadriceps, pantorrillas, fecha, usuario, version) VALUES ");
+        for (int i = 0; i < filas; i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Devuelve todos los registros ordenados por ID leyéndolos de la base de datos a medida que se consumen.
+     * <p>
+     * Se usa el modo de lectura fila a fila del driver de MySQL, por lo que la memoria usada no depende
+     * del tamaño de la tabla. La conexión permanece prestada hasta que se cierra el flujo, así que debe
+     * usarse con try-with-resources.
+     *
+     * @return Un flujo de objetos {@link Registro}; vacío si no se pudo ejecutar la consulta.
+     * @throws UncheckedSQLException al consumir el flujo, si la lectura se interrumpe a mitad.
+     */
+    @Override
+    public Stream<Registro> streamRegistros() {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataSource.getConnection();
+            ps = prepararLecturaContinua(con);
+            rs = ps.executeQuery();
+        } catch (SQLException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se listaron los registros. \n" + e.getMessage());
+            cerrar(rs, ps, con);
+            return Stream.empty();
+        }
+
+        ResultSet resultado = rs;
+        Spliterator<Registro> filas = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Registro> accion) {
+                try {
+                    if (!resultado.next()) {
+                        return false;
+                    }
+                    accion.accept(MAPEO.registro(resultado));
+                    return true;
+                } catch (SQLException e) {
+                    fallosPorHilo.registrar();
+                    // Terminar el flujo haría pasar una lectura parcial por completa
+                    throw new UncheckedSQLException("Se interrumpió la lectura de los registros.", e);
+                }
+            }
+        };
+
+        Connection conexion = con;
+        PreparedStatement sentencia = ps;
+        return StreamSupport.stream(filas, false).onClose(() -> cerrar(resultado, sentencia, conexion));
+    }
+
+    /**
+     * Recorre todos los registros ordenados por ID sin materializarlos en una lista.
+     *
+     * @param consumidor El consumidor que recibe cada registro. No debe ser nulo.
+     * @return El número de registros recorridos, o -1 si ocurrió un error; el consumidor pudo recibir una parte.
+     * @throws IllegalArgumentException si el consumidor es nulo.
+     */
+    @Override
+    public long recorrerRegistros(Consumer<? super Registro> consumidor) {
+        if (consumidor == null) {
+            throw new IllegalArgumentException("El consumidor no puede ser nulo.");
+        }
+
+        long total = 0;
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement ps = prepararLecturaContinua(con);
+             ResultSet rs = ps.executeQuery()) {
+
+            while (rs.next()) {
+                consumidor.accept(MAPEO.registro(rs));
+                total++;
+            }
+        } catch (SQLException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se recorrieron todos los registros, se leyeron " + total + ". \n" + e.getMessage());
+            return -1;
+        }
+        return total;
+    }
+
+    /**
+     * Lista la página de registros que sigue al ID indicado. Usa la clave primaria, por lo que el
+     * costo de cada página no depende de cuántas páginas se hayan recorrido.
+     *
+     * @param idAnterior El ID del último registro de la página anterior (0 para la primera). No debe ser negativo.
+     * @param limite     El número máximo de registros de la página. Debe ser mayor a cero.
+     * @return Una lista con, como máximo, {@code limite} registros.
+     * @throws IllegalArgumentException si el ID es negativo o el límite no es positivo.
+     */
+    @Override
+    public List<Registro> listarRegistrosDespuesDe(int idAnterior, int limite) {
+        IRegistroDAO.validarPagina(idAnterior, limite);
+
+        String sql = "SELECT " + MapeadorRegistro.PROYECCION + " FROM registro WHERE id > ? ORDER BY id LIMIT ?";
+        return listarConsulta(sql, ps -> {
+            ps.setInt(1, idAnterior);
+            ps.setInt(2, limite);
+        });
+    }
+
+    /**
+     * Lista la página de registros que sigue a la posición {@code (fechaAnterior, idAnterior)}.
+     * Usa el índice {@code (fecha, id)} creado por {@link EsquemaRegistro}.
+     *
+     * @param fechaAnterior La fecha del último registro de la página anterior, o null para la primera página.
+     * @param idAnterior    El ID del último registro de la página anterior. No debe ser negativo.
+     * @param limite        El número máximo de registros de la página. Debe ser mayor a cero.
+     * @return Una lista con, como máximo, {@code limite} registros.
+     * @throws IllegalArgumentException si el ID es negativo o el límite no es positivo.
+     */
+    @Override
+    public List<Registro> listarRegistrosPorFechaDespuesDe(Timestamp fechaAnterior, int idAnterior, int limite) {
+        IRegistroDAO.validarPagina(idAnterior, limite);
+
+        if (fechaAnterior == null) {
+            String sql = "SELECT " + MapeadorRegistro.PROYECCION + " FROM registro ORDER BY fecha, id LIMIT ?";
+            return listarConsulta(sql, ps -> ps.setInt(1, limite));
+        }
+
+        // Se expande (fecha, id) > (?, ?) para que MySQL use un rango sobre el índice
+        String sql = "SELECT " + MapeadorRegistro.PROYECCION + " FROM registro WHERE fecha > ? OR (fecha = ? AND id > ?) ORDER BY fecha, id LIMIT ?";
+        return listarConsulta(sql, ps -> {
+            ps.setTimestamp(1, fechaAnterior);
+            ps.setTimestamp(2, fechaAnterior);
+            ps.setInt(3, idAnterior);
+            ps.setInt(4, limite);
+        });
+    }
+
+    /**
+     * Lista los registros cuya fecha está en el intervalo {@code [desde, hasta)}, ordenados por fecha e ID.
+     *
+     * @param desde El inicio del intervalo, incluido. No debe ser nulo.
+     * @param hasta El final del intervalo, excluido. No debe ser nulo ni anterior a {@code desde}.
+     * @return Una lista con los registros del intervalo.
+     * @throws IllegalArgumentException si alguna fecha es nula o el intervalo está invertido.
+     */
+    @Override
+    public List<Registro> listarRegistrosEntreFechas(Timestamp desde, Timestamp hasta) {
+        IRegistroDAO.validarIntervalo(desde, hasta);
+
+        String sql = "SELECT " + MapeadorRegistro.PROYECCION + " FROM registro WHERE fecha >= ? AND fecha < ? ORDER BY fecha, id";
+        return listarConsulta(sql, ps -> {
+            ps.setTimestamp(1, desde);
+            ps.setTimestamp(2, hasta);
+        });
+    }
+
+    /**
+     * Lista los registros de un usuario ordenados por fecha e ID, usando el índice {@code (usuario, fecha, id)}.
+     *
+     * @param usuario El usuario dueño de los registros. No debe ser negativo.
+     * @return Una lista con los registros del usuario.
+     * @throws IllegalArgumentException si el usuario es negativo.
+     */
+    @Override
+    public List<Registro> listarRegistrosDeUsuario(int usuario) {
+        IRegistroDAO.validarUsuario(usuario);
+
+        String sql = "SELECT " + MapeadorRegistro.PROYECCION + " FROM registro WHERE usuario = ? ORDER BY fecha, id";
+        return listarConsulta(sql, ps -> ps.setInt(1, usuario));
+    }
+
+    /**
+     * Asigna los parámetros de una sentencia preparada.
+     */
+    @FunctionalInterface
+    private interface Parametros {
+        void asignar(PreparedStatement ps) throws SQLException;
+    }
+
+    /**
+     * Ejecuta una consulta y materializa todas sus filas como registros.
+     */
+    private List<Registro> listarConsulta(String sql, Parametros parametros) {
+        List<Registro> registros = new ArrayList<>();
+
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement ps = con.prepareStatement(sql)) {
+
+            parametros.asignar(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    registros.add(MAPEO.registro(rs));
+                }
+            }
+        } catch (SQLException e) {
+            fallosPorHilo.registrar();
+            System.out.println("No se listaron los registros. \n" + e.getMessage());
+        }
+        return registros;
+    }
+
+    /**
+     * Prepara la consulta de todos los registros en modo de lectura fila a fila.
+     */
+    private static PreparedStatement prepararLecturaContinua(Connection con) throws SQLException {
+        PreparedStatement ps = con.prepareStatement("SELECT " + MapeadorRegistro.PROYECCION + " FROM registro ORDER BY id",
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if ("MySQL".equals(con.getMetaData().getDatabaseProductName())) {
+            ps.setFetchSize(Integer.MIN_VALUE); // Indica al driver de MySQL que no cargue todo el resultado en memoria
+        }
+        return ps;
+    }
+
+    /**
+     * Lee la versión guardada de un registro, para los drivers que no devuelven como clave generada el
+     * valor de {@code LAST_INSERT_ID(expr)}, como H2 en modo MySQL.
+     *
+     * @return La versión, o -1 si el registro no existe.
+     */
+    private static int leerVersion(Connection con, int id) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("SELECT version FROM registro WHERE id = ?")) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    /**
+     * Asigna las seis medidas a partir del parámetro indicado.
+     */
+    private static void asignarMedidas(PreparedStatement ps, int primero, Registro registro) throws SQLException {
+        ps.setDouble(primero, registro.getPeso());
+        ps.setDouble(primero + 1, registro.getBicepIzquierdo());
+        ps.setDouble(primero + 2, registro.getBicepDerecho());
+        ps.setDouble(primero + 3, registro.getCintura());
+        ps.setDouble(primero + 4, registro.getCuadriceps());
+        ps.setDouble(primero + 5, registro.getPantorrillas());
+    }
+
+    /**
+     * Devuelve la fecha a guardar: la del registro o la hora actual, truncada a segundos.
+     */
+    private static Timestamp fechaParaGuardar(Registro registro) {
+        long millis = registro.getFecha() != null ? registro.getFecha().getTime() : System.currentTimeMillis();
+        return new Timestamp(Math.floorDiv(millis, 1000) * 1000);
+    }
+
+    /**
+     * Crea la copia que devuelven las escrituras, con los valores asignados al guardar.
+     */
+    private static Registro copiaGuardada(Registro registro, int id, Timestamp fecha, int version) {
+        return Registro.sinValidar(id, registro.getPeso(), registro.getBicepIzquierdo(), registro.getBicepDerecho(),
+                registro.getCintura(), registro.getCuadriceps(), registro.getPantorrillas(),
+                fecha == null ? null : new Timestamp(fecha.getTime()), version, registro.getUsuario());
+    }
+
+    /**
+     * Cierra los recursos indicados, ignorando los nulos.
+     */
+    private static void cerrar(AutoCloseable... recursos) {
+        for (AutoCloseable recurso : recursos) {
+            if (recurso == null) {
+                continue;
+            }
+            try {
+                recurso.close();
+            } catch (Exception e) {
+                System.out.println("No se pudo cerrar un recurso: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package progress_body.datos;
+
+import progress_body.dominio.Registro;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decorador de {@link IRegistroDAO} que mantiene en memoria los registros consultados por ID.
+ * <p>
+ * {@link #buscarRegistro(Registro)} usa una caché LRU acotada de registros. {@link #registroExiste(int)}
+ * usa un índice de bits con los IDs cuya existencia ya se conoce, lo que permite responder tanto
+ * aciertos positivos como negativos sin consultar la base de datos. Las escrituras hechas a través
+ * del decorador mantienen ambas estructuras coherentes; las escrituras hechas por otras vías no se
+ * detectan, por lo que el decorador debe ser el único punto de escritura o invalidarse con {@link #limpiar()}.
+ * Las lecturas de varios registros no pasan por la caché para no desplazar los registros consultados por ID.
+ */
+public class RegistroDAOCache extends RegistroDAODecorador {
+
+    /**
+     * IDs a partir de los cuales no se usa el índice de existencia, para acotar su memoria (2 MB por mapa).
+     */
+    public static final int ID_MAXIMO_INDICE_POR_DEFECTO = 1 << 24;
+
+    private final int capacidad;
+    private final int idMaximoIndice;
+
+    // Las tres estructuras están guardadas por 'cerrojo'
+    private final Map<Integer, Registro> enCache;
+    private final BitSet conocidos = new BitSet(); // IDs cuya existencia se conoce
+    private final BitSet existentes = new BitSet(); // IDs que existen
+    private final Object cerrojo = new Object();
+
+    // Se incrementa antes y después de cada escritura. Una lectura solo llena la caché si la versión
+    // no cambió mientras consultaba al delegado.
+    private final AtomicLong version = new AtomicLong();
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+    private final LongAdder aciertosExistencia = new LongAdder();
+    private final LongAdder fallosExistencia = new LongAdder();
+
+    /**
+     * Crea un decorador con la capacidad indicada y el límite de índice por defecto.
+     *
+     * @param delegado  El DAO que accede a los datos. No debe ser nulo.
+     * @param capacidad El número máximo de registros en caché. Debe ser mayor a cero.
+     */
+    public RegistroDAOCache(IRegistroDAO delegado, int capacidad) {
+        this(delegado, capacidad, ID_MAXIMO_INDICE_POR_DEFECTO);
+    }
+
+    /**
+     * Crea un decorador de caché.
+     *
+     * @param delegado       El DAO que accede a los datos. No debe ser nulo.
+     * @param capacidad      El número máximo de registros en caché. Debe ser mayor a cero.
+     * @param idMaximoIndice Los IDs mayores o iguales a este valor no se guardan en el índice de existencia.
+     * @throws IllegalArgumentException si el delegado es nulo o algún límite no es positivo.
+     */
+    public RegistroDAOCache(IRegistroDAO delegado, int capacidad, int idMaximoIndice) {
+        super(delegado);
+        if (capacidad <= 0 || idMaximoIndice <= 0) {
+            throw new IllegalArgumentException("La capacidad y el límite del índice deben ser mayores a cero.");
+        }
+        this.capacidad = capacidad;
+        this.idMaximoIndice = idMaximoIndice;
+        this.enCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Registro> mayor) {
+                if (size() > RegistroDAOCache.this.capacidad) {
+                    desalojos.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Busca un registro por ID, primero en la caché y, si no está, en el DAO delegado.
+     *
+     * @param registro El objeto {@link Registro} que contiene el ID a buscar. No debe ser nulo.
+     * @return true si se encontró el registro; false en caso contrario.
+     * @throws IllegalArgumentException si el objeto registro es nulo.
+     */
+    @Override
+    public boolean buscarRegistro(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo");
+        }
+
+        int id = registro.getId();
+        Registro guardado;
+        boolean inexistente;
+        synchronized (cerrojo) {
+            guardado = enCache.get(id);
+            inexistente = guardado == null && enIndice(id) && conocidos.get(id) && !existentes.get(id);
+        }
+        if (guardado != null) {
+            aciertos.increment();
+            copiarMedidas(guardado, registro);
+            return true;
+        }
+        if (inexistente) {
+            aciertos.increment();
+            return false;
+        }
+
+        fallos.increment();
+        long vista = version.get();
+        boolean encontrado = delegado.buscarRegistro(registro);
+        synchronized (cerrojo) {
+            if (version.get() == vista) {
+                if (encontrado) {
+                    enCache.put(id, new Registro(registro));
+                }
+                marcar(id, encontrado);
+            }
+        }
+        return encontrado;
+    }
+
+    /**
+     * Verifica si un ID existe, consultando el índice de existencia antes que el DAO delegado.
+     *
+     * @param id El ID a buscar. Debe ser mayor a cero.
+     * @return true si el ID existe; false en caso contrario.
+     * @throws IllegalArgumentException si el id es menor o igual a cero.
+     */
+    @Override
+    public boolean registroExiste(int id) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("El ID debe ser mayor a cero.");
+        }
+
+        if (enIndice(id)) {
+            synchronized (cerrojo) {
+                if (conocidos.get(id)) {
+                    aciertosExistencia.increment();
+                    return existentes.get(id);
+                }
+            }
+        }
+
+        fallosExistencia.increment();
+        long vista = version.get();
+        boolean existe = delegado.registroExiste(id);
+        synchronized (cerrojo) {
+            if (version.get() == vista) {
+                marcar(id, existe);
+            }
+        }
+        return existe;
+    }
+
+    /**
+     * Agrega un registro. Como el ID lo asigna la base de datos, se descartan las inexistencias
+     * conocidas, ya que cualquiera de esos IDs podría ser el nuevo.
+     */
+    @Override
+    public boolean agregarRegistro(Registro registro) {
+        version.incrementAndGet();
+        boolean agregado = delegado.agregarRegistro(registro);
+        synchronized (cerrojo) {
+            version.incrementAndGet();
+            conocidos.and(existentes);
+        }
+        return agregado;
+    }
+
+    /**
+     * Agrega varios registros y marca como existentes los IDs generados.
+     */
+    @Override
+    public ResultadoLote agregarRegistros(Iterator<Registro> registros, int tamanoLote) {
+        version.incrementAndGet();
+        ResultadoLote resultado = delegado.agregarRegistros(registros, tamanoLote);
+        synchronized (cerrojo) {
+            version.incrementAndGet();
+            conocidos.and(existentes);
+            for (int id : resultado.idsGenerados()) {
+                marcar(id, true);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Agrega registros con su ID. Se descarta lo que se sabía de todos ellos, porque un registro que
+     * falla puede haber fallado por existir ya, y se marcan como existentes los agregados.
+     */
+    @Override
+    public ResultadoLote agregarRegistrosConId(List<Registro> registros) {
+        version.incrementAndGet();
+        ResultadoLote resultado = null;
+        try {
+            resultado = delegado.agregarRegistrosConId(registros);
+        } finally {
+            synchronized (cerrojo) {
+                version.incrementAndGet();
+                if (registros != null) {
+                    for (Registro registro : registros) {
+                        if (registro != null) {
+                            olvidar(registro.getId());
+                        }
+                    }
+                }
+                if (resultado != null) {
+                    for (int id : resultado.idsGenerados()) {
+                        marcar(id, true);
+                    }
+                }
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Modifica un registro e invalida su copia en caché.
+     */
+    @Override
+    public boolean modificarRegistro(Registro registro) {
+        version.incrementAndGet();
+        boolean modificado = delegado.modificarRegistro(registro);
+        synchronized (cerrojo) {
+            version.incrementAndGet();
+            enCache.remove(registro.getId());
+            if (modificado) {
+                marcar(registro.getId(), true);
+            }
+        }
+        return modificado;
+    }
+
+    /**
+     * Elimina un registro y lo marca como inexistente.
+     */
+    @Override
+    public boolean eliminarRegistro(Registro registro) {
+        version.incrementAndGet();
+        boolean eliminado = delegado.eliminarRegistro(registro);
+        synchronized (cerrojo) {
+            version.incrementAndGet();
+            enCache.remove(registro.getId());
+            if (eliminado) {
+                marcar(registro.getId(), false);
+            }
+        }
+        return eliminado;
+    }
+
+    /**
+     * Elimina varios registros y los marca como inexistentes. Ante un error no se sabe cuáles se
+     * eliminaron, así que se descarta lo que se sabía de todos.
+     */
+    @Override
+    public int eliminarRegistros(Collection<Integer> ids) {
+        version.incrementAndGet();
+        int eliminados = -1;
+        try {
+            eliminados = delegado.eliminarRegistros(ids);
+        } finally {
+            synchronized (cerrojo) {
+                version.incrementAndGet();
+                if (ids != null) {
+                    for (Integer id : ids) {
+                        if (id == null) {
+                            continue;
+                        }
+                        if (eliminados >= 0) {
+                            enCache.remove(id);
+                            marcar(id, false);
+                        } else {
+                            olvidar(id);
+                        }
+                    }
+                }
+            }
+        }
+        return eliminados;
+    }
+
+    /**
+     * Agrega un registro y guarda en caché la copia devuelta, que ya tiene el ID y la fecha asignados.
+     */
+    @Override
+    public Registro agregarYObtener(Registro registro) {
+        version.incrementAndGet();
+        Registro guardado = delegado.agregarYObtener(registro);
+        synchronized (cerrojo) {
+            version.incrementAndGet();
+            conocidos.and(existentes);
+            recordar(guardado);
+        }
+        return guardado;
+    }
+
+    /**
+     * Guarda un registro y reemplaza su copia en caché por la devuelta.
+     */
+    @Override
+    public Registro guardarRegistro(Registro registro) {
+        version.incrementAndGet();
+        Registro guardado = null;
+        try {
+            guardado = delegado.guardarRegistro(registro);
+        } finally {
+            synchronized (cerrojo) {
+                version.incrementAndGet();
+                conocidos.and(existentes);
+                enCache.remove(registro.getId());
+                recordar(guardado);
+            }
+        }
+        return guardado;
+    }
+
+    /**
+     * Modifica un registro si su versión coincide y reemplaza su copia en caché por la devuelta.
+     * Ante un conflicto se descarta la copia, que puede estar desactualizada.
+     */
+    @Override
+    public Registro modificarConVersion(Registro registro) {
+        version.incrementAndGet();
+        Registro guardado = null;
+        try {
+            guardado = delegado.modificarConVersion(registro);
+        } finally {
+            synchronized (cerrojo) {
+                version.incrementAndGet();
+                enCache.remove(registro.getId());
+                recordar(guardado);
+            }
+        }
+        return guardado;
+    }
+
+    /**
+     * Vacía la caché y el índice de existencia.
+     */
+    public void limpiar() {
+        synchronized (cerrojo) {
+            version.incrementAndGet();
+            enCache.clear();
+            conocidos.clear();
+            existentes.clear();
+        }
+    }
+
+    /**
+     * Devuelve una instantánea de las estadísticas de la caché.
+     *
+     * @return Las estadísticas actuales.
+     */
+    public EstadisticasCache getEstadisticas() {
+        int tamano;
+        synchronized (cerrojo) {
+            tamano = enCache.size();
+        }
+        return new EstadisticasCache(aciertos.sum(), fallos.sum(), desalojos.sum(),
+                aciertosExistencia.sum(), fallosExistencia.sum(), tamano, capacidad);
+    }
+
+    private boolean enIndice(int id) {
+        return id > 0 && id < idMaximoIndice;
+    }
+
+    /**
+     * Guarda en caché una copia del registro devuelto por una escritura, si lo hay. Debe llamarse con 'cerrojo' tomado.
+     */
+    private void recordar(Registro guardado) {
+        if (guardado != null) {
+            enCache.put(guardado.getId(), new Registro(guardado));
+            marcar(guardado.getId(), true);
+        }
+    }
+
+    /**
+     * Registra la existencia de un ID. Debe llamarse con 'cerrojo' tomado.
+     */
+    private void marcar(int id, boolean existe) {
+        if (enIndice(id)) {
+            conocidos.set(id);
+            existentes.set(id, existe);
+        }
+    }
+
+    /**
+     * Descarta la copia en caché y la existencia conocida de un ID. Debe llamarse con 'cerrojo' tomado.
+     */
+    private void olvidar(int id) {
+        enCache.remove(id);
+        if (enIndice(id)) {
+            conocidos.clear(id);
+        }
+    }
+
+    /**
+     * Copia las medidas, la fecha y la versión de un registro en caché al registro del llamador.
+     */
+    private static void copiarMedidas(Registro origen, Registro destino) {
+        destino.setPeso(origen.getPeso());
+        destino.setBicepIzquierdo(origen.getBicepIzquierdo());
+        destino.setBicepDerecho(origen.getBicepDerecho());
+        destino.setCintura(origen.getCintura());
+        destino.setCuadriceps(origen.getCuadriceps());
+        destino.setPantorrillas(origen.getPantorrillas());
+        destino.setVersion(origen.getVersion());
+        destino.setUsuario(origen.getUsuario());
+        if (origen.getFecha() != null) {
+            destino.setFecha(new Registro(origen).getFecha());
+        }
+    }
+}
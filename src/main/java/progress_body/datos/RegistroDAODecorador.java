@@ -0,0 +1,139 @@
+package progress_body.datos;
+
+import progress_body.dominio.Registro;
+import progress_body.dominio.RegistroInmutable;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Base para los decoradores de {@link IRegistroDAO}: delega todas las operaciones en otro DAO.
+ * Las subclases sobrescriben solo las operaciones que necesitan interceptar.
+ */
+public abstract class RegistroDAODecorador implements IRegistroDAO {
+
+    protected final IRegistroDAO delegado; // El DAO decorado
+
+    /**
+     * @param delegado El DAO decorado. No debe ser nulo.
+     * @throws IllegalArgumentException si el delegado es nulo.
+     */
+    protected RegistroDAODecorador(IRegistroDAO delegado) {
+        if (delegado == null) {
+            throw new IllegalArgumentException("El DAO delegado no puede ser nulo.");
+        }
+        this.delegado = delegado;
+    }
+
+    @Override
+    public List<Registro> listarRegistros() {
+        return delegado.listarRegistros();
+    }
+
+    @Override
+    public List<RegistroInmutable> listarRegistrosInmutables() {
+        return delegado.listarRegistrosInmutables();
+    }
+
+    @Override
+    public boolean buscarRegistro(Registro registro) {
+        return delegado.buscarRegistro(registro);
+    }
+
+    @Override
+    public boolean registroExiste(int id) {
+        return delegado.registroExiste(id);
+    }
+
+    @Override
+    public boolean agregarRegistro(Registro registro) {
+        return delegado.agregarRegistro(registro);
+    }
+
+    @Override
+    public boolean modificarRegistro(Registro registro) {
+        return delegado.modificarRegistro(registro);
+    }
+
+    @Override
+    public boolean eliminarRegistro(Registro registro) {
+        return delegado.eliminarRegistro(registro);
+    }
+
+    @Override
+    public long getFallosDelHilo() {
+        return delegado.getFallosDelHilo();
+    }
+
+    @Override
+    public Registro agregarYObtener(Registro registro) {
+        return delegado.agregarYObtener(registro);
+    }
+
+    @Override
+    public Registro guardarRegistro(Registro registro) {
+        return delegado.guardarRegistro(registro);
+    }
+
+    @Override
+    public Registro modificarConVersion(Registro registro) {
+        return delegado.modificarConVersion(registro);
+    }
+
+    @Override
+    public ResultadoLote agregarRegistros(Collection<Registro> registros) {
+        if (registros == null) {
+            throw new IllegalArgumentException("La colección de registros no puede ser nula.");
+        }
+        return agregarRegistros(registros.iterator(), TAMANO_LOTE_POR_DEFECTO);
+    }
+
+    @Override
+    public ResultadoLote agregarRegistros(Iterator<Registro> registros, int tamanoLote) {
+        return delegado.agregarRegistros(registros, tamanoLote);
+    }
+
+    @Override
+    public ResultadoLote agregarRegistrosConId(List<Registro> registros) {
+        return delegado.agregarRegistrosConId(registros);
+    }
+
+    @Override
+    public int eliminarRegistros(Collection<Integer> ids) {
+        return delegado.eliminarRegistros(ids);
+    }
+
+    @Override
+    public Stream<Registro> streamRegistros() {
+        return delegado.streamRegistros();
+    }
+
+    @Override
+    public long recorrerRegistros(Consumer<? super Registro> consumidor) {
+        return delegado.recorrerRegistros(consumidor);
+    }
+
+    @Override
+    public List<Registro> listarRegistrosDespuesDe(int idAnterior, int limite) {
+        return delegado.listarRegistrosDespuesDe(idAnterior, limite);
+    }
+
+    @Override
+    public List<Registro> listarRegistrosPorFechaDespuesDe(Timestamp fechaAnterior, int idAnterior, int limite) {
+        return delegado.listarRegistrosPorFechaDespuesDe(fechaAnterior, idAnterior, limite);
+    }
+
+    @Override
+    public List<Registro> listarRegistrosEntreFechas(Timestamp desde, Timestamp hasta) {
+        return delegado.listarRegistrosEntreFechas(desde, hasta);
+    }
+
+    @Override
+    public List<Registro> listarRegistrosDeUsuario(int usuario) {
+        return delegado.listarRegistrosDeUsuario(usuario);
+    }
+}
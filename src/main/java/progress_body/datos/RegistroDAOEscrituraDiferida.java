@@ -0,0 +1,352 @@
+package progress_body.datos;
+
+import progress_body.dominio.Registro;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decorador de {@link IRegistroDAO} que acumula las altas de {@link #agregarRegistro(Registro)} en un
+ * búfer y las confirma en grupo, con una sola transacción por grupo.
+ * <p>
+ * Un hilo de descarga confirma el grupo cuando se reúnen {@code tamanoGrupo} registros o cuando el más
+ * antiguo lleva {@code latenciaMaxima} esperando, lo que ocurra primero. La cola no usa bloqueos y su
+ * capacidad se reserva con CAS; cuando está llena, el productor espera hasta {@code esperaMaxima} y,
+ * si no se libera espacio, el alta se rechaza.
+ * <p>
+ * Con {@link ModoDurabilidad#AL_ENCOLAR} el alta devuelve true en cuanto el registro entra al búfer, por
+ * lo que un registro aceptado puede perderse si el proceso termina sin cerrar el decorador. Con
+ * {@link ModoDurabilidad#AL_CONFIRMAR} el alta espera a que su grupo se confirme y devuelve el resultado
+ * real. Las demás operaciones se delegan directamente y no ven los registros que siguen en el búfer;
+ * {@link #vaciar()} fuerza su confirmación.
+ * <p>
+ * Cada alta se cuenta como en curso desde antes de comprobar si el decorador está cerrado hasta que
+ * su registro está en la cola, y el hilo de descarga no termina mientras haya altas en curso: un alta
+ * que pasó la comprobación siempre llega a confirmarse. Si el hilo termina de todos modos, por
+ * ejemplo por un error, los registros que quedan en la cola se dan por fallidos.
+ */
+public class RegistroDAOEscrituraDiferida extends RegistroDAODecorador implements AutoCloseable {
+
+    /**
+     * Momento en que {@link #agregarRegistro(Registro)} devuelve el control.
+     */
+    public enum ModoDurabilidad {
+        /** Al entrar el registro al búfer. */
+        AL_ENCOLAR,
+        /** Al confirmarse en la base de datos el grupo que contiene el registro. */
+        AL_CONFIRMAR
+    }
+
+    /**
+     * Elemento de la cola. Un elemento sin registro es una marca de {@link #vaciar()}.
+     */
+    private record Pendiente(Registro registro, CompletableFuture<Boolean> confirmacion, long encoladoEn) {
+    }
+
+    private final ModoDurabilidad modo;
+    private final int capacidad;
+    private final int tamanoGrupo;
+    private final long latenciaMaximaNanos;
+    private final long esperaMaximaNanos;
+
+    private final ConcurrentLinkedQueue<Pendiente> cola = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger ocupados = new AtomicInteger(); // Registros en la cola, sin contar marcas
+    private final AtomicInteger enCurso = new AtomicInteger(); // Altas entre la comprobación de cierre y la cola
+    private final Thread descargador;
+    private volatile boolean urgente; // Hay una marca de vaciado en la cola
+    private volatile boolean cerrado;
+
+    private final LongAdder encolados = new LongAdder();
+    private final LongAdder confirmados = new LongAdder();
+    private final LongAdder fallidos = new LongAdder();
+    private final LongAdder rechazados = new LongAdder();
+    private final LongAdder grupos = new LongAdder();
+
+    /**
+     * Crea el decorador e inicia su hilo de descarga.
+     *
+     * @param delegado       El DAO que confirma los grupos. No debe ser nulo.
+     * @param modo           El modo de durabilidad. No debe ser nulo.
+     * @param capacidad      El máximo de registros en el búfer.
+     * @param tamanoGrupo    El número de registros que dispara una confirmación, entre 1 y la capacidad.
+     * @param latenciaMaxima El tiempo máximo que un registro espera en el búfer.
+     * @param esperaMaxima   El tiempo que un productor espera por espacio cuando el búfer está lleno.
+     * @throws IllegalArgumentException si algún argumento es nulo o está fuera de rango.
+     */
+    public RegistroDAOEscrituraDiferida(IRegistroDAO delegado, ModoDurabilidad modo, int capacidad, int tamanoGrupo,
+                                        Duration latenciaMaxima, Duration esperaMaxima) {
+        super(delegado);
+        if (modo == null || latenciaMaxima == null || esperaMaxima == null) {
+            throw new IllegalArgumentException("El modo y los tiempos no pueden ser nulos.");
+        }
+        if (capacidad <= 0 || tamanoGrupo <= 0 || tamanoGrupo > capacidad) {
+            throw new IllegalArgumentException("El tamaño de grupo debe estar entre 1 y la capacidad.");
+        }
+        if (latenciaMaxima.isNegative() || latenciaMaxima.isZero() || esperaMaxima.isNegative()) {
+            throw new IllegalArgumentException("La latencia máxima debe ser positiva y la espera no puede ser negativa.");
+        }
+        this.modo = modo;
+        this.capacidad = capacidad;
+        this.tamanoGrupo = Math.min(tamanoGrupo, RegistroDAO.TAMANO_LOTE_MAXIMO);
+        this.latenciaMaximaNanos = latenciaMaxima.toNanos();
+        this.esperaMaximaNanos = esperaMaxima.toNanos();
+
+        this.descargador = new Thread(this::descargar, "registro-escritura-diferida");
+        this.descargador.setDaemon(true);
+        this.descargador.start();
+    }
+
+    /**
+     * Pone el registro en el búfer para confirmarlo en grupo.
+     *
+     * @param registro El registro a agregar. No debe ser nulo. Se encola una copia.
+     * @return En modo {@link ModoDurabilidad#AL_ENCOLAR}, true si el registro entró al búfer; en modo
+     * {@link ModoDurabilidad#AL_CONFIRMAR}, true si se confirmó. false si el búfer siguió lleno o la confirmación falló.
+     * @throws IllegalArgumentException si el registro es nulo.
+     * @throws IllegalStateException si el decorador está cerrado.
+     */
+    @Override
+    public boolean agregarRegistro(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        Pendiente pendiente;
+        // Se anuncia el alta antes de leer cerrado; el hilo de descarga lee cerrado antes que enCurso
+        enCurso.incrementAndGet();
+        try {
+            if (cerrado) {
+                throw new IllegalStateException("El búfer de escritura está cerrado.");
+            }
+            if (!reservarEspacio()) {
+                rechazados.increment();
+                System.out.println("No se pudo agregar el registro: el búfer de escritura está lleno.");
+                return false;
+            }
+            CompletableFuture<Boolean> confirmacion = modo == ModoDurabilidad.AL_CONFIRMAR ? new CompletableFuture<>() : null;
+            pendiente = new Pendiente(new Registro(registro), confirmacion, System.nanoTime());
+            cola.offer(pendiente);
+            encolados.increment();
+        } finally {
+            enCurso.decrementAndGet();
+        }
+        if (ocupados.get() >= tamanoGrupo || cerrado) {
+            LockSupport.unpark(descargador);
+        }
+        return pendiente.confirmacion() == null || esperar(pendiente);
+    }
+
+    /**
+     * Confirma todos los registros encolados antes de la llamada y espera a que terminen.
+     */
+    public void vaciar() {
+        Pendiente marca = new Pendiente(null, new CompletableFuture<>(), System.nanoTime());
+        cola.offer(marca);
+        urgente = true;
+        LockSupport.unpark(descargador);
+        esperar(marca);
+    }
+
+    /**
+     * Deja de aceptar registros, confirma los que quedan en el búfer y detiene el hilo de descarga.
+     */
+    @Override
+    public void close() {
+        cerrado = true;
+        LockSupport.unpark(descargador);
+        try {
+            descargador.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Devuelve una instantánea de los contadores del búfer.
+     *
+     * @return Las estadísticas actuales.
+     */
+    public EstadisticasEscritura getEstadisticas() {
+        return new EstadisticasEscritura(ocupados.get(), capacidad, encolados.sum(), confirmados.sum(),
+                fallidos.sum(), rechazados.sum(), grupos.sum());
+    }
+
+    /**
+     * Contadores del búfer de escritura.
+     *
+     * @param pendientes  Registros en el búfer.
+     * @param capacidad   Máximo de registros en el búfer.
+     * @param encolados   Registros aceptados en el búfer.
+     * @param confirmados Registros confirmados en la base de datos.
+     * @param fallidos    Registros cuyo grupo no se pudo confirmar.
+     * @param rechazados  Altas rechazadas por búfer lleno.
+     * @param grupos      Transacciones de grupo ejecutadas.
+     */
+    public record EstadisticasEscritura(int pendientes, int capacidad, long encolados, long confirmados,
+                                        long fallidos, long rechazados, long grupos) {
+    }
+
+    /**
+     * Espera la confirmación de un elemento. Si el hilo de descarga ya terminó, el elemento no se
+     * procesará: se retira de la cola y se da por fallido.
+     */
+    private boolean esperar(Pendiente pendiente) {
+        CompletableFuture<Boolean> confirmacion = pendiente.confirmacion();
+        while (!confirmacion.isDone()) {
+            if (!descargador.isAlive() && cola.remove(pendiente)) {
+                if (pendiente.registro() != null) {
+                    ocupados.decrementAndGet();
+                    fallidos.increment();
+                }
+                return false;
+            }
+            try {
+                return confirmacion.get(latenciaMaximaNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Se vuelve a comprobar que el hilo de descarga siga vivo
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                return false;
+            }
+        }
+        return confirmacion.join();
+    }
+
+    private boolean reservarEspacio() {
+        long limite = System.nanoTime() + esperaMaximaNanos;
+        long pausa = 1_000; // Espera progresiva, de 1 µs a 1 ms
+        while (true) {
+            int actual = ocupados.get();
+            if (actual < capacidad) {
+                if (ocupados.compareAndSet(actual, actual + 1)) {
+                    return true;
+                }
+                continue;
+            }
+            LockSupport.unpark(descargador);
+            long restante = limite - System.nanoTime();
+            if (restante <= 0 || cerrado) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(pausa, restante));
+            pausa = Math.min(pausa * 2, 1_000_000);
+        }
+    }
+
+    /**
+     * Ciclo del hilo de descarga. Termina cuando el decorador está cerrado, no hay altas en curso y la
+     * cola está vacía, en ese orden: un alta que todavía no vio el cierre ya figura en {@code enCurso}.
+     */
+    private void descargar() {
+        try {
+            descargarHastaCerrar();
+        } finally {
+            fallarPendientes();
+        }
+    }
+
+    private void descargarHastaCerrar() {
+        while (true) {
+            Pendiente primero = cola.peek();
+            if (primero == null) {
+                if (cerrado && enCurso.get() == 0 && cola.isEmpty()) {
+                    return;
+                }
+                LockSupport.parkNanos(cerrado ? 1_000_000 : latenciaMaximaNanos);
+                continue;
+            }
+            long edad = System.nanoTime() - primero.encoladoEn();
+            if (ocupados.get() >= tamanoGrupo || edad >= latenciaMaximaNanos || urgente || cerrado) {
+                confirmarGrupo();
+            } else {
+                LockSupport.parkNanos(latenciaMaximaNanos - edad);
+            }
+        }
+    }
+
+    /**
+     * Toma de la cola hasta {@code tamanoGrupo} registros, sin pasar de una marca, y los confirma en una transacción.
+     */
+    private void confirmarGrupo() {
+        List<Pendiente> grupo = new ArrayList<>(tamanoGrupo);
+        Pendiente marca = null;
+        Pendiente siguiente;
+        while (grupo.size() < tamanoGrupo && (siguiente = cola.poll()) != null) {
+            if (siguiente.registro() == null) {
+                marca = siguiente;
+                break;
+            }
+            grupo.add(siguiente);
+        }
+
+        if (!grupo.isEmpty()) {
+            boolean[] exito = new boolean[grupo.size()];
+            try {
+                List<Registro> registros = new ArrayList<>(grupo.size());
+                for (Pendiente pendiente : grupo) {
+                    registros.add(pendiente.registro());
+                }
+                ResultadoLote resultado = delegado.agregarRegistros(registros.iterator(), grupo.size());
+                Arrays.fill(exito, true);
+                for (FalloLote fallo : resultado.fallos()) {
+                    Arrays.fill(exito, fallo.indiceInicio(), Math.min(exito.length, fallo.indiceInicio() + fallo.cantidad()), false);
+                }
+            } catch (RuntimeException e) {
+                System.out.println("No se pudo confirmar el grupo de registros. \n" + e.getMessage());
+            }
+
+            grupos.increment();
+            for (int i = 0; i < grupo.size(); i++) {
+                (exito[i] ? confirmados : fallidos).increment();
+                CompletableFuture<Boolean> confirmacion = grupo.get(i).confirmacion();
+                if (confirmacion != null) {
+                    confirmacion.complete(exito[i]);
+                }
+            }
+            ocupados.addAndGet(-grupo.size());
+        }
+
+        if (marca != null) {
+            urgente = hayMarca();
+            marca.confirmacion().complete(true);
+        }
+    }
+
+    /**
+     * Da por fallidos los elementos que quedan en la cola cuando el hilo de descarga termina, para
+     * que nadie espere una confirmación que no llegará.
+     */
+    private void fallarPendientes() {
+        Pendiente pendiente;
+        while ((pendiente = cola.poll()) != null) {
+            if (pendiente.registro() != null) {
+                ocupados.decrementAndGet();
+                fallidos.increment();
+                System.out.println("Se descartó un registro del búfer de escritura: el hilo de descarga terminó.");
+            }
+            if (pendiente.confirmacion() != null) {
+                pendiente.confirmacion().complete(false);
+            }
+        }
+    }
+
+    private boolean hayMarca() {
+        for (Pendiente pendiente : cola) {
+            if (pendiente.registro() == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
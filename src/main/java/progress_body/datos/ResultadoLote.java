@@ -0,0 +1,35 @@
+package progress_body.datos;
+
+import java.util.List;
+
+/**
+ * Resultado de una inserción por lotes.
+ *
+ * @param idsGenerados Los IDs generados, en el orden en que se recibieron los registros insertados.
+ * @param fallos       Los bloques que no se pudieron insertar.
+ */
+public record ResultadoLote(List<Integer> idsGenerados, List<FalloLote> fallos) {
+
+    public ResultadoLote {
+        idsGenerados = List.copyOf(idsGenerados);
+        fallos = List.copyOf(fallos);
+    }
+
+    /**
+     * Indica si todos los registros se insertaron.
+     *
+     * @return true si no hubo ningún fallo; false en caso contrario.
+     */
+    public boolean exitoso() {
+        return fallos.isEmpty();
+    }
+
+    /**
+     * Devuelve el número de registros insertados.
+     *
+     * @return La cantidad de registros insertados.
+     */
+    public int totalInsertados() {
+        return idsGenerados.size();
+    }
+}
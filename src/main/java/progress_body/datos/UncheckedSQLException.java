@@ -0,0 +1,29 @@
+package progress_body.datos;
+
+import java.sql.SQLException;
+
+/**
+ * Envuelve una {@link SQLException} ocurrida donde no se pueden lanzar excepciones comprobadas, por
+ * ejemplo al avanzar el flujo de {@link RegistroDAO#streamRegistros()}. Indica que la lectura quedó
+ * incompleta: los registros recibidos hasta entonces no son todos.
+ */
+public class UncheckedSQLException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param mensaje La descripción de la operación que falló.
+     * @param causa   La excepción original. No debe ser nula.
+     */
+    public UncheckedSQLException(String mensaje, SQLException causa) {
+        super(mensaje, causa);
+        if (causa == null) {
+            throw new IllegalArgumentException("La causa no puede ser nula.");
+        }
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,42 @@
+package progress_body.dominio;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Enumera las medidas corporales numéricas de un {@link Registro}.
+ */
+public enum Medida {
+    PESO("peso", Registro::getPeso),
+    BICEP_IZQUIERDO("bicepIzquierdo", Registro::getBicepIzquierdo),
+    BICEP_DERECHO("bicepDerecho", Registro::getBicepDerecho),
+    CINTURA("cintura", Registro::getCintura),
+    CUADRICEPS("cuadriceps", Registro::getCuadriceps),
+    PANTORRILLAS("pantorrillas", Registro::getPantorrillas);
+
+    private final String columna; // Nombre de la columna en la tabla registro
+    private final ToDoubleFunction<Registro> lector;
+
+    Medida(String columna, ToDoubleFunction<Registro> lector) {
+        this.columna = columna;
+        this.lector = lector;
+    }
+
+    /**
+     * Devuelve el nombre de la columna correspondiente en la tabla {@code registro}.
+     *
+     * @return El nombre de la columna.
+     */
+    public String getColumna() {
+        return columna;
+    }
+
+    /**
+     * Lee el valor de esta medida en un registro.
+     *
+     * @param registro El registro a leer.
+     * @return El valor de la medida.
+     */
+    public double de(Registro registro) {
+        return lector.applyAsDouble(registro);
+    }
+}
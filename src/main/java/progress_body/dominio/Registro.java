@@ -16,6 +16,8 @@ public class Registro {
     private double cuadriceps; // Medida del cuadríceps en centímetros
     private double pantorrillas; // Medida de las pantorrillas en centímetros
     private Timestamp fecha; // Fecha y hora del registro
+    private int version; // Versión guardada, para el control de concurrencia optimista
+    private int usuario; // Usuario dueño del registro; 0 si no tiene dueño
 
     /**
      * Constructor por defecto que inicializa un nuevo objeto Registro.
@@ -80,6 +82,63 @@ public class Registro {
         this.fecha = fecha;
     }
 
+    /**
+     * Constructor de copia. La fecha también se copia, por lo que la copia no comparte estado mutable con el original.
+     *
+     * @param otro El registro a copiar. No debe ser nulo.
+     */
+    public Registro(Registro otro) {
+        if (otro == null) {
+            throw new IllegalArgumentException("El registro a copiar no puede ser nulo.");
+        }
+        this.id = otro.id;
+        this.peso = otro.peso;
+        this.bicepIzquierdo = otro.bicepIzquierdo;
+        this.bicepDerecho = otro.bicepDerecho;
+        this.cintura = otro.cintura;
+        this.cuadriceps = otro.cuadriceps;
+        this.pantorrillas = otro.pantorrillas;
+        this.version = otro.version;
+        this.usuario = otro.usuario;
+        if (otro.fecha != null) {
+            this.fecha = new Timestamp(otro.fecha.getTime());
+            this.fecha.setNanos(otro.fecha.getNanos());
+        }
+    }
+
+    /**
+     * Crea un registro con valores que ya fueron validados, sin volver a validarlos.
+     * Se usa al leer filas de la tabla {@code registro}, cuyos valores se validaron al guardarse.
+     *
+     * @return Un nuevo Registro con los valores indicados.
+     */
+    public static Registro sinValidar(int id, double peso, double bicepIzquierdo, double bicepDerecho,
+                                      double cintura, double cuadriceps, double pantorrillas, Timestamp fecha,
+                                      int version, int usuario) {
+        Registro registro = new Registro();
+        registro.asignarSinValidar(id, peso, bicepIzquierdo, bicepDerecho, cintura, cuadriceps, pantorrillas, fecha, version, usuario);
+        return registro;
+    }
+
+    /**
+     * Reemplaza todos los campos con valores que ya fueron validados, sin volver a validarlos.
+     * Ver {@link #sinValidar(int, double, double, double, double, double, double, Timestamp, int, int)}.
+     */
+    public void asignarSinValidar(int id, double peso, double bicepIzquierdo, double bicepDerecho,
+                                  double cintura, double cuadriceps, double pantorrillas, Timestamp fecha,
+                                  int version, int usuario) {
+        this.id = id;
+        this.peso = peso;
+        this.bicepIzquierdo = bicepIzquierdo;
+        this.bicepDerecho = bicepDerecho;
+        this.cintura = cintura;
+        this.cuadriceps = cuadriceps;
+        this.pantorrillas = pantorrillas;
+        this.fecha = fecha;
+        this.version = version;
+        this.usuario = usuario;
+    }
+
     // Métodos getter y setter
 
     public int getId() {
@@ -170,6 +229,28 @@ public class Registro {
         this.fecha = fecha; // Asigna la fecha si es válida.
     }
 
+    public int getVersion() {
+        return version; // Retorna la versión guardada del registro.
+    }
+
+    public void setVersion(int version) {
+        if (version < 0) {
+            throw new IllegalArgumentException("La versión no puede ser negativa."); // Verifica que la versión no sea negativa.
+        }
+        this.version = version; // Asigna la versión si es válida.
+    }
+
+    public int getUsuario() {
+        return usuario; // Retorna el usuario dueño del registro.
+    }
+
+    public void setUsuario(int usuario) {
+        if (usuario < 0) {
+            throw new IllegalArgumentException("El usuario no puede ser negativo."); // Verifica que el usuario no sea negativo.
+        }
+        this.usuario = usuario; // Asigna el usuario si es válido.
+    }
+
     /**
      * Devuelve una representación en forma de cadena del objeto Registro.
      *
@@ -186,11 +267,14 @@ public class Registro {
                 ", cuadriceps=" + cuadriceps +
                 ", pantorrillas=" + pantorrillas +
                 ", fecha=" + fecha +
+                ", version=" + version +
+                ", usuario=" + usuario +
                 '}';
     }
 
     /**
      * Compara este objeto con otro para determinar si son iguales.
+     * La versión no se compara: indica qué escritura se leyó, no forma parte de los datos del registro.
      *
      * @param o Objeto a comparar.
      * @return true si los objetos son iguales, false en caso contrario.
@@ -201,6 +285,7 @@ public class Registro {
         if (o == null || getClass() != o.getClass()) return false;
         Registro registro = (Registro) o;
         return id == registro.id &&
+                usuario == registro.usuario &&
                 Double.compare(peso, registro.peso) == 0 &&
                 Double.compare(bicepIzquierdo, registro.bicepIzquierdo) == 0 &&
                 Double.compare(bicepDerecho, registro.bicepDerecho) == 0 &&
@@ -217,7 +302,7 @@ public class Registro {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(id, peso, bicepIzquierdo, bicepDerecho,
+        return Objects.hash(id, usuario, peso, bicepIzquierdo, bicepDerecho,
                 cintura, cuadriceps, pantorrillas, fecha);
     }
 }
@@ -0,0 +1,72 @@
+package progress_body.dominio;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Versión inmutable de {@link Registro} para lecturas: puede compartirse entre hilos y guardarse en
+ * cachés sin copias defensivas.
+ * <p>
+ * No valida sus valores, porque se crea a partir de filas que ya se validaron al guardarse; para
+ * datos de entrada se debe usar {@link Registro}, cuyos setters validan cada medida.
+ *
+ * @param id             El identificador único del registro.
+ * @param peso           Peso en kilogramos.
+ * @param bicepIzquierdo Medida del bíceps izquierdo en centímetros.
+ * @param bicepDerecho   Medida del bíceps derecho en centímetros.
+ * @param cintura        Medida de la cintura en centímetros.
+ * @param cuadriceps     Medida del cuadríceps en centímetros.
+ * @param pantorrillas   Medida de las pantorrillas en centímetros.
+ * @param fecha          Fecha y hora del registro, o null si no tiene.
+ * @param version        Versión guardada, para el control de concurrencia optimista.
+ * @param usuario        Usuario dueño del registro; 0 si no tiene dueño.
+ */
+public record RegistroInmutable(int id, double peso, double bicepIzquierdo, double bicepDerecho,
+                                double cintura, double cuadriceps, double pantorrillas, Instant fecha,
+                                int version, int usuario) {
+
+    /**
+     * Crea la versión inmutable de un registro.
+     *
+     * @param registro El registro a convertir. No debe ser nulo.
+     * @return Un registro inmutable con los mismos valores.
+     * @throws IllegalArgumentException si el registro es nulo.
+     */
+    public static RegistroInmutable de(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        Timestamp fecha = registro.getFecha();
+        return new RegistroInmutable(registro.getId(), registro.getPeso(), registro.getBicepIzquierdo(),
+                registro.getBicepDerecho(), registro.getCintura(), registro.getCuadriceps(),
+                registro.getPantorrillas(), fecha == null ? null : fecha.toInstant(), registro.getVersion(),
+                registro.getUsuario());
+    }
+
+    /**
+     * Crea un {@link Registro} mutable con los mismos valores.
+     *
+     * @return Un nuevo Registro.
+     */
+    public Registro aRegistro() {
+        return Registro.sinValidar(id, peso, bicepIzquierdo, bicepDerecho, cintura, cuadriceps, pantorrillas,
+                fecha == null ? null : Timestamp.from(fecha), version, usuario);
+    }
+
+    /**
+     * Lee el valor de una medida.
+     *
+     * @param medida La medida a leer.
+     * @return El valor de la medida.
+     */
+    public double valor(Medida medida) {
+        return switch (medida) {
+            case PESO -> peso;
+            case BICEP_IZQUIERDO -> bicepIzquierdo;
+            case BICEP_DERECHO -> bicepDerecho;
+            case CINTURA -> cintura;
+            case CUADRICEPS -> cuadriceps;
+            case PANTORRILLAS -> pantorrillas;
+        };
+    }
+}
@@ -0,0 +1,97 @@
+package progress_body.estadistica;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Implementación escalar de {@link CalculoEstadistico}, usada cuando la Vector API no está disponible.
+ */
+final class CalculoEscalar implements CalculoEstadistico {
+
+    static final CalculoEscalar INSTANCIA = new CalculoEscalar();
+
+    private CalculoEscalar() {
+    }
+
+    @Override
+    public double suma(double[] valores, int n) {
+        double suma = 0;
+        for (int i = 0; i < n; i++) {
+            suma += valores[i];
+        }
+        return suma;
+    }
+
+    @Override
+    public double sumaCuadradosDesvio(double[] valores, int n, double media) {
+        double suma = 0;
+        for (int i = 0; i < n; i++) {
+            double d = valores[i] - media;
+            suma += d * d;
+        }
+        return suma;
+    }
+
+    @Override
+    public double sumaProductosDesvio(double[] x, double[] y, int n, double mediaX, double mediaY) {
+        double suma = 0;
+        for (int i = 0; i < n; i++) {
+            suma += (x[i] - mediaX) * (y[i] - mediaY);
+        }
+        return suma;
+    }
+
+    @Override
+    public int marcarAtipicos(double[] valores, int n, double media, double desviacion, double umbral, boolean[] atipicos) {
+        double limite = umbral * desviacion;
+        int marcados = 0;
+        for (int i = 0; i < n; i++) {
+            atipicos[i] = Math.abs(valores[i] - media) > limite;
+            if (atipicos[i]) {
+                marcados++;
+            }
+        }
+        return marcados;
+    }
+
+    @Override
+    public double suma(MemorySegment valores, int n) {
+        double suma = 0;
+        for (int i = 0; i < n; i++) {
+            suma += valores.getAtIndex(ValueLayout.JAVA_DOUBLE, i);
+        }
+        return suma;
+    }
+
+    @Override
+    public double sumaCuadradosDesvio(MemorySegment valores, int n, double media) {
+        double suma = 0;
+        for (int i = 0; i < n; i++) {
+            double d = valores.getAtIndex(ValueLayout.JAVA_DOUBLE, i) - media;
+            suma += d * d;
+        }
+        return suma;
+    }
+
+    @Override
+    public double sumaProductosDesvio(MemorySegment x, MemorySegment y, int n, double mediaX, double mediaY) {
+        double suma = 0;
+        for (int i = 0; i < n; i++) {
+            suma += (x.getAtIndex(ValueLayout.JAVA_DOUBLE, i) - mediaX) * (y.getAtIndex(ValueLayout.JAVA_DOUBLE, i) - mediaY);
+        }
+        return suma;
+    }
+
+    @Override
+    public int marcarAtipicos(MemorySegment valores, int n, double media, double desviacion, double umbral, boolean[] atipicos) {
+        double limite = umbral * desviacion;
+        int marcados = 0;
+        for (int i = 0; i < n; i++) {
+            atipicos[i] = Math.abs(valores.getAtIndex(ValueLayout.JAVA_DOUBLE, i) - media) > limite;
+            if (atipicos[i]) {
+                marcados++;
+            }
+        }
+        return marcados;
+    }
+}
@@ -0,0 +1,43 @@
+package progress_body.estadistica;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Operaciones estadísticas básicas sobre columnas de {@code double}. Cada método opera sobre los
+ * primeros {@code n} valores de los arreglos o segmentos recibidos; los segmentos guardan los valores
+ * contiguos en el orden de bytes nativo, como las columnas de {@link progress_body.almacen.AlmacenColumnar}.
+ */
+interface CalculoEstadistico {
+
+    /**
+     * @return La suma de los valores.
+     */
+    double suma(double[] valores, int n);
+
+    /**
+     * @return La suma de los cuadrados de las diferencias respecto de la media.
+     */
+    double sumaCuadradosDesvio(double[] valores, int n, double media);
+
+    /**
+     * @return La suma de los productos de las diferencias de cada columna respecto de su media.
+     */
+    double sumaProductosDesvio(double[] x, double[] y, int n, double mediaX, double mediaY);
+
+    /**
+     * Marca los valores que se alejan de la media más de {@code umbral} desviaciones.
+     *
+     * @return El número de valores marcados.
+     */
+    int marcarAtipicos(double[] valores, int n, double media, double desviacion, double umbral, boolean[] atipicos);
+
+    // Las mismas operaciones sobre segmentos de valores double
+
+    double suma(MemorySegment valores, int n);
+
+    double sumaCuadradosDesvio(MemorySegment valores, int n, double media);
+
+    double sumaProductosDesvio(MemorySegment x, MemorySegment y, int n, double mediaX, double mediaY);
+
+    int marcarAtipicos(MemorySegment valores, int n, double media, double desviacion, double umbral, boolean[] atipicos);
+}
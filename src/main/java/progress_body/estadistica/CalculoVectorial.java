@@ -0,0 +1,205 @@
+package progress_body.estadistica;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+/**
+ * Implementación de {@link CalculoEstadistico} con la Vector API ({@code jdk.incubator.vector}).
+ * Procesa tantos valores por instrucción como admita el hardware y completa el resto con código escalar.
+ * <p>
+ * Los segmentos se leen directamente, sin copiarlos a un arreglo. Antes de JDK 22 la Vector API solo lee
+ * segmentos del heap respaldados por {@code byte[]}; en ese caso los segmentos del heap (las columnas de un
+ * almacén que no está fuera del heap) se procesan con {@link CalculoEscalar}.
+ * <p>
+ * Solo debe cargarse si el módulo {@code jdk.incubator.vector} está presente; ver {@link Estadistica}.
+ */
+final class CalculoVectorial implements CalculoEstadistico {
+
+    static final CalculoVectorial INSTANCIA = new CalculoVectorial();
+
+    private static final VectorSpecies<Double> ESPECIE = DoubleVector.SPECIES_PREFERRED;
+    private static final ByteOrder ORDEN = ByteOrder.nativeOrder();
+    private static final boolean LEE_SEGMENTOS_DEL_HEAP = leeSegmentosDelHeap();
+
+    private CalculoVectorial() {
+    }
+
+    @Override
+    public double suma(double[] valores, int n) {
+        DoubleVector acumulado = DoubleVector.zero(ESPECIE);
+        int limite = ESPECIE.loopBound(n);
+        int i = 0;
+        for (; i < limite; i += ESPECIE.length()) {
+            acumulado = acumulado.add(DoubleVector.fromArray(ESPECIE, valores, i));
+        }
+        double suma = acumulado.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            suma += valores[i];
+        }
+        return suma;
+    }
+
+    @Override
+    public double sumaCuadradosDesvio(double[] valores, int n, double media) {
+        DoubleVector acumulado = DoubleVector.zero(ESPECIE);
+        int limite = ESPECIE.loopBound(n);
+        int i = 0;
+        for (; i < limite; i += ESPECIE.length()) {
+            DoubleVector d = DoubleVector.fromArray(ESPECIE, valores, i).sub(media);
+            acumulado = d.fma(d, acumulado);
+        }
+        double suma = acumulado.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            double d = valores[i] - media;
+            suma += d * d;
+        }
+        return suma;
+    }
+
+    @Override
+    public double sumaProductosDesvio(double[] x, double[] y, int n, double mediaX, double mediaY) {
+        DoubleVector acumulado = DoubleVector.zero(ESPECIE);
+        int limite = ESPECIE.loopBound(n);
+        int i = 0;
+        for (; i < limite; i += ESPECIE.length()) {
+            DoubleVector dx = DoubleVector.fromArray(ESPECIE, x, i).sub(mediaX);
+            DoubleVector dy = DoubleVector.fromArray(ESPECIE, y, i).sub(mediaY);
+            acumulado = dx.fma(dy, acumulado);
+        }
+        double suma = acumulado.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            suma += (x[i] - mediaX) * (y[i] - mediaY);
+        }
+        return suma;
+    }
+
+    @Override
+    public int marcarAtipicos(double[] valores, int n, double media, double desviacion, double umbral, boolean[] atipicos) {
+        double limiteDistancia = umbral * desviacion;
+        int limite = ESPECIE.loopBound(n);
+        int marcados = 0;
+        int i = 0;
+        for (; i < limite; i += ESPECIE.length()) {
+            VectorMask<Double> mascara = DoubleVector.fromArray(ESPECIE, valores, i)
+                    .sub(media)
+                    .lanewise(VectorOperators.ABS)
+                    .compare(VectorOperators.GT, limiteDistancia);
+            mascara.intoArray(atipicos, i);
+            marcados += mascara.trueCount();
+        }
+        for (; i < n; i++) {
+            atipicos[i] = Math.abs(valores[i] - media) > limiteDistancia;
+            if (atipicos[i]) {
+                marcados++;
+            }
+        }
+        return marcados;
+    }
+
+    @Override
+    public double suma(MemorySegment valores, int n) {
+        if (!vectorizable(valores)) {
+            return CalculoEscalar.INSTANCIA.suma(valores, n);
+        }
+        DoubleVector acumulado = DoubleVector.zero(ESPECIE);
+        int limite = ESPECIE.loopBound(n);
+        int i = 0;
+        for (; i < limite; i += ESPECIE.length()) {
+            acumulado = acumulado.add(cargar(valores, i));
+        }
+        double suma = acumulado.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            suma += valores.getAtIndex(ValueLayout.JAVA_DOUBLE, i);
+        }
+        return suma;
+    }
+
+    @Override
+    public double sumaCuadradosDesvio(MemorySegment valores, int n, double media) {
+        if (!vectorizable(valores)) {
+            return CalculoEscalar.INSTANCIA.sumaCuadradosDesvio(valores, n, media);
+        }
+        DoubleVector acumulado = DoubleVector.zero(ESPECIE);
+        int limite = ESPECIE.loopBound(n);
+        int i = 0;
+        for (; i < limite; i += ESPECIE.length()) {
+            DoubleVector d = cargar(valores, i).sub(media);
+            acumulado = d.fma(d, acumulado);
+        }
+        double suma = acumulado.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            double d = valores.getAtIndex(ValueLayout.JAVA_DOUBLE, i) - media;
+            suma += d * d;
+        }
+        return suma;
+    }
+
+    @Override
+    public double sumaProductosDesvio(MemorySegment x, MemorySegment y, int n, double mediaX, double mediaY) {
+        if (!vectorizable(x) || !vectorizable(y)) {
+            return CalculoEscalar.INSTANCIA.sumaProductosDesvio(x, y, n, mediaX, mediaY);
+        }
+        DoubleVector acumulado = DoubleVector.zero(ESPECIE);
+        int limite = ESPECIE.loopBound(n);
+        int i = 0;
+        for (; i < limite; i += ESPECIE.length()) {
+            DoubleVector dx = cargar(x, i).sub(mediaX);
+            DoubleVector dy = cargar(y, i).sub(mediaY);
+            acumulado = dx.fma(dy, acumulado);
+        }
+        double suma = acumulado.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            suma += (x.getAtIndex(ValueLayout.JAVA_DOUBLE, i) - mediaX) * (y.getAtIndex(ValueLayout.JAVA_DOUBLE, i) - mediaY);
+        }
+        return suma;
+    }
+
+    @Override
+    public int marcarAtipicos(MemorySegment valores, int n, double media, double desviacion, double umbral, boolean[] atipicos) {
+        if (!vectorizable(valores)) {
+            return CalculoEscalar.INSTANCIA.marcarAtipicos(valores, n, media, desviacion, umbral, atipicos);
+        }
+        double limiteDistancia = umbral * desviacion;
+        int limite = ESPECIE.loopBound(n);
+        int marcados = 0;
+        int i = 0;
+        for (; i < limite; i += ESPECIE.length()) {
+            VectorMask<Double> mascara = cargar(valores, i)
+                    .sub(media)
+                    .lanewise(VectorOperators.ABS)
+                    .compare(VectorOperators.GT, limiteDistancia);
+            mascara.intoArray(atipicos, i);
+            marcados += mascara.trueCount();
+        }
+        for (; i < n; i++) {
+            atipicos[i] = Math.abs(valores.getAtIndex(ValueLayout.JAVA_DOUBLE, i) - media) > limiteDistancia;
+            if (atipicos[i]) {
+                marcados++;
+            }
+        }
+        return marcados;
+    }
+
+    private static DoubleVector cargar(MemorySegment valores, int indice) {
+        return DoubleVector.fromMemorySegment(ESPECIE, valores, (long) indice * Double.BYTES, ORDEN);
+    }
+
+    private static boolean vectorizable(MemorySegment valores) {
+        return valores.isNative() || LEE_SEGMENTOS_DEL_HEAP;
+    }
+
+    private static boolean leeSegmentosDelHeap() {
+        try {
+            DoubleVector.fromMemorySegment(ESPECIE, MemorySegment.ofArray(new double[ESPECIE.length()]), 0, ORDEN);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
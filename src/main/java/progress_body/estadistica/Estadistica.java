@@ -0,0 +1,284 @@
+package progress_body.estadistica;
+
+import progress_body.almacen.AlmacenColumnar;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+
+/**
+ * Estadísticas sobre columnas de medidas: suma, media, varianza, percentiles, correlación y detección
+ * de valores atípicos por puntuación z.
+ * <p>
+ * {@link #predeterminada()} usa la Vector API cuando el módulo {@code jdk.incubator.vector} está
+ * disponible (se agrega con {@code --add-modules jdk.incubator.vector}) y código escalar en caso
+ * contrario. La propiedad {@code -Dprogressbody.estadistica.escalar=true} fuerza el código escalar.
+ * Ambas implementaciones suman en distinto orden, por lo que sus resultados pueden diferir en el
+ * último dígito; {@link #escalar()} permite comparar contra la implementación de referencia.
+ * <p>
+ * Las columnas de un {@link AlmacenColumnar} se procesan sin copiarlas pasando la vista de
+ * {@link AlmacenColumnar#columna} a las variantes que reciben un {@link MemorySegment}.
+ */
+public final class Estadistica {
+
+    private static final Estadistica ESCALAR = new Estadistica(CalculoEscalar.INSTANCIA);
+    private static final Estadistica PREDETERMINADA = crearPredeterminada();
+
+    private final CalculoEstadistico calculo;
+
+    private Estadistica(CalculoEstadistico calculo) {
+        this.calculo = calculo;
+    }
+
+    /**
+     * @return La implementación vectorial si está disponible; la escalar en caso contrario.
+     */
+    public static Estadistica predeterminada() {
+        return PREDETERMINADA;
+    }
+
+    /**
+     * @return La implementación escalar de referencia.
+     */
+    public static Estadistica escalar() {
+        return ESCALAR;
+    }
+
+    /**
+     * @return true si esta instancia usa la Vector API.
+     */
+    public boolean esVectorial() {
+        return !(calculo instanceof CalculoEscalar);
+    }
+
+    public double suma(double[] valores, int n) {
+        validar(valores, n);
+        return calculo.suma(valores, n);
+    }
+
+    /**
+     * @return La media de los primeros {@code n} valores, o {@link Double#NaN} si {@code n} es 0.
+     */
+    public double media(double[] valores, int n) {
+        validar(valores, n);
+        return n == 0 ? Double.NaN : calculo.suma(valores, n) / n;
+    }
+
+    /**
+     * Calcula la varianza poblacional con dos pasadas (media y luego desvíos), que es numéricamente
+     * más estable que acumular la suma de cuadrados.
+     *
+     * @return La varianza de los primeros {@code n} valores, o {@link Double#NaN} si {@code n} es 0.
+     */
+    public double varianza(double[] valores, int n) {
+        validar(valores, n);
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double media = calculo.suma(valores, n) / n;
+        return calculo.sumaCuadradosDesvio(valores, n, media) / n;
+    }
+
+    public double desviacion(double[] valores, int n) {
+        return Math.sqrt(varianza(valores, n));
+    }
+
+    /**
+     * Calcula el coeficiente de correlación de Pearson entre dos columnas, por ejemplo peso y cintura.
+     *
+     * @return Un valor entre -1 y 1, o {@link Double#NaN} si alguna columna es constante o {@code n} es 0.
+     */
+    public double correlacion(double[] x, double[] y, int n) {
+        validar(x, n);
+        validar(y, n);
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double mediaX = calculo.suma(x, n) / n;
+        double mediaY = calculo.suma(y, n) / n;
+        double covarianza = calculo.sumaProductosDesvio(x, y, n, mediaX, mediaY);
+        double varianzaX = calculo.sumaCuadradosDesvio(x, n, mediaX);
+        double varianzaY = calculo.sumaCuadradosDesvio(y, n, mediaY);
+        double denominador = Math.sqrt(varianzaX * varianzaY);
+        return denominador == 0 ? Double.NaN : covarianza / denominador;
+    }
+
+    /**
+     * Calcula varios percentiles con interpolación lineal entre los valores ordenados.
+     * Ordena una copia de los datos una sola vez para todos los percentiles pedidos.
+     *
+     * @param valores     Los datos.
+     * @param n           El número de valores a considerar.
+     * @param percentiles Los percentiles pedidos, entre 0 y 100.
+     * @return Los percentiles en el mismo orden en que se pidieron ({@link Double#NaN} si {@code n} es 0).
+     */
+    public double[] percentiles(double[] valores, int n, double... percentiles) {
+        validar(valores, n);
+        double[] resultado = new double[percentiles.length];
+        if (n == 0) {
+            Arrays.fill(resultado, Double.NaN);
+            return resultado;
+        }
+        double[] ordenados = Arrays.copyOf(valores, n);
+        Arrays.sort(ordenados);
+        for (int i = 0; i < percentiles.length; i++) {
+            double p = percentiles[i];
+            if (!(p >= 0 && p <= 100)) {
+                throw new IllegalArgumentException("El percentil debe estar entre 0 y 100.");
+            }
+            double posicion = p / 100 * (n - 1);
+            int abajo = (int) Math.floor(posicion);
+            int arriba = Math.min(abajo + 1, n - 1);
+            resultado[i] = ordenados[abajo] + (posicion - abajo) * (ordenados[arriba] - ordenados[abajo]);
+        }
+        return resultado;
+    }
+
+    public double percentil(double[] valores, int n, double percentil) {
+        return percentiles(valores, n, percentil)[0];
+    }
+
+    /**
+     * Marca los valores cuya puntuación z, en valor absoluto, supera el umbral.
+     *
+     * @param valores  Los datos.
+     * @param n        El número de valores a considerar.
+     * @param umbral   El número de desviaciones a partir del cual un valor es atípico (por ejemplo 3).
+     * @param atipicos Arreglo de al menos {@code n} posiciones donde se marcan los valores atípicos.
+     * @return El número de valores atípicos.
+     */
+    public int marcarAtipicos(double[] valores, int n, double umbral, boolean[] atipicos) {
+        validar(valores, n);
+        if (atipicos == null || atipicos.length < n) {
+            throw new IllegalArgumentException("El arreglo de marcas debe tener al menos n posiciones.");
+        }
+        if (umbral < 0) {
+            throw new IllegalArgumentException("El umbral no puede ser negativo.");
+        }
+        if (n == 0) {
+            return 0;
+        }
+        double media = calculo.suma(valores, n) / n;
+        double desviacion = Math.sqrt(calculo.sumaCuadradosDesvio(valores, n, media) / n);
+        return calculo.marcarAtipicos(valores, n, media, desviacion, umbral, atipicos);
+    }
+
+    // Variantes sobre segmentos, por ejemplo la vista de AlmacenColumnar#columna
+
+    public double suma(MemorySegment columna) {
+        return calculo.suma(columna, validar(columna));
+    }
+
+    /**
+     * @return La media de los valores de la columna, o {@link Double#NaN} si está vacía.
+     */
+    public double media(MemorySegment columna) {
+        int n = validar(columna);
+        return n == 0 ? Double.NaN : calculo.suma(columna, n) / n;
+    }
+
+    /**
+     * @return La varianza poblacional de los valores de la columna, o {@link Double#NaN} si está vacía.
+     * @see #varianza(double[], int)
+     */
+    public double varianza(MemorySegment columna) {
+        int n = validar(columna);
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double media = calculo.suma(columna, n) / n;
+        return calculo.sumaCuadradosDesvio(columna, n, media) / n;
+    }
+
+    public double desviacion(MemorySegment columna) {
+        return Math.sqrt(varianza(columna));
+    }
+
+    /**
+     * @return El coeficiente de correlación de Pearson, o {@link Double#NaN} si alguna columna es
+     * constante o están vacías.
+     * @throws IllegalArgumentException si las columnas no tienen el mismo largo.
+     * @see #correlacion(double[], double[], int)
+     */
+    public double correlacion(MemorySegment x, MemorySegment y) {
+        int n = validar(x);
+        if (validar(y) != n) {
+            throw new IllegalArgumentException("Las columnas deben tener el mismo largo.");
+        }
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double mediaX = calculo.suma(x, n) / n;
+        double mediaY = calculo.suma(y, n) / n;
+        double covarianza = calculo.sumaProductosDesvio(x, y, n, mediaX, mediaY);
+        double varianzaX = calculo.sumaCuadradosDesvio(x, n, mediaX);
+        double varianzaY = calculo.sumaCuadradosDesvio(y, n, mediaY);
+        double denominador = Math.sqrt(varianzaX * varianzaY);
+        return denominador == 0 ? Double.NaN : covarianza / denominador;
+    }
+
+    /**
+     * Calcula percentiles de una columna. Ordenar exige una copia, que se hace una sola vez.
+     *
+     * @see #percentiles(double[], int, double...)
+     */
+    public double[] percentiles(MemorySegment columna, double... percentiles) {
+        int n = validar(columna);
+        return percentiles(columna.toArray(ValueLayout.JAVA_DOUBLE), n, percentiles);
+    }
+
+    /**
+     * @see #marcarAtipicos(double[], int, double, boolean[])
+     */
+    public int marcarAtipicos(MemorySegment columna, double umbral, boolean[] atipicos) {
+        int n = validar(columna);
+        if (atipicos == null || atipicos.length < n) {
+            throw new IllegalArgumentException("El arreglo de marcas debe tener al menos n posiciones.");
+        }
+        if (umbral < 0) {
+            throw new IllegalArgumentException("El umbral no puede ser negativo.");
+        }
+        if (n == 0) {
+            return 0;
+        }
+        double media = calculo.suma(columna, n) / n;
+        double desviacion = Math.sqrt(calculo.sumaCuadradosDesvio(columna, n, media) / n);
+        return calculo.marcarAtipicos(columna, n, media, desviacion, umbral, atipicos);
+    }
+
+    private static void validar(double[] valores, int n) {
+        if (valores == null) {
+            throw new IllegalArgumentException("Los valores no pueden ser nulos.");
+        }
+        if (n < 0 || n > valores.length) {
+            throw new IllegalArgumentException("La cantidad de valores debe estar entre 0 y el largo del arreglo.");
+        }
+    }
+
+    /**
+     * @return El número de valores {@code double} de la columna.
+     */
+    private static int validar(MemorySegment columna) {
+        if (columna == null) {
+            throw new IllegalArgumentException("La columna no puede ser nula.");
+        }
+        long bytes = columna.byteSize();
+        if (bytes % Double.BYTES != 0 || bytes / Double.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("La columna debe contener valores double.");
+        }
+        return (int) (bytes / Double.BYTES);
+    }
+
+    private static Estadistica crearPredeterminada() {
+        if (Boolean.getBoolean("progressbody.estadistica.escalar")
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return ESCALAR;
+        }
+        try {
+            return new Estadistica(CalculoVectorial.INSTANCIA);
+        } catch (LinkageError e) {
+            System.out.println("No se pudo usar la Vector API, se usará el cálculo escalar: " + e.getMessage());
+            return ESCALAR;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package progress_body.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Evento de JFR que se emite cuando una operación del DAO supera el umbral de lentitud.
+ * Se puede ver en JDK Mission Control o con {@code jfr print --events progress_body.ConsultaLenta}.
+ */
+@Name("progress_body.ConsultaLenta")
+@Label("Consulta lenta")
+@Category({"ProgressBody", "Base de datos"})
+@Description("Operación de IRegistroDAO que superó el umbral de lentitud")
+@StackTrace(true)
+class ConsultaLentaEvento extends Event {
+
+    @Label("Operación")
+    String operacion;
+
+    @Label("Duración")
+    @Timespan(Timespan.NANOSECONDS)
+    long duracion;
+
+    @Label("Con error")
+    boolean error;
+}
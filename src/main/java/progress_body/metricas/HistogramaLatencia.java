@@ -0,0 +1,96 @@
+package progress_body.metricas;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Histograma de latencias en nanosegundos, sin bloqueos.
+ * <p>
+ * Los valores se agrupan en cubetas log-lineales: cada potencia de dos se divide en 16 cubetas iguales,
+ * de modo que el error relativo de un percentil es menor al 6,25 %. Registrar un valor es un único
+ * incremento atómico, y el histograma ocupa tamaño fijo sin importar cuántos valores reciba.
+ */
+public final class HistogramaLatencia {
+
+    private static final int BITS_SUBCUBETA = 4;
+    private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+    // Un valor no negativo tiene a lo sumo 63 bits: la última cubeta termina en Long.MAX_VALUE
+    static final int CUBETAS = (63 - BITS_SUBCUBETA + 1) * SUBCUBETAS;
+
+    private final AtomicLongArray cuentas = new AtomicLongArray(CUBETAS);
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Registra un valor. Los valores negativos se registran como 0.
+     *
+     * @param nanos La latencia en nanosegundos.
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        cuentas.incrementAndGet(indice(valor));
+        maximo.accumulate(valor);
+    }
+
+    /**
+     * Toma una copia de las cuentas y calcula los percentiles pedidos.
+     *
+     * @param percentiles Los percentiles, entre 0 y 100.
+     * @return Los valores de los percentiles en nanosegundos, en el orden pedido; 0 si no hay valores.
+     */
+    public long[] percentiles(double... percentiles) {
+        long[] copia = new long[CUBETAS];
+        long total = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            copia[i] = cuentas.get(i);
+            total += copia[i];
+        }
+
+        long[] resultado = new long[percentiles.length];
+        if (total == 0) {
+            return resultado;
+        }
+        long max = maximo.get();
+        for (int p = 0; p < percentiles.length; p++) {
+            long objetivo = Math.max(1, (long) Math.ceil(percentiles[p] / 100 * total));
+            long acumulado = 0;
+            for (int i = 0; i < CUBETAS; i++) {
+                acumulado += copia[i];
+                if (acumulado >= objetivo) {
+                    resultado[p] = Math.min(limiteSuperior(i), max);
+                    break;
+                }
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * @return El mayor valor registrado.
+     */
+    public long maximo() {
+        return maximo.get();
+    }
+
+    static int indice(long valor) {
+        if (valor < SUBCUBETAS) {
+            return (int) valor;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int subcubeta = (int) (valor >>> (exponente - BITS_SUBCUBETA)) & (SUBCUBETAS - 1);
+        return (exponente - BITS_SUBCUBETA + 1) * SUBCUBETAS + subcubeta;
+    }
+
+    /**
+     * Devuelve el mayor valor que cae en la cubeta indicada.
+     */
+    static long limiteSuperior(int indice) {
+        if (indice < SUBCUBETAS) {
+            return indice;
+        }
+        int exponente = indice / SUBCUBETAS + BITS_SUBCUBETA - 1;
+        long subcubeta = indice % SUBCUBETAS;
+        long inicio = (1L << exponente) + (subcubeta << (exponente - BITS_SUBCUBETA));
+        long ancho = 1L << (exponente - BITS_SUBCUBETA);
+        return inicio + ancho - 1;
+    }
+}
@@ -0,0 +1,62 @@
+package progress_body.metricas;
+
+import progress_body.conexion.MetricasPool;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Instantánea de las métricas de {@link RegistroDAOInstrumentado}.
+ *
+ * @param segundosActivo Segundos desde que se creó el decorador; permite calcular el rendimiento medio.
+ * @param operaciones    Las métricas de cada operación.
+ * @param pool           Las métricas del pool de conexiones, o null si no se configuró.
+ */
+public record InstantaneaMetricas(double segundosActivo, List<ResumenOperacion> operaciones, MetricasPool pool) {
+
+    public InstantaneaMetricas {
+        operaciones = List.copyOf(operaciones);
+    }
+
+    /**
+     * Da formato de texto, una métrica por línea ({@code nombre{etiquetas} valor}), compatible con los
+     * recolectores que leen el formato de exposición de Prometheus.
+     *
+     * @return El texto con todas las métricas.
+     */
+    public String aTexto() {
+        StringBuilder sb = new StringBuilder(2048);
+        linea(sb, "progressbody_activo_segundos", "", segundosActivo);
+        for (ResumenOperacion r : operaciones) {
+            String etiqueta = "{operacion=\"" + r.operacion().name().toLowerCase(Locale.ROOT) + "\"}";
+            linea(sb, "progressbody_dao_llamadas_total", etiqueta, r.llamadas());
+            linea(sb, "progressbody_dao_errores_total", etiqueta, r.errores());
+            linea(sb, "progressbody_dao_negativos_total", etiqueta, r.negativos());
+            linea(sb, "progressbody_dao_lentas_total", etiqueta, r.lentas());
+            linea(sb, "progressbody_dao_latencia_p50_segundos", etiqueta, r.p50Nanos() / 1e9);
+            linea(sb, "progressbody_dao_latencia_p99_segundos", etiqueta, r.p99Nanos() / 1e9);
+            linea(sb, "progressbody_dao_latencia_p999_segundos", etiqueta, r.p999Nanos() / 1e9);
+            linea(sb, "progressbody_dao_latencia_max_segundos", etiqueta, r.maxNanos() / 1e9);
+        }
+        if (pool != null) {
+            linea(sb, "progressbody_pool_activas", "", pool.activas());
+            linea(sb, "progressbody_pool_inactivas", "", pool.inactivas());
+            linea(sb, "progressbody_pool_esperando", "", pool.esperando());
+            linea(sb, "progressbody_pool_prestamos_total", "", pool.prestamos());
+            linea(sb, "progressbody_pool_tiempos_agotados_total", "", pool.tiemposAgotados());
+            linea(sb, "progressbody_pool_espera_media_segundos", "", pool.esperaMediaNanos() / 1e9);
+            linea(sb, "progressbody_pool_espera_max_segundos", "", pool.esperaMaximaNanos() / 1e9);
+        }
+        return sb.toString();
+    }
+
+    private static void linea(StringBuilder sb, String nombre, String etiquetas, double valor) {
+        sb.append(nombre).append(etiquetas).append(' ');
+        if (valor == Math.rint(valor) && Math.abs(valor) < 1e15) {
+            sb.append((long) valor);
+        } else {
+            sb.append(String.format(Locale.ROOT, "%.9f", valor));
+        }
+        sb.append('\n');
+    }
+}
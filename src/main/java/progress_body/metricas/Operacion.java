@@ -0,0 +1,26 @@
+package progress_body.metricas;
+
+/**
+ * Operaciones de {@link progress_body.datos.IRegistroDAO} que se miden por separado.
+ */
+public enum Operacion {
+    LISTAR,
+    LISTAR_INMUTABLES,
+    BUSCAR,
+    EXISTE,
+    AGREGAR,
+    AGREGAR_LOTE,
+    AGREGAR_CON_ID,
+    AGREGAR_Y_OBTENER,
+    GUARDAR,
+    MODIFICAR,
+    MODIFICAR_CON_VERSION,
+    ELIMINAR,
+    ELIMINAR_VARIOS,
+    STREAM,
+    RECORRER,
+    PAGINAR_POR_ID,
+    PAGINAR_POR_FECHA,
+    ENTRE_FECHAS,
+    DE_USUARIO
+}
@@ -0,0 +1,406 @@
+package progress_body.metricas;
+
+import progress_body.conexion.MetricasPool;
+import progress_body.datos.ConflictoVersionException;
+import progress_body.datos.IRegistroDAO;
+import progress_body.datos.RegistroDAODecorador;
+import progress_body.datos.ResultadoLote;
+import progress_body.dominio.Registro;
+import progress_body.dominio.RegistroInmutable;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Decorador de {@link IRegistroDAO} que mide cada operación: latencia (p50, p99, p99,9 y máxima),
+ * número de llamadas, errores y resultados negativos.
+ * <p>
+ * Las operaciones que superan el umbral de lentitud emiten un {@link ConsultaLentaEvento} de JFR.
+ * {@link #getInstantanea()} devuelve el estado acumulado para que un recolector local lo consulte
+ * periódicamente, por ejemplo a través de {@link ServidorMetricas}.
+ * <p>
+ * Como el DAO informa sus errores con el mismo valor que un resultado negativo, una llamada cuenta
+ * como error si lanza una excepción o si {@link IRegistroDAO#getFallosDelHilo()} avanzó durante ella.
+ * <p>
+ * El camino de cada llamada solo suma dos lecturas de {@link System#nanoTime()}, dos del contador de
+ * fallos del hilo e incrementos atómicos sin bloqueos; {@code InstrumentacionBenchmark} mide ese costo.
+ */
+public class RegistroDAOInstrumentado extends RegistroDAODecorador {
+
+    /**
+     * Contadores de una operación.
+     */
+    private static final class MetricasOperacion {
+        final HistogramaLatencia latencias = new HistogramaLatencia();
+        final LongAdder llamadas = new LongAdder();
+        final LongAdder errores = new LongAdder();
+        final LongAdder negativos = new LongAdder();
+        final LongAdder lentas = new LongAdder();
+    }
+
+    private final Map<Operacion, MetricasOperacion> metricas = new EnumMap<>(Operacion.class);
+    private final long umbralLentitudNanos;
+    private final Supplier<MetricasPool> metricasPool; // null si no se reportan
+    private final long creadoEn = System.nanoTime();
+
+    /**
+     * Crea el decorador.
+     *
+     * @param delegado        El DAO medido. No debe ser nulo.
+     * @param umbralLentitud  La duración a partir de la cual una operación se considera lenta. No debe ser nula.
+     * @param metricasPool    Proveedor de las métricas del pool a incluir en la instantánea, o null.
+     * @throws IllegalArgumentException si el delegado o el umbral son nulos, o el umbral es negativo.
+     */
+    public RegistroDAOInstrumentado(IRegistroDAO delegado, Duration umbralLentitud, Supplier<MetricasPool> metricasPool) {
+        super(delegado);
+        if (umbralLentitud == null || umbralLentitud.isNegative()) {
+            throw new IllegalArgumentException("El umbral de lentitud no puede ser nulo ni negativo.");
+        }
+        this.umbralLentitudNanos = umbralLentitud.toNanos();
+        this.metricasPool = metricasPool;
+        for (Operacion operacion : Operacion.values()) {
+            metricas.put(operacion, new MetricasOperacion());
+        }
+    }
+
+    /**
+     * Devuelve el estado acumulado de todas las operaciones.
+     *
+     * @return La instantánea de las métricas.
+     */
+    public InstantaneaMetricas getInstantanea() {
+        List<ResumenOperacion> resumenes = new ArrayList<>(metricas.size());
+        for (Map.Entry<Operacion, MetricasOperacion> entrada : metricas.entrySet()) {
+            MetricasOperacion m = entrada.getValue();
+            long[] p = m.latencias.percentiles(50, 99, 99.9);
+            resumenes.add(new ResumenOperacion(entrada.getKey(), m.llamadas.sum(), m.errores.sum(),
+                    m.negativos.sum(), m.lentas.sum(), p[0], p[1], p[2], m.latencias.maximo()));
+        }
+        double segundos = (System.nanoTime() - creadoEn) / 1e9;
+        return new InstantaneaMetricas(segundos, resumenes, metricasPool == null ? null : metricasPool.get());
+    }
+
+    @Override
+    public List<Registro> listarRegistros() {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        try {
+            List<Registro> registros = delegado.listarRegistros();
+            error = delegado.getFallosDelHilo() != fallos;
+            return registros;
+        } finally {
+            registrar(Operacion.LISTAR, inicio, error, false);
+        }
+    }
+
+    @Override
+    public List<RegistroInmutable> listarRegistrosInmutables() {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        try {
+            List<RegistroInmutable> registros = delegado.listarRegistrosInmutables();
+            error = delegado.getFallosDelHilo() != fallos;
+            return registros;
+        } finally {
+            registrar(Operacion.LISTAR_INMUTABLES, inicio, error, false);
+        }
+    }
+
+    @Override
+    public boolean buscarRegistro(Registro registro) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        boolean encontrado = false;
+        try {
+            encontrado = delegado.buscarRegistro(registro);
+            error = delegado.getFallosDelHilo() != fallos;
+            return encontrado;
+        } finally {
+            registrar(Operacion.BUSCAR, inicio, error, !encontrado);
+        }
+    }
+
+    @Override
+    public boolean registroExiste(int id) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        boolean existe = false;
+        try {
+            existe = delegado.registroExiste(id);
+            error = delegado.getFallosDelHilo() != fallos;
+            return existe;
+        } finally {
+            registrar(Operacion.EXISTE, inicio, error, !existe);
+        }
+    }
+
+    @Override
+    public boolean agregarRegistro(Registro registro) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        boolean agregado = false;
+        try {
+            agregado = delegado.agregarRegistro(registro);
+            error = delegado.getFallosDelHilo() != fallos;
+            return agregado;
+        } finally {
+            registrar(Operacion.AGREGAR, inicio, error, !agregado);
+        }
+    }
+
+    @Override
+    public ResultadoLote agregarRegistros(Iterator<Registro> registros, int tamanoLote) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        boolean exitoso = false;
+        try {
+            ResultadoLote resultado = delegado.agregarRegistros(registros, tamanoLote);
+            exitoso = resultado.exitoso();
+            error = delegado.getFallosDelHilo() != fallos;
+            return resultado;
+        } finally {
+            registrar(Operacion.AGREGAR_LOTE, inicio, error, !exitoso);
+        }
+    }
+
+    @Override
+    public ResultadoLote agregarRegistrosConId(List<Registro> registros) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        boolean exitoso = false;
+        try {
+            ResultadoLote resultado = delegado.agregarRegistrosConId(registros);
+            exitoso = resultado.exitoso();
+            error = delegado.getFallosDelHilo() != fallos;
+            return resultado;
+        } finally {
+            registrar(Operacion.AGREGAR_CON_ID, inicio, error, !exitoso);
+        }
+    }
+
+    @Override
+    public boolean modificarRegistro(Registro registro) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        boolean modificado = false;
+        try {
+            modificado = delegado.modificarRegistro(registro);
+            error = delegado.getFallosDelHilo() != fallos;
+            return modificado;
+        } finally {
+            registrar(Operacion.MODIFICAR, inicio, error, !modificado);
+        }
+    }
+
+    @Override
+    public Registro agregarYObtener(Registro registro) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        Registro guardado = null;
+        try {
+            guardado = delegado.agregarYObtener(registro);
+            error = delegado.getFallosDelHilo() != fallos;
+            return guardado;
+        } finally {
+            registrar(Operacion.AGREGAR_Y_OBTENER, inicio, error, guardado == null);
+        }
+    }
+
+    @Override
+    public Registro guardarRegistro(Registro registro) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        Registro guardado = null;
+        try {
+            guardado = delegado.guardarRegistro(registro);
+            error = delegado.getFallosDelHilo() != fallos;
+            return guardado;
+        } finally {
+            registrar(Operacion.GUARDAR, inicio, error, guardado == null);
+        }
+    }
+
+    /**
+     * Un conflicto de versión se cuenta como resultado negativo, no como error.
+     */
+    @Override
+    public Registro modificarConVersion(Registro registro) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        Registro guardado = null;
+        try {
+            guardado = delegado.modificarConVersion(registro);
+            error = delegado.getFallosDelHilo() != fallos;
+            return guardado;
+        } catch (ConflictoVersionException e) {
+            error = false;
+            throw e;
+        } finally {
+            registrar(Operacion.MODIFICAR_CON_VERSION, inicio, error, guardado == null);
+        }
+    }
+
+    @Override
+    public boolean eliminarRegistro(Registro registro) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        boolean eliminado = false;
+        try {
+            eliminado = delegado.eliminarRegistro(registro);
+            error = delegado.getFallosDelHilo() != fallos;
+            return eliminado;
+        } finally {
+            registrar(Operacion.ELIMINAR, inicio, error, !eliminado);
+        }
+    }
+
+    /**
+     * Eliminar cero registros cuenta como resultado negativo.
+     */
+    @Override
+    public int eliminarRegistros(Collection<Integer> ids) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        int eliminados = -1;
+        try {
+            eliminados = delegado.eliminarRegistros(ids);
+            error = eliminados < 0 || delegado.getFallosDelHilo() != fallos;
+            return eliminados;
+        } finally {
+            registrar(Operacion.ELIMINAR_VARIOS, inicio, error, eliminados == 0);
+        }
+    }
+
+    /**
+     * Mide el tiempo hasta que el flujo queda abierto; la lectura de las filas corre por cuenta del consumidor.
+     */
+    @Override
+    public Stream<Registro> streamRegistros() {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        try {
+            Stream<Registro> registros = delegado.streamRegistros();
+            error = delegado.getFallosDelHilo() != fallos;
+            return registros;
+        } finally {
+            registrar(Operacion.STREAM, inicio, error, false);
+        }
+    }
+
+    @Override
+    public long recorrerRegistros(Consumer<? super Registro> consumidor) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        try {
+            long total = delegado.recorrerRegistros(consumidor);
+            error = total < 0 || delegado.getFallosDelHilo() != fallos;
+            return total;
+        } finally {
+            registrar(Operacion.RECORRER, inicio, error, false);
+        }
+    }
+
+    @Override
+    public List<Registro> listarRegistrosDespuesDe(int idAnterior, int limite) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        try {
+            List<Registro> registros = delegado.listarRegistrosDespuesDe(idAnterior, limite);
+            error = delegado.getFallosDelHilo() != fallos;
+            return registros;
+        } finally {
+            registrar(Operacion.PAGINAR_POR_ID, inicio, error, false);
+        }
+    }
+
+    @Override
+    public List<Registro> listarRegistrosPorFechaDespuesDe(Timestamp fechaAnterior, int idAnterior, int limite) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        try {
+            List<Registro> registros = delegado.listarRegistrosPorFechaDespuesDe(fechaAnterior, idAnterior, limite);
+            error = delegado.getFallosDelHilo() != fallos;
+            return registros;
+        } finally {
+            registrar(Operacion.PAGINAR_POR_FECHA, inicio, error, false);
+        }
+    }
+
+    @Override
+    public List<Registro> listarRegistrosEntreFechas(Timestamp desde, Timestamp hasta) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        try {
+            List<Registro> registros = delegado.listarRegistrosEntreFechas(desde, hasta);
+            error = delegado.getFallosDelHilo() != fallos;
+            return registros;
+        } finally {
+            registrar(Operacion.ENTRE_FECHAS, inicio, error, false);
+        }
+    }
+
+    @Override
+    public List<Registro> listarRegistrosDeUsuario(int usuario) {
+        long inicio = System.nanoTime();
+        long fallos = delegado.getFallosDelHilo();
+        boolean error = true;
+        try {
+            List<Registro> registros = delegado.listarRegistrosDeUsuario(usuario);
+            error = delegado.getFallosDelHilo() != fallos;
+            return registros;
+        } finally {
+            registrar(Operacion.DE_USUARIO, inicio, error, false);
+        }
+    }
+
+    private void registrar(Operacion operacion, long inicio, boolean error, boolean negativo) {
+        long duracion = System.nanoTime() - inicio;
+        MetricasOperacion m = metricas.get(operacion);
+        m.latencias.registrar(duracion);
+        m.llamadas.increment();
+        if (error) {
+            m.errores.increment();
+        } else if (negativo) {
+            m.negativos.increment();
+        }
+
+        if (duracion >= umbralLentitudNanos) {
+            m.lentas.increment();
+            ConsultaLentaEvento evento = new ConsultaLentaEvento();
+            if (evento.isEnabled()) {
+                evento.operacion = operacion.name();
+                evento.duracion = duracion;
+                evento.error = error;
+                evento.commit();
+            }
+        }
+    }
+}
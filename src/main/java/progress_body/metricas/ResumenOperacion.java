@@ -0,0 +1,18 @@
+package progress_body.metricas;
+
+/**
+ * Métricas acumuladas de una operación desde que se creó el decorador.
+ *
+ * @param operacion La operación.
+ * @param llamadas  Número de llamadas.
+ * @param errores   Llamadas que terminaron con una excepción o en las que el DAO informó un fallo.
+ * @param negativos Llamadas que devolvieron false (registro inexistente o escritura no aplicada).
+ * @param lentas    Llamadas que superaron el umbral de lentitud.
+ * @param p50Nanos  Percentil 50 de la latencia.
+ * @param p99Nanos  Percentil 99 de la latencia.
+ * @param p999Nanos Percentil 99,9 de la latencia.
+ * @param maxNanos  Latencia máxima.
+ */
+public record ResumenOperacion(Operacion operacion, long llamadas, long errores, long negativos, long lentas,
+                               long p50Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+}
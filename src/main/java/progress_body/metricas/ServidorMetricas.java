@@ -0,0 +1,54 @@
+package progress_body.metricas;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+/**
+ * Servidor HTTP mínimo que expone las métricas en {@code http://127.0.0.1:<puerto>/metricas}
+ * para que un recolector local las consulte. Solo escucha en la interfaz de loopback.
+ */
+public class ServidorMetricas implements AutoCloseable {
+
+    private final HttpServer servidor;
+
+    /**
+     * Inicia el servidor.
+     *
+     * @param instantanea El proveedor de métricas, por ejemplo {@code dao::getInstantanea}. No debe ser nulo.
+     * @param puerto      El puerto local; 0 elige uno libre.
+     * @throws IOException si no se pudo abrir el puerto.
+     */
+    public ServidorMetricas(Supplier<InstantaneaMetricas> instantanea, int puerto) throws IOException {
+        if (instantanea == null) {
+            throw new IllegalArgumentException("El proveedor de métricas no puede ser nulo.");
+        }
+        servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto), 0);
+        servidor.createContext("/metricas", intercambio -> {
+            byte[] cuerpo = instantanea.get().aTexto().getBytes(StandardCharsets.UTF_8);
+            intercambio.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            intercambio.sendResponseHeaders(200, cuerpo.length);
+            try (OutputStream salida = intercambio.getResponseBody()) {
+                salida.write(cuerpo);
+            }
+        });
+        servidor.start();
+    }
+
+    /**
+     * @return El puerto en el que escucha el servidor.
+     */
+    public int getPuerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        servidor.stop(0);
+    }
+}
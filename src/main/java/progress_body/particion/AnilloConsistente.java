@@ -0,0 +1,133 @@
+package progress_body.particion;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Anillo de hashing consistente que asigna cada usuario a un nodo con nombre.
+ * <p>
+ * Cada nodo ocupa {@code nodosVirtuales} posiciones pseudoaleatorias del anillo, y un usuario pertenece al
+ * primer nodo que encuentra avanzando desde el hash de su número. Al agregar o quitar un nodo solo cambian
+ * de dueño los usuarios de los tramos que ese nodo gana o pierde, alrededor de {@code 1/n} del total, y las
+ * posiciones virtuales reparten la carga de forma pareja. La asignación depende solo de los nombres de los
+ * nodos, no del orden en que se agregaron.
+ * <p>
+ * No es seguro para usarse desde varios hilos sin sincronización externa.
+ */
+public final class AnilloConsistente {
+
+    private static final long FNV_BASE = 0xcbf29ce484222325L;
+    private static final long FNV_PRIMO = 0x100000001b3L;
+
+    private final int nodosVirtuales;
+    private final TreeMap<Long, String> anillo = new TreeMap<>();
+    private final Set<String> nodos = new TreeSet<>();
+
+    /**
+     * @param nodosVirtuales Las posiciones que ocupa cada nodo en el anillo.
+     * @throws IllegalArgumentException si el número de nodos virtuales no es positivo.
+     */
+    public AnilloConsistente(int nodosVirtuales) {
+        if (nodosVirtuales <= 0) {
+            throw new IllegalArgumentException("El número de nodos virtuales debe ser mayor a cero.");
+        }
+        this.nodosVirtuales = nodosVirtuales;
+    }
+
+    /**
+     * Agrega un nodo al anillo.
+     *
+     * @param nodo El nombre del nodo. No debe ser nulo ni vacío.
+     * @return true si se agregó; false si ya estaba.
+     * @throws IllegalArgumentException si el nombre es nulo o vacío.
+     */
+    public boolean agregar(String nodo) {
+        if (nodo == null || nodo.isBlank()) {
+            throw new IllegalArgumentException("El nombre del nodo no puede estar vacío.");
+        }
+        if (!nodos.add(nodo)) {
+            return false;
+        }
+        for (int i = 0; i < nodosVirtuales; i++) {
+            // Si dos posiciones chocan, gana el nombre menor, sin importar el orden de llegada
+            anillo.merge(posicion(nodo, i), nodo, (actual, nuevo) -> actual.compareTo(nuevo) <= 0 ? actual : nuevo);
+        }
+        return true;
+    }
+
+    /**
+     * Quita un nodo del anillo; sus usuarios pasan a los nodos siguientes.
+     *
+     * @param nodo El nombre del nodo.
+     * @return true si se quitó; false si no estaba.
+     */
+    public boolean quitar(String nodo) {
+        if (!nodos.remove(nodo)) {
+            return false;
+        }
+        for (int i = 0; i < nodosVirtuales; i++) {
+            anillo.remove(posicion(nodo, i), nodo);
+        }
+        // Devuelve a los demás nodos las posiciones que este les había ganado en un choque
+        for (String otro : nodos) {
+            for (int i = 0; i < nodosVirtuales; i++) {
+                anillo.putIfAbsent(posicion(otro, i), otro);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Devuelve el nodo dueño de un usuario.
+     *
+     * @param usuario El número de usuario.
+     * @return El nombre del nodo, o null si el anillo está vacío.
+     */
+    public String nodoDe(int usuario) {
+        if (anillo.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entrada = anillo.ceilingEntry(mezclar(usuario));
+        return (entrada != null ? entrada : anillo.firstEntry()).getValue();
+    }
+
+    /**
+     * @return Los nombres de los nodos, en orden alfabético.
+     */
+    public Set<String> nodos() {
+        return Collections.unmodifiableSet(nodos);
+    }
+
+    public int getNodosVirtuales() {
+        return nodosVirtuales;
+    }
+
+    /**
+     * Posición de la réplica {@code i} de un nodo: FNV-1a del nombre y el número, mezclado con
+     * {@link #mezclar(long)} para que nombres parecidos no queden juntos.
+     */
+    private static long posicion(String nodo, int i) {
+        long hash = FNV_BASE;
+        for (byte b : (nodo + '#' + i).getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIMO;
+        }
+        return mezclar(hash);
+    }
+
+    /**
+     * Paso final de MurmurHash3 (fmix64): reparte por todo el anillo incluso usuarios consecutivos.
+     */
+    private static long mezclar(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+}
@@ -0,0 +1,33 @@
+package progress_body.particion;
+
+import progress_body.datos.EsquemaRegistro;
+import progress_body.datos.IRegistroDAO;
+
+/**
+ * Una base de datos de {@link RegistroDAOParticionado}.
+ * <p>
+ * {@link RegistroDAOParticionado} asigna a los registros de la partición IDs desde {@code primerId} y
+ * hasta antes del {@code primerId} de la siguiente, de modo que cada ID identifica su partición sin
+ * consultar a las demás, y los inserta con su ID. El rango debe alcanzar para todos los registros que
+ * vaya a guardar: cuando se agota, las altas fallan. Si otros programas agregan registros directamente
+ * en la base, el contador propio debe reservarse antes con {@link EsquemaRegistro#reservarIds} o
+ * {@link progress_body.almacen.RegistroDAOLocal#reservarIds(int)}.
+ *
+ * @param nombre   El nombre de la partición; es su identidad en el anillo. No debe ser nulo ni vacío.
+ * @param dao      El DAO de la base de datos o esquema. No debe ser nulo.
+ * @param primerId El primer ID del rango de la partición. Debe ser mayor a cero.
+ */
+public record Particion(String nombre, IRegistroDAO dao, int primerId) {
+
+    public Particion {
+        if (nombre == null || nombre.isBlank()) {
+            throw new IllegalArgumentException("El nombre de la partición no puede estar vacío.");
+        }
+        if (dao == null) {
+            throw new IllegalArgumentException("El DAO de la partición no puede ser nulo.");
+        }
+        if (primerId <= 0) {
+            throw new IllegalArgumentException("El primer ID debe ser mayor a cero.");
+        }
+    }
+}
@@ -0,0 +1,1253 @@
+package progress_body.particion;
+
+import progress_body.datos.ConflictoVersionException;
+import progress_body.datos.FalloLote;
+import progress_body.datos.FallosPorHilo;
+import progress_body.datos.IRegistroDAO;
+import progress_body.datos.ResultadoLote;
+import progress_body.dominio.Registro;
+import progress_body.dominio.RegistroInmutable;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Implementación de {@link IRegistroDAO} que reparte los registros entre varias bases de datos o
+ * esquemas según su usuario dueño.
+ * <p>
+ * Un {@link AnilloConsistente} asigna cada usuario a una {@link Particion}: sus altas van a esa
+ * partición y {@link #listarRegistrosDeUsuario(int)} solo la consulta a ella. Este DAO asigna los IDs
+ * del rango de cada partición y los inserta con {@link IRegistroDAO#agregarRegistrosConId(List)}, así
+ * que un ID nunca pasa del rango de su partición. Las operaciones por ID van a la partición dueña del
+ * rango. Una mudanza puede dejar registros fuera de la partición de su rango; el DAO no anota cada ID
+ * movido, solo qué particiones guardan alguno, y si la partición del rango no tiene el ID se consulta
+ * a esas particiones a la vez.
+ * Las consultas sobre todos los usuarios se envían a todas las particiones a la vez, cada una en un hilo
+ * virtual, y se combinan los resultados; {@link #consultarParticiones(Function)} y
+ * {@link #reducir(Function, BinaryOperator)} hacen lo mismo con cualquier agregado.
+ * <p>
+ * {@link #agregarParticion(Particion)}, {@link #quitarParticion(String)} y {@link #reequilibrar()} mueven
+ * los registros de los usuarios que cambiaron de dueño en el anillo, que son alrededor de {@code 1/n}
+ * del total. Un registro movido conserva su ID, su fecha y su versión. La mudanza avanza en páginas de
+ * {@value #TAMANO_MUDANZA} registros, cada una con el cerrojo de escritura tomado durante una lectura,
+ * una copia en bloque y un borrado en bloque; entre páginas las demás operaciones siguen. Mientras dura,
+ * {@link #listarRegistrosDeUsuario(int)} consulta todas las particiones.
+ * <p>
+ * Una escritura afecta a una sola partición. {@link #agregarRegistros(Iterator, int)} es una transacción
+ * por partición, no una sola. Para pruebas, cada partición puede ser un
+ * {@link progress_body.almacen.RegistroDAOLocal} en su propio directorio. Este DAO no cierra los DAOs
+ * de las particiones.
+ */
+public class RegistroDAOParticionado implements IRegistroDAO, AutoCloseable {
+
+    public static final int NODOS_VIRTUALES_POR_DEFECTO = 128;
+
+    /**
+     * Registros que se leen y se mueven cada vez que una mudanza toma el cerrojo de escritura.
+     */
+    public static final int TAMANO_MUDANZA = 500;
+
+    private static final Comparator<Registro> ORDEN_ID = Comparator.comparingInt(Registro::getId);
+
+    private final AnilloConsistente anillo;
+    private final Map<String, Particion> porNombre = new LinkedHashMap<>();
+    private final TreeMap<Integer, Particion> porRango = new TreeMap<>(); // Primer ID -> partición
+    private final Map<String, Rango> rangos = new HashMap<>(); // Nombre -> IDs que asigna la partición
+    private final Set<Particion> conReubicados = new HashSet<>(); // Las que guardan IDs de otro rango; se cambia con el cerrojo de escritura
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+    private final ReentrantLock mudanza = new ReentrantLock(); // Una mudanza a la vez
+    private volatile boolean mudando;
+    private final ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final FallosPorHilo fallosPorHilo = new FallosPorHilo(); // Los propios y los de las particiones consultadas desde otros hilos
+
+    private RegistroDAOParticionado(List<Particion> particiones, int nodosVirtuales) {
+        if (particiones == null || particiones.isEmpty()) {
+            throw new IllegalArgumentException("Debe haber al menos una partición.");
+        }
+        this.anillo = new AnilloConsistente(nodosVirtuales);
+        for (Particion particion : particiones) {
+            registrar(particion);
+        }
+    }
+
+    /**
+     * Abre el DAO con {@value #NODOS_VIRTUALES_POR_DEFECTO} nodos virtuales por partición.
+     *
+     * @see #abrir(List, int)
+     */
+    public static RegistroDAOParticionado abrir(List<Particion> particiones) {
+        return abrir(particiones, NODOS_VIRTUALES_POR_DEFECTO);
+    }
+
+    /**
+     * Abre el DAO. Lee cada partición para saber si guarda registros fuera de su rango, que dejó ahí una
+     * mudanza, y para continuar la asignación de IDs de cada rango después del mayor en uso.
+     * Se supone que cada registro ya está en la partición que le asigna el anillo; si no, debe llamarse
+     * a {@link #reequilibrar()}.
+     *
+     * @param particiones    Las particiones. No debe ser nula ni vacía, y los nombres y primeros IDs no deben repetirse.
+     * @param nodosVirtuales Las posiciones de cada partición en el anillo.
+     * @return El DAO, o null si no se pudo leer alguna partición.
+     * @throws IllegalArgumentException si la lista es nula o vacía, contiene una partición nula o repetida,
+     *                                  o el número de nodos virtuales no es positivo.
+     */
+    public static RegistroDAOParticionado abrir(List<Particion> particiones, int nodosVirtuales) {
+        RegistroDAOParticionado dao = new RegistroDAOParticionado(particiones, nodosVirtuales);
+        if (!dao.cargar()) {
+            dao.close();
+            return null;
+        }
+        return dao;
+    }
+
+    /**
+     * Suma los fallos propios y de las particiones en el hilo actual y los que ocurrieron en los
+     * hilos que consultan varias particiones a la vez por cuenta de este hilo.
+     */
+    @Override
+    public long getFallosDelHilo() {
+        long total = fallosPorHilo.delHilo();
+        for (Particion particion : getParticiones()) {
+            total += particion.dao().getFallosDelHilo();
+        }
+        return total;
+    }
+
+    @Override
+    public List<Registro> listarRegistros() {
+        List<Registro> registros = concatenar(enTodas(IRegistroDAO::listarRegistros));
+        registros.sort(ORDEN_ID);
+        return registros;
+    }
+
+    @Override
+    public List<RegistroInmutable> listarRegistrosInmutables() {
+        List<RegistroInmutable> registros = concatenar(enTodas(IRegistroDAO::listarRegistrosInmutables));
+        registros.sort(Comparator.comparingInt(RegistroInmutable::id));
+        return List.copyOf(registros);
+    }
+
+    @Override
+    public boolean buscarRegistro(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo");
+        }
+        cerrojo.readLock().lock();
+        try {
+            Particion particion = ubicar(registro.getId());
+            return particion != null && particion.dao().buscarRegistro(registro);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean registroExiste(int id) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("El ID debe ser mayor a cero.");
+        }
+        cerrojo.readLock().lock();
+        try {
+            Particion particion = ubicar(id);
+            return particion != null && particion.dao().registroExiste(id);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean agregarRegistro(Registro registro) {
+        return agregarYObtener(registro) != null;
+    }
+
+    /**
+     * Asigna al registro el siguiente ID del rango de la partición de su usuario y lo agrega en ella.
+     * Si no tiene fecha se usa la hora actual.
+     *
+     * @return Un nuevo objeto con el registro guardado, o null si no se pudo agregar o el rango se agotó.
+     */
+    @Override
+    public Registro agregarYObtener(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        cerrojo.readLock().lock();
+        try {
+            Particion destino = particionDeUsuario(registro.getUsuario());
+            int id = reservarIds(destino, 1);
+            if (id < 0) {
+                return null;
+            }
+            Registro alta = alta(registro, id);
+            return destino.dao().agregarRegistrosConId(List.of(alta)).totalInsertados() == 1 ? alta : null;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Guarda el registro en la partición de su usuario. Con un ID distinto de 0, el registro debe estar
+     * guardado en esa misma partición o, si no existe, el ID debe pertenecer a su rango.
+     *
+     * @throws IllegalArgumentException si el registro es nulo, o si su ID está guardado en otra
+     *                                  partición o pertenece al rango de otra.
+     */
+    @Override
+    public Registro guardarRegistro(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        if (registro.getId() == 0) {
+            return agregarYObtener(registro);
+        }
+        cerrojo.readLock().lock();
+        try {
+            Particion destino = particionDeUsuario(registro.getUsuario());
+            reservarIdElegido(destino, registro);
+            return destino.dao().guardarRegistro(registro);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean modificarRegistro(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        cerrojo.readLock().lock();
+        try {
+            Particion particion = ubicar(registro.getId());
+            return particion != null && particion.dao().modificarRegistro(registro);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Registro modificarConVersion(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        cerrojo.readLock().lock();
+        try {
+            Particion particion = ubicar(registro.getId());
+            if (particion == null) {
+                throw new ConflictoVersionException(registro.getId(), registro.getVersion());
+            }
+            return particion.dao().modificarConVersion(registro);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean eliminarRegistro(Registro registro) {
+        if (registro == null) {
+            throw new IllegalArgumentException("El registro no puede ser nulo.");
+        }
+        cerrojo.readLock().lock();
+        try {
+            Particion particion = ubicar(registro.getId());
+            if (particion == null || !particion.dao().eliminarRegistro(registro)) {
+                return false;
+            }
+            return true;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lee el iterador en bloques de {@code tamanoLote} registros y agrega cada bloque en todas las
+     * particiones a la vez: reparte sus registros por usuario y les asigna IDs del rango de cada partición.
+     * Cada partición inserta su parte del bloque en su propia transacción, así que puede fallar una y no
+     * las demás, y los bloques anteriores a un error quedan agregados. Los fallos se expresan en
+     * posiciones de la entrada original.
+     *
+     * @throws IllegalArgumentException si el iterador es nulo, contiene un registro nulo o el tamaño de
+     *                                  bloque no es positivo. Un registro nulo se detecta al leer su bloque,
+     *                                  después de agregar los anteriores.
+     */
+    @Override
+    public ResultadoLote agregarRegistros(Iterator<Registro> registros, int tamanoLote) {
+        if (registros == null) {
+            throw new IllegalArgumentException("El iterador de registros no puede ser nulo.");
+        }
+        if (tamanoLote <= 0) {
+            throw new IllegalArgumentException("El tamaño del lote debe ser mayor a cero.");
+        }
+        List<Integer> generados = new ArrayList<>();
+        List<FalloLote> fallos = new ArrayList<>();
+        List<Registro> bloque = new ArrayList<>(Math.min(tamanoLote, TAMANO_MUDANZA));
+        int indice = 0; // Posición del primer registro del bloque actual
+        while (registros.hasNext()) {
+            bloque.clear();
+            while (bloque.size() < tamanoLote && registros.hasNext()) {
+                Registro registro = registros.next();
+                if (registro == null) {
+                    throw new IllegalArgumentException("El registro no puede ser nulo.");
+                }
+                bloque.add(registro);
+            }
+            ResultadoLote resultado = agregarBloque(bloque);
+            generados.addAll(resultado.idsGenerados());
+            for (FalloLote fallo : resultado.fallos()) {
+                fallos.add(new FalloLote(indice + fallo.indiceInicio(), fallo.cantidad(), fallo.mensaje()));
+            }
+            indice += bloque.size();
+        }
+        return new ResultadoLote(generados, fallos);
+    }
+
+    /**
+     * Agrega cada registro con su ID en la partición de su usuario, con las mismas reglas que
+     * {@link #guardarRegistro(Registro)}: el ID debe pertenecer al rango de esa partición o estar
+     * anotado en ella tras una mudanza. Cada partición los inserta en su propia transacción.
+     *
+     * @throws IllegalArgumentException si la lista es nula, contiene un registro nulo o sin ID, o un ID
+     *                                  pertenece a otra partición.
+     */
+    @Override
+    public ResultadoLote agregarRegistrosConId(List<Registro> registros) {
+        IRegistroDAO.validarConId(registros);
+        if (registros.isEmpty()) {
+            return new ResultadoLote(List.of(), List.of());
+        }
+        cerrojo.readLock().lock();
+        try {
+            Map<Particion, List<Integer>> posiciones = repartirPorUsuario(registros);
+            Map<Particion, List<Registro>> altas = new HashMap<>();
+            for (Map.Entry<Particion, List<Integer>> entrada : posiciones.entrySet()) {
+                List<Registro> conId = new ArrayList<>(entrada.getValue().size());
+                for (int posicion : entrada.getValue()) {
+                    Registro registro = registros.get(posicion);
+                    reservarIdElegido(entrada.getKey(), registro);
+                    conId.add(registro);
+                }
+                altas.put(entrada.getKey(), conId);
+            }
+            return insertar(registros.size(), posiciones, altas);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Elimina los registros de todas las particiones a la vez, con una operación en bloque por partición.
+     * Cada ID se envía a la partición de su rango y a las que guardan registros de otros rangos.
+     *
+     * @return El número de registros eliminados, o -1 si falló alguna partición.
+     */
+    @Override
+    public int eliminarRegistros(Collection<Integer> ids) {
+        IRegistroDAO.validarIds(ids);
+        cerrojo.readLock().lock();
+        try {
+            Map<Particion, List<Integer>> porParticion = new LinkedHashMap<>();
+            for (int id : ids) {
+                Particion delRango = particionDeRango(id);
+                if (delRango != null) {
+                    porParticion.computeIfAbsent(delRango, p -> new ArrayList<>()).add(id);
+                }
+                for (Particion particion : conReubicados) {
+                    if (particion != delRango) {
+                        porParticion.computeIfAbsent(particion, p -> new ArrayList<>()).add(id);
+                    }
+                }
+            }
+            if (porParticion.isEmpty()) {
+                return 0;
+            }
+            List<Particion> particiones = new ArrayList<>(porParticion.keySet());
+            List<Integer> eliminados = enParalelo(particiones, particion -> particion.dao().eliminarRegistros(porParticion.get(particion)));
+            int total = 0;
+            for (int k = 0; k < particiones.size(); k++) {
+                if (eliminados.get(k) < 0) {
+                    total = -1;
+                } else if (total >= 0) {
+                    total += eliminados.get(k);
+                }
+            }
+            return total;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Mezcla por ID los flujos de las particiones. Se abre un flujo por partición, todos a la vez, y
+     * se cierran al cerrar el flujo devuelto. Los registros que se muevan de partición mientras se lee
+     * pueden aparecer dos veces o ninguna.
+     */
+    @Override
+    public Stream<Registro> streamRegistros() {
+        List<Particion> particiones = getParticiones();
+        List<Stream<Registro>> flujos = new ArrayList<>(particiones.size());
+        try {
+            for (Particion particion : particiones) {
+                flujos.add(particion.dao().streamRegistros());
+            }
+        } catch (RuntimeException e) {
+            flujos.forEach(Stream::close);
+            throw e;
+        }
+        return mezclarPorId(flujos);
+    }
+
+    /**
+     * Si ningún registro está fuera de la partición de su rango, recorre las particiones de una en una,
+     * en orden de rango; si no, recorre {@link #streamRegistros()}. En ambos casos el consumidor recibe
+     * los registros ordenados por ID y desde un solo hilo. Si falla una partición no se recorren las siguientes.
+     */
+    @Override
+    public long recorrerRegistros(Consumer<? super Registro> consumidor) {
+        if (consumidor == null) {
+            throw new IllegalArgumentException("El consumidor no puede ser nulo.");
+        }
+        cerrojo.readLock().lock();
+        try {
+            if (conReubicados.isEmpty()) {
+                long total = 0;
+                for (Particion particion : porRango.values()) {
+                    long recorridos = particion.dao().recorrerRegistros(consumidor);
+                    if (recorridos < 0) {
+                        return -1;
+                    }
+                    total += recorridos;
+                }
+                return total;
+            }
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+        return IRegistroDAO.super.recorrerRegistros(consumidor);
+    }
+
+    /**
+     * Si ningún registro está fuera de la partición de su rango, consulta las particiones en orden de
+     * rango, empezando por la que contiene {@code idAnterior}, hasta completar la página. Si no, pide la
+     * página a todas las particiones a la vez y se queda con los primeros IDs.
+     */
+    @Override
+    public List<Registro> listarRegistrosDespuesDe(int idAnterior, int limite) {
+        IRegistroDAO.validarPagina(idAnterior, limite);
+
+        cerrojo.readLock().lock();
+        try {
+            if (!conReubicados.isEmpty()) {
+                List<Registro> registros = concatenar(enParalelo(List.copyOf(porRango.values()),
+                        particion -> particion.dao().listarRegistrosDespuesDe(idAnterior, limite)));
+                registros.sort(ORDEN_ID);
+                return registros.size() > limite ? new ArrayList<>(registros.subList(0, limite)) : registros;
+            }
+            List<Registro> registros = new ArrayList<>(Math.min(limite, 1024));
+            Integer desde = porRango.floorKey(idAnterior);
+            for (Particion particion : porRango.tailMap(desde == null ? porRango.firstKey() : desde, true).values()) {
+                if (registros.size() == limite) {
+                    break;
+                }
+                registros.addAll(particion.dao().listarRegistrosDespuesDe(idAnterior, limite - registros.size()));
+            }
+            return registros;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Registro> listarRegistrosPorFechaDespuesDe(Timestamp fechaAnterior, int idAnterior, int limite) {
+        IRegistroDAO.validarPagina(idAnterior, limite);
+        List<Registro> registros = concatenar(enTodas(dao -> dao.listarRegistrosPorFechaDespuesDe(fechaAnterior, idAnterior, limite)));
+        registros.sort(ORDEN_FECHA_ID);
+        return registros.size() > limite ? new ArrayList<>(registros.subList(0, limite)) : registros;
+    }
+
+    @Override
+    public List<Registro> listarRegistrosEntreFechas(Timestamp desde, Timestamp hasta) {
+        IRegistroDAO.validarIntervalo(desde, hasta);
+        List<Registro> registros = concatenar(enTodas(dao -> dao.listarRegistrosEntreFechas(desde, hasta)));
+        registros.sort(ORDEN_FECHA_ID);
+        return registros;
+    }
+
+    /**
+     * Consulta solo la partición del usuario. Durante una mudanza sus registros pueden seguir en la
+     * partición anterior, así que se consultan todas.
+     */
+    @Override
+    public List<Registro> listarRegistrosDeUsuario(int usuario) {
+        IRegistroDAO.validarUsuario(usuario);
+        cerrojo.readLock().lock();
+        try {
+            if (!mudando) {
+                return particionDeUsuario(usuario).dao().listarRegistrosDeUsuario(usuario);
+            }
+            List<Registro> registros = concatenar(enParalelo(List.copyOf(porRango.values()),
+                    particion -> particion.dao().listarRegistrosDeUsuario(usuario)));
+            registros.sort(ORDEN_FECHA_ID);
+            return registros;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ejecuta una consulta en todas las particiones a la vez y devuelve sus resultados, por ejemplo
+     * para calcular un agregado sobre todos los usuarios.
+     *
+     * @param consulta La consulta a ejecutar con el DAO de cada partición. No debe ser nula.
+     * @return Los resultados, en orden de rango de las particiones.
+     * @throws IllegalArgumentException si la consulta es nula.
+     * @throws IllegalStateException    si se interrumpe la espera o la consulta lanza una excepción comprobada.
+     */
+    public <T> List<T> consultarParticiones(Function<? super IRegistroDAO, ? extends T> consulta) {
+        if (consulta == null) {
+            throw new IllegalArgumentException("La consulta no puede ser nula.");
+        }
+        return enTodas(consulta);
+    }
+
+    /**
+     * Ejecuta una consulta en todas las particiones a la vez y combina sus resultados. Por ejemplo,
+     * {@code reducir(dao -> dao.recorrerRegistros(r -> { }), Long::sum)} cuenta todos los registros.
+     *
+     * @param consulta  La consulta a ejecutar con el DAO de cada partición. No debe ser nula.
+     * @param combinar  La función que combina dos resultados. No debe ser nula.
+     * @return El resultado combinado.
+     * @throws IllegalArgumentException si algún argumento es nulo.
+     */
+    public <T> T reducir(Function<? super IRegistroDAO, ? extends T> consulta, BinaryOperator<T> combinar) {
+        if (combinar == null) {
+            throw new IllegalArgumentException("La función de combinación no puede ser nula.");
+        }
+        List<T> resultados = consultarParticiones(consulta);
+        T total = resultados.getFirst();
+        for (int i = 1; i < resultados.size(); i++) {
+            total = combinar.apply(total, resultados.get(i));
+        }
+        return total;
+    }
+
+    /**
+     * Agrega una partición al anillo y le mueve los registros de los usuarios que pasan a ser suyos.
+     * Su rango de IDs puede caer en el de otra partición, que queda recortado, siempre que esa otra
+     * partición todavía no haya asignado IDs dentro del nuevo rango.
+     *
+     * @param particion La partición nueva. No debe ser nula ni repetir un nombre o primer ID.
+     * @return El número de registros movidos, o -1 si no se pudo leer la partición nueva.
+     * @throws IllegalArgumentException si la partición es nula o repetida, o su rango ya está en uso.
+     */
+    public int agregarParticion(Particion particion) {
+        if (particion == null) {
+            throw new IllegalArgumentException("La partición no puede ser nula.");
+        }
+        mudanza.lock();
+        try {
+            cerrojo.writeLock().lock();
+            try {
+                if (porNombre.containsKey(particion.nombre()) || porRango.containsKey(particion.primerId())) {
+                    throw new IllegalArgumentException("Ya existe una partición con el nombre " + particion.nombre()
+                            + " o el primer ID " + particion.primerId() + ".");
+                }
+                Map.Entry<Integer, Particion> anterior = porRango.floorEntry(particion.primerId());
+                Rango recortado = anterior == null ? null : rangos.get(anterior.getValue().nombre());
+                if (recortado != null && recortado.siguiente.get() > particion.primerId()) {
+                    throw new IllegalArgumentException("La partición " + anterior.getValue().nombre()
+                            + " ya asignó IDs desde " + particion.primerId() + ".");
+                }
+                Integer siguiente = porRango.higherKey(particion.primerId());
+                int fin = siguiente == null ? Integer.MAX_VALUE : siguiente;
+                int mayor = mayorIdEntre(particion, particion.primerId(), fin);
+                int reubicado = mayorReubicadoEntre(particion.primerId(), fin);
+                int fuera = primerReubicado(particion, fin);
+                if (mayor < 0 || reubicado < 0 || fuera < 0) {
+                    return -1;
+                }
+
+                registrar(particion);
+                if (recortado != null) {
+                    recortado.fin = Math.min(recortado.fin, particion.primerId());
+                }
+                if (fuera > 0) {
+                    conReubicados.add(particion);
+                }
+                rangos.put(particion.nombre(), new Rango(Math.max(mayor, reubicado) + 1, fin));
+                mudando = true;
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+            return mover();
+        } finally {
+            mudando = false;
+            mudanza.unlock();
+        }
+    }
+
+    /**
+     * Quita una partición del anillo y mueve sus registros a las particiones que ahora son dueñas de sus
+     * usuarios. Si algún registro no se pudo mover, la partición sigue atendiendo sus IDs hasta que
+     * {@link #reequilibrar()} termine de vaciarla. La partición no se cierra.
+     *
+     * @param nombre El nombre de la partición.
+     * @return El número de registros movidos.
+     * @throws IllegalArgumentException si la partición no existe o es la única del anillo.
+     */
+    public int quitarParticion(String nombre) {
+        mudanza.lock();
+        try {
+            cerrojo.writeLock().lock();
+            try {
+                Particion particion = porNombre.get(nombre);
+                if (particion == null) {
+                    throw new IllegalArgumentException("No existe la partición " + nombre + ".");
+                }
+                if (anillo.nodos().size() == 1 && anillo.nodos().contains(nombre)) {
+                    throw new IllegalArgumentException("No se puede quitar la única partición.");
+                }
+                anillo.quitar(nombre);
+                mudando = true;
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+            return mover();
+        } finally {
+            mudando = false;
+            mudanza.unlock();
+        }
+    }
+
+    /**
+     * Mueve a su partición los registros que estén en otra, por ejemplo tras una mudanza interrumpida,
+     * y descarta las particiones quitadas que quedaron vacías.
+     *
+     * @return El número de registros movidos.
+     */
+    public int reequilibrar() {
+        mudanza.lock();
+        try {
+            mudando = true;
+            return mover();
+        } finally {
+            mudando = false;
+            mudanza.unlock();
+        }
+    }
+
+    /**
+     * @return El nombre de la partición dueña del usuario.
+     */
+    public String particionDe(int usuario) {
+        IRegistroDAO.validarUsuario(usuario);
+        cerrojo.readLock().lock();
+        try {
+            return anillo.nodoDe(usuario);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Las particiones, incluidas las quitadas que todavía tienen registros, en orden de rango.
+     */
+    public List<Particion> getParticiones() {
+        cerrojo.readLock().lock();
+        try {
+            return List.copyOf(porRango.values());
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Espera a que terminen las consultas en curso. No cierra los DAOs de las particiones.
+     */
+    @Override
+    public void close() {
+        ejecutor.close();
+    }
+
+    private void registrar(Particion particion) {
+        if (particion == null) {
+            throw new IllegalArgumentException("La partición no puede ser nula.");
+        }
+        if (porNombre.containsKey(particion.nombre()) || porRango.containsKey(particion.primerId())) {
+            throw new IllegalArgumentException("Ya existe una partición con el nombre " + particion.nombre()
+                    + " o el primer ID " + particion.primerId() + ".");
+        }
+        porNombre.put(particion.nombre(), particion);
+        porRango.put(particion.primerId(), particion);
+        anillo.agregar(particion.nombre());
+    }
+
+    /**
+     * Anota las particiones que guardan registros fuera de su rango y fija el siguiente ID de cada
+     * rango después del mayor en uso, esté en la partición del rango o en otra.
+     *
+     * @return false si no se pudo leer alguna partición.
+     */
+    private boolean cargar() {
+        cerrojo.writeLock().lock();
+        try {
+            for (Particion particion : porRango.values()) {
+                int fuera = primerReubicado(particion, finDeRango(particion));
+                if (fuera < 0) {
+                    return false;
+                }
+                if (fuera > 0) {
+                    conReubicados.add(particion);
+                }
+            }
+            for (Particion particion : porRango.values()) {
+                int fin = finDeRango(particion);
+                int mayor = mayorIdEntre(particion, particion.primerId(), fin);
+                int reubicado = mayorReubicadoEntre(particion.primerId(), fin);
+                if (mayor < 0 || reubicado < 0) {
+                    return false;
+                }
+                rangos.put(particion.nombre(), new Rango(Math.max(mayor, reubicado) + 1, fin));
+            }
+            return true;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca un ID de la partición menor que su rango o mayor, con dos consultas de una fila.
+     *
+     * @param fin El final del rango de la partición.
+     * @return Un ID guardado fuera del rango, 0 si no hay ninguno, o -1 si no se pudo leer la partición.
+     */
+    private static int primerReubicado(Particion particion, int fin) {
+        IRegistroDAO dao = particion.dao();
+        long fallos = dao.getFallosDelHilo();
+        List<Registro> menor = dao.listarRegistrosDespuesDe(0, 1);
+        List<Registro> mayor = fin == Integer.MAX_VALUE ? List.of() : dao.listarRegistrosDespuesDe(fin - 1, 1);
+        if (dao.getFallosDelHilo() != fallos) {
+            System.out.println("No se pudo leer la partición " + particion.nombre() + ".");
+            return -1;
+        }
+        if (!menor.isEmpty() && menor.getFirst().getId() < particion.primerId()) {
+            return menor.getFirst().getId();
+        }
+        return mayor.isEmpty() ? 0 : mayor.getFirst().getId();
+    }
+
+    /**
+     * Busca por bisección el mayor ID del intervalo {@code [desde, hasta)} guardado en la partición,
+     * con unas 31 consultas de una fila como máximo.
+     *
+     * @return El mayor ID, {@code desde - 1} si no hay ninguno, o -1 si no se pudo leer la partición.
+     */
+    private static int mayorIdEntre(Particion particion, int desde, int hasta) {
+        IRegistroDAO dao = particion.dao();
+        long fallos = dao.getFallosDelHilo();
+        int mayor = desde - 1; // El mayor ID encontrado; no hay IDs en [tope, hasta)
+        int tope = hasta;
+        while (tope - mayor > 1) {
+            int medio = mayor + (tope - mayor) / 2;
+            List<Registro> primero = dao.listarRegistrosDespuesDe(medio - 1, 1);
+            if (!primero.isEmpty() && primero.getFirst().getId() < tope) {
+                mayor = primero.getFirst().getId();
+            } else {
+                tope = medio;
+            }
+        }
+        if (dao.getFallosDelHilo() != fallos) {
+            System.out.println("No se pudo leer la partición " + particion.nombre() + ".");
+            return -1;
+        }
+        return mayor;
+    }
+
+    /**
+     * Busca por bisección el mayor ID del intervalo {@code [desde, hasta)} en cada partición que guarda
+     * registros fuera de su rango. Se llama con el cerrojo de escritura.
+     *
+     * @return El mayor ID, {@code desde - 1} si no hay ninguno, o -1 si no se pudo leer alguna partición.
+     */
+    private int mayorReubicadoEntre(int desde, int hasta) {
+        int mayor = desde - 1;
+        for (Particion particion : conReubicados) {
+            int suyo = mayorIdEntre(particion, desde, hasta);
+            if (suyo < 0) {
+                return -1;
+            }
+            mayor = Math.max(mayor, suyo);
+        }
+        return mayor;
+    }
+
+    private int finDeRango(Particion particion) {
+        Integer siguiente = porRango.higherKey(particion.primerId());
+        return siguiente == null ? Integer.MAX_VALUE : siguiente;
+    }
+
+    /**
+     * Reserva {@code cantidad} IDs consecutivos del rango de la partición. Se llama con el cerrojo de lectura.
+     *
+     * @return El primero, o -1 si el rango no alcanza.
+     */
+    private int reservarIds(Particion particion, int cantidad) {
+        int primero = rangos.get(particion.nombre()).reservar(cantidad);
+        if (primero < 0) {
+            fallosPorHilo.registrar();
+            System.out.println("Se agotó el rango de IDs de la partición " + particion.nombre() + ".");
+        }
+        return primero;
+    }
+
+    /**
+     * Comprueba que el ID del registro puede guardarse en la partición de su usuario: o ella lo guarda
+     * tras una mudanza, o pertenece a su rango y a sus IDs asignables. En el segundo caso, evita que el
+     * ID se vuelva a asignar. Se llama con el cerrojo de lectura.
+     *
+     * @throws IllegalArgumentException si el ID está guardado en otra partición o pertenece a otro rango.
+     */
+    private void reservarIdElegido(Particion destino, Registro registro) {
+        int id = registro.getId();
+        Particion actual = ubicar(id);
+        Particion delRango = particionDeRango(id);
+        Rango rango = rangos.get(destino.nombre());
+        if (actual != destino || (delRango == destino && id >= rango.fin)) {
+            Particion otra = actual != destino ? actual : null;
+            throw new IllegalArgumentException("El ID " + id + " pertenece a la partición "
+                    + (otra == null ? "de ningún rango" : otra.nombre()) + ", no a " + destino.nombre()
+                    + ", dueña del usuario " + registro.getUsuario() + ".");
+        }
+        if (delRango == destino) {
+            rango.avanzarHasta(id);
+        }
+    }
+
+    /**
+     * Asigna IDs a un bloque de registros sin ID y los agrega. Toma el cerrojo de lectura solo durante
+     * el bloque, así que una mudanza puede avanzar entre dos bloques.
+     */
+    private ResultadoLote agregarBloque(List<Registro> bloque) {
+        cerrojo.readLock().lock();
+        try {
+            Map<Particion, List<Integer>> posiciones = repartirPorUsuario(bloque);
+            Map<Particion, List<Registro>> altas = new HashMap<>();
+            for (Map.Entry<Particion, List<Integer>> entrada : posiciones.entrySet()) {
+                int primero = reservarIds(entrada.getKey(), entrada.getValue().size());
+                if (primero >= 0) {
+                    List<Registro> conId = new ArrayList<>(entrada.getValue().size());
+                    for (int posicion : entrada.getValue()) {
+                        conId.add(alta(bloque.get(posicion), primero + conId.size()));
+                    }
+                    altas.put(entrada.getKey(), conId);
+                }
+            }
+            return insertar(bloque.size(), posiciones, altas);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Las posiciones de los registros agrupadas por la partición de su usuario.
+     */
+    private Map<Particion, List<Integer>> repartirPorUsuario(List<Registro> registros) {
+        Map<Particion, List<Integer>> posiciones = new LinkedHashMap<>();
+        for (int i = 0; i < registros.size(); i++) {
+            posiciones.computeIfAbsent(particionDeUsuario(registros.get(i).getUsuario()), p -> new ArrayList<>()).add(i);
+        }
+        return posiciones;
+    }
+
+    /**
+     * Agrega los registros con ID de cada partición, todas a la vez, y expresa el resultado en posiciones
+     * de la entrada original. Una partición sin altas es una cuyo rango se agotó. Se llama con el cerrojo de lectura.
+     */
+    private ResultadoLote insertar(int total, Map<Particion, List<Integer>> posiciones, Map<Particion, List<Registro>> altas) {
+        int[] ids = new int[total];
+        String[] errores = new String[total];
+        List<Particion> destinos = new ArrayList<>(posiciones.keySet());
+        List<ResultadoLote> resultados = enParalelo(destinos, particion -> altas.containsKey(particion)
+                ? particion.dao().agregarRegistrosConId(altas.get(particion))
+                : new ResultadoLote(List.of(), List.of(new FalloLote(0, posiciones.get(particion).size(),
+                "Se agotó el rango de IDs de la partición " + particion.nombre() + "."))));
+        for (int k = 0; k < destinos.size(); k++) {
+            repartir(posiciones.get(destinos.get(k)), resultados.get(k), ids, errores);
+        }
+
+        List<Integer> generados = new ArrayList<>(total);
+        List<FalloLote> fallos = new ArrayList<>();
+        int inicio = -1;
+        for (int i = 0; i <= total; i++) {
+            // Las posiciones fallidas consecutivas con el mismo error forman un solo fallo
+            if (inicio >= 0 && (i == total || !errores[inicio].equals(errores[i]))) {
+                fallos.add(new FalloLote(inicio, i - inicio, errores[inicio]));
+                inicio = -1;
+            }
+            if (i < total) {
+                if (errores[i] == null) {
+                    generados.add(ids[i]);
+                } else if (inicio < 0) {
+                    inicio = i;
+                }
+            }
+        }
+        return new ResultadoLote(generados, fallos);
+    }
+
+    private Particion particionDeUsuario(int usuario) {
+        return porNombre.get(anillo.nodoDe(usuario));
+    }
+
+    /**
+     * Busca la partición que guarda el ID. Si ninguna guarda registros fuera de su rango, es la del rango
+     * y no se consulta nada; si no, se consulta la del rango y, si no lo tiene, todas las que guardan
+     * registros de otros rangos a la vez. Se llama con el cerrojo de lectura.
+     *
+     * @return La partición que guarda el ID o, si ninguna lo tiene, la de su rango; null si no existe
+     * y es menor que todos los rangos.
+     */
+    private Particion ubicar(int id) {
+        Particion delRango = particionDeRango(id);
+        if (conReubicados.isEmpty() || (delRango != null && delRango.dao().registroExiste(id))) {
+            return delRango;
+        }
+        List<Particion> candidatas = new ArrayList<>(conReubicados);
+        candidatas.remove(delRango);
+        List<Boolean> existe = enParalelo(candidatas, particion -> particion.dao().registroExiste(id));
+        for (int k = 0; k < candidatas.size(); k++) {
+            if (existe.get(k)) {
+                return candidatas.get(k);
+            }
+        }
+        return delRango;
+    }
+
+    /**
+     * @return La partición cuyo rango contiene el ID, o null si es menor que todos los rangos.
+     */
+    private Particion particionDeRango(int id) {
+        Map.Entry<Integer, Particion> entrada = porRango.floorEntry(id);
+        return entrada == null ? null : entrada.getValue();
+    }
+
+    /**
+     * Recorre cada partición por páginas y mueve a su partición los registros de usuarios que ahora
+     * pertenecen a otra. Cada página toma el cerrojo de escritura por separado. Las particiones quitadas
+     * que quedan vacías se descartan, y al final se dejan de anotar las que ya no guardan registros de
+     * otros rangos.
+     */
+    private int mover() {
+        int movidos = 0;
+        for (Particion origen : getParticiones()) {
+            int ultimo = 0;
+            while (true) {
+                cerrojo.writeLock().lock();
+                try {
+                    long fallos = origen.dao().getFallosDelHilo();
+                    List<Registro> pagina = origen.dao().listarRegistrosDespuesDe(ultimo, TAMANO_MUDANZA);
+                    if (origen.dao().getFallosDelHilo() != fallos) {
+                        System.out.println("No se pudo leer la partición " + origen.nombre() + "; sus registros se moverán al reequilibrar.");
+                        break;
+                    }
+                    if (pagina.isEmpty()) {
+                        if (!anillo.nodos().contains(origen.nombre()) && origen.dao().listarRegistrosDespuesDe(0, 1).isEmpty()) {
+                            porNombre.remove(origen.nombre());
+                            porRango.remove(origen.primerId());
+                            rangos.remove(origen.nombre());
+                        }
+                        break;
+                    }
+                    ultimo = pagina.getLast().getId();
+                    movidos += moverPagina(origen, pagina);
+                } finally {
+                    cerrojo.writeLock().unlock();
+                }
+            }
+        }
+        cerrojo.writeLock().lock();
+        try {
+            conReubicados.removeIf(particion -> porNombre.get(particion.nombre()) != particion
+                    || primerReubicado(particion, finDeRango(particion)) == 0);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+        return movidos;
+    }
+
+    /**
+     * Copia en bloque a cada partición de destino los registros de la página que le pertenecen, los
+     * borra en bloque del origen y anota los destinos que reciben IDs de otro rango. Se llama con el
+     * cerrojo de escritura.
+     *
+     * @return El número de registros movidos.
+     */
+    private int moverPagina(Particion origen, List<Registro> pagina) {
+        Map<Particion, List<Registro>> porDestino = new LinkedHashMap<>();
+        for (Registro registro : pagina) {
+            Particion destino = particionDeUsuario(registro.getUsuario());
+            if (destino != origen) {
+                porDestino.computeIfAbsent(destino, p -> new ArrayList<>()).add(registro);
+            }
+        }
+
+        int movidos = 0;
+        for (Map.Entry<Particion, List<Registro>> entrada : porDestino.entrySet()) {
+            Particion destino = entrada.getKey();
+            List<Integer> copiados = copiar(entrada.getValue(), destino);
+            if (copiados.isEmpty()) {
+                continue;
+            }
+            boolean borrados = origen.dao().eliminarRegistros(copiados) == copiados.size();
+            for (int id : copiados) {
+                if (!borrados && origen.dao().registroExiste(id)) {
+                    // Se deshace la copia para no dejar el registro repetido
+                    System.out.println("No se pudo quitar el registro " + id + " de la partición " + origen.nombre() + ".");
+                    destino.dao().eliminarRegistro(new Registro(id));
+                    continue;
+                }
+                if (particionDeRango(id) != destino) {
+                    conReubicados.add(destino);
+                }
+                movidos++;
+            }
+        }
+        return movidos;
+    }
+
+    /**
+     * Copia los registros a la partición con su ID, fecha y versión. Si la copia en bloque falla, se
+     * reintenta de uno en uno: un ID que ya está en el destino porque una mudanza anterior se interrumpió
+     * entre la copia y el borrado se conserva si su versión no es menor, y si no se reemplaza.
+     *
+     * @return Los IDs que quedaron en el destino.
+     */
+    private static List<Integer> copiar(List<Registro> registros, Particion destino) {
+        ResultadoLote resultado = destino.dao().agregarRegistrosConId(registros);
+        if (resultado.exitoso()) {
+            return resultado.idsGenerados();
+        }
+        List<Integer> copiados = new ArrayList<>(resultado.idsGenerados());
+        Set<Integer> yaCopiados = new HashSet<>(copiados);
+        for (Registro registro : registros) {
+            if (yaCopiados.contains(registro.getId())) {
+                continue;
+            }
+            Registro existente = new Registro(registro.getId());
+            boolean copiado;
+            if (destino.dao().buscarRegistro(existente)) {
+                copiado = existente.getVersion() >= registro.getVersion()
+                        || (destino.dao().eliminarRegistro(existente) && destino.dao().agregarRegistrosConId(List.of(registro)).exitoso());
+            } else {
+                copiado = destino.dao().agregarRegistrosConId(List.of(registro)).exitoso();
+            }
+            if (copiado) {
+                copiados.add(registro.getId());
+            } else {
+                System.out.println("No se pudo mover el registro " + registro.getId() + " a la partición " + destino.nombre() + ".");
+            }
+        }
+        return copiados;
+    }
+
+    /**
+     * Una copia del registro con el ID asignado, versión 0 y la fecha a guardar: la suya o la hora
+     * actual, truncada a segundos como la guardan las particiones.
+     */
+    private static Registro alta(Registro registro, int id) {
+        long millis = registro.getFecha() != null ? registro.getFecha().getTime() : System.currentTimeMillis();
+        return Registro.sinValidar(id, registro.getPeso(), registro.getBicepIzquierdo(), registro.getBicepDerecho(),
+                registro.getCintura(), registro.getCuadriceps(), registro.getPantorrillas(),
+                new Timestamp(Math.floorDiv(millis, 1000) * 1000), 0, registro.getUsuario());
+    }
+
+    /**
+     * Traduce el resultado de una partición a las posiciones de la entrada original.
+     */
+    private static void repartir(List<Integer> posiciones, ResultadoLote resultado, int[] ids, String[] errores) {
+        for (FalloLote fallo : resultado.fallos()) {
+            int fin = Math.min(posiciones.size(), fallo.indiceInicio() + fallo.cantidad());
+            for (int j = fallo.indiceInicio(); j < fin; j++) {
+                errores[posiciones.get(j)] = fallo.mensaje() == null ? "" : fallo.mensaje();
+            }
+        }
+        Iterator<Integer> generados = resultado.idsGenerados().iterator();
+        for (int posicion : posiciones) {
+            if (errores[posicion] == null) {
+                if (generados.hasNext()) {
+                    ids[posicion] = generados.next();
+                } else {
+                    errores[posicion] = "La partición no devolvió el ID generado.";
+                }
+            }
+        }
+    }
+
+    private <T> List<T> enTodas(Function<? super IRegistroDAO, ? extends T> consulta) {
+        cerrojo.readLock().lock();
+        try {
+            return enParalelo(List.copyOf(porRango.values()), particion -> consulta.apply(particion.dao()));
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ejecuta la tarea para cada partición en un hilo virtual y espera todos los resultados. Si una
+     * falla, cancela las demás y relanza su excepción. Los fallos que las particiones informan en esos
+     * hilos se suman a los del hilo que llama.
+     */
+    private <T> List<T> enParalelo(List<Particion> particiones, Function<Particion, ? extends T> tarea) {
+        if (particiones.size() == 1) {
+            List<T> unico = new ArrayList<>(1);
+            unico.add(tarea.apply(particiones.getFirst()));
+            return unico;
+        }
+        List<Future<ResultadoParticion<T>>> futuros = new ArrayList<>(particiones.size());
+        for (Particion particion : particiones) {
+            futuros.add(ejecutor.submit(() -> {
+                long antes = particion.dao().getFallosDelHilo();
+                T resultado = tarea.apply(particion);
+                return new ResultadoParticion<>(resultado, particion.dao().getFallosDelHilo() - antes);
+            }));
+        }
+        List<T> resultados = new ArrayList<>(particiones.size());
+        try {
+            for (Future<ResultadoParticion<T>> futuro : futuros) {
+                ResultadoParticion<T> resultado = futuro.get();
+                resultados.add(resultado.valor());
+                fallosPorHilo.registrar(resultado.fallos());
+            }
+            return resultados;
+        } catch (ExecutionException e) {
+            futuros.forEach(futuro -> futuro.cancel(true));
+            if (e.getCause() instanceof RuntimeException error) {
+                throw error;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            futuros.forEach(futuro -> futuro.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Se interrumpió la consulta a las particiones.", e);
+        }
+    }
+
+    private record ResultadoParticion<T>(T valor, long fallos) {
+    }
+
+    /**
+     * Mezcla flujos ordenados por ID en uno solo, también ordenado por ID. Cada flujo se empieza a leer
+     * con el primer registro pedido y avanza a medida que se consumen los suyos.
+     */
+    private static Stream<Registro> mezclarPorId(List<Stream<Registro>> flujos) {
+        Spliterator<Registro> mezcla = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            private PriorityQueue<Cabeza> cabezas;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Registro> accion) {
+                if (cabezas == null) {
+                    cabezas = new PriorityQueue<>(Math.max(1, flujos.size()), Comparator.comparingInt(c -> c.registro().getId()));
+                    for (Stream<Registro> flujo : flujos) {
+                        Iterator<Registro> resto = flujo.iterator();
+                        if (resto.hasNext()) {
+                            cabezas.add(new Cabeza(resto.next(), resto));
+                        }
+                    }
+                }
+                Cabeza cabeza = cabezas.poll();
+                if (cabeza == null) {
+                    return false;
+                }
+                accion.accept(cabeza.registro());
+                if (cabeza.resto().hasNext()) {
+                    cabezas.add(new Cabeza(cabeza.resto().next(), cabeza.resto()));
+                }
+                return true;
+            }
+        };
+        Stream<Registro> mezclado = StreamSupport.stream(mezcla, false);
+        for (Stream<Registro> flujo : flujos) {
+            mezclado = mezclado.onClose(flujo::close);
+        }
+        return mezclado;
+    }
+
+    private record Cabeza(Registro registro, Iterator<Registro> resto) {
+    }
+
+    /**
+     * Los IDs que asigna una partición: desde {@code siguiente} hasta antes de {@code fin}. El fin solo
+     * se reduce, cuando se agrega una partición dentro del rango, con el cerrojo de escritura.
+     */
+    private static final class Rango {
+
+        private final AtomicInteger siguiente;
+        private volatile int fin;
+
+        private Rango(int siguiente, int fin) {
+            this.siguiente = new AtomicInteger(siguiente);
+            this.fin = fin;
+        }
+
+        /**
+         * @return El primero de {@code cantidad} IDs consecutivos, o -1 si el rango no alcanza.
+         */
+        private int reservar(int cantidad) {
+            while (true) {
+                int actual = siguiente.get();
+                if (cantidad > fin - actual) {
+                    return -1;
+                }
+                if (siguiente.compareAndSet(actual, actual + cantidad)) {
+                    return actual;
+                }
+            }
+        }
+
+        /**
+         * Evita que se asigne un ID que el llamador eligió.
+         */
+        private void avanzarHasta(int id) {
+            siguiente.accumulateAndGet(id + 1, Math::max);
+        }
+    }
+
+    private static <T> List<T> concatenar(List<? extends List<? extends T>> listas) {
+        int total = 0;
+        for (List<? extends T> lista : listas) {
+            total += lista.size();
+        }
+        List<T> todos = new ArrayList<>(total);
+        for (List<? extends T> lista : listas) {
+            todos.addAll(lista);
+        }
+        return todos;
+    }
+}
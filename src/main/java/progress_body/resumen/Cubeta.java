@@ -0,0 +1,36 @@
+package progress_body.resumen;
+
+import progress_body.dominio.Medida;
+
+import java.sql.Timestamp;
+import java.util.Map;
+
+/**
+ * Resumen de los registros de un usuario en un periodo.
+ *
+ * @param nivel    El nivel de la cubeta. En {@link Nivel#CRUDO} la cubeta es un solo registro.
+ * @param usuario  El usuario dueño de los registros.
+ * @param inicio   El comienzo del periodo, a las 00:00; en {@link Nivel#CRUDO}, la fecha del registro.
+ * @param cantidad Los registros resumidos.
+ * @param valores  Los valores de cada medida. Se guarda una copia inmutable.
+ */
+public record Cubeta(Nivel nivel, int usuario, Timestamp inicio, int cantidad, Map<Medida, ValoresMedida> valores) {
+
+    public Cubeta {
+        inicio = new Timestamp(inicio.getTime());
+        valores = Map.copyOf(valores);
+    }
+
+    /**
+     * @param medida La medida.
+     * @return Los valores de la medida en la cubeta.
+     */
+    public ValoresMedida de(Medida medida) {
+        return valores.get(medida);
+    }
+
+    @Override
+    public Timestamp inicio() {
+        return new Timestamp(inicio.getTime());
+    }
+}
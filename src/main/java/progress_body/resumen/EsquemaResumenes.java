@@ -0,0 +1,118 @@
+package progress_body.resumen;
+
+import progress_body.datos.EsquemaRegistro;
+import progress_body.dominio.Medida;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Crea las tablas de cubetas de cada {@link Nivel} y la tabla con el estado de {@link ResumenesRegistro},
+ * y agrega a {@code registro} la columna {@code resumido} con su índice. Todas las operaciones son
+ * idempotentes y pueden ejecutarse en cada arranque.
+ * <p>
+ * Cada tabla de cubetas tiene una fila por usuario y periodo, con la cantidad de registros y, por cada
+ * {@link Medida}, las columnas {@code <medida>_min}, {@code <medida>_max} y {@code <medida>_suma}. Se guarda
+ * la suma en lugar de la media para poder acumular registros nuevos sin perder precisión.
+ * <p>
+ * La columna {@code resumido} marca cada registro como pendiente o ya incorporado a las cubetas. Las
+ * versiones anteriores guardaban en {@code registro_resumen_estado.ultimo_id} el mayor ID incorporado;
+ * al crear el esquema esos registros se marcan como resumidos y la marca vuelve a cero.
+ */
+public final class EsquemaResumenes {
+
+    private static final String CREAR_ESTADO = """
+            CREATE TABLE IF NOT EXISTS registro_resumen_estado (
+                id TINYINT NOT NULL,
+                ultimo_id INT NOT NULL,
+                horizonte DATE NULL,
+                PRIMARY KEY (id)
+            ) ENGINE=InnoDB""";
+
+    private static final String INICIAR_ESTADO = "INSERT IGNORE INTO registro_resumen_estado (id, ultimo_id) VALUES (1, 0)";
+
+    private static final String CREAR_COLUMNA = "ALTER TABLE registro ADD COLUMN resumido TINYINT NOT NULL DEFAULT "
+            + ResumenesRegistro.PENDIENTE;
+
+    // Con el índice, actualizar() encuentra los pendientes sin recorrer los registros ya resumidos
+    private static final String INDICE = "idx_registro_resumido_id";
+    private static final String CREAR_INDICE = "CREATE INDEX " + INDICE + " ON registro (resumido, id)";
+
+    private static final String MIGRAR_MARCA = "UPDATE registro SET resumido = " + ResumenesRegistro.RESUMIDO
+            + " WHERE resumido = " + ResumenesRegistro.PENDIENTE
+            + " AND id <= (SELECT ultimo_id FROM registro_resumen_estado WHERE id = 1)";
+    private static final String BORRAR_MARCA = "UPDATE registro_resumen_estado SET ultimo_id = 0 WHERE id = 1";
+
+    private EsquemaResumenes() {
+    }
+
+    /**
+     * Crea las tablas, la columna y el índice que falten. La tabla {@code registro} ya debe existir.
+     *
+     * @param dataSource El origen de las conexiones. No debe ser nulo.
+     * @return true si el esquema quedó completo; false si ocurrió un error.
+     * @throws IllegalArgumentException si el dataSource es nulo.
+     */
+    public static boolean crearEsquema(DataSource dataSource) {
+        if (dataSource == null) {
+            throw new IllegalArgumentException("El DataSource no puede ser nulo.");
+        }
+
+        try (Connection con = dataSource.getConnection();
+             Statement st = con.createStatement()) {
+
+            for (Nivel nivel : Nivel.values()) {
+                if (nivel != Nivel.CRUDO) {
+                    st.execute(crearTabla(nivel));
+                }
+            }
+            st.execute(CREAR_ESTADO);
+            st.execute(INICIAR_ESTADO);
+            if (!EsquemaRegistro.existeColumna(con, "registro", "resumido")) {
+                st.execute(CREAR_COLUMNA);
+            }
+            if (!EsquemaRegistro.existeIndice(con, "registro", INDICE)) {
+                st.execute(CREAR_INDICE);
+            }
+
+            // Marcar y borrar la marca anterior en una transacción: si falla, se repite en el próximo arranque
+            con.setAutoCommit(false);
+            try {
+                st.executeUpdate(MIGRAR_MARCA);
+                st.executeUpdate(BORRAR_MARCA);
+                con.commit();
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            System.out.println("No se pudo crear el esquema de los resúmenes. \n" + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Devuelve el nombre de una columna de una tabla de cubetas.
+     *
+     * @param sufijo {@code min}, {@code max} o {@code suma}.
+     */
+    static String columna(Medida medida, String sufijo) {
+        return medida.getColumna() + "_" + sufijo;
+    }
+
+    private static String crearTabla(Nivel nivel) {
+        StringBuilder sql = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(nivel.getTabla()).append(" (")
+                .append("usuario INT NOT NULL, inicio DATE NOT NULL, cantidad INT NOT NULL");
+        for (Medida medida : Medida.values()) {
+            sql.append(", ").append(columna(medida, "min")).append(" DOUBLE NOT NULL")
+                    .append(", ").append(columna(medida, "max")).append(" DOUBLE NOT NULL")
+                    .append(", ").append(columna(medida, "suma")).append(" DOUBLE NOT NULL");
+        }
+        return sql.append(", PRIMARY KEY (usuario, inicio)) ENGINE=InnoDB").toString();
+    }
+}
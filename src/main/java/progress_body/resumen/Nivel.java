@@ -0,0 +1,94 @@
+package progress_body.resumen;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Niveles de resolución del historial de medidas, del más fino al más grueso.
+ * <p>
+ * {@link #CRUDO} son las filas de la tabla {@code registro}; los demás son cubetas de un día, una semana
+ * (de lunes a domingo) o un mes calendario, cada uno en su propia tabla.
+ */
+public enum Nivel {
+    CRUDO(null, Duration.ZERO, null),
+    DIA("registro_dia", Duration.ofDays(1), "DATE(fecha)"),
+    SEMANA("registro_semana", Duration.ofDays(7), "SUBDATE(DATE(fecha), WEEKDAY(fecha))"),
+    MES("registro_mes", Duration.ofDays(31), "SUBDATE(DATE(fecha), DAYOFMONTH(fecha) - 1)");
+
+    private final String tabla; // null en CRUDO
+    private final Duration ancho; // Ancho máximo de una cubeta
+    // Expresión SQL del inicio de la cubeta de la columna fecha. Se usa SUBDATE(fecha, días) en lugar de
+    // DATE_SUB con INTERVAL porque la sintaxis de llamada se puede definir como función en H2
+    private final String inicioSql;
+
+    Nivel(String tabla, Duration ancho, String inicioSql) {
+        this.tabla = tabla;
+        this.ancho = ancho;
+        this.inicioSql = inicioSql;
+    }
+
+    /**
+     * @return El nombre de la tabla de las cubetas, o null en {@link #CRUDO}.
+     */
+    public String getTabla() {
+        return tabla;
+    }
+
+    /**
+     * @return El ancho máximo de una cubeta; cero en {@link #CRUDO}.
+     */
+    public Duration getAncho() {
+        return ancho;
+    }
+
+    /**
+     * Devuelve el inicio de la cubeta que contiene una fecha.
+     *
+     * @param fecha La fecha. No debe ser nula.
+     * @return El primer día de la cubeta; la misma fecha en {@link #CRUDO} y {@link #DIA}.
+     */
+    public LocalDate inicio(LocalDate fecha) {
+        return switch (this) {
+            case CRUDO, DIA -> fecha;
+            case SEMANA -> fecha.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MES -> fecha.withDayOfMonth(1);
+        };
+    }
+
+    /**
+     * Devuelve el inicio de la cubeta siguiente a la que empieza en {@code inicio}.
+     *
+     * @param inicio El inicio de una cubeta. No debe ser nulo.
+     * @return El inicio de la cubeta siguiente.
+     */
+    public LocalDate siguiente(LocalDate inicio) {
+        return switch (this) {
+            case CRUDO, DIA -> inicio.plusDays(1);
+            case SEMANA -> inicio.plusWeeks(1);
+            case MES -> inicio.plusMonths(1);
+        };
+    }
+
+    /**
+     * Elige el nivel más grueso cuyas cubetas no superan la resolución pedida ni el largo del intervalo.
+     *
+     * @param intervalo  El largo del intervalo consultado. No debe ser nulo.
+     * @param resolucion La separación máxima aceptable entre puntos. No debe ser nula.
+     * @return El nivel elegido; {@link #CRUDO} si ningún nivel de cubetas cumple.
+     */
+    public static Nivel paraResolucion(Duration intervalo, Duration resolucion) {
+        Nivel elegido = CRUDO;
+        for (Nivel nivel : values()) {
+            if (nivel.ancho.compareTo(resolucion) <= 0 && nivel.ancho.compareTo(intervalo) <= 0) {
+                elegido = nivel;
+            }
+        }
+        return elegido;
+    }
+
+    String getInicioSql() {
+        return inicioSql;
+    }
+}
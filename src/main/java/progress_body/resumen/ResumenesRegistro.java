@@ -0,0 +1,438 @@
+package progress_body.resumen;
+
+import progress_body.conexion.Conexion;
+import progress_body.datos.IRegistroDAO;
+import progress_body.datos.MapeadorRegistro;
+import progress_body.dominio.Medida;
+import progress_body.dominio.Registro;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mantiene cubetas diarias, semanales y mensuales del historial de medidas, para que las gráficas de
+ * intervalos largos lean cientos de filas en lugar de cientos de miles.
+ * <p>
+ * {@link #actualizar()} acumula en las tablas de cada {@link Nivel} los registros que la columna
+ * {@code resumido} marca como pendientes, con un {@code INSERT ... SELECT ... GROUP BY} por nivel que solo
+ * recorre esas filas; debe llamarse periódicamente, por ejemplo desde un
+ * {@link java.util.concurrent.ScheduledExecutorService}.
+ * Como en {@link progress_body.almacen.InstantaneaRegistros}, la actualización incremental solo incorpora
+ * altas: las modificaciones y bajas de registros ya resumidos se reflejan con {@link #recalcular(LocalDate, LocalDate)}.
+ * <p>
+ * Si se configura una retención, {@link #aplicarRetencion(IRegistroDAO)} borra los registros más antiguos
+ * que ya están marcados como resumidos, y desde entonces esas fechas solo se pueden consultar en cubetas.
+ * {@link #consultar(int, Timestamp, Timestamp, Duration)} elige el nivel más grueso que cumple la
+ * resolución pedida. Las tablas se crean con {@link EsquemaResumenes#crearEsquema(DataSource)}.
+ */
+public class ResumenesRegistro {
+
+    private static final int BLOQUE_REGISTROS = 50_000; // Registros por transacción de actualizar()
+    private static final int BLOQUE_BORRADO = 10_000; // IDs por borrado en bloque de aplicarRetencion()
+    private static final Nivel[] NIVELES_CUBETA = {Nivel.DIA, Nivel.SEMANA, Nivel.MES};
+    private static final MapeadorRegistro MAPEO = MapeadorRegistro.PROYECCION_ESTANDAR;
+
+    // Valores de la columna resumido. EN_CURSO solo existe dentro de la transacción de actualizar(),
+    // que así distingue las filas que marcó de las resumidas antes y de las confirmadas mientras tanto
+    static final int PENDIENTE = 0;
+    static final int EN_CURSO = 1;
+    static final int RESUMIDO = 2;
+
+    private final DataSource dataSource;
+    private final Period retencion; // null si los registros se conservan siempre
+
+    /**
+     * Crea los resúmenes sobre el pool compartido de {@link Conexion}, sin retención.
+     */
+    public ResumenesRegistro() {
+        this(Conexion.getDataSource(), null);
+    }
+
+    /**
+     * @param dataSource El origen de las conexiones. No debe ser nulo.
+     * @param retencion  Cuánto tiempo se conservan los registros después de resumirse, o null para conservarlos siempre.
+     * @throws IllegalArgumentException si el dataSource es nulo o la retención es negativa o cero.
+     */
+    public ResumenesRegistro(DataSource dataSource, Period retencion) {
+        if (dataSource == null) {
+            throw new IllegalArgumentException("El DataSource no puede ser nulo.");
+        }
+        if (retencion != null && (retencion.isNegative() || retencion.isZero())) {
+            throw new IllegalArgumentException("La retención debe ser positiva.");
+        }
+        this.dataSource = dataSource;
+        this.retencion = retencion;
+    }
+
+    /**
+     * Incorpora a las cubetas los registros pendientes, en transacciones de hasta {@value #BLOQUE_REGISTROS}
+     * registros. Cada transacción acumula en los tres niveles y marca como resumidos los mismos registros
+     * a la vez, así que un registro nunca se cuenta dos veces. Un registro cuyo ID se asignó antes que el
+     * de otro pero se confirmó después de una actualización sigue pendiente y entra en la siguiente.
+     *
+     * @return El número de registros incorporados, o -1 si ocurrió un error.
+     */
+    public long actualizar() {
+        long total = 0;
+        try (Connection con = dataSource.getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                while (true) {
+                    // El bloqueo de la fila de estado serializa las actualizaciones de varios procesos
+                    leerEstado(con, true);
+                    int hasta = finDelBloque(con);
+                    if (hasta == 0) {
+                        con.commit();
+                        return total;
+                    }
+                    int marcados;
+                    try (PreparedStatement ps = con.prepareStatement(
+                            "UPDATE registro SET resumido = " + EN_CURSO + " WHERE resumido = " + PENDIENTE + " AND id <= ?")) {
+                        ps.setInt(1, hasta);
+                        marcados = ps.executeUpdate();
+                    }
+                    for (Nivel nivel : NIVELES_CUBETA) {
+                        try (PreparedStatement ps = con.prepareStatement(sqlAcumular(nivel, "resumido = " + EN_CURSO))) {
+                            ps.executeUpdate();
+                        }
+                    }
+                    try (PreparedStatement ps = con.prepareStatement(
+                            "UPDATE registro SET resumido = " + RESUMIDO + " WHERE resumido = " + EN_CURSO)) {
+                        ps.executeUpdate();
+                    }
+                    total += marcados;
+                    con.commit();
+                }
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.out.println("No se pudieron actualizar los resúmenes. \n" + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Vuelve a calcular, a partir de los registros, las cubetas que se solapan con {@code [desde, hasta)},
+     * por ejemplo después de modificar o eliminar registros ya resumidos. Las cubetas que empiezan antes
+     * del horizonte de retención no se tocan, porque sus registros ya se borraron.
+     *
+     * @param desde El primer día, incluido. No debe ser nulo.
+     * @param hasta El último día, excluido. No debe ser nulo.
+     * @return true si se recalcularon; false si ocurrió un error.
+     * @throws IllegalArgumentException si alguna fecha es nula o {@code hasta} no es posterior a {@code desde}.
+     */
+    public boolean recalcular(LocalDate desde, LocalDate hasta) {
+        if (desde == null || hasta == null) {
+            throw new IllegalArgumentException("Las fechas del intervalo no pueden ser nulas.");
+        }
+        if (!hasta.isAfter(desde)) {
+            throw new IllegalArgumentException("La fecha final debe ser posterior a la inicial.");
+        }
+
+        try (Connection con = dataSource.getConnection()) {
+            con.setAutoCommit(false);
+            try {
+                LocalDate horizonte = leerEstado(con, true);
+                for (Nivel nivel : NIVELES_CUBETA) {
+                    LocalDate primero = nivel.inicio(desde);
+                    if (horizonte != null && primero.isBefore(horizonte)) {
+                        primero = nivel.inicio(horizonte);
+                        if (primero.isBefore(horizonte)) {
+                            primero = nivel.siguiente(primero);
+                        }
+                    }
+                    LocalDate fin = nivel.inicio(hasta);
+                    if (fin.isBefore(hasta)) {
+                        fin = nivel.siguiente(fin);
+                    }
+                    if (!primero.isBefore(fin)) {
+                        continue;
+                    }
+
+                    try (PreparedStatement ps = con.prepareStatement("DELETE FROM " + nivel.getTabla() + " WHERE inicio >= ? AND inicio < ?")) {
+                        ps.setDate(1, Date.valueOf(primero));
+                        ps.setDate(2, Date.valueOf(fin));
+                        ps.executeUpdate();
+                    }
+                    // Los registros pendientes se incorporan en la próxima actualización
+                    try (PreparedStatement ps = con.prepareStatement(
+                            sqlAcumular(nivel, "fecha >= ? AND fecha < ? AND resumido = " + RESUMIDO))) {
+                        ps.setTimestamp(1, Timestamp.valueOf(primero.atStartOfDay()));
+                        ps.setTimestamp(2, Timestamp.valueOf(fin.atStartOfDay()));
+                        ps.executeUpdate();
+                    }
+                }
+                con.commit();
+                return true;
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.out.println("No se pudieron recalcular los resúmenes. \n" + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Actualiza las cubetas y borra los registros anteriores al inicio del día que marca la retención.
+     * Solo se borran registros marcados como resumidos: uno confirmado después de la actualización se
+     * conserva hasta la siguiente.
+     * <p>
+     * Los IDs se leen en bloques de {@value #BLOQUE_BORRADO} y se borran con
+     * {@link IRegistroDAO#eliminarRegistros(java.util.Collection)} del DAO indicado, para que las cachés,
+     * los feeds de cambios y los demás decoradores de ese DAO vean las bajas. Debe ser el DAO más externo
+     * de la aplicación y escribir en la misma base de datos que estos resúmenes.
+     *
+     * @param dao El DAO por el que se borran los registros. No debe ser nulo.
+     * @return El número de registros borrados, o -1 si ocurrió un error. Sin retención configurada, 0.
+     * @throws IllegalArgumentException si el DAO es nulo.
+     */
+    public long aplicarRetencion(IRegistroDAO dao) {
+        if (dao == null) {
+            throw new IllegalArgumentException("El DAO no puede ser nulo.");
+        }
+        if (retencion == null) {
+            return 0;
+        }
+        if (actualizar() < 0) {
+            return -1;
+        }
+        LocalDate horizonte = LocalDate.now().minus(retencion);
+        Timestamp corte = Timestamp.valueOf(horizonte.atStartOfDay());
+        long borrados = 0;
+
+        try {
+            try (Connection con = dataSource.getConnection();
+                 // El horizonte avanza antes de borrar: si el borrado se interrumpe, las consultas ya no usan esas fechas
+                 PreparedStatement ps = con.prepareStatement(
+                         "UPDATE registro_resumen_estado SET horizonte = GREATEST(COALESCE(horizonte, ?), ?) WHERE id = 1")) {
+                ps.setDate(1, Date.valueOf(horizonte));
+                ps.setDate(2, Date.valueOf(horizonte));
+                ps.executeUpdate();
+            }
+
+            int anterior = 0;
+            List<Integer> ids;
+            do {
+                ids = idsVencidos(corte, anterior);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                int eliminados = dao.eliminarRegistros(ids);
+                if (eliminados < 0) {
+                    System.out.println("No se pudieron borrar los registros vencidos desde el ID " + ids.getFirst() + ".");
+                    return -1;
+                }
+                borrados += eliminados;
+                anterior = ids.getLast();
+            } while (ids.size() == BLOQUE_BORRADO);
+        } catch (SQLException e) {
+            System.out.println("No se pudo aplicar la retención. \n" + e.getMessage());
+            return -1;
+        }
+        return borrados;
+    }
+
+    /**
+     * Consulta el historial de un usuario en el nivel más grueso que cumple la resolución, según
+     * {@link Nivel#paraResolucion(Duration, Duration)}. Si ese nivel es {@link Nivel#CRUDO} pero el
+     * intervalo empieza antes del horizonte de retención, se usan las cubetas diarias.
+     * <p>
+     * Las cubetas de los extremos pueden incluir registros de fuera del intervalo, y solo reflejan los
+     * registros incorporados por la última {@link #actualizar()}.
+     *
+     * @param usuario    El usuario dueño de los registros. No debe ser negativo.
+     * @param desde      El inicio del intervalo, incluido. No debe ser nulo.
+     * @param hasta      El final del intervalo, excluido. No debe ser nulo.
+     * @param resolucion La separación máxima aceptable entre puntos. No debe ser nula ni negativa.
+     * @return Las cubetas ordenadas por inicio; vacía si ocurrió un error.
+     * @throws IllegalArgumentException si algún argumento no es válido.
+     */
+    public List<Cubeta> consultar(int usuario, Timestamp desde, Timestamp hasta, Duration resolucion) {
+        IRegistroDAO.validarUsuario(usuario);
+        IRegistroDAO.validarIntervalo(desde, hasta);
+        if (resolucion == null || resolucion.isNegative()) {
+            throw new IllegalArgumentException("La resolución no puede ser nula ni negativa.");
+        }
+
+        try (Connection con = dataSource.getConnection()) {
+            Nivel nivel = Nivel.paraResolucion(Duration.between(desde.toInstant(), hasta.toInstant()), resolucion);
+            LocalDate horizonte = leerEstado(con, false);
+            if (nivel == Nivel.CRUDO && horizonte != null && desde.before(Timestamp.valueOf(horizonte.atStartOfDay()))) {
+                nivel = Nivel.DIA;
+            }
+            return leer(con, nivel, usuario, desde, hasta);
+        } catch (SQLException e) {
+            System.out.println("No se consultaron los resúmenes. \n" + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Consulta el historial de un usuario en un nivel dado.
+     *
+     * @param nivel El nivel a leer. No debe ser nulo. En {@link Nivel#CRUDO} las fechas anteriores al
+     *              horizonte de retención no tienen registros.
+     * @return Las cubetas ordenadas por inicio; vacía si ocurrió un error.
+     * @throws IllegalArgumentException si algún argumento no es válido.
+     * @see #consultar(int, Timestamp, Timestamp, Duration)
+     */
+    public List<Cubeta> consultar(int usuario, Nivel nivel, Timestamp desde, Timestamp hasta) {
+        IRegistroDAO.validarUsuario(usuario);
+        IRegistroDAO.validarIntervalo(desde, hasta);
+        if (nivel == null) {
+            throw new IllegalArgumentException("El nivel no puede ser nulo.");
+        }
+
+        try (Connection con = dataSource.getConnection()) {
+            return leer(con, nivel, usuario, desde, hasta);
+        } catch (SQLException e) {
+            System.out.println("No se consultaron los resúmenes. \n" + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    private static List<Cubeta> leer(Connection con, Nivel nivel, int usuario, Timestamp desde, Timestamp hasta) throws SQLException {
+        List<Cubeta> cubetas = new ArrayList<>();
+        if (nivel == Nivel.CRUDO) {
+            String sql = "SELECT " + MapeadorRegistro.PROYECCION + " FROM registro WHERE usuario = ? AND fecha >= ? AND fecha < ? ORDER BY fecha, id";
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                ps.setInt(1, usuario);
+                ps.setTimestamp(2, desde);
+                ps.setTimestamp(3, hasta);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Registro registro = MAPEO.registro(rs);
+                        Map<Medida, ValoresMedida> valores = new EnumMap<>(Medida.class);
+                        for (Medida medida : Medida.values()) {
+                            double valor = medida.de(registro);
+                            valores.put(medida, new ValoresMedida(valor, valor, valor));
+                        }
+                        cubetas.add(new Cubeta(nivel, usuario, registro.getFecha(), 1, valores));
+                    }
+                }
+            }
+            return cubetas;
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT inicio, cantidad");
+        for (Medida medida : Medida.values()) {
+            sql.append(", ").append(EsquemaResumenes.columna(medida, "min"))
+                    .append(", ").append(EsquemaResumenes.columna(medida, "max"))
+                    .append(", ").append(EsquemaResumenes.columna(medida, "suma"));
+        }
+        sql.append(" FROM ").append(nivel.getTabla()).append(" WHERE usuario = ? AND inicio >= ? AND inicio < ? ORDER BY inicio");
+        try (PreparedStatement ps = con.prepareStatement(sql.toString())) {
+            ps.setInt(1, usuario);
+            ps.setDate(2, Date.valueOf(nivel.inicio(desde.toLocalDateTime().toLocalDate())));
+            ps.setTimestamp(3, hasta);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int cantidad = rs.getInt(2);
+                    Map<Medida, ValoresMedida> valores = new EnumMap<>(Medida.class);
+                    int columna = 3;
+                    for (Medida medida : Medida.values()) {
+                        valores.put(medida, new ValoresMedida(rs.getDouble(columna), rs.getDouble(columna + 1),
+                                rs.getDouble(columna + 2) / cantidad));
+                        columna += 3;
+                    }
+                    Timestamp inicio = Timestamp.valueOf(rs.getDate(1).toLocalDate().atStartOfDay());
+                    cubetas.add(new Cubeta(nivel, usuario, inicio, cantidad, valores));
+                }
+            }
+        }
+        return cubetas;
+    }
+
+    /**
+     * Construye el {@code INSERT ... SELECT} que acumula en las cubetas de un nivel los registros que
+     * cumplen la condición. Una cubeta existente suma la cantidad y la suma, y combina mínimo y máximo.
+     */
+    private static String sqlAcumular(Nivel nivel, String condicion) {
+        StringBuilder columnas = new StringBuilder("usuario, inicio, cantidad");
+        StringBuilder seleccion = new StringBuilder("usuario, ").append(nivel.getInicioSql()).append(", COUNT(*)");
+        StringBuilder actualizacion = new StringBuilder("cantidad = cantidad + VALUES(cantidad)");
+        for (Medida medida : Medida.values()) {
+            String c = medida.getColumna();
+            String min = EsquemaResumenes.columna(medida, "min");
+            String max = EsquemaResumenes.columna(medida, "max");
+            String suma = EsquemaResumenes.columna(medida, "suma");
+            columnas.append(", ").append(min).append(", ").append(max).append(", ").append(suma);
+            seleccion.append(", MIN(").append(c).append("), MAX(").append(c).append("), SUM(").append(c).append(')');
+            actualizacion.append(", ").append(min).append(" = LEAST(").append(min).append(", VALUES(").append(min).append("))")
+                    .append(", ").append(max).append(" = GREATEST(").append(max).append(", VALUES(").append(max).append("))")
+                    .append(", ").append(suma).append(" = ").append(suma).append(" + VALUES(").append(suma).append(')');
+        }
+        // VALUES(col) se usa en lugar del alias de fila de MySQL 8.0.19 para admitir servidores anteriores
+        return "INSERT INTO " + nivel.getTabla() + " (" + columnas + ") SELECT " + seleccion
+                + " FROM registro WHERE " + condicion + " GROUP BY usuario, " + nivel.getInicioSql()
+                + " ON DUPLICATE KEY UPDATE " + actualizacion;
+    }
+
+    /**
+     * Lee la fila de {@code registro_resumen_estado}, bloqueándola si se pide.
+     *
+     * @return La fecha desde la que se conservan los registros, o null si no se borró ninguno.
+     */
+    private static LocalDate leerEstado(Connection con, boolean bloquear) throws SQLException {
+        String sql = "SELECT horizonte FROM registro_resumen_estado WHERE id = 1" + (bloquear ? " FOR UPDATE" : "");
+        try (PreparedStatement ps = con.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("Falta el estado de los resúmenes; debe crearse con EsquemaResumenes.crearEsquema.");
+            }
+            Date horizonte = rs.getDate(1);
+            return horizonte == null ? null : horizonte.toLocalDate();
+        }
+    }
+
+    /**
+     * Lee, en orden, hasta {@value #BLOQUE_BORRADO} IDs mayores que {@code anterior} de registros
+     * resumidos con fecha anterior al corte. Cada bloque usa su propia conexión, que se devuelve antes
+     * de borrar.
+     */
+    private List<Integer> idsVencidos(Timestamp corte, int anterior) throws SQLException {
+        String sql = "SELECT id FROM registro WHERE fecha < ? AND resumido = " + RESUMIDO
+                + " AND id > ? ORDER BY id LIMIT " + BLOQUE_BORRADO;
+        List<Integer> ids = new ArrayList<>();
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setTimestamp(1, corte);
+            ps.setInt(2, anterior);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Devuelve el mayor ID entre los primeros {@value #BLOQUE_REGISTROS} registros pendientes, o 0 si no hay
+     * ninguno. La tabla derivada evita el {@code LIMIT} dentro de {@code IN}, que MySQL no admite.
+     */
+    private static int finDelBloque(Connection con) throws SQLException {
+        String sql = "SELECT COALESCE(MAX(id), 0) FROM (SELECT id FROM registro WHERE resumido = " + PENDIENTE
+                + " ORDER BY id LIMIT " + BLOQUE_REGISTROS + ") pendientes";
+        try (PreparedStatement ps = con.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
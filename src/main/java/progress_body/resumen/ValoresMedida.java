@@ -0,0 +1,11 @@
+package progress_body.resumen;
+
+/**
+ * Valores de una medida dentro de una {@link Cubeta}.
+ *
+ * @param minimo El menor valor.
+ * @param maximo El mayor valor.
+ * @param media  La media de los valores.
+ */
+public record ValoresMedida(double minimo, double maximo, double media) {
+}
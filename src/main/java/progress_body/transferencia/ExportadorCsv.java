@@ -0,0 +1,160 @@
+package progress_body.transferencia;
+
+import progress_body.datos.IRegistroDAO;
+import progress_body.datos.UncheckedSQLException;
+import progress_body.dominio.Registro;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Exporta todos los registros a un archivo CSV con el formato que lee {@link ImportadorCsv}.
+ * <p>
+ * Las filas se leen con {@link IRegistroDAO#recorrerRegistros(Consumer)}, que en {@code RegistroDAO}
+ * las trae de la base de datos a medida que se escriben, y se codifican directamente en un búfer
+ * directo que se vuelca al disco con un {@link FileChannel}. La memoria usada no depende del tamaño
+ * de la tabla. El archivo se escribe primero con la extensión {@code .tmp} y solo se renombra al
+ * destino cuando está completo y sincronizado; si la lectura de los registros se interrumpe, el
+ * temporal se borra y el respaldo anterior queda intacto.
+ */
+public final class ExportadorCsv {
+
+    private static final int TAMANO_BUFER = 1 << 20; // 1 MiB
+    private static final int INTERVALO_PROGRESO = 1 << 16; // Filas entre avisos de progreso
+
+    private ExportadorCsv() {
+    }
+
+    /**
+     * Exporta los registros al archivo indicado, reemplazándolo si existe.
+     *
+     * @param dao      El DAO del que se leen los registros. No debe ser nulo.
+     * @param destino  El archivo de destino. No debe ser nulo.
+     * @param progreso Recibe el avance cada {@value #INTERVALO_PROGRESO} filas y al terminar, o null.
+     * @return El número de filas exportadas, o -1 si ocurrió un error.
+     * @throws IllegalArgumentException si el DAO o el destino son nulos.
+     */
+    public static long exportar(IRegistroDAO dao, Path destino, Consumer<ProgresoTransferencia> progreso) {
+        if (dao == null || destino == null) {
+            throw new IllegalArgumentException("El DAO y el destino no pueden ser nulos.");
+        }
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        Escritor escritor;
+
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            escritor = new Escritor(canal, progreso);
+            escritor.escribir(FormatoCsv.ENCABEZADO);
+            if (dao.recorrerRegistros(escritor::escribir) < 0) {
+                throw new IOException("Se interrumpió la lectura de los registros después de " + escritor.filas + " filas.");
+            }
+            escritor.vaciar();
+            canal.force(true);
+            escritor.informar();
+        } catch (IOException | UncheckedIOException | UncheckedSQLException e) {
+            System.out.println("No se pudieron exportar los registros. \n" + e.getMessage());
+            borrar(temporal);
+            return -1;
+        }
+
+        try {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("No se pudo renombrar el archivo exportado. \n" + e.getMessage());
+            borrar(temporal);
+            return -1;
+        }
+        return escritor.filas;
+    }
+
+    private static void borrar(Path archivo) {
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            System.out.println("No se pudo borrar el archivo temporal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Codifica filas en un búfer directo y lo vuelca al canal cuando se llena.
+     */
+    private static final class Escritor {
+
+        private final FileChannel canal;
+        private final Consumer<ProgresoTransferencia> progreso;
+        private final ByteBuffer bufer = ByteBuffer.allocateDirect(TAMANO_BUFER);
+        private final StringBuilder linea = new StringBuilder(128); // Se reutiliza en cada fila
+        private long bytes;
+        private long filas;
+
+        Escritor(FileChannel canal, Consumer<ProgresoTransferencia> progreso) {
+            this.canal = canal;
+            this.progreso = progreso;
+        }
+
+        void escribir(Registro r) {
+            linea.setLength(0);
+            linea.append(r.getId()).append(',')
+                    .append(r.getPeso()).append(',')
+                    .append(r.getBicepIzquierdo()).append(',')
+                    .append(r.getBicepDerecho()).append(',')
+                    .append(r.getCintura()).append(',')
+                    .append(r.getCuadriceps()).append(',')
+                    .append(r.getPantorrillas()).append(',');
+            if (r.getFecha() != null) {
+                linea.append(r.getFecha());
+            }
+            linea.append(',').append(r.getUsuario()).append(',').append(r.getVersion());
+            copiarLinea();
+            if (++filas % INTERVALO_PROGRESO == 0) {
+                informar();
+            }
+        }
+
+        void escribir(CharSequence texto) {
+            linea.setLength(0);
+            linea.append(texto);
+            copiarLinea();
+        }
+
+        /**
+         * Copia la línea al búfer. Todos los caracteres del formato son ASCII.
+         */
+        private void copiarLinea() {
+            linea.append('\n');
+            if (bufer.remaining() < linea.length()) {
+                vaciar();
+            }
+            for (int i = 0; i < linea.length(); i++) {
+                bufer.put((byte) linea.charAt(i));
+            }
+            bytes += linea.length();
+        }
+
+        void vaciar() {
+            bufer.flip();
+            try {
+                while (bufer.hasRemaining()) {
+                    canal.write(bufer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // Detiene el recorrido de los registros
+            }
+            bufer.clear();
+        }
+
+        void informar() {
+            if (progreso != null) {
+                progreso.accept(new ProgresoTransferencia(bytes, -1, filas, 0));
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package progress_body.transferencia;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+
+/**
+ * Formato CSV de los registros y su lectura directa desde bytes, sin crear cadenas por campo.
+ * <p>
+ * Columnas: {@value #ENCABEZADO}. Los decimales usan punto, sin separador de miles, y la fecha usa
+ * el formato de {@link Timestamp#toString()} ({@code yyyy-MM-dd HH:mm:ss[.f...]}) en la zona horaria local.
+ * Los archivos exportados antes de que existieran el usuario y la versión tienen solo las primeras
+ * {@value #COLUMNAS_ANTERIORES} columnas y se siguen leyendo, con usuario y versión 0.
+ */
+final class FormatoCsv {
+
+    static final String ENCABEZADO = "id,peso,bicepIzquierdo,bicepDerecho,cintura,cuadriceps,pantorrillas,fecha,usuario,version";
+    static final int COLUMNAS = 10;
+    static final int COLUMNAS_ANTERIORES = 8;
+
+    /**
+     * Potencias de 10 representables exactamente como double.
+     */
+    private static final double[] POTENCIAS = new double[23];
+
+    static {
+        POTENCIAS[0] = 1;
+        for (int i = 1; i < POTENCIAS.length; i++) {
+            POTENCIAS[i] = POTENCIAS[i - 1] * 10;
+        }
+    }
+
+    private FormatoCsv() {
+    }
+
+    /**
+     * Lee un entero no negativo.
+     *
+     * @return El valor, o -1 si el campo está vacío o no es un entero válido.
+     */
+    static int leerEntero(ByteBuffer bufer, int desde, int hasta) {
+        if (desde == hasta || hasta - desde > 10) {
+            return -1;
+        }
+        long valor = 0;
+        for (int i = desde; i < hasta; i++) {
+            int digito = bufer.get(i) - '0';
+            if (digito < 0 || digito > 9) {
+                return -1;
+            }
+            valor = valor * 10 + digito;
+        }
+        return valor > Integer.MAX_VALUE ? -1 : (int) valor;
+    }
+
+    /**
+     * Lee un número decimal. Los valores de hasta 15 dígitos sin exponente se convierten con una sola
+     * división entre dos doubles exactos, que da el mismo resultado correctamente redondeado que
+     * {@link Double#parseDouble(String)}; el resto se delega a este último.
+     *
+     * @return El valor, o {@link Double#NaN} si el campo no es un número válido.
+     */
+    static double leerDecimal(ByteBuffer bufer, int desde, int hasta) {
+        int i = desde;
+        boolean negativo = false;
+        if (i < hasta && (bufer.get(i) == '-' || bufer.get(i) == '+')) {
+            negativo = bufer.get(i) == '-';
+            i++;
+        }
+        long mantisa = 0;
+        int digitos = 0;
+        int decimales = 0;
+        boolean punto = false;
+        for (; i < hasta; i++) {
+            byte c = bufer.get(i);
+            if (c >= '0' && c <= '9') {
+                if (++digitos > 15) {
+                    return leerDecimalLento(bufer, desde, hasta);
+                }
+                mantisa = mantisa * 10 + (c - '0');
+                if (punto) {
+                    decimales++;
+                }
+            } else if (c == '.' && !punto) {
+                punto = true;
+            } else {
+                return leerDecimalLento(bufer, desde, hasta);
+            }
+        }
+        if (digitos == 0) {
+            return Double.NaN;
+        }
+        double valor = mantisa / POTENCIAS[decimales];
+        return negativo ? -valor : valor;
+    }
+
+    private static double leerDecimalLento(ByteBuffer bufer, int desde, int hasta) {
+        byte[] bytes = new byte[hasta - desde];
+        bufer.get(desde, bytes);
+        try {
+            return Double.parseDouble(new String(bytes, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Lee una fecha con formato {@code yyyy-MM-dd HH:mm:ss} y fracción de segundo opcional de hasta 9 dígitos.
+     * También se acepta {@code T} como separador entre la fecha y la hora.
+     *
+     * @return La fecha, o null si el formato o la fecha no son válidos.
+     */
+    static Timestamp leerFecha(ByteBuffer bufer, int desde, int hasta) {
+        int largo = hasta - desde;
+        if (largo < 19 || largo == 20 || largo > 29
+                || bufer.get(desde + 4) != '-' || bufer.get(desde + 7) != '-'
+                || (bufer.get(desde + 10) != ' ' && bufer.get(desde + 10) != 'T')
+                || bufer.get(desde + 13) != ':' || bufer.get(desde + 16) != ':'
+                || (largo > 19 && bufer.get(desde + 19) != '.')) {
+            return null;
+        }
+        int anio = digitos(bufer, desde, 4);
+        int mes = digitos(bufer, desde + 5, 2);
+        int dia = digitos(bufer, desde + 8, 2);
+        int hora = digitos(bufer, desde + 11, 2);
+        int minuto = digitos(bufer, desde + 14, 2);
+        int segundo = digitos(bufer, desde + 17, 2);
+        int nanos = 0;
+        if (largo > 20) {
+            int fraccion = digitos(bufer, desde + 20, largo - 20);
+            nanos = fraccion < 0 ? -1 : (int) (fraccion * (long) POTENCIAS[9 - (largo - 20)]);
+        }
+        if ((anio | mes | dia | hora | minuto | segundo | nanos) < 0) {
+            return null;
+        }
+        try {
+            return Timestamp.valueOf(LocalDateTime.of(anio, mes, dia, hora, minuto, segundo, nanos));
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return El valor de {@code n} dígitos decimales, o -1 si alguno no es un dígito.
+     */
+    private static int digitos(ByteBuffer bufer, int desde, int n) {
+        int valor = 0;
+        for (int i = desde; i < desde + n; i++) {
+            int digito = bufer.get(i) - '0';
+            if (digito < 0 || digito > 9) {
+                return -1;
+            }
+            valor = valor * 10 + digito;
+        }
+        return valor;
+    }
+}
@@ -0,0 +1,399 @@
+package progress_body.transferencia;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.function.Consumer;
+
+/**
+ * Importa registros desde un archivo CSV con el formato de {@link ExportadorCsv}.
+ * <p>
+ * El archivo se lee con un {@link FileChannel} en un búfer directo y cada campo se interpreta
+ * directamente desde los bytes, sin crear cadenas por línea ni objetos {@code Registro}; las filas
+ * válidas se guardan en arreglos primitivos y se insertan con sentencias {@code INSERT} de varias filas,
+ * una transacción por lote. A diferencia de {@code RegistroDAO}, se conservan la fecha y el usuario del
+ * archivo y, si se pide, también el ID y la versión.
+ * <p>
+ * La transacción de cada lote también guarda un punto de control en la tabla {@code registro_importacion},
+ * que se crea si no existe, con una clave derivada de la ruta absoluta del archivo. Si la importación se
+ * interrumpe, la siguiente llamada con el mismo archivo continúa desde el último lote confirmado: como
+ * el lote y su posición se confirman juntos, ningún lote se repite ni se pierde, se conserven o no los
+ * IDs. La transacción del último lote borra el punto de control.
+ * <p>
+ * Las líneas con un formato o valores inválidos (medidas que no son mayores a cero, fechas inexistentes)
+ * se informan por consola con su número de línea y se omiten.
+ */
+public class ImportadorCsv {
+
+    /**
+     * Máximo de filas por lote: MySQL admite hasta 65535 parámetros por sentencia y cada fila usa hasta 10.
+     */
+    public static final int TAMANO_LOTE_MAXIMO = 6_500;
+
+    private static final int TAMANO_BUFER = 1 << 22; // 4 MiB; también es el largo máximo de una línea
+    private static final int MEDIDAS = 6;
+
+    private final DataSource dataSource;
+    private final int tamanoLote;
+    private final boolean conservarIds;
+
+    /**
+     * Crea un importador.
+     *
+     * @param dataSource   El origen de las conexiones. No debe ser nulo.
+     * @param tamanoLote   El número de filas por transacción, entre 1 y {@link #TAMANO_LOTE_MAXIMO}.
+     * @param conservarIds true para insertar los IDs y las versiones del archivo y omitir los IDs que ya
+     *                     existen; false para que la base de datos asigne IDs nuevos, con versión 0.
+     * @throws IllegalArgumentException si el dataSource es nulo o el tamaño de lote no es válido.
+     */
+    public ImportadorCsv(DataSource dataSource, int tamanoLote, boolean conservarIds) {
+        if (dataSource == null) {
+            throw new IllegalArgumentException("El DataSource no puede ser nulo.");
+        }
+        if (tamanoLote <= 0 || tamanoLote > TAMANO_LOTE_MAXIMO) {
+            throw new IllegalArgumentException("El tamaño del lote debe estar entre 1 y " + TAMANO_LOTE_MAXIMO + ".");
+        }
+        this.dataSource = dataSource;
+        this.tamanoLote = tamanoLote;
+        this.conservarIds = conservarIds;
+    }
+
+    /**
+     * Importa el archivo, continuando desde su punto de control si existe.
+     *
+     * @param origen   El archivo CSV. No debe ser nulo. La primera línea se omite si no empieza con un dígito.
+     * @param progreso Recibe el avance después de cada lote, o null.
+     * @return El resultado de esta ejecución; si no está completa, puede volver a llamarse para continuar.
+     * @throws IllegalArgumentException si el origen es nulo.
+     */
+    public ResultadoImportacion importar(Path origen, Consumer<ProgresoTransferencia> progreso) {
+        if (origen == null) {
+            throw new IllegalArgumentException("El archivo de origen no puede ser nulo.");
+        }
+        String clave = clave(origen);
+        Importacion importacion = null;
+
+        try (FileChannel canal = FileChannel.open(origen, StandardOpenOption.READ);
+             Connection con = dataSource.getConnection()) {
+
+            long tamano = canal.size();
+            long modificado = Files.getLastModifiedTime(origen).toMillis();
+            try (Statement st = con.createStatement()) {
+                st.execute(PuntoControl.CREAR_TABLA);
+            }
+            PuntoControl punto = PuntoControl.leer(con, clave, tamano, modificado);
+            importacion = new Importacion(con, canal, clave, tamano, modificado, punto, progreso);
+            con.setAutoCommit(false);
+            try {
+                importacion.ejecutar();
+            } finally {
+                importacion.cerrar();
+            }
+            return importacion.resultado(true);
+        } catch (IOException | SQLException e) {
+            System.out.println("La importación se detuvo; puede reanudarse desde el último lote confirmado. \n" + e.getMessage());
+            return importacion == null ? new ResultadoImportacion(0, 0, 0, false, false) : importacion.resultado(false);
+        }
+    }
+
+    /**
+     * @return El SHA-256 de la ruta absoluta del archivo, en hexadecimal: la clave de su punto de control.
+     */
+    private static String clave(Path origen) {
+        try {
+            byte[] resumen = MessageDigest.getInstance("SHA-256")
+                    .digest(origen.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(resumen);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("La plataforma no ofrece SHA-256.", e); // Toda JVM debe ofrecerlo
+        }
+    }
+
+    private String sqlInsercion(int filas) {
+        String columnas = conservarIds
+                ? "INSERT IGNORE INTO registro (id, peso, bicepIzquierdo, bicepDerecho, cintura, cuadriceps, pantorrillas, fecha, usuario, version) VALUES "
+                : "INSERT INTO registro (peso, bicepIzquierdo, bicepDerecho, cintura, cuadriceps, pantorrillas, fecha, usuario) VALUES ";
+        String grupo = conservarIds
+                ? "(?, ?, ?, ?, ?, ?, ?, COALESCE(?, CURRENT_TIMESTAMP), ?, ?)"
+                : "(?, ?, ?, ?, ?, ?, COALESCE(?, CURRENT_TIMESTAMP), ?)";
+        StringBuilder sql = new StringBuilder(columnas.length() + filas * (grupo.length() + 2)).append(columnas);
+        for (int i = 0; i < filas; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(grupo);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Estado de una ejecución de {@link #importar(Path, Consumer)}.
+     */
+    private final class Importacion {
+
+        private final Connection con;
+        private final FileChannel canal;
+        private final String clave;
+        private final long tamano;
+        private final long modificado;
+        private final Consumer<ProgresoTransferencia> progreso;
+        private final boolean reanudada;
+
+        // Filas del lote en curso, en arreglos primitivos
+        private final int[] ids = new int[tamanoLote];
+        private final double[] medidas = new double[tamanoLote * MEDIDAS];
+        private final Timestamp[] fechas = new Timestamp[tamanoLote];
+        private final int[] usuarios = new int[tamanoLote];
+        private final int[] versiones = new int[tamanoLote];
+        private final int[] limites = new int[FormatoCsv.COLUMNAS + 1]; // Inicio de cada campo de la línea actual
+        private int enLote;
+        private PreparedStatement completo; // Se prepara solo si se llega a llenar un lote
+
+        private long posicion; // Byte donde empieza la primera línea sin confirmar
+        private long lineas;
+        private long insertadas;
+        private long rechazadas;
+        private long lineasConfirmadas; // Valores al guardar el último punto de control
+        private long rechazadasConfirmadas;
+        private long lineasPrevias;
+        private long insertadasPrevias;
+        private long rechazadasPrevias;
+
+        Importacion(Connection con, FileChannel canal, String clave, long tamano, long modificado,
+                    PuntoControl punto, Consumer<ProgresoTransferencia> progreso) {
+            this.con = con;
+            this.canal = canal;
+            this.clave = clave;
+            this.tamano = tamano;
+            this.modificado = modificado;
+            this.progreso = progreso;
+            this.reanudada = punto != null;
+            if (punto != null) {
+                posicion = punto.posicion();
+                lineasPrevias = punto.lineas();
+                insertadasPrevias = punto.insertadas();
+                rechazadasPrevias = punto.rechazadas();
+            }
+        }
+
+        void ejecutar() throws IOException, SQLException {
+            ByteBuffer bufer = ByteBuffer.allocateDirect(TAMANO_BUFER);
+            long base = posicion; // Posición en el archivo del byte 0 del búfer
+            boolean primeraLinea = posicion == 0;
+            canal.position(base);
+
+            while (true) {
+                boolean fin = canal.read(bufer) < 0;
+                bufer.flip();
+                int limite = bufer.limit();
+                int inicio = 0;
+
+                while (inicio < limite) {
+                    int salto = buscarSalto(bufer, inicio, limite);
+                    if (salto < 0 && !fin) {
+                        break; // Línea incompleta: se lee más del archivo
+                    }
+                    int finLinea = salto < 0 ? limite : salto;
+                    int siguiente = salto < 0 ? limite : salto + 1;
+                    if (finLinea > inicio && bufer.get(finLinea - 1) == '\r') {
+                        finLinea--;
+                    }
+
+                    if (primeraLinea && finLinea > inicio && !esDigito(bufer.get(inicio))) {
+                        primeraLinea = false; // Encabezado
+                    } else if (finLinea > inicio) {
+                        primeraLinea = false;
+                        lineas++;
+                        if (!leerLinea(bufer, inicio, finLinea)) {
+                            rechazadas++;
+                            System.out.println("Se omitió la línea " + (lineasPrevias + lineas) + ": formato o valores inválidos.");
+                        }
+                    }
+                    inicio = siguiente;
+
+                    if (enLote == tamanoLote) {
+                        confirmarLote(base + inicio, false);
+                    }
+                }
+
+                if (fin) {
+                    break;
+                }
+                if (inicio == 0 && limite == bufer.capacity()) {
+                    throw new IOException("La línea que empieza en el byte " + base + " supera los " + TAMANO_BUFER + " bytes.");
+                }
+                base += inicio;
+                bufer.position(inicio);
+                bufer.compact();
+            }
+            confirmarLote(tamano, true);
+        }
+
+        /**
+         * Interpreta una línea y la agrega al lote.
+         *
+         * @return false si la línea no tiene un formato o valores válidos.
+         */
+        private boolean leerLinea(ByteBuffer bufer, int desde, int hasta) {
+            int campo = 0;
+            limites[0] = desde;
+            for (int i = desde; i < hasta; i++) {
+                if (bufer.get(i) == ',') {
+                    if (++campo == FormatoCsv.COLUMNAS) {
+                        return false;
+                    }
+                    limites[campo] = i + 1;
+                }
+            }
+            int columnas = campo + 1;
+            if (columnas != FormatoCsv.COLUMNAS && columnas != FormatoCsv.COLUMNAS_ANTERIORES) {
+                return false;
+            }
+            limites[columnas] = hasta + 1;
+
+            if (conservarIds) {
+                int id = FormatoCsv.leerEntero(bufer, limites[0], limites[1] - 1);
+                if (id <= 0) {
+                    return false;
+                }
+                ids[enLote] = id;
+            }
+            for (int m = 0; m < MEDIDAS; m++) {
+                double valor = FormatoCsv.leerDecimal(bufer, limites[m + 1], limites[m + 2] - 1);
+                if (!(valor > 0) || Double.isInfinite(valor)) {
+                    return false;
+                }
+                medidas[enLote * MEDIDAS + m] = valor;
+            }
+            Timestamp fecha = null; // Sin fecha, la asigna la base de datos
+            int finFecha = limites[8] - 1;
+            if (limites[7] < finFecha) {
+                fecha = FormatoCsv.leerFecha(bufer, limites[7], finFecha);
+                if (fecha == null) {
+                    return false;
+                }
+            }
+            int usuario = 0; // El formato anterior no tiene usuario ni versión
+            int version = 0;
+            if (columnas == FormatoCsv.COLUMNAS) {
+                usuario = FormatoCsv.leerEntero(bufer, limites[8], limites[9] - 1);
+                version = FormatoCsv.leerEntero(bufer, limites[9], hasta);
+                if (usuario < 0 || version < 0) {
+                    return false;
+                }
+            }
+            fechas[enLote] = fecha;
+            usuarios[enLote] = usuario;
+            versiones[enLote] = version;
+            enLote++;
+            return true;
+        }
+
+        /**
+         * Inserta el lote en curso y, en la misma transacción, guarda el punto de control en la posición
+         * indicada o, si es el último, lo borra.
+         */
+        private void confirmarLote(long nuevaPosicion, boolean ultimo) throws SQLException {
+            PreparedStatement ps = null;
+            try {
+                int filas = 0;
+                if (enLote > 0) {
+                    if (enLote == tamanoLote) {
+                        if (completo == null) {
+                            completo = con.prepareStatement(sqlInsercion(tamanoLote));
+                        }
+                        ps = completo;
+                    } else {
+                        ps = con.prepareStatement(sqlInsercion(enLote));
+                    }
+                    asignar(ps);
+                    filas = ps.executeUpdate();
+                }
+                if (ultimo) {
+                    PuntoControl.borrar(con, clave);
+                } else {
+                    new PuntoControl(tamano, modificado, nuevaPosicion, lineasPrevias + lineas,
+                            insertadasPrevias + insertadas + filas, rechazadasPrevias + rechazadas).guardar(con, clave);
+                }
+                con.commit();
+                insertadas += filas;
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                if (ps != null && ps != completo) {
+                    ps.close();
+                }
+            }
+            Arrays.fill(fechas, 0, enLote, null);
+            enLote = 0;
+            posicion = nuevaPosicion;
+            lineasConfirmadas = lineas;
+            rechazadasConfirmadas = rechazadas;
+            if (progreso != null) {
+                progreso.accept(new ProgresoTransferencia(posicion, tamano,
+                        insertadasPrevias + insertadas, rechazadasPrevias + rechazadas));
+            }
+        }
+
+        private void asignar(PreparedStatement ps) throws SQLException {
+            int p = 1;
+            for (int i = 0; i < enLote; i++) {
+                if (conservarIds) {
+                    ps.setInt(p++, ids[i]);
+                }
+                for (int m = 0; m < MEDIDAS; m++) {
+                    ps.setDouble(p++, medidas[i * MEDIDAS + m]);
+                }
+                if (fechas[i] == null) {
+                    ps.setNull(p++, Types.TIMESTAMP);
+                } else {
+                    ps.setTimestamp(p++, fechas[i]);
+                }
+                ps.setInt(p++, usuarios[i]);
+                if (conservarIds) {
+                    ps.setInt(p++, versiones[i]);
+                }
+            }
+        }
+
+        void cerrar() throws SQLException {
+            if (completo != null) {
+                completo.close();
+            }
+        }
+
+        ResultadoImportacion resultado(boolean completa) {
+            // Las filas leídas después del último punto de control no cuentan: se volverán a leer al reanudar
+            return new ResultadoImportacion(lineasConfirmadas, insertadas, rechazadasConfirmadas, completa, reanudada);
+        }
+    }
+
+    private static int buscarSalto(ByteBuffer bufer, int desde, int hasta) {
+        for (int i = desde; i < hasta; i++) {
+            if (bufer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean esDigito(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
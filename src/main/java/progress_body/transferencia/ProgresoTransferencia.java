@@ -0,0 +1,22 @@
+package progress_body.transferencia;
+
+/**
+ * Avance de una importación o exportación, informado periódicamente al llamador.
+ *
+ * @param bytes        Bytes leídos o escritos hasta el momento.
+ * @param bytesTotales Tamaño total del archivo, o -1 si no se conoce (exportación).
+ * @param filas        Filas importadas o exportadas.
+ * @param rechazadas   Filas descartadas por tener un formato o valores inválidos.
+ */
+public record ProgresoTransferencia(long bytes, long bytesTotales, long filas, long rechazadas) {
+
+    /**
+     * @return El porcentaje completado, entre 0 y 100, o {@link Double#NaN} si no se conoce el total.
+     */
+    public double porcentaje() {
+        if (bytesTotales < 0) {
+            return Double.NaN;
+        }
+        return bytesTotales == 0 ? 100 : bytes * 100.0 / bytesTotales;
+    }
+}
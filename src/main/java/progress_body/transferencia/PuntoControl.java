@@ -0,0 +1,91 @@
+package progress_body.transferencia;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Posición hasta la que una importación quedó confirmada en la base de datos. Se guarda en la tabla
+ * {@code registro_importacion}, dentro de la misma transacción que el lote que confirma.
+ *
+ * @param tamano     Tamaño del archivo importado; si cambia, el punto de control se descarta.
+ * @param modificado Fecha de modificación del archivo, en milisegundos.
+ * @param posicion   Byte donde empieza la primera línea sin confirmar.
+ * @param lineas     Líneas de datos procesadas hasta la posición.
+ * @param insertadas Filas insertadas hasta la posición.
+ * @param rechazadas Filas descartadas hasta la posición.
+ */
+record PuntoControl(long tamano, long modificado, long posicion, long lineas, long insertadas, long rechazadas) {
+
+    /**
+     * Crea la tabla si no existe. Debe ejecutarse fuera de una transacción: en MySQL, el DDL confirma la
+     * transacción en curso.
+     */
+    static final String CREAR_TABLA = """
+            CREATE TABLE IF NOT EXISTS registro_importacion (
+                clave CHAR(64) NOT NULL,
+                tamano BIGINT NOT NULL,
+                modificado BIGINT NOT NULL,
+                posicion BIGINT NOT NULL,
+                lineas BIGINT NOT NULL,
+                insertadas BIGINT NOT NULL,
+                rechazadas BIGINT NOT NULL,
+                PRIMARY KEY (clave)
+            ) ENGINE=InnoDB""";
+
+    /**
+     * Lee el punto de control de un archivo.
+     *
+     * @param clave La clave del archivo, de {@link ImportadorCsv}.
+     * @return El punto de control, o null si no existe o no corresponde al archivo actual.
+     */
+    static PuntoControl leer(Connection con, String clave, long tamano, long modificado) throws SQLException {
+        String sql = "SELECT tamano, modificado, posicion, lineas, insertadas, rechazadas FROM registro_importacion WHERE clave = ?";
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setString(1, clave);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                PuntoControl punto = new PuntoControl(rs.getLong(1), rs.getLong(2), rs.getLong(3),
+                        rs.getLong(4), rs.getLong(5), rs.getLong(6));
+                if (punto.tamano() != tamano || punto.modificado() != modificado || punto.posicion() > tamano) {
+                    System.out.println("El archivo cambió desde la última importación; se empieza desde el principio.");
+                    return null;
+                }
+                return punto;
+            }
+        }
+    }
+
+    /**
+     * Guarda el punto de control en la transacción en curso, reemplazando el anterior.
+     */
+    void guardar(Connection con, String clave) throws SQLException {
+        // VALUES(col) se usa en lugar del alias de fila de MySQL 8.0.19 para admitir servidores anteriores
+        String sql = "INSERT INTO registro_importacion (clave, tamano, modificado, posicion, lineas, insertadas, rechazadas) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE tamano=VALUES(tamano), modificado=VALUES(modificado), "
+                + "posicion=VALUES(posicion), lineas=VALUES(lineas), insertadas=VALUES(insertadas), rechazadas=VALUES(rechazadas)";
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setString(1, clave);
+            ps.setLong(2, tamano);
+            ps.setLong(3, modificado);
+            ps.setLong(4, posicion);
+            ps.setLong(5, lineas);
+            ps.setLong(6, insertadas);
+            ps.setLong(7, rechazadas);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Borra el punto de control de un archivo en la transacción en curso.
+     */
+    static void borrar(Connection con, String clave) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("DELETE FROM registro_importacion WHERE clave = ?")) {
+            ps.setString(1, clave);
+            ps.executeUpdate();
+        }
+    }
+}
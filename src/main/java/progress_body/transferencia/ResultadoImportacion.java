@@ -0,0 +1,14 @@
+package progress_body.transferencia;
+
+/**
+ * Resultado de {@link ImportadorCsv#importar(java.nio.file.Path, java.util.function.Consumer)}.
+ *
+ * @param lineas     Líneas de datos procesadas en esta ejecución, sin contar el encabezado.
+ * @param insertadas Filas insertadas en esta ejecución.
+ * @param rechazadas Filas descartadas por tener un formato o valores inválidos.
+ * @param completa   true si se procesó el archivo completo; false si la importación se detuvo por un
+ *                   error y puede reanudarse desde el último punto de control.
+ * @param reanudada  true si la importación continuó desde un punto de control anterior.
+ */
+public record ResultadoImportacion(long lineas, long insertadas, long rechazadas, boolean completa, boolean reanudada) {
+}
@@ -0,0 +1,57 @@
+package progress_body.almacen;
+
+import org.junit.jupiter.api.Test;
+import progress_body.dominio.Medida;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Crecimiento de {@link AlmacenColumnar} en el heap y fuera de él: las filas se conservan y, fuera del
+ * heap, la memoria de la capacidad anterior se libera al crecer.
+ */
+class AlmacenColumnarTest {
+
+    private static final int FILAS = 10_000;
+
+    @Test
+    void crecerConservaLasFilas() {
+        for (boolean fueraDelHeap : new boolean[]{false, true}) {
+            try (AlmacenColumnar almacen = new AlmacenColumnar(fueraDelHeap, 1)) {
+                for (int i = 0; i < FILAS; i++) {
+                    almacen.agregar(i + 1, i * 1000L, i, 30, 30, 80, 50, i % 7);
+                }
+
+                assertEquals(FILAS, almacen.tamano());
+                for (int i = 0; i < FILAS; i += 997) {
+                    assertEquals(i + 1, almacen.id(i));
+                    assertEquals(i * 1000L, almacen.fecha(i));
+                    assertEquals(i, almacen.valor(Medida.PESO, i));
+                    assertEquals(i % 7, almacen.valor(Medida.PANTORRILLAS, i));
+                }
+                assertEquals((double) FILAS * (FILAS - 1) / 2, almacen.sumar(Medida.PESO));
+            }
+        }
+    }
+
+    @Test
+    void fueraDelHeapCrecerLiberaLaCapacidadAnterior() {
+        AlmacenColumnar almacen = new AlmacenColumnar(true, 2);
+        almacen.agregar(1, 0, 70, 30, 30, 80, 50, 35);
+        MemorySegment anterior = almacen.columna(Medida.PESO);
+        assertEquals(70, anterior.getAtIndex(ValueLayout.JAVA_DOUBLE, 0));
+
+        almacen.agregar(2, 0, 71, 30, 30, 80, 50, 35);
+        almacen.agregar(3, 0, 72, 30, 30, 80, 50, 35);
+
+        assertThrows(IllegalStateException.class, () -> anterior.getAtIndex(ValueLayout.JAVA_DOUBLE, 0));
+        MemorySegment actual = almacen.columna(Medida.PESO);
+        assertEquals(72, actual.getAtIndex(ValueLayout.JAVA_DOUBLE, 2));
+
+        almacen.close();
+        assertThrows(IllegalStateException.class, () -> actual.getAtIndex(ValueLayout.JAVA_DOUBLE, 0));
+    }
+}
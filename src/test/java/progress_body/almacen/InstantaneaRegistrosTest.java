@@ -0,0 +1,150 @@
+package progress_body.almacen;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import progress_body.datos.BaseH2;
+import progress_body.datos.FallasJdbc;
+import progress_body.datos.RegistroDAO;
+import progress_body.dominio.Registro;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Escritura y actualización de {@link InstantaneaRegistros} desde un {@link RegistroDAO} sobre H2,
+ * incluido el caso en que la lectura de los registros falla a mitad.
+ */
+class InstantaneaRegistrosTest {
+
+    @TempDir
+    Path directorio;
+
+    private BaseH2 base;
+    private RegistroDAO dao;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        base = new BaseH2();
+        dao = new RegistroDAO(base.getDataSource());
+        agregar(10);
+    }
+
+    @AfterEach
+    void liberar() throws Exception {
+        base.close();
+    }
+
+    private void agregar(int cantidad) {
+        for (int i = 0; i < cantidad; i++) {
+            Registro registro = new Registro(70 + i, 30, 30.5, 80, 55, 37);
+            registro.setUsuario(i % 4);
+            assertTrue(dao.agregarRegistro(registro));
+        }
+    }
+
+    @Test
+    void escribeYActualizaConLasAltasNuevas() {
+        Path archivo = directorio.resolve("registros.snap");
+        assertEquals(10, InstantaneaRegistros.escribir(archivo, dao));
+        agregar(5);
+
+        assertEquals(5, InstantaneaRegistros.actualizar(archivo, dao));
+
+        try (InstantaneaRegistros instantanea = InstantaneaRegistros.abrir(archivo)) {
+            assertNotNull(instantanea);
+            assertEquals(15, instantanea.tamano());
+            // La instantánea guarda la fecha en milisegundos; se comparan IDs, usuarios y medidas
+            assertEquals(dao.listarRegistros().stream().map(InstantaneaRegistrosTest::firma).toList(),
+                    LongStream.range(0, 15).mapToObj(instantanea::registro).map(InstantaneaRegistrosTest::firma).toList());
+        }
+    }
+
+    @Test
+    void unaLecturaCortadaNoReemplazaLaInstantanea() throws Exception {
+        Path archivo = directorio.resolve("registros.snap");
+        InstantaneaRegistros.escribir(archivo, dao);
+        byte[] anterior = Files.readAllBytes(archivo);
+        agregar(5);
+
+        RegistroDAO cortado = new RegistroDAO(FallasJdbc.cortarLecturasTras(base.getDataSource(), 3));
+        assertEquals(-1, InstantaneaRegistros.escribir(archivo, cortado));
+
+        assertArrayEquals(anterior, Files.readAllBytes(archivo));
+        assertFalse(Files.exists(directorio.resolve("registros.snap.tmp")));
+    }
+
+    @Test
+    void unaPaginaFallidaNoSeTomaPorElFinal() {
+        Path archivo = directorio.resolve("registros.snap");
+        InstantaneaRegistros.escribir(archivo, dao);
+        agregar(5);
+
+        RegistroDAO cortado = new RegistroDAO(FallasJdbc.cortarLecturasTras(base.getDataSource(), 3));
+        assertEquals(-1, InstantaneaRegistros.actualizar(archivo, cortado));
+
+        // El archivo conserva su contenido y la siguiente actualización trae todas las altas
+        try (InstantaneaRegistros instantanea = InstantaneaRegistros.abrir(archivo)) {
+            assertNotNull(instantanea);
+            assertEquals(10, instantanea.tamano());
+        }
+        assertEquals(5, InstantaneaRegistros.actualizar(archivo, dao));
+    }
+
+    @Test
+    void unAltaConfirmadaTardeConUnIdMenorSeIncorpora() throws Exception {
+        Path archivo = directorio.resolve("registros.snap");
+        InstantaneaRegistros.escribir(archivo, dao);
+        insertar(20);
+        assertEquals(1, InstantaneaRegistros.actualizar(archivo, dao));
+
+        // Otra transacción confirma un ID menor que el mayor ya guardado
+        insertar(15);
+        assertEquals(1, InstantaneaRegistros.actualizar(archivo, dao));
+        assertEquals(0, InstantaneaRegistros.actualizar(archivo, dao));
+
+        insertar(17);
+        try (AlmacenColumnar almacen = InstantaneaRegistros.cargarAlmacen(archivo, dao, false)) {
+            assertNotNull(almacen);
+            assertEquals(13, almacen.tamano());
+            assertTrue(almacen.filaDeId(15) >= 0);
+            assertTrue(almacen.filaDeId(17) >= 0);
+        }
+        try (InstantaneaRegistros instantanea = InstantaneaRegistros.abrir(archivo)) {
+            assertNotNull(instantanea);
+            assertEquals(13, instantanea.tamano());
+            assertEquals(20, instantanea.ultimoId());
+        }
+    }
+
+    @Test
+    void sinInstantaneaSeCargaElAlmacenYSeEscribeConLosUsuarios() {
+        Path archivo = directorio.resolve("registros.snap");
+        try (AlmacenColumnar almacen = InstantaneaRegistros.cargarAlmacen(archivo, dao, false)) {
+            assertNotNull(almacen);
+            assertEquals(10, almacen.tamano());
+        }
+        try (InstantaneaRegistros instantanea = InstantaneaRegistros.abrir(archivo)) {
+            assertNotNull(instantanea);
+            assertEquals(dao.listarRegistros().stream().map(InstantaneaRegistrosTest::firma).toList(),
+                    LongStream.range(0, 10).mapToObj(instantanea::registro).map(InstantaneaRegistrosTest::firma).toList());
+        }
+    }
+
+    private void insertar(int id) throws Exception {
+        base.ejecutar("INSERT INTO registro (id, peso, bicepIzquierdo, bicepDerecho, cintura, cuadriceps, pantorrillas, "
+                + "fecha, usuario) VALUES (" + id + ", 80, 30, 30.5, 80, 55, 37, CURRENT_TIMESTAMP, 3)");
+    }
+
+    private static String firma(Registro registro) {
+        return registro.getId() + ":" + registro.getUsuario() + ":" + registro.getPeso();
+    }
+}
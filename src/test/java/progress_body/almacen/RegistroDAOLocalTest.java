@@ -0,0 +1,212 @@
+package progress_body.almacen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import progress_body.datos.ContratoRegistroDAOTest;
+import progress_body.datos.IRegistroDAO;
+import progress_body.datos.ResultadoLote;
+import progress_body.dominio.Registro;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contrato de {@link IRegistroDAO} para {@link RegistroDAOLocal} y recuperación tras una caída:
+ * una entrada final cortada, un lote interrumpido y una compactación que dejó todos o algunos de los
+ * segmentos anteriores.
+ */
+class RegistroDAOLocalTest extends ContratoRegistroDAOTest {
+
+    @TempDir
+    Path directorio;
+
+    @TempDir
+    Path copia;
+
+    private RegistroDAOLocal local;
+
+    @Override
+    protected IRegistroDAO crearDAO() {
+        local = abrir();
+        return local;
+    }
+
+    @Override
+    protected void cerrarDAO() {
+        if (local != null) {
+            local.close();
+        }
+    }
+
+    /**
+     * Abre el almacén sin compactación en segundo plano, para que las pruebas decidan cuándo compactar.
+     */
+    private RegistroDAOLocal abrir() {
+        RegistroDAOLocal almacen = RegistroDAOLocal.abrir(directorio, 1L << 20, Duration.ZERO, 0.5, Duration.ofHours(1));
+        assertNotNull(almacen);
+        return almacen;
+    }
+
+    private void reabrir() {
+        local.close();
+        local = abrir();
+        dao = local;
+    }
+
+    @Test
+    void reabrirConservaLosRegistros() {
+        Registro guardado = local.agregarYObtener(registro(1, 2));
+        Registro cambio = registro(4, 2);
+        cambio.setId(guardado.getId());
+        local.modificarRegistro(cambio);
+
+        reabrir();
+
+        Registro leido = new Registro(guardado.getId());
+        assertTrue(local.buscarRegistro(leido));
+        assertEquals(74, leido.getPeso());
+        assertEquals(1, leido.getVersion());
+        // Los IDs nuevos siguen a los recuperados
+        assertTrue(local.agregarYObtener(registro(2, 2)).getId() > guardado.getId());
+    }
+
+    @Test
+    void descartaUnaEntradaFinalCortada() throws IOException {
+        Registro primero = local.agregarYObtener(registro(1, 0));
+        Registro segundo = local.agregarYObtener(registro(2, 0));
+        local.close();
+
+        // La caída dejó media entrada al final del segmento
+        Path ultimo = segmentos().getLast();
+        long tamano = Files.size(ultimo);
+        Files.write(ultimo, new byte[RegistroDAOLocal.TAMANO_ENTRADA / 2], StandardOpenOption.APPEND);
+
+        local = abrir();
+        dao = local;
+        assertEquals(tamano, Files.size(ultimo));
+        assertTrue(local.registroExiste(primero.getId()));
+        assertTrue(local.registroExiste(segundo.getId()));
+        assertEquals(2, local.listarRegistros().size());
+    }
+
+    @Test
+    void descartaUnaEntradaFinalDanada() throws IOException {
+        Registro primero = local.agregarYObtener(registro(1, 0));
+        Registro segundo = local.agregarYObtener(registro(2, 0));
+        local.close();
+
+        // La última entrada se escribió a medias: el CRC no coincide
+        Path ultimo = segmentos().getLast();
+        try (FileChannel canal = FileChannel.open(ultimo, StandardOpenOption.WRITE)) {
+            canal.write(ByteBuffer.wrap(new byte[8]), canal.size() - 40);
+        }
+
+        local = abrir();
+        dao = local;
+        assertTrue(local.registroExiste(primero.getId()));
+        assertFalse(local.registroExiste(segundo.getId()));
+    }
+
+    @Test
+    void unLoteInterrumpidoNoSeRecupera() throws IOException {
+        Registro suelto = local.agregarYObtener(registro(1, 0));
+        ResultadoLote lote = local.agregarRegistros(List.of(registro(2, 0), registro(3, 0), registro(4, 0)));
+        assertTrue(lote.exitoso());
+        local.close();
+
+        // La caída ocurrió antes de escribir la entrada que cierra el lote
+        Path ultimo = segmentos().getLast();
+        try (FileChannel canal = FileChannel.open(ultimo, StandardOpenOption.WRITE)) {
+            canal.truncate(canal.size() - RegistroDAOLocal.TAMANO_ENTRADA);
+        }
+
+        local = abrir();
+        dao = local;
+        assertTrue(local.registroExiste(suelto.getId()));
+        for (int id : lote.idsGenerados()) {
+            assertFalse(local.registroExiste(id));
+        }
+        assertEquals(1, local.listarRegistros().size());
+    }
+
+    @Test
+    void unaCompactacionInterrumpidaNoResucitaNiRetrocede() throws IOException {
+        Registro modificado = local.agregarYObtener(registro(1, 0));
+        Registro eliminado = local.agregarYObtener(registro(2, 0));
+        Registro cambio = registro(6, 0);
+        cambio.setId(modificado.getId());
+        assertTrue(local.modificarRegistro(cambio));
+        assertTrue(local.eliminarRegistro(new Registro(eliminado.getId())));
+
+        // Al reabrir, el segmento anterior queda cerrado y puede compactarse
+        reabrir();
+        List<Path> anteriores = segmentos();
+        for (Path segmento : anteriores) {
+            Files.copy(segmento, copia.resolve(segmento.getFileName()));
+        }
+        assertTrue(local.compactar() >= 0);
+        local.close();
+
+        // La caída ocurrió después de escribir el segmento compactado y antes de borrar los anteriores
+        for (Path segmento : anteriores) {
+            Files.copy(copia.resolve(segmento.getFileName()), segmento, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        local = abrir();
+        dao = local;
+        Registro leido = new Registro(modificado.getId());
+        assertTrue(local.buscarRegistro(leido));
+        assertEquals(76, leido.getPeso());
+        assertEquals(1, leido.getVersion());
+        assertFalse(local.registroExiste(eliminado.getId()));
+        assertEquals(1, local.listarRegistros().size());
+    }
+
+    @Test
+    void unSegmentoCompactadoQueSobreviveNoResucitaUnaBajaPosterior() throws IOException {
+        Registro eliminado = local.agregarYObtener(registro(1, 0));
+        Registro vivo = local.agregarYObtener(registro(2, 0));
+
+        // Segmento 1 cerrado, 2 activo: la compactación copia el registro al segmento 3
+        reabrir();
+        assertTrue(local.compactar() >= 0);
+        Path compactado = segmentos().getLast();
+        Files.copy(compactado, copia.resolve(compactado.getFileName()));
+        // La baja queda en el segmento 2, de número menor que la copia
+        assertTrue(local.eliminarRegistro(new Registro(eliminado.getId())));
+
+        // La siguiente compactación reemplaza a 2 y 3
+        reabrir();
+        assertTrue(local.compactar() >= 0);
+        local.close();
+
+        // La caída ocurrió después de borrar el segmento 2 y antes de borrar el 3
+        Files.copy(copia.resolve(compactado.getFileName()), compactado);
+
+        local = abrir();
+        dao = local;
+        assertFalse(Files.exists(compactado));
+        assertFalse(local.registroExiste(eliminado.getId()));
+        assertTrue(local.registroExiste(vivo.getId()));
+        assertEquals(1, local.listarRegistros().size());
+    }
+
+    private List<Path> segmentos() throws IOException {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            return archivos.filter(p -> p.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package progress_body.analitica;
+
+import org.junit.jupiter.api.Test;
+import progress_body.datos.BaseH2;
+import progress_body.datos.ContratoRegistroDAOTest;
+import progress_body.datos.IRegistroDAO;
+import progress_body.datos.RegistroDAO;
+import progress_body.dominio.Medida;
+import progress_body.dominio.Registro;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contrato de {@link IRegistroDAO} para {@link RegistroDAOAnalitico} sobre H2, y coherencia del motor:
+ * tras cada escritura los indicadores mantenidos coinciden con el recálculo completo de
+ * {@link MotorProgreso#verificar(double)} y con un motor cargado desde cero con lo que quedó en la base.
+ */
+class RegistroDAOAnaliticoTest extends ContratoRegistroDAOTest {
+
+    private static final double TOLERANCIA = 1e-9;
+
+    private BaseH2 base;
+    private RegistroDAO delegado;
+    private RegistroDAOAnalitico analitico;
+
+    @Override
+    protected IRegistroDAO crearDAO() throws Exception {
+        base = new BaseH2();
+        delegado = new RegistroDAO(base.getDataSource());
+        analitico = RegistroDAOAnalitico.crear(delegado, new MotorProgreso(20, 0.3));
+        assertNotNull(analitico);
+        return analitico;
+    }
+
+    @Override
+    protected void cerrarDAO() throws Exception {
+        base.close();
+    }
+
+    @Test
+    void elMotorCoincideConElRecalculoTrasCadaEscritura() {
+        Random azar = new Random(11);
+        List<Registro> guardados = new ArrayList<>();
+        for (int paso = 0; paso < 300; paso++) {
+            int operacion = guardados.size() < 5 ? 0 : azar.nextInt(6);
+            switch (operacion) {
+                case 0 -> guardados.add(analitico.agregarYObtener(conFecha(azar, paso)));
+                case 1 -> {
+                    List<Registro> lote = List.of(conFecha(azar, paso), conFecha(azar, paso + 1));
+                    for (int id : analitico.agregarRegistros(lote).idsGenerados()) {
+                        guardados.add(leer(id));
+                    }
+                }
+                case 2 -> {
+                    // La fecha del pedido no se guarda al modificar: el motor debe conservar la guardada
+                    Registro cambio = conFecha(azar, paso);
+                    cambio.setId(guardados.get(azar.nextInt(guardados.size())).getId());
+                    assertTrue(analitico.modificarRegistro(cambio));
+                }
+                case 3 -> {
+                    Registro actual = leer(guardados.get(azar.nextInt(guardados.size())).getId());
+                    Registro cambio = conFecha(azar, paso);
+                    cambio.setId(actual.getId());
+                    cambio.setVersion(actual.getVersion());
+                    assertNotNull(analitico.modificarConVersion(cambio));
+                }
+                case 4 -> {
+                    Registro reemplazo = conFecha(azar, paso);
+                    reemplazo.setId(guardados.get(azar.nextInt(guardados.size())).getId());
+                    assertNotNull(analitico.guardarRegistro(reemplazo));
+                }
+                default -> assertTrue(analitico.eliminarRegistro(guardados.remove(azar.nextInt(guardados.size()))));
+            }
+
+            assertTrue(analitico.getMotor().verificar(TOLERANCIA), "paso " + paso);
+            assertIgualAUnaCargaCompleta(analitico.getMotor(), "paso " + paso);
+        }
+    }
+
+    @Test
+    void sincronizarIncorporaIdsMenoresConfirmadosDespues() {
+        analitico.agregarYObtener(registro(1, 0));
+        Registro alto = registro(2, 0);
+        alto.setId(500);
+        delegado.guardarRegistro(alto);
+        analitico.agregarYObtener(registro(3, 0));
+
+        // Otro escritor confirma un ID menor que el mayor que el motor ya conoce
+        Registro tardio = registro(4, 0);
+        tardio.setId(100);
+        delegado.guardarRegistro(tardio);
+
+        assertEquals(2, analitico.sincronizar());
+        assertEquals(4, analitico.getMotor().tamano());
+        assertEquals(0, analitico.sincronizar());
+        assertIgualAUnaCargaCompleta(analitico.getMotor(), "tras sincronizar");
+    }
+
+    private Registro leer(int id) {
+        Registro registro = new Registro(id);
+        assertTrue(delegado.buscarRegistro(registro));
+        return registro;
+    }
+
+    /**
+     * Un registro con una fecha al azar, para que las altas y los cambios no lleguen en orden de fecha.
+     * Las fechas son posteriores a la hora actual, que es la que reciben las altas en lote: así la ventana
+     * no queda formada solo por registros separados por milisegundos, con una pendiente mal condicionada.
+     */
+    private static Registro conFecha(Random azar, int n) {
+        Registro registro = registro(n % 50, 0);
+        registro.setFecha(new Timestamp(4_000_000_000_000L + azar.nextInt(1_000) * 86_400_000L));
+        return registro;
+    }
+
+    private void assertIgualAUnaCargaCompleta(MotorProgreso motor, String paso) {
+        MotorProgreso completo = MotorProgreso.cargar(delegado, motor.getTamanoVentana(), motor.getAlfa());
+        assertNotNull(completo);
+        assertEquals(completo.tamano(), motor.tamano(), paso);
+        for (Medida medida : Medida.values()) {
+            ResumenMedida esperado = completo.resumen(medida);
+            ResumenMedida real = motor.resumen(medida);
+            assertEquals(esperado.cantidad(), real.cantidad(), paso);
+            assertEquals(esperado.media(), real.media(), TOLERANCIA * Math.max(1, Math.abs(esperado.media())), paso);
+            assertEquals(esperado.minimo(), real.minimo(), paso);
+            assertEquals(esperado.maximo(), real.maximo(), paso);
+            assertEquals(esperado.variacion(), real.variacion(), TOLERANCIA * Math.max(1, Math.abs(esperado.variacion())), paso);
+            assertEquals(esperado.pendientePorDia(), real.pendientePorDia(),
+                    TOLERANCIA * Math.max(1, Math.abs(esperado.pendientePorDia())), paso);
+            assertEquals(esperado.ewma(), real.ewma(), TOLERANCIA * Math.max(1, Math.abs(esperado.ewma())), paso);
+        }
+    }
+}
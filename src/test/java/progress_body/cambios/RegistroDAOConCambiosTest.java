@@ -0,0 +1,161 @@
+package progress_body.cambios;
+
+import org.junit.jupiter.api.Test;
+import progress_body.datos.BaseH2;
+import progress_body.datos.ContratoRegistroDAOTest;
+import progress_body.datos.IRegistroDAO;
+import progress_body.datos.RegistroDAO;
+import progress_body.datos.RegistroDAODecorador;
+import progress_body.dominio.Registro;
+import progress_body.dominio.RegistroInmutable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contrato de {@link IRegistroDAO} para {@link RegistroDAOConCambios} sobre H2, y orden del feed con
+ * escrituras concurrentes: reproducir el feed da el contenido de la tabla y una escritura lenta no
+ * bloquea a las demás.
+ */
+class RegistroDAOConCambiosTest extends ContratoRegistroDAOTest {
+
+    private static final int HILOS = 8;
+
+    private BaseH2 base;
+    private RegistroDAO delegado;
+    private FeedCambios feed;
+
+    @Override
+    protected IRegistroDAO crearDAO() throws Exception {
+        base = new BaseH2();
+        delegado = new RegistroDAO(base.getDataSource());
+        feed = new FeedCambios(100_000);
+        return new RegistroDAOConCambios(delegado, feed);
+    }
+
+    @Override
+    protected void cerrarDAO() throws Exception {
+        base.close();
+    }
+
+    @Test
+    void reproducirElFeedDaElContenidoDeLaTabla() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ids.add(dao.agregarYObtener(registro(i, 0)).getId());
+        }
+
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < HILOS; h++) {
+            Random azar = new Random(h);
+            tareas.add(hilos.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    int id = ids.get(azar.nextInt(ids.size()));
+                    Registro cambio = registro(azar.nextInt(50), 0);
+                    cambio.setId(id);
+                    switch (azar.nextInt(4)) {
+                        case 0 -> dao.modificarRegistro(cambio);
+                        case 1 -> dao.guardarRegistro(cambio);
+                        case 2 -> dao.eliminarRegistro(cambio);
+                        default -> dao.agregarYObtener(registro(azar.nextInt(50), 0));
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(30, TimeUnit.SECONDS);
+        }
+        hilos.shutdown();
+
+        Map<Integer, RegistroInmutable> reproducido = new HashMap<>();
+        List<Cambio> cambios = feed.leer(1, Integer.MAX_VALUE);
+        assertEquals(feed.ultimaSecuencia(), cambios.size());
+        for (int i = 0; i < cambios.size(); i++) {
+            Cambio cambio = cambios.get(i);
+            assertEquals(i + 1, cambio.secuencia());
+            switch (cambio.tipo()) {
+                case ALTA -> reproducido.put(cambio.id(), cambio.registro());
+                case MODIFICACION -> assertNotNull(reproducido.put(cambio.id(), cambio.registro()),
+                        "modificación antes del alta de " + cambio.id());
+                case BAJA -> assertNotNull(reproducido.remove(cambio.id()), "baja sin alta de " + cambio.id());
+            }
+        }
+
+        Map<Integer, Double> tabla = new HashMap<>();
+        for (Registro registro : delegado.listarRegistros()) {
+            tabla.put(registro.getId(), registro.getPeso());
+        }
+        Map<Integer, Double> feedFinal = new HashMap<>();
+        reproducido.forEach((id, registro) -> feedFinal.put(id, registro.peso()));
+        assertEquals(tabla, feedFinal);
+    }
+
+    @Test
+    void unaEscrituraLentaNoBloqueaALasDemas() throws Exception {
+        CountDownLatch enDelegado = new CountDownLatch(1);
+        CountDownLatch continuar = new CountDownLatch(1);
+        IRegistroDAO lento = new RegistroDAODecorador(delegado) {
+            @Override
+            public Registro agregarYObtener(Registro registro) {
+                if (registro.getPeso() == 99) {
+                    enDelegado.countDown();
+                    try {
+                        continuar.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return delegado.agregarYObtener(registro);
+            }
+        };
+        RegistroDAOConCambios conCambios = new RegistroDAOConCambios(lento, feed);
+
+        Thread primero = new Thread(() -> conCambios.agregarYObtener(registro(29, 0)));
+        primero.start();
+        enDelegado.await();
+
+        // La segunda escritura termina mientras la primera sigue en el delegado...
+        Registro segundo = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> conCambios.agregarYObtener(registro(1, 0)));
+        assertNotNull(segundo);
+        // ...pero no se publica hasta que la primera, que reservó antes, termine
+        assertEquals(0, feed.ultimaSecuencia());
+
+        continuar.countDown();
+        primero.join();
+        List<Cambio> cambios = feed.esperar(1, 10, Duration.ofSeconds(5));
+        assertEquals(2, cambios.size());
+        assertEquals(99, cambios.get(0).registro().peso());
+        assertEquals(segundo.getId(), cambios.get(1).id());
+    }
+
+    @Test
+    void unaReservaSinCambiosNoDejaHuecos() {
+        FeedCambios.Reserva vacia = feed.reservar();
+        feed.publicar(TipoCambio.BAJA, 5, null);
+        assertEquals(0, feed.ultimaSecuencia());
+
+        vacia.close();
+        vacia.close();
+        List<Cambio> cambios = feed.leer(1, 10);
+        assertEquals(1, cambios.size());
+        assertEquals(1, cambios.getFirst().secuencia());
+        assertTrue(feed.leer(2, 10).isEmpty());
+    }
+}
@@ -0,0 +1,214 @@
+package progress_body.conexion;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Préstamo, devolución y mantenimiento de {@link PoolConexiones} contra una base H2 en memoria.
+ */
+class PoolConexionesTest {
+
+    private static final AtomicInteger CONTADOR = new AtomicInteger();
+    private static final long ESPERA_MS = 5000;
+
+    private final String url = "jdbc:h2:mem:pool" + CONTADOR.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+    private PoolConexiones pool;
+
+    @AfterEach
+    void cerrar() throws SQLException {
+        if (pool != null) {
+            pool.close();
+        }
+        try (Connection con = DriverManager.getConnection(url, "sa", "");
+             Statement st = con.createStatement()) {
+            st.execute("SHUTDOWN");
+        }
+    }
+
+    @Test
+    void pedirUnaConexionConElPoolAgotadoFallaAlVencerLaEspera() throws SQLException {
+        pool = crear(1, 0, 100, 600_000, 500, 0);
+        try (Connection ocupada = pool.getConnection()) {
+            long inicio = System.nanoTime();
+            assertThrows(SQLException.class, pool::getConnection);
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) >= 100);
+            assertFalse(ocupada.isClosed());
+        }
+
+        // Al devolverla, el permiso vuelve y el siguiente préstamo no espera
+        try (Connection con = pool.getConnection()) {
+            assertTrue(con.isValid(1));
+        }
+        MetricasPool metricas = pool.getMetricas();
+        assertEquals(1, metricas.tiemposAgotados());
+        assertEquals(2, metricas.prestamos());
+    }
+
+    @Test
+    void devolverUnaConexionDeshaceLaTransaccionYRestableceElAutocommit() throws SQLException {
+        pool = crear(1, 0, 1000, 600_000, 500, 0);
+        try (Connection con = pool.getConnection(); Statement st = con.createStatement()) {
+            st.execute("CREATE TABLE dato (id INT)");
+        }
+        try (Connection con = pool.getConnection(); Statement st = con.createStatement()) {
+            con.setAutoCommit(false);
+            st.executeUpdate("INSERT INTO dato VALUES (1)");
+        }
+
+        try (Connection con = pool.getConnection();
+             Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM dato")) {
+            assertTrue(con.getAutoCommit());
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    @Test
+    void unaConexionDevueltaNoSePuedeSeguirUsando() throws SQLException {
+        pool = crear(1, 0, 1000, 600_000, 500, 0);
+        Connection antigua = pool.getConnection();
+        antigua.close();
+        antigua.close(); // Cerrar dos veces no devuelve otro permiso
+
+        try (Connection actual = pool.getConnection()) {
+            assertTrue(antigua.isClosed());
+            assertThrows(SQLException.class, antigua::createStatement);
+            assertFalse(actual.isClosed());
+            assertThrows(SQLException.class, pool::getConnection);
+        }
+    }
+
+    @Test
+    void unaConexionMuertaSeDescartaSiLlevaInactivaMasQueElUmbral() throws Exception {
+        pool = crear(1, 0, 1000, 600_000, 50, 0);
+        int muerta;
+        try (Connection con = pool.getConnection()) {
+            muerta = sesion(con);
+        }
+        try (Connection otra = DriverManager.getConnection(url, "sa", "");
+             Statement st = otra.createStatement()) {
+            st.execute("CALL ABORT_SESSION(" + muerta + ")");
+        }
+        Thread.sleep(100);
+
+        try (Connection con = pool.getConnection()) {
+            assertTrue(con.isValid(1));
+            assertNotEquals(muerta, sesion(con));
+        }
+        assertEquals(1, pool.getMetricas().inactivas());
+    }
+
+    @Test
+    void elMantenimientoCierraLasInactivasHastaElMinimo() throws Exception {
+        pool = crear(3, 1, 1000, 100, 500, 0);
+        Connection a = pool.getConnection();
+        Connection b = pool.getConnection();
+        Connection c = pool.getConnection();
+        a.close();
+        b.close();
+        c.close();
+        assertEquals(3, pool.getMetricas().inactivas());
+
+        assertTrue(esperar(() -> pool.getMetricas().inactivas() == 1));
+        try (Connection con = pool.getConnection()) {
+            assertTrue(con.isValid(1));
+        }
+    }
+
+    @Test
+    void unaConexionRetenidaMasQueElUmbralSeReportaUnaVezComoFuga() throws Exception {
+        pool = crear(2, 0, 1000, 2000, 500, 100); // El mantenimiento corre cada segundo
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(salida, true));
+        try (Connection retenida = pool.getConnection()) {
+            assertTrue(esperar(() -> pool.getMetricas().fugasDetectadas() == 1));
+            // La siguiente pasada del mantenimiento no la vuelve a reportar
+            Thread.sleep(1500);
+            assertEquals(1, pool.getMetricas().fugasDetectadas());
+            assertFalse(retenida.isClosed());
+        } finally {
+            System.setOut(original);
+        }
+        String reporte = salida.toString();
+        assertTrue(reporte.contains("Posible fuga de conexión"), reporte);
+        assertTrue(reporte.contains("unaConexionRetenidaMasQueElUmbralSeReportaUnaVezComoFuga"), reporte);
+    }
+
+    @Test
+    void lasMetricasReflejanPrestamosYEsperas() throws Exception {
+        pool = crear(1, 0, 2000, 600_000, 500, 0);
+        Connection ocupada = pool.getConnection();
+        CompletableFuture<Connection> enEspera = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(esperar(() -> pool.getMetricas().esperando() == 1));
+        MetricasPool durante = pool.getMetricas();
+        assertEquals(1, durante.activas());
+        assertEquals(0, durante.inactivas());
+
+        Thread.sleep(50);
+        ocupada.close();
+        enEspera.get(ESPERA_MS, TimeUnit.MILLISECONDS).close();
+
+        MetricasPool despues = pool.getMetricas();
+        assertEquals(0, despues.activas());
+        assertEquals(1, despues.inactivas());
+        assertEquals(0, despues.esperando());
+        assertEquals(2, despues.prestamos());
+        assertEquals(0, despues.tiemposAgotados());
+        assertTrue(despues.esperaMaximaNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(despues.esperaTotalNanos() >= despues.esperaMaximaNanos());
+        assertEquals(despues.esperaTotalNanos() / 2.0, despues.esperaMediaNanos(), 1e-9);
+    }
+
+    private PoolConexiones crear(int tamanoMaximo, int minimoInactivas, long tiempoEsperaMs,
+                                 long tiempoInactividadMs, long umbralValidacionMs, long umbralFugaMs) {
+        return new PoolConexiones(new ConfiguracionConexion(url, "sa", "", tamanoMaximo, minimoInactivas,
+                tiempoEsperaMs, tiempoInactividadMs, umbralValidacionMs, umbralFugaMs));
+    }
+
+    private static int sesion(Connection con) throws SQLException {
+        try (Statement st = con.createStatement(); ResultSet rs = st.executeQuery("SELECT SESSION_ID()")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /**
+     * Espera a que se cumpla una condición que depende del hilo de mantenimiento del pool.
+     */
+    private static boolean esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ESPERA_MS);
+        while (!condicion.getAsBoolean()) {
+            if (System.nanoTime() > limite) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+}
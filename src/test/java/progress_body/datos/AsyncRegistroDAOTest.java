@@ -0,0 +1,187 @@
+package progress_body.datos;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Límite de concurrencia, cancelación y tiempo límite de {@link AsyncRegistroDAO}. El DAO de prueba
+ * bloquea {@code registroExiste} hasta que se lo libera e ignora las interrupciones, como JDBC.
+ */
+class AsyncRegistroDAOTest {
+
+    private static final long ESPERA_S = 5;
+
+    private BaseH2 base;
+    private DAOBloqueado dao;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        base = new BaseH2();
+        dao = new DAOBloqueado(base);
+    }
+
+    @AfterEach
+    void liberar() throws Exception {
+        dao.liberar.countDown();
+        base.close();
+    }
+
+    @Test
+    void nuncaHayMasOperacionesEnCursoQueLaConcurrenciaMaxima() throws Exception {
+        try (AsyncRegistroDAO async = new AsyncRegistroDAO(dao, 2, null)) {
+            List<CompletableFuture<Boolean>> futuros = new ArrayList<>();
+            for (int id = 1; id <= 6; id++) {
+                futuros.add(async.registroExiste(id));
+            }
+            assertTrue(dao.iniciadas.tryAcquire(2, ESPERA_S, TimeUnit.SECONDS));
+            assertFalse(dao.iniciadas.tryAcquire(100, TimeUnit.MILLISECONDS));
+            assertEquals(2, dao.enCurso.get());
+
+            dao.liberar.countDown();
+            for (CompletableFuture<Boolean> futuro : futuros) {
+                assertFalse(futuro.get(ESPERA_S, TimeUnit.SECONDS));
+            }
+            assertEquals(2, dao.maximoEnCurso.get());
+            assertEquals(6, dao.llamadas.get());
+        }
+    }
+
+    @Test
+    void cancelarMientrasEsperaTurnoEvitaLaOperacion() throws Exception {
+        try (AsyncRegistroDAO async = new AsyncRegistroDAO(dao, 1, null)) {
+            CompletableFuture<Boolean> primera = async.registroExiste(1);
+            assertTrue(dao.iniciadas.tryAcquire(ESPERA_S, TimeUnit.SECONDS));
+            CompletableFuture<Boolean> segunda = async.registroExiste(2);
+
+            assertTrue(segunda.cancel(true));
+            dao.liberar.countDown();
+            assertFalse(primera.get(ESPERA_S, TimeUnit.SECONDS));
+
+            // El turno que no se usó queda libre para la siguiente operación
+            assertFalse(async.registroExiste(3).get(ESPERA_S, TimeUnit.SECONDS));
+            assertEquals(2, dao.llamadas.get());
+            assertThrows(CancellationException.class, segunda::join);
+        }
+    }
+
+    @Test
+    void cancelarUnaOperacionEnCursoNoLiberaSuTurnoHastaQueTermina() throws Exception {
+        try (AsyncRegistroDAO async = new AsyncRegistroDAO(dao, 1, null)) {
+            CompletableFuture<Boolean> primera = async.registroExiste(1);
+            assertTrue(dao.iniciadas.tryAcquire(ESPERA_S, TimeUnit.SECONDS));
+
+            assertTrue(primera.cancel(true));
+            assertTrue(primera.isCancelled());
+            CompletableFuture<Boolean> segunda = async.registroExiste(2);
+            assertTrue(dao.interrumpidas.tryAcquire(ESPERA_S, TimeUnit.SECONDS));
+            assertFalse(dao.iniciadas.tryAcquire(100, TimeUnit.MILLISECONDS));
+
+            dao.liberar.countDown();
+            assertFalse(segunda.get(ESPERA_S, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void agotarElTiempoLimiteFallaElFuturoSinEsperarALaConsulta() throws Exception {
+        try (AsyncRegistroDAO async = new AsyncRegistroDAO(dao, 1, Duration.ofMillis(200))) {
+            CompletableFuture<Boolean> lenta = async.registroExiste(1);
+
+            ExecutionException error = assertThrows(ExecutionException.class, () -> lenta.get(ESPERA_S, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, error.getCause());
+            assertTrue(dao.interrumpidas.tryAcquire(ESPERA_S, TimeUnit.SECONDS));
+            assertEquals(1, dao.enCurso.get());
+
+            // La consulta sigue ocupando su turno: la siguiente agota su tiempo sin llegar a empezar
+            CompletableFuture<Boolean> siguiente = async.registroExiste(2);
+            error = assertThrows(ExecutionException.class, () -> siguiente.get(ESPERA_S, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, error.getCause());
+            assertEquals(1, dao.llamadas.get());
+
+            dao.liberar.countDown();
+            assertFalse(async.registroExiste(3).get(ESPERA_S, TimeUnit.SECONDS));
+            assertEquals(2, dao.llamadas.get());
+        }
+    }
+
+    @Test
+    void enParaleloFallaConElPrimerErrorYCancelaElResto() throws Exception {
+        try (AsyncRegistroDAO async = new AsyncRegistroDAO(dao, 4, null)) {
+            IllegalStateException falla = new IllegalStateException("falla");
+            CompletableFuture<List<Boolean>> combinado = async.enParalelo(List.of(1, 2, 3, -1), id -> {
+                if (id < 0) {
+                    dao.iniciadas.acquireUninterruptibly(3);
+                    throw falla;
+                }
+                return dao.registroExiste(id);
+            });
+
+            ExecutionException error = assertThrows(ExecutionException.class, () -> combinado.get(ESPERA_S, TimeUnit.SECONDS));
+            assertEquals(falla, error.getCause());
+            assertEquals(3, dao.enCurso.get(), "el combinado no espera a las operaciones bloqueadas");
+
+            // Las tres operaciones en curso reciben la interrupción, aunque la ignoren
+            assertTrue(dao.interrumpidas.tryAcquire(3, ESPERA_S, TimeUnit.SECONDS));
+            dao.liberar.countDown();
+        }
+    }
+
+    /**
+     * DAO cuyo {@code registroExiste} espera a {@link #liberar} sin atender las interrupciones.
+     */
+    private static final class DAOBloqueado extends RegistroDAO {
+
+        final CountDownLatch liberar = new CountDownLatch(1);
+        final Semaphore iniciadas = new Semaphore(0);
+        final AtomicInteger llamadas = new AtomicInteger();
+        final AtomicInteger enCurso = new AtomicInteger();
+        final AtomicInteger maximoEnCurso = new AtomicInteger();
+        final Semaphore interrumpidas = new Semaphore(0);
+
+        DAOBloqueado(BaseH2 base) {
+            super(base.getDataSource());
+        }
+
+        @Override
+        public boolean registroExiste(int id) {
+            llamadas.incrementAndGet();
+            maximoEnCurso.accumulateAndGet(enCurso.incrementAndGet(), Math::max);
+            iniciadas.release();
+            boolean interrumpida = false;
+            try {
+                while (true) {
+                    try {
+                        liberar.await();
+                        break;
+                    } catch (InterruptedException e) {
+                        if (!interrumpida) {
+                            interrumpida = true;
+                            interrumpidas.release();
+                        }
+                    }
+                }
+                return super.registroExiste(id);
+            } finally {
+                enCurso.decrementAndGet();
+            }
+        }
+    }
+}
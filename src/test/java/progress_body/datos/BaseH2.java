@@ -0,0 +1,89 @@
+package progress_body.datos;
+
+import org.h2.jdbcx.JdbcDataSource;
+import progress_body.resumen.EsquemaResumenes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base H2 en memoria, en modo MySQL, con la tabla {@code registro}, que reemplaza al servidor MySQL
+ * en las pruebas. Cada instancia usa una base distinta. La tabla se crea como la primera versión y el
+ * resto del esquema lo agregan {@link EsquemaRegistro} y {@link EsquemaResumenes}, de modo que las
+ * pruebas usan el mismo DDL que producción y pasan por sus migraciones. Las funciones de MySQL que H2
+ * no tiene y que usan las consultas, como {@code WEEKDAY}, se definen con {@code CREATE ALIAS}.
+ */
+public final class BaseH2 implements AutoCloseable {
+
+    private static final AtomicInteger CONTADOR = new AtomicInteger();
+
+    // La tabla de la primera versión, sin las columnas que agregan las migraciones
+    private static final String CREAR_TABLA_INICIAL = """
+            CREATE TABLE registro (
+                id INT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                peso DOUBLE NOT NULL,
+                bicepIzquierdo DOUBLE NOT NULL,
+                bicepDerecho DOUBLE NOT NULL,
+                cintura DOUBLE NOT NULL,
+                cuadriceps DOUBLE NOT NULL,
+                pantorrillas DOUBLE NOT NULL,
+                fecha TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+            )""";
+
+    private final JdbcDataSource dataSource = new JdbcDataSource();
+
+    public BaseH2() throws SQLException {
+        dataSource.setURL("jdbc:h2:mem:prueba" + CONTADOR.incrementAndGet()
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        ejecutar(CREAR_TABLA_INICIAL,
+                "CREATE ALIAS SUBDATE FOR 'progress_body.datos.BaseH2.subdate'",
+                "CREATE ALIAS WEEKDAY FOR 'progress_body.datos.BaseH2.weekday'");
+        if (!EsquemaRegistro.crearEsquema(dataSource) || !EsquemaResumenes.crearEsquema(dataSource)) {
+            throw new SQLException("No se pudo crear el esquema de la base de prueba.");
+        }
+    }
+
+    /**
+     * {@code SUBDATE(fecha, dias)} de MySQL: la fecha menos un número de días.
+     */
+    public static Date subdate(Date fecha, int dias) {
+        return Date.valueOf(fecha.toLocalDate().minusDays(dias));
+    }
+
+    /**
+     * {@code WEEKDAY(fecha)} de MySQL: 0 el lunes, 6 el domingo.
+     */
+    public static int weekday(Timestamp fecha) {
+        return fecha.toLocalDateTime().getDayOfWeek().getValue() - 1;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Ejecuta sentencias sueltas, por ejemplo para preparar un caso de prueba.
+     */
+    public void ejecutar(String... sentencias) throws SQLException {
+        try (Connection con = dataSource.getConnection();
+             Statement st = con.createStatement()) {
+            for (String sentencia : sentencias) {
+                st.execute(sentencia);
+            }
+        }
+    }
+
+    /**
+     * Elimina la base en memoria.
+     */
+    @Override
+    public void close() throws SQLException {
+        ejecutar("DROP ALL OBJECTS");
+    }
+}
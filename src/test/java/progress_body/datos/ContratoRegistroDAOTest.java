@@ -0,0 +1,333 @@
+package progress_body.datos;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import progress_body.dominio.Registro;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comportamiento que toda implementación de {@link IRegistroDAO} debe cumplir. Cada implementación
+ * extiende esta clase e indica cómo crear un DAO vacío y cómo liberarlo.
+ */
+public abstract class ContratoRegistroDAOTest {
+
+    protected IRegistroDAO dao;
+
+    /**
+     * Crea un DAO sin registros.
+     */
+    protected abstract IRegistroDAO crearDAO() throws Exception;
+
+    /**
+     * Libera el DAO creado por {@link #crearDAO()}.
+     */
+    protected abstract void cerrarDAO() throws Exception;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        dao = crearDAO();
+    }
+
+    @AfterEach
+    void liberar() throws Exception {
+        cerrarDAO();
+    }
+
+    /**
+     * Un registro válido con medidas que dependen de {@code n}, para distinguirlos entre sí.
+     */
+    protected static Registro registro(int n, int usuario) {
+        Registro registro = new Registro(70 + n, 30 + n * 0.1, 30.5 + n * 0.1, 80, 55, 37);
+        registro.setUsuario(usuario);
+        return registro;
+    }
+
+    @Test
+    void agregarYObtenerAsignaIdFechaYVersion() {
+        Registro guardado = dao.agregarYObtener(registro(1, 7));
+
+        assertNotNull(guardado);
+        assertTrue(guardado.getId() > 0);
+        assertNotNull(guardado.getFecha());
+        assertEquals(0, guardado.getVersion());
+        assertEquals(7, guardado.getUsuario());
+        assertTrue(dao.registroExiste(guardado.getId()));
+    }
+
+    @Test
+    void buscarRegistroLeeLoGuardado() {
+        Registro guardado = dao.agregarYObtener(registro(2, 3));
+
+        Registro leido = new Registro(guardado.getId());
+        assertTrue(dao.buscarRegistro(leido));
+        assertEquals(guardado, leido);
+        assertEquals(72, leido.getPeso());
+    }
+
+    @Test
+    void buscarRegistroInexistenteDevuelveFalse() {
+        assertFalse(dao.buscarRegistro(new Registro(12345)));
+        assertFalse(dao.registroExiste(12345));
+    }
+
+    @Test
+    void agregarRegistroGeneraIdsCrecientes() {
+        assertTrue(dao.agregarRegistro(registro(1, 0)));
+        assertTrue(dao.agregarRegistro(registro(2, 0)));
+
+        List<Registro> registros = dao.listarRegistros();
+        assertEquals(2, registros.size());
+        assertTrue(registros.get(0).getId() < registros.get(1).getId());
+    }
+
+    @Test
+    void modificarRegistroIncrementaLaVersion() {
+        Registro guardado = dao.agregarYObtener(registro(1, 0));
+
+        Registro cambio = registro(5, 0);
+        cambio.setId(guardado.getId());
+        assertTrue(dao.modificarRegistro(cambio));
+
+        Registro leido = new Registro(guardado.getId());
+        assertTrue(dao.buscarRegistro(leido));
+        assertEquals(75, leido.getPeso());
+        assertEquals(1, leido.getVersion());
+    }
+
+    @Test
+    void modificarRegistroInexistenteDevuelveFalse() {
+        Registro cambio = registro(1, 0);
+        cambio.setId(999);
+        assertFalse(dao.modificarRegistro(cambio));
+    }
+
+    @Test
+    void modificarConVersionDetectaConflictos() {
+        Registro guardado = dao.agregarYObtener(registro(1, 0));
+
+        Registro cambio = registro(3, 0);
+        cambio.setId(guardado.getId());
+        cambio.setVersion(guardado.getVersion());
+        Registro nuevo = dao.modificarConVersion(cambio);
+        assertNotNull(nuevo);
+        assertEquals(guardado.getVersion() + 1, nuevo.getVersion());
+        assertEquals(73, nuevo.getPeso());
+
+        // La versión leída ya no es la guardada
+        assertThrows(ConflictoVersionException.class, () -> dao.modificarConVersion(cambio));
+    }
+
+    @Test
+    void modificarConVersionDevuelveLaFechaYElUsuarioGuardados() {
+        Registro guardado = dao.agregarYObtener(registro(1, 7));
+
+        Registro cambio = registro(4, 8);
+        cambio.setId(guardado.getId());
+        cambio.setVersion(guardado.getVersion());
+        cambio.setFecha(new Timestamp(guardado.getFecha().getTime() - 86_400_000L));
+        Registro nuevo = dao.modificarConVersion(cambio);
+
+        Registro leido = new Registro(guardado.getId());
+        assertTrue(dao.buscarRegistro(leido));
+        assertEquals(guardado.getFecha(), leido.getFecha());
+        assertEquals(7, leido.getUsuario());
+        assertEquals(leido.getFecha(), nuevo.getFecha());
+        assertEquals(leido.getUsuario(), nuevo.getUsuario());
+        assertEquals(leido, nuevo);
+        assertEquals(74, nuevo.getPeso());
+    }
+
+    @Test
+    void guardarRegistroReemplazaUnoExistente() {
+        Registro guardado = dao.agregarYObtener(registro(1, 0));
+
+        Registro cambio = registro(8, 0);
+        cambio.setId(guardado.getId());
+        Registro reemplazo = dao.guardarRegistro(cambio);
+
+        assertNotNull(reemplazo);
+        assertEquals(guardado.getId(), reemplazo.getId());
+        assertEquals(78, reemplazo.getPeso());
+        assertEquals(guardado.getVersion() + 1, reemplazo.getVersion());
+    }
+
+    @Test
+    void eliminarRegistroLoQuita() {
+        Registro guardado = dao.agregarYObtener(registro(1, 0));
+
+        assertTrue(dao.eliminarRegistro(new Registro(guardado.getId())));
+        assertFalse(dao.registroExiste(guardado.getId()));
+        assertFalse(dao.eliminarRegistro(new Registro(guardado.getId())));
+    }
+
+    @Test
+    void agregarRegistrosDevuelveLosIdsEnOrden() {
+        List<Registro> lote = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            lote.add(registro(i, i % 3));
+        }
+
+        ResultadoLote resultado = dao.agregarRegistros(lote.iterator(), 10);
+
+        assertTrue(resultado.exitoso());
+        assertEquals(25, resultado.totalInsertados());
+        for (int i = 0; i < 25; i++) {
+            Registro leido = new Registro(resultado.idsGenerados().get(i));
+            assertTrue(dao.buscarRegistro(leido));
+            assertEquals(70 + i, leido.getPeso());
+        }
+    }
+
+    @Test
+    void agregarRegistrosConIdConservaIdFechaYVersion() {
+        Registro primero = dao.agregarYObtener(registro(1, 2));
+        Registro segundo = dao.agregarYObtener(registro(2, 2));
+        assertEquals(2, dao.eliminarRegistros(List.of(primero.getId(), segundo.getId())));
+        assertFalse(dao.registroExiste(primero.getId()));
+
+        Timestamp fecha = Timestamp.valueOf("2024-03-01 10:00:00");
+        ResultadoLote resultado = dao.agregarRegistrosConId(List.of(conFechaYVersion(primero, fecha, 4), conFechaYVersion(segundo, fecha, 7)));
+
+        assertTrue(resultado.exitoso());
+        assertEquals(List.of(primero.getId(), segundo.getId()), resultado.idsGenerados());
+        Registro leido = new Registro(segundo.getId());
+        assertTrue(dao.buscarRegistro(leido));
+        assertEquals(72, leido.getPeso());
+        assertEquals(7, leido.getVersion());
+        assertEquals(fecha, leido.getFecha());
+        assertEquals(2, leido.getUsuario());
+
+        // Un ID que ya existe no se reemplaza
+        assertFalse(dao.agregarRegistrosConId(List.of(conFechaYVersion(primero, fecha, 9))).exitoso());
+        leido = new Registro(primero.getId());
+        assertTrue(dao.buscarRegistro(leido));
+        assertEquals(4, leido.getVersion());
+    }
+
+    @Test
+    void eliminarRegistrosIgnoraLosInexistentes() {
+        Registro primero = dao.agregarYObtener(registro(1, 0));
+        Registro segundo = dao.agregarYObtener(registro(2, 0));
+        Registro tercero = dao.agregarYObtener(registro(3, 0));
+
+        assertEquals(2, dao.eliminarRegistros(List.of(primero.getId(), tercero.getId(), 99_999)));
+        assertFalse(dao.registroExiste(primero.getId()));
+        assertTrue(dao.registroExiste(segundo.getId()));
+        assertFalse(dao.registroExiste(tercero.getId()));
+        assertEquals(0, dao.eliminarRegistros(List.of()));
+    }
+
+    @Test
+    void paginarPorIdRecorreTodoSinRepetir() {
+        ResultadoLote resultado = dao.agregarRegistros(lotes(23));
+
+        List<Integer> vistos = new ArrayList<>();
+        int ultimo = 0;
+        List<Registro> pagina;
+        while (!(pagina = dao.listarRegistrosDespuesDe(ultimo, 5)).isEmpty()) {
+            for (Registro registro : pagina) {
+                vistos.add(registro.getId());
+            }
+            ultimo = pagina.get(pagina.size() - 1).getId();
+        }
+        assertEquals(resultado.idsGenerados(), vistos);
+    }
+
+    @Test
+    void paginarPorFechaRecorreTodoSinRepetir() {
+        dao.agregarRegistros(lotes(12));
+
+        List<Registro> vistos = new ArrayList<>();
+        List<Registro> pagina = dao.listarRegistrosPorFechaDespuesDe(null, 0, 5);
+        while (!pagina.isEmpty()) {
+            vistos.addAll(pagina);
+            Registro ultimo = pagina.get(pagina.size() - 1);
+            pagina = dao.listarRegistrosPorFechaDespuesDe(ultimo.getFecha(), ultimo.getId(), 5);
+        }
+        assertEquals(12, vistos.size());
+        assertEquals(vistos.stream().sorted(IRegistroDAO.ORDEN_FECHA_ID).toList(), vistos);
+    }
+
+    @Test
+    void listarRegistrosDeUsuarioFiltraPorDueno() {
+        dao.agregarYObtener(registro(1, 4));
+        dao.agregarYObtener(registro(2, 5));
+        dao.agregarYObtener(registro(3, 4));
+
+        List<Registro> delUsuario = dao.listarRegistrosDeUsuario(4);
+
+        assertEquals(2, delUsuario.size());
+        assertTrue(delUsuario.stream().allMatch(r -> r.getUsuario() == 4));
+    }
+
+    @Test
+    void listarRegistrosEntreFechasIncluyeElInicioYExcluyeElFinal() {
+        Timestamp desde = Timestamp.valueOf("2024-03-01 00:00:00");
+        Timestamp hasta = Timestamp.valueOf("2024-03-02 00:00:00");
+        Timestamp mediodia = Timestamp.valueOf("2024-03-01 12:00:00");
+        assertTrue(dao.agregarRegistrosConId(List.of(
+                conIdYFecha(15, Timestamp.valueOf("2024-02-29 23:59:59")),
+                conIdYFecha(11, mediodia),
+                conIdYFecha(13, hasta),
+                conIdYFecha(12, Timestamp.valueOf("2024-03-01 23:59:59")),
+                conIdYFecha(10, mediodia),
+                conIdYFecha(14, desde))).exitoso());
+
+        // Ordenados por fecha y, a igual fecha, por ID
+        assertEquals(List.of(14, 10, 11, 12),
+                dao.listarRegistrosEntreFechas(desde, hasta).stream().map(Registro::getId).toList());
+        assertEquals(List.of(13), dao.listarRegistrosEntreFechas(hasta, Timestamp.valueOf("2024-03-03 00:00:00"))
+                .stream().map(Registro::getId).toList());
+        assertTrue(dao.listarRegistrosEntreFechas(desde, desde).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> dao.listarRegistrosEntreFechas(hasta, desde));
+        assertThrows(IllegalArgumentException.class, () -> dao.listarRegistrosEntreFechas(null, hasta));
+    }
+
+    @Test
+    void streamYRecorrerEntreganTodoOrdenadoPorId() {
+        ResultadoLote resultado = dao.agregarRegistros(lotes(30));
+
+        try (Stream<Registro> registros = dao.streamRegistros()) {
+            assertEquals(resultado.idsGenerados(), registros.map(Registro::getId).toList());
+        }
+        List<Integer> recorridos = new ArrayList<>();
+        assertEquals(30, dao.recorrerRegistros(r -> recorridos.add(r.getId())));
+        assertEquals(resultado.idsGenerados(), recorridos);
+    }
+
+    @Test
+    void validaLosArgumentos() {
+        assertThrows(IllegalArgumentException.class, () -> dao.agregarYObtener(null));
+        assertThrows(IllegalArgumentException.class, () -> dao.listarRegistrosDespuesDe(-1, 5));
+        assertThrows(IllegalArgumentException.class, () -> dao.listarRegistrosDespuesDe(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> dao.recorrerRegistros(null));
+    }
+
+    private static Registro conFechaYVersion(Registro registro, Timestamp fecha, int version) {
+        return Registro.sinValidar(registro.getId(), registro.getPeso(), registro.getBicepIzquierdo(), registro.getBicepDerecho(),
+                registro.getCintura(), registro.getCuadriceps(), registro.getPantorrillas(), fecha, version, registro.getUsuario());
+    }
+
+    private static Registro conIdYFecha(int id, Timestamp fecha) {
+        return Registro.sinValidar(id, 70 + id, 30, 30, 80, 55, 37, fecha, 0, 0);
+    }
+
+    private static List<Registro> lotes(int cantidad) {
+        List<Registro> registros = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            registros.add(registro(i, 1));
+        }
+        return registros;
+    }
+}
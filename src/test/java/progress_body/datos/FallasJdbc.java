@@ -0,0 +1,70 @@
+package progress_body.datos;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Envoltorios JDBC que simulan fallas de la base de datos en las pruebas.
+ */
+public final class FallasJdbc {
+
+    private FallasJdbc() {
+    }
+
+    /**
+     * Un DataSource que envuelve a otro y cuyos ResultSet fallan al pedir la fila {@code filas + 1},
+     * como si la conexión se cortara a mitad de una lectura.
+     */
+    public static DataSource cortarLecturasTras(DataSource dataSource, int filas) {
+        return envolver(DataSource.class, dataSource, filas);
+    }
+
+    /**
+     * Un DataSource que no entrega conexiones, como una base caída.
+     */
+    public static DataSource sinConexion() {
+        return (DataSource) Proxy.newProxyInstance(FallasJdbc.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, metodo, args) -> {
+                    if (metodo.getName().equals("getConnection")) {
+                        throw new SQLException("Conexión rechazada.");
+                    }
+                    throw new UnsupportedOperationException(metodo.getName());
+                });
+    }
+
+    private static <T> T envolver(Class<T> tipo, T objeto, int filas) {
+        int[] leidas = {0};
+        InvocationHandler manejador = (proxy, metodo, args) -> {
+            if (objeto instanceof ResultSet && metodo.getName().equals("next") && leidas[0]++ >= filas) {
+                throw new SQLException("Se perdió la conexión durante la lectura.");
+            }
+            Object resultado;
+            try {
+                resultado = metodo.invoke(objeto, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (resultado instanceof Connection con) {
+                return envolver(Connection.class, con, filas);
+            }
+            if (resultado instanceof PreparedStatement ps) {
+                return envolver(PreparedStatement.class, ps, filas);
+            }
+            if (resultado instanceof Statement st) {
+                return envolver(Statement.class, st, filas);
+            }
+            if (resultado instanceof ResultSet rs) {
+                return envolver(ResultSet.class, rs, filas);
+            }
+            return resultado;
+        };
+        return tipo.cast(Proxy.newProxyInstance(FallasJdbc.class.getClassLoader(), new Class<?>[]{tipo}, manejador));
+    }
+}
@@ -0,0 +1,212 @@
+package progress_body.datos;
+
+import org.junit.jupiter.api.Test;
+import progress_body.dominio.Registro;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contrato de {@link IRegistroDAO} para {@link RegistroDAOCache} sobre H2, con una capacidad pequeña
+ * para que las pruebas también pasen por los desalojos. Las pruebas propias comprueban que la caché
+ * sigue a las escrituras hechas a través del decorador y cuándo responde sin consultar al delegado.
+ */
+class RegistroDAOCacheTest extends ContratoRegistroDAOTest {
+
+    private BaseH2 base;
+
+    @Override
+    protected IRegistroDAO crearDAO() throws Exception {
+        base = new BaseH2();
+        return new RegistroDAOCache(new RegistroDAO(base.getDataSource()), 4);
+    }
+
+    @Override
+    protected void cerrarDAO() throws Exception {
+        base.close();
+    }
+
+    @Test
+    void modificarYEliminarInvalidanLaCopiaEnCache() {
+        RegistroDAOCache cache = (RegistroDAOCache) dao;
+        Registro guardado = cache.agregarYObtener(registro(1, 0));
+        int id = guardado.getId();
+
+        Registro cambio = registro(5, 0);
+        cambio.setId(id);
+        assertTrue(cache.modificarRegistro(cambio));
+        Registro leido = new Registro(id);
+        assertTrue(cache.buscarRegistro(leido));
+        assertEquals(75, leido.getPeso());
+
+        assertTrue(cache.eliminarRegistro(new Registro(id)));
+        long consultas = cache.getEstadisticas().fallosExistencia();
+        assertFalse(cache.registroExiste(id));
+        assertFalse(cache.buscarRegistro(new Registro(id)));
+        assertEquals(consultas, cache.getEstadisticas().fallosExistencia(), "la eliminación se conoce sin consultar");
+    }
+
+    @Test
+    void guardarYModificarConVersionDejanEnCacheLaCopiaDevuelta() throws Exception {
+        RegistroDAOCache cache = (RegistroDAOCache) dao;
+        int id = cache.agregarYObtener(registro(1, 2)).getId();
+        assertTrue(cache.buscarRegistro(new Registro(id)));
+
+        Registro cambio = registro(3, 2);
+        cambio.setId(id);
+        Registro guardado = cache.guardarRegistro(cambio);
+        assertNotNull(guardado);
+        // Un cambio por fuera del decorador no se ve: la lectura sale de la copia devuelta por guardar
+        base.ejecutar("UPDATE registro SET peso = 99 WHERE id = " + id);
+        Registro leido = new Registro(id);
+        assertTrue(cache.buscarRegistro(leido));
+        assertEquals(73, leido.getPeso());
+
+        cache.limpiar();
+        leido = new Registro(id);
+        assertTrue(cache.buscarRegistro(leido));
+        Registro conVersion = registro(4, 2);
+        conVersion.setId(id);
+        conVersion.setVersion(leido.getVersion());
+        Registro modificado = cache.modificarConVersion(conVersion);
+        assertEquals(leido.getVersion() + 1, modificado.getVersion());
+
+        long fallos = cache.getEstadisticas().fallos();
+        leido = new Registro(id);
+        assertTrue(cache.buscarRegistro(leido));
+        assertEquals(fallos, cache.getEstadisticas().fallos());
+        assertEquals(74, leido.getPeso());
+        assertEquals(modificado.getVersion(), leido.getVersion());
+    }
+
+    @Test
+    void agregarDescartaLasInexistenciasConocidas() {
+        RegistroDAOCache cache = (RegistroDAOCache) dao;
+        assertFalse(cache.registroExiste(1));
+        assertFalse(cache.registroExiste(1));
+        assertEquals(1, cache.getEstadisticas().aciertosExistencia());
+
+        assertTrue(cache.agregarRegistro(registro(1, 0)));
+        assertTrue(cache.registroExiste(1));
+        assertTrue(cache.buscarRegistro(new Registro(1)));
+    }
+
+    @Test
+    void agregarRegistrosMarcaComoExistentesLosIdsGenerados() {
+        RegistroDAOCache cache = (RegistroDAOCache) dao;
+        assertFalse(cache.registroExiste(2));
+
+        ResultadoLote resultado = cache.agregarRegistros(List.of(registro(1, 0), registro(2, 0), registro(3, 0)).iterator(), 2);
+        assertEquals(3, resultado.idsGenerados().size());
+        long consultas = cache.getEstadisticas().fallosExistencia();
+        for (int id : resultado.idsGenerados()) {
+            assertTrue(cache.registroExiste(id));
+        }
+        assertEquals(consultas, cache.getEstadisticas().fallosExistencia());
+    }
+
+    @Test
+    void unaLecturaQueSeCruzaConUnaEscrituraNoGuardaUnValorViejo() {
+        DAOConPausa delegado = new DAOConPausa(base);
+        RegistroDAOCache cache = new RegistroDAOCache(delegado, 4);
+        int id = cache.agregarYObtener(registro(1, 0)).getId();
+
+        // La escritura ocurre después de que el delegado leyó y antes de que la caché guarde lo leído
+        Registro cambio = registro(8, 0);
+        cambio.setId(id);
+        cache.limpiar();
+        delegado.durante = () -> assertTrue(cache.modificarRegistro(cambio));
+        Registro viejo = new Registro(id);
+        assertTrue(cache.buscarRegistro(viejo));
+        assertEquals(71, viejo.getPeso());
+
+        Registro leido = new Registro(id);
+        assertTrue(cache.buscarRegistro(leido));
+        assertEquals(78, leido.getPeso());
+
+        cache.limpiar();
+        delegado.durante = () -> assertTrue(cache.eliminarRegistro(new Registro(id)));
+        assertTrue(cache.registroExiste(id));
+        assertFalse(cache.registroExiste(id));
+    }
+
+    @Test
+    void elDesalojoLRUDescartaElMenosUsadoYLoCuenta() {
+        RegistroDAOCache cache = new RegistroDAOCache(new RegistroDAO(base.getDataSource()), 2);
+        for (int n = 1; n <= 4; n++) {
+            cache.agregarRegistro(registro(n, 0));
+        }
+        assertTrue(cache.buscarRegistro(new Registro(1)));
+        assertTrue(cache.buscarRegistro(new Registro(2)));
+        assertTrue(cache.buscarRegistro(new Registro(1))); // El 2 pasa a ser el menos usado
+        assertTrue(cache.buscarRegistro(new Registro(3)));
+
+        EstadisticasCache estadisticas = cache.getEstadisticas();
+        assertEquals(1, estadisticas.desalojos());
+        assertEquals(2, estadisticas.tamano());
+        assertTrue(cache.buscarRegistro(new Registro(1)));
+        assertEquals(estadisticas.fallos(), cache.getEstadisticas().fallos());
+        assertTrue(cache.buscarRegistro(new Registro(2)));
+        assertEquals(estadisticas.fallos() + 1, cache.getEstadisticas().fallos());
+        assertEquals(2, cache.getEstadisticas().desalojos());
+    }
+
+    @Test
+    void losIdsDesdeElLimiteDelIndiceSiempreConsultanAlDelegado() {
+        RegistroDAOCache cache = new RegistroDAOCache(new RegistroDAO(base.getDataSource()), 4, 3);
+        for (int n = 1; n <= 3; n++) {
+            cache.agregarRegistro(registro(n, 0));
+        }
+
+        assertTrue(cache.registroExiste(2));
+        assertTrue(cache.registroExiste(2));
+        assertFalse(cache.registroExiste(12));
+        assertTrue(cache.registroExiste(3));
+        assertTrue(cache.registroExiste(3));
+        assertFalse(cache.buscarRegistro(new Registro(4)));
+        assertFalse(cache.buscarRegistro(new Registro(4)));
+
+        EstadisticasCache estadisticas = cache.getEstadisticas();
+        assertEquals(1, estadisticas.aciertosExistencia());
+        assertEquals(4, estadisticas.fallosExistencia());
+        assertEquals(2, estadisticas.fallos());
+    }
+
+    /**
+     * DAO que ejecuta {@link #durante} una sola vez, después de leer y antes de devolver el resultado.
+     */
+    private static final class DAOConPausa extends RegistroDAO {
+
+        Runnable durante;
+
+        DAOConPausa(BaseH2 base) {
+            super(base.getDataSource());
+        }
+
+        @Override
+        public boolean buscarRegistro(Registro registro) {
+            boolean encontrado = super.buscarRegistro(registro);
+            pausa();
+            return encontrado;
+        }
+
+        @Override
+        public boolean registroExiste(int id) {
+            boolean existe = super.registroExiste(id);
+            pausa();
+            return existe;
+        }
+
+        private void pausa() {
+            Runnable accion = durante;
+            durante = null;
+            if (accion != null) {
+                accion.run();
+            }
+        }
+    }
+}
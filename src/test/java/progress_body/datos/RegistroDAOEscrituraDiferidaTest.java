@@ -0,0 +1,113 @@
+package progress_body.datos;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import progress_body.datos.RegistroDAOEscrituraDiferida.ModoDurabilidad;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cierre de {@link RegistroDAOEscrituraDiferida} mientras otros hilos siguen agregando registros:
+ * todo registro aceptado llega a la base y ningún productor queda esperando.
+ */
+class RegistroDAOEscrituraDiferidaTest {
+
+    private static final int PRODUCTORES = 8;
+
+    private BaseH2 base;
+    private RegistroDAO delegado;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        base = new BaseH2();
+        delegado = new RegistroDAO(base.getDataSource());
+    }
+
+    @AfterEach
+    void liberar() throws Exception {
+        base.close();
+    }
+
+    @Test
+    void cerrarNoPierdeRegistrosAceptadosAlEncolar() throws Exception {
+        for (int ronda = 0; ronda < 20; ronda++) {
+            base.ejecutar("DELETE FROM registro");
+            long aceptados = cerrarConProductores(ModoDurabilidad.AL_ENCOLAR);
+            assertEquals(aceptados, delegado.listarRegistros().size(), "ronda " + ronda);
+        }
+    }
+
+    @Test
+    void cerrarRespondeATodosLosProductoresAlConfirmar() throws Exception {
+        for (int ronda = 0; ronda < 20; ronda++) {
+            base.ejecutar("DELETE FROM registro");
+            long confirmados = cerrarConProductores(ModoDurabilidad.AL_CONFIRMAR);
+            assertEquals(confirmados, delegado.listarRegistros().size(), "ronda " + ronda);
+        }
+    }
+
+    @Test
+    void agregarTrasCerrarLanza() {
+        RegistroDAOEscrituraDiferida diferido = crear(ModoDurabilidad.AL_ENCOLAR);
+        diferido.close();
+
+        assertThrows(IllegalStateException.class, () -> diferido.agregarRegistro(ContratoRegistroDAOTest.registro(1, 0)));
+        diferido.vaciar();
+    }
+
+    private RegistroDAOEscrituraDiferida crear(ModoDurabilidad modo) {
+        return new RegistroDAOEscrituraDiferida(delegado, modo, 256, 16, Duration.ofMillis(2), Duration.ofMillis(50));
+    }
+
+    /**
+     * Lanza productores que agregan hasta que el decorador se cierra y lo cierra mientras agregan.
+     *
+     * @return Cuántas altas devolvieron true.
+     */
+    private long cerrarConProductores(ModoDurabilidad modo) throws Exception {
+        RegistroDAOEscrituraDiferida diferido = crear(modo);
+        ExecutorService hilos = Executors.newFixedThreadPool(PRODUCTORES);
+        CountDownLatch arrancados = new CountDownLatch(PRODUCTORES);
+        List<Future<Long>> resultados = new ArrayList<>();
+        for (int p = 0; p < PRODUCTORES; p++) {
+            int usuario = p;
+            resultados.add(hilos.submit(() -> {
+                arrancados.countDown();
+                long aceptados = 0;
+                for (int i = 0; ; i++) {
+                    try {
+                        if (diferido.agregarRegistro(ContratoRegistroDAOTest.registro(i % 50, usuario))) {
+                            aceptados++;
+                        }
+                    } catch (IllegalStateException e) {
+                        return aceptados;
+                    }
+                }
+            }));
+        }
+        arrancados.await();
+        Thread.sleep(5);
+        diferido.close();
+
+        long aceptados = 0;
+        for (Future<Long> resultado : resultados) {
+            aceptados += resultado.get(10, TimeUnit.SECONDS);
+        }
+        hilos.shutdown();
+        assertTrue(hilos.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(0, diferido.getEstadisticas().pendientes());
+        return aceptados;
+    }
+}
@@ -0,0 +1,60 @@
+package progress_body.datos;
+
+import org.junit.jupiter.api.Test;
+import progress_body.dominio.Registro;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contrato de {@link IRegistroDAO} para {@link RegistroDAO} sobre una base H2 en modo MySQL, y su
+ * comportamiento cuando la base falla a mitad de una lectura.
+ */
+class RegistroDAOTest extends ContratoRegistroDAOTest {
+
+    private BaseH2 base;
+
+    @Override
+    protected IRegistroDAO crearDAO() throws Exception {
+        base = new BaseH2();
+        return new RegistroDAO(base.getDataSource());
+    }
+
+    @Override
+    protected void cerrarDAO() throws Exception {
+        base.close();
+    }
+
+    private RegistroDAO conLecturaCortadaTras(int filas) {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(dao.agregarRegistro(registro(i, 0)));
+        }
+        return new RegistroDAO(FallasJdbc.cortarLecturasTras(base.getDataSource(), filas));
+    }
+
+    @Test
+    void unFlujoCortadoLanzaEnLugarDeTerminar() {
+        RegistroDAO cortado = conLecturaCortadaTras(4);
+
+        List<Registro> recibidos = new ArrayList<>();
+        try (Stream<Registro> registros = cortado.streamRegistros()) {
+            UncheckedSQLException e = assertThrows(UncheckedSQLException.class, () -> registros.forEach(recibidos::add));
+            assertEquals("Se perdió la conexión durante la lectura.", e.getCause().getMessage());
+        }
+        assertEquals(4, recibidos.size());
+    }
+
+    @Test
+    void unRecorridoCortadoDevuelveMenosUno() {
+        RegistroDAO cortado = conLecturaCortadaTras(4);
+
+        List<Registro> recibidos = new ArrayList<>();
+        assertEquals(-1, cortado.recorrerRegistros(recibidos::add));
+        assertEquals(4, recibidos.size());
+    }
+}
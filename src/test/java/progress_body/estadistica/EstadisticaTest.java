@@ -0,0 +1,188 @@
+package progress_body.estadistica;
+
+import org.junit.jupiter.api.Test;
+import progress_body.almacen.AlmacenColumnar;
+import progress_body.dominio.Medida;
+
+import java.lang.foreign.MemorySegment;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compara la implementación vectorial con la escalar de referencia en todos los largos hasta varias
+ * veces el número de carriles (para cubrir el resto que se procesa sin vectores), con NaN y sin valores,
+ * sobre arreglos y sobre las columnas de un {@link AlmacenColumnar}.
+ */
+class EstadisticaTest {
+
+    private static final Estadistica VECTORIAL = Estadistica.predeterminada();
+    private static final Estadistica ESCALAR = Estadistica.escalar();
+    private static final int[] LARGOS = largos();
+
+    @Test
+    void lasPruebasUsanLaVectorApi() {
+        assertTrue(VECTORIAL.esVectorial(), "surefire debe ejecutar con --add-modules jdk.incubator.vector");
+    }
+
+    @Test
+    void vectorialYEscalarCoincidenEnCadaLargo() {
+        Random azar = new Random(42);
+        for (int n : LARGOS) {
+            double[] x = aleatorios(azar, n, 0);
+            double[] y = aleatorios(azar, n, 3);
+            // Un valor lejano para que haya atípicos tanto en la parte vectorial como en el resto
+            if (n > 0) {
+                x[n - 1] = 500;
+                x[n / 2] = -400;
+            }
+
+            assertCercano(ESCALAR.suma(x, n), VECTORIAL.suma(x, n), escala(x, n), n);
+            assertCercano(ESCALAR.media(x, n), VECTORIAL.media(x, n), escala(x, n) / Math.max(n, 1), n);
+            assertCercano(ESCALAR.varianza(x, n), VECTORIAL.varianza(x, n), ESCALAR.varianza(x, n), n);
+            assertCercano(ESCALAR.correlacion(x, y, n), VECTORIAL.correlacion(x, y, n), 1, n);
+
+            boolean[] escalar = new boolean[n];
+            boolean[] vectorial = new boolean[n];
+            assertEquals(ESCALAR.marcarAtipicos(x, n, 2, escalar), VECTORIAL.marcarAtipicos(x, n, 2, vectorial), "n = " + n);
+            assertArrayEquals(escalar, vectorial, "n = " + n);
+        }
+    }
+
+    @Test
+    void unNaNSePropagaEnCualquierPosicion() {
+        Random azar = new Random(7);
+        for (int n : LARGOS) {
+            for (int posicion = 0; posicion < n; posicion += Math.max(1, n / 5)) {
+                double[] x = aleatorios(azar, n, 0);
+                x[posicion] = Double.NaN;
+
+                assertTrue(Double.isNaN(ESCALAR.suma(x, n)));
+                assertTrue(Double.isNaN(VECTORIAL.suma(x, n)), "n = " + n + ", posición " + posicion);
+                assertTrue(Double.isNaN(VECTORIAL.varianza(x, n)), "n = " + n + ", posición " + posicion);
+                assertTrue(Double.isNaN(VECTORIAL.correlacion(x, aleatorios(azar, n, 0), n)));
+                // Con media NaN ninguna comparación es verdadera
+                assertEquals(0, ESCALAR.marcarAtipicos(x, n, 2, new boolean[n]));
+                assertEquals(0, VECTORIAL.marcarAtipicos(x, n, 2, new boolean[n]));
+            }
+        }
+    }
+
+    @Test
+    void sinValores() {
+        for (Estadistica estadistica : new Estadistica[]{ESCALAR, VECTORIAL}) {
+            double[] vacio = new double[0];
+            assertEquals(0, estadistica.suma(vacio, 0));
+            assertTrue(Double.isNaN(estadistica.media(vacio, 0)));
+            assertTrue(Double.isNaN(estadistica.varianza(vacio, 0)));
+            assertTrue(Double.isNaN(estadistica.correlacion(vacio, vacio, 0)));
+            assertEquals(0, estadistica.marcarAtipicos(vacio, 0, 3, new boolean[0]));
+            assertTrue(Double.isNaN(estadistica.percentil(vacio, 0, 50)));
+
+            MemorySegment columna = MemorySegment.ofArray(vacio);
+            assertEquals(0, estadistica.suma(columna));
+            assertTrue(Double.isNaN(estadistica.media(columna)));
+            assertTrue(Double.isNaN(estadistica.varianza(columna)));
+            assertTrue(Double.isNaN(estadistica.correlacion(columna, columna)));
+            assertEquals(0, estadistica.marcarAtipicos(columna, 3, new boolean[0]));
+        }
+    }
+
+    @Test
+    void lasColumnasDelAlmacenDanLoMismoQueLosArreglos() {
+        Random azar = new Random(3);
+        for (boolean fueraDelHeap : new boolean[]{false, true}) {
+            for (int n : LARGOS) {
+                try (AlmacenColumnar almacen = new AlmacenColumnar(fueraDelHeap, 1)) {
+                    for (int i = 0; i < n; i++) {
+                        almacen.agregar(i + 1, i, 70 + azar.nextGaussian(), 30, 30,
+                                80 + azar.nextGaussian(), 50, 35);
+                    }
+                    double[] peso = new double[n];
+                    double[] cintura = new double[n];
+                    almacen.copiar(Medida.PESO, 0, n, peso, 0);
+                    almacen.copiar(Medida.CINTURA, 0, n, cintura, 0);
+                    MemorySegment columnaPeso = almacen.columna(Medida.PESO);
+                    MemorySegment columnaCintura = almacen.columna(Medida.CINTURA);
+
+                    for (Estadistica estadistica : new Estadistica[]{ESCALAR, VECTORIAL}) {
+                        // Antes de JDK 22 las columnas del heap se suman con el código escalar
+                        assertCercano(estadistica.suma(peso, n), estadistica.suma(columnaPeso), escala(peso, n), n);
+                        assertCercano(estadistica.varianza(peso, n), estadistica.varianza(columnaPeso),
+                                estadistica.varianza(peso, n), n);
+                        assertCercano(estadistica.correlacion(peso, cintura, n),
+                                estadistica.correlacion(columnaPeso, columnaCintura), 1, n);
+
+                        String caso = "n = " + n + (fueraDelHeap ? ", fuera del heap" : "");
+                        assertArrayEquals(estadistica.percentiles(peso, n, 5, 50, 95),
+                                estadistica.percentiles(columnaPeso, 5, 50, 95), caso);
+
+                        boolean[] enArreglo = new boolean[n];
+                        boolean[] enColumna = new boolean[n];
+                        assertEquals(estadistica.marcarAtipicos(peso, n, 1.5, enArreglo),
+                                estadistica.marcarAtipicos(columnaPeso, 1.5, enColumna), caso);
+                        assertArrayEquals(enArreglo, enColumna, caso);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void columnasInvalidas() {
+        MemorySegment bytes = MemorySegment.ofArray(new byte[12]);
+        MemorySegment tres = MemorySegment.ofArray(new double[3]);
+        MemorySegment cuatro = MemorySegment.ofArray(new double[4]);
+
+        assertThrows(IllegalArgumentException.class, () -> VECTORIAL.suma(null));
+        assertThrows(IllegalArgumentException.class, () -> VECTORIAL.suma(bytes));
+        assertThrows(IllegalArgumentException.class, () -> VECTORIAL.correlacion(tres, cuatro));
+        assertThrows(IllegalArgumentException.class, () -> VECTORIAL.marcarAtipicos(cuatro, 2, new boolean[3]));
+    }
+
+    /**
+     * Todos los largos de 0 a 70 (restos de 0 a 7 con hasta 8 carriles) y algunos largos mayores.
+     */
+    private static int[] largos() {
+        int[] largos = new int[75];
+        for (int n = 0; n <= 70; n++) {
+            largos[n] = n;
+        }
+        largos[71] = 1_000;
+        largos[72] = 1_001;
+        largos[73] = 1_023;
+        largos[74] = 4_099;
+        return largos;
+    }
+
+    private static double[] aleatorios(Random azar, int n, double desplazamiento) {
+        double[] valores = new double[n];
+        for (int i = 0; i < n; i++) {
+            valores[i] = 70 + desplazamiento + azar.nextGaussian() * 5;
+        }
+        return valores;
+    }
+
+    private static double escala(double[] valores, int n) {
+        double escala = 0;
+        for (int i = 0; i < n; i++) {
+            escala += Math.abs(valores[i]);
+        }
+        return escala;
+    }
+
+    /**
+     * Las sumas vectoriales se asocian en otro orden, así que se admite un error relativo a la escala de
+     * los valores; NaN solo coincide con NaN.
+     */
+    private static void assertCercano(double esperado, double actual, double escala, int n) {
+        if (Double.isNaN(esperado)) {
+            assertTrue(Double.isNaN(actual), "n = " + n);
+            return;
+        }
+        assertEquals(esperado, actual, 1e-12 * Math.max(escala, 1), "n = " + n);
+    }
+}
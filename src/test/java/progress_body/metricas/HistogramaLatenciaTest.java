@@ -0,0 +1,88 @@
+package progress_body.metricas;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cubetas log-lineales de {@link HistogramaLatencia}: los límites son contiguos en todo el rango de
+ * {@code long} y los percentiles no se alejan del valor exacto más que el ancho relativo de una cubeta.
+ */
+class HistogramaLatenciaTest {
+
+    private static final double[] PERCENTILES = {0, 1, 25, 50, 90, 99, 99.9, 100};
+
+    @Test
+    void losValoresPequenosTienenUnaCubetaCadaUno() {
+        for (int valor = 0; valor < 16; valor++) {
+            assertEquals(valor, HistogramaLatencia.indice(valor));
+            assertEquals(valor, HistogramaLatencia.limiteSuperior(valor));
+        }
+        assertEquals(16, HistogramaLatencia.indice(16));
+        assertEquals(16, HistogramaLatencia.limiteSuperior(16));
+    }
+
+    @Test
+    void lasCubetasSonContiguasHastaLongMaxValue() {
+        long anterior = -1;
+        for (int i = 0; i < HistogramaLatencia.CUBETAS; i++) {
+            long limite = HistogramaLatencia.limiteSuperior(i);
+            assertTrue(limite > anterior, "cubeta " + i);
+            // El primer y el último valor de la cubeta caen en ella, y el siguiente en la próxima
+            assertEquals(i, HistogramaLatencia.indice(anterior + 1), "cubeta " + i);
+            assertEquals(i, HistogramaLatencia.indice(limite), "cubeta " + i);
+            if (limite < Long.MAX_VALUE) {
+                assertEquals(i + 1, HistogramaLatencia.indice(limite + 1), "cubeta " + i);
+            }
+            anterior = limite;
+        }
+        assertEquals(Long.MAX_VALUE, anterior);
+        assertEquals(HistogramaLatencia.CUBETAS - 1, HistogramaLatencia.indice(Long.MAX_VALUE));
+    }
+
+    @Test
+    void registrarLongMaxValueDevuelveElMaximoExacto() {
+        HistogramaLatencia histograma = new HistogramaLatencia();
+        histograma.registrar(Long.MAX_VALUE);
+        histograma.registrar(-5);
+
+        assertArrayEquals(new long[]{0, Long.MAX_VALUE}, histograma.percentiles(50, 100));
+        assertEquals(Long.MAX_VALUE, histograma.maximo());
+    }
+
+    @Test
+    void sinValoresLosPercentilesSonCero() {
+        assertArrayEquals(new long[]{0, 0}, new HistogramaLatencia().percentiles(50, 99));
+    }
+
+    @Test
+    void elErrorRelativoDeLosPercentilesEsMenorAlAnchoDeUnaCubeta() {
+        Random azar = new Random(42);
+        for (int ronda = 0; ronda < 20; ronda++) {
+            int cantidad = 1 + azar.nextInt(5000);
+            long[] valores = new long[cantidad];
+            HistogramaLatencia histograma = new HistogramaLatencia();
+            for (int i = 0; i < cantidad; i++) {
+                // Distribución logarítmica entre 1 ns y unos 10 s, como las latencias reales
+                valores[i] = (long) Math.pow(10, azar.nextDouble() * 10);
+                histograma.registrar(valores[i]);
+            }
+            Arrays.sort(valores);
+
+            long[] obtenidos = histograma.percentiles(PERCENTILES);
+            for (int p = 0; p < PERCENTILES.length; p++) {
+                int rango = (int) Math.max(1, Math.ceil(PERCENTILES[p] / 100 * cantidad));
+                long exacto = valores[rango - 1];
+                String mensaje = "ronda " + ronda + ", p" + PERCENTILES[p];
+                assertTrue(obtenidos[p] >= exacto, mensaje);
+                assertTrue((double) (obtenidos[p] - exacto) / exacto < 0.0625, mensaje);
+            }
+            assertEquals(valores[cantidad - 1], obtenidos[PERCENTILES.length - 1]);
+        }
+    }
+}
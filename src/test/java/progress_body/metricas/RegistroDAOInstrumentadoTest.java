@@ -0,0 +1,158 @@
+package progress_body.metricas;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import progress_body.datos.BaseH2;
+import progress_body.datos.ContratoRegistroDAOTest;
+import progress_body.datos.FallasJdbc;
+import progress_body.datos.IRegistroDAO;
+import progress_body.datos.RegistroDAO;
+import progress_body.dominio.Registro;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contrato de {@link IRegistroDAO} para {@link RegistroDAOInstrumentado} sobre H2, clasificación de
+ * los errores del DAO real, que no lanza excepciones, frente a los resultados negativos, y registro
+ * de las llamadas lentas.
+ */
+class RegistroDAOInstrumentadoTest extends ContratoRegistroDAOTest {
+
+    private BaseH2 base;
+    private RegistroDAOInstrumentado instrumentado;
+
+    @Override
+    protected IRegistroDAO crearDAO() throws Exception {
+        base = new BaseH2();
+        instrumentado = new RegistroDAOInstrumentado(new RegistroDAO(base.getDataSource()), Duration.ofSeconds(1), null);
+        return instrumentado;
+    }
+
+    @Override
+    protected void cerrarDAO() throws Exception {
+        base.close();
+    }
+
+    private static ResumenOperacion resumen(RegistroDAOInstrumentado dao, Operacion operacion) {
+        return dao.getInstantanea().operaciones().stream()
+                .filter(r -> r.operacion() == operacion)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    void cuentaComoErrorLoQueElDAOInformaComoFallo() {
+        RegistroDAOInstrumentado dao = new RegistroDAOInstrumentado(new RegistroDAO(FallasJdbc.sinConexion()),
+                Duration.ofSeconds(1), null);
+
+        assertFalse(dao.buscarRegistro(new Registro(1)));
+        assertTrue(dao.listarRegistrosDeUsuario(3).isEmpty());
+        assertEquals(-1, dao.recorrerRegistros(r -> { }));
+
+        ResumenOperacion buscar = resumen(dao, Operacion.BUSCAR);
+        assertEquals(1, buscar.errores());
+        assertEquals(0, buscar.negativos());
+        assertEquals(1, resumen(dao, Operacion.DE_USUARIO).errores());
+        assertEquals(1, resumen(dao, Operacion.RECORRER).errores());
+    }
+
+    @Test
+    void unRegistroInexistenteEsNegativoYNoError() {
+        assertFalse(instrumentado.buscarRegistro(new Registro(1)));
+        assertTrue(instrumentado.listarRegistrosDeUsuario(3).isEmpty());
+
+        ResumenOperacion buscar = resumen(instrumentado, Operacion.BUSCAR);
+        assertEquals(0, buscar.errores());
+        assertEquals(1, buscar.negativos());
+        assertEquals(0, resumen(instrumentado, Operacion.DE_USUARIO).errores());
+    }
+
+    @Test
+    void lasOperacionesEnBloqueSeMidenSinPasarPorLasIndividuales() {
+        Registro movido = registro(1, 2);
+        movido.setId(40);
+        movido.setVersion(3);
+
+        assertTrue(instrumentado.agregarRegistrosConId(List.of(movido)).exitoso());
+        assertEquals(1, instrumentado.eliminarRegistros(List.of(40, 41)));
+        assertEquals(0, instrumentado.eliminarRegistros(List.of(40)));
+
+        assertEquals(1, resumen(instrumentado, Operacion.AGREGAR_CON_ID).llamadas());
+        ResumenOperacion eliminar = resumen(instrumentado, Operacion.ELIMINAR_VARIOS);
+        assertEquals(2, eliminar.llamadas());
+        assertEquals(1, eliminar.negativos());
+        for (Operacion individual : List.of(Operacion.EXISTE, Operacion.GUARDAR, Operacion.ELIMINAR)) {
+            assertEquals(0, resumen(instrumentado, individual).llamadas(), individual.name());
+        }
+    }
+
+    @Test
+    void unaLlamadaLentaSeCuentaYEmiteUnEvento(@TempDir Path carpeta) throws Exception {
+        RegistroDAO lento = new RegistroDAO(base.getDataSource()) {
+            @Override
+            public boolean buscarRegistro(Registro registro) {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.buscarRegistro(registro);
+            }
+        };
+        RegistroDAOInstrumentado dao = new RegistroDAOInstrumentado(lento, Duration.ofMillis(200), null);
+
+        List<RecordedEvent> eventos;
+        try (Recording grabacion = new Recording()) {
+            grabacion.enable("progress_body.ConsultaLenta");
+            grabacion.start();
+            assertFalse(dao.buscarRegistro(new Registro(1)));
+            assertFalse(dao.registroExiste(1));
+            grabacion.stop();
+            Path archivo = carpeta.resolve("lentas.jfr");
+            grabacion.dump(archivo);
+            eventos = RecordingFile.readAllEvents(archivo);
+        }
+
+        assertEquals(1, resumen(dao, Operacion.BUSCAR).lentas());
+        assertEquals(0, resumen(dao, Operacion.EXISTE).lentas());
+        assertEquals(1, eventos.size());
+        RecordedEvent evento = eventos.getFirst();
+        assertEquals(Operacion.BUSCAR.name(), evento.getString("operacion"));
+        assertTrue(evento.getLong("duracion") >= Duration.ofMillis(300).toNanos());
+        assertFalse(evento.getBoolean("error"));
+    }
+
+    @Test
+    void elEventoDeUnaLlamadaLentaIndicaSiHuboError(@TempDir Path carpeta) throws Exception {
+        // Con umbral cero toda llamada es lenta
+        RegistroDAOInstrumentado dao = new RegistroDAOInstrumentado(new RegistroDAO(FallasJdbc.sinConexion()),
+                Duration.ZERO, null);
+
+        List<RecordedEvent> eventos;
+        try (Recording grabacion = new Recording()) {
+            grabacion.enable("progress_body.ConsultaLenta");
+            grabacion.start();
+            assertFalse(dao.registroExiste(1));
+            grabacion.stop();
+            Path archivo = carpeta.resolve("error.jfr");
+            grabacion.dump(archivo);
+            eventos = RecordingFile.readAllEvents(archivo);
+        }
+
+        ResumenOperacion existe = resumen(dao, Operacion.EXISTE);
+        assertEquals(1, existe.lentas());
+        assertEquals(1, existe.errores());
+        assertEquals(1, eventos.size());
+        assertEquals(Operacion.EXISTE.name(), eventos.getFirst().getString("operacion"));
+        assertTrue(eventos.getFirst().getBoolean("error"));
+    }
+}
@@ -0,0 +1,295 @@
+package progress_body.particion;
+
+import org.junit.jupiter.api.Test;
+import progress_body.datos.BaseH2;
+import progress_body.datos.ConflictoVersionException;
+import progress_body.datos.ContratoRegistroDAOTest;
+import progress_body.datos.IRegistroDAO;
+import progress_body.datos.RegistroDAO;
+import progress_body.datos.RegistroDAOCache;
+import progress_body.dominio.Registro;
+import progress_body.metricas.Operacion;
+import progress_body.metricas.RegistroDAOInstrumentado;
+import progress_body.metricas.ResumenOperacion;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contrato de {@link IRegistroDAO} para {@link RegistroDAOParticionado} sobre dos bases H2, y mudanzas
+ * que conservan IDs, fechas y versiones, también al volver a abrir.
+ */
+class RegistroDAOParticionadoTest extends ContratoRegistroDAOTest {
+
+    private final List<BaseH2> bases = new ArrayList<>();
+    private RegistroDAOParticionado particionado;
+
+    @Override
+    protected IRegistroDAO crearDAO() throws Exception {
+        particionado = abrir(List.of(particion("a", 1), particion("b", 1_000_000)));
+        return particionado;
+    }
+
+    @Override
+    protected void cerrarDAO() throws Exception {
+        particionado.close();
+        for (BaseH2 base : bases) {
+            base.close();
+        }
+    }
+
+    private Particion particion(String nombre, int primerId) throws Exception {
+        return new Particion(nombre, new RegistroDAO(nuevaBase().getDataSource()), primerId);
+    }
+
+    private BaseH2 nuevaBase() throws Exception {
+        BaseH2 base = new BaseH2();
+        bases.add(base);
+        return base;
+    }
+
+    private static ResumenOperacion resumen(RegistroDAOInstrumentado dao, Operacion operacion) {
+        return dao.getInstantanea().operaciones().stream()
+                .filter(r -> r.operacion() == operacion)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static RegistroDAOParticionado abrir(List<Particion> particiones) {
+        RegistroDAOParticionado abierto = RegistroDAOParticionado.abrir(particiones);
+        assertNotNull(abierto);
+        return abierto;
+    }
+
+    @Test
+    void agregarParticionMueveSinCambiarIdsNiVersiones() throws Exception {
+        List<Registro> lote = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            lote.add(registro(i % 40, i % 100));
+        }
+        List<Integer> ids = particionado.agregarRegistros(lote).idsGenerados();
+        for (int id : ids.subList(0, 50)) {
+            Registro cambio = registro(45, 0);
+            cambio.setId(id);
+            assertTrue(particionado.modificarRegistro(cambio));
+        }
+        List<String> antes = firmas(particionado.listarRegistros());
+
+        Particion nueva = particion("c", 2_000_000);
+        int movidos = particionado.agregarParticion(nueva);
+
+        assertTrue(movidos > 0);
+        assertEquals(movidos, nueva.dao().listarRegistros().size());
+        assertTrue(nueva.dao().listarRegistros().stream().allMatch(r -> particionado.particionDe(r.getUsuario()).equals("c")));
+        assertEquals(antes, firmas(particionado.listarRegistros()));
+        assertEquals(antes, firmas(paginas(particionado)));
+        try (Stream<Registro> registros = particionado.streamRegistros()) {
+            assertEquals(antes, firmas(registros.toList()));
+        }
+        for (int usuario = 0; usuario < 100; usuario++) {
+            assertEquals(3, particionado.listarRegistrosDeUsuario(usuario).size());
+        }
+
+        // Al volver a abrir se recupera dónde quedó cada registro movido
+        List<Particion> particiones = particionado.getParticiones();
+        particionado.close();
+        particionado = abrir(particiones);
+        dao = particionado;
+        assertEquals(antes, firmas(paginas(particionado)));
+        Registro movido = nueva.dao().listarRegistros().getFirst();
+        Registro cambio = registro(1, movido.getUsuario());
+        cambio.setId(movido.getId());
+        cambio.setVersion(movido.getVersion());
+        assertEquals(movido.getVersion() + 1, particionado.modificarConVersion(cambio).getVersion());
+        Registro nuevo = particionado.agregarYObtener(registro(2, movido.getUsuario()));
+        assertFalse(ids.contains(nuevo.getId()));
+        assertTrue(nuevo.getId() >= 2_000_000);
+    }
+
+    @Test
+    void quitarParticionLaVaciaYLaDescarta() {
+        List<Registro> lote = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            lote.add(registro(i % 40, i % 50));
+        }
+        particionado.agregarRegistros(lote);
+        List<String> antes = firmas(particionado.listarRegistros());
+        Particion quitada = particionado.getParticiones().getLast();
+
+        particionado.quitarParticion(quitada.nombre());
+
+        assertEquals(List.of("a"), particionado.getParticiones().stream().map(Particion::nombre).toList());
+        assertTrue(quitada.dao().listarRegistros().isEmpty());
+        assertEquals(antes, firmas(particionado.listarRegistros()));
+        for (String firma : antes) {
+            assertTrue(particionado.registroExiste(Integer.parseInt(firma.substring(0, firma.indexOf(':')))));
+        }
+    }
+
+    @Test
+    void unRangoAgotadoNoInvadeElSiguiente() throws Exception {
+        RegistroDAOParticionado angosto = abrir(List.of(particion("x", 1), particion("y", 4)));
+        try {
+            int usuario = 0;
+            while (!angosto.particionDe(usuario).equals("x")) {
+                usuario++;
+            }
+            for (int i = 1; i <= 3; i++) {
+                assertEquals(i, angosto.agregarYObtener(registro(i, usuario)).getId());
+            }
+
+            long fallos = angosto.getFallosDelHilo();
+            assertNull(angosto.agregarYObtener(registro(4, usuario)));
+            assertFalse(angosto.agregarRegistros(List.of(registro(5, usuario))).exitoso());
+            assertEquals(fallos + 2, angosto.getFallosDelHilo());
+            assertFalse(angosto.registroExiste(4));
+        } finally {
+            angosto.close();
+        }
+    }
+
+    @Test
+    void conParticionesDecoradasLaMudanzaConservaLasVersiones() throws Exception {
+        particionado.close();
+        RegistroDAOInstrumentado medida = new RegistroDAOInstrumentado(
+                new RegistroDAO(nuevaBase().getDataSource()), Duration.ofSeconds(1), null);
+        particionado = abrir(List.of(
+                new Particion("a", new RegistroDAOCache(new RegistroDAO(nuevaBase().getDataSource()), 100), 1),
+                new Particion("b", new RegistroDAOCache(new RegistroDAO(nuevaBase().getDataSource()), 100), 1_000_000)));
+        dao = particionado;
+
+        List<Registro> lote = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            lote.add(registro(i % 40, i % 50));
+        }
+        for (int id : particionado.agregarRegistros(lote).idsGenerados()) {
+            Registro cambio = registro(45, 0);
+            cambio.setId(id);
+            assertTrue(particionado.modificarRegistro(cambio));
+        }
+        List<String> antes = firmas(particionado.listarRegistros());
+
+        assertTrue(particionado.agregarParticion(new Particion("c", medida, 2_000_000)) > 0);
+
+        assertEquals(antes, firmas(particionado.listarRegistros()));
+        // Los registros llegan en bloque: sin consultas de existencia ni reemplazos de uno en uno
+        assertTrue(resumen(medida, Operacion.AGREGAR_CON_ID).llamadas() > 0);
+        assertEquals(0, resumen(medida, Operacion.EXISTE).llamadas());
+        assertEquals(0, resumen(medida, Operacion.GUARDAR).llamadas());
+        // Una modificación con la versión anterior a la mudanza sigue siendo un conflicto
+        Registro movido = medida.listarRegistros().getFirst();
+        assertEquals(1, movido.getVersion());
+        Registro viejo = registro(3, movido.getUsuario());
+        viejo.setId(movido.getId());
+        viejo.setVersion(0);
+        assertThrows(ConflictoVersionException.class, () -> particionado.modificarConVersion(viejo));
+        // Las particiones de origen ya no dan por existentes los registros que se fueron
+        Registro leido = new Registro(movido.getId());
+        for (Particion origen : particionado.getParticiones().subList(0, 2)) {
+            assertFalse(origen.dao().registroExiste(movido.getId()));
+            assertFalse(origen.dao().buscarRegistro(leido));
+        }
+    }
+
+    @Test
+    void agregarRegistrosAgregaCadaBloqueAntesDeLeerElSiguiente() {
+        List<Integer> vistos = new ArrayList<>(); // Registros ya guardados al pedir cada posición
+        Iterator<Registro> registros = new Iterator<>() {
+            private int siguiente;
+
+            @Override
+            public boolean hasNext() {
+                return siguiente < 25;
+            }
+
+            @Override
+            public Registro next() {
+                vistos.add(particionado.listarRegistros().size());
+                return registro(siguiente, siguiente++ % 7);
+            }
+        };
+
+        assertEquals(25, particionado.agregarRegistros(registros, 10).totalInsertados());
+        assertEquals(0, vistos.get(9));
+        assertEquals(10, vistos.get(10));
+        assertEquals(20, vistos.get(24));
+
+        // Un nulo se detecta al leer su bloque, con los anteriores ya agregados
+        List<Registro> conNulo = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            conNulo.add(i == 12 ? null : registro(i, i % 7));
+        }
+        assertThrows(IllegalArgumentException.class, () -> particionado.agregarRegistros(conNulo.iterator(), 10));
+        assertEquals(35, particionado.listarRegistros().size());
+    }
+
+    @Test
+    void losRegistrosMovidosSeEncuentranYBorranTrasVolverAAbrir() throws Exception {
+        List<Registro> lote = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            lote.add(registro(i % 40, i % 60));
+        }
+        particionado.agregarRegistros(lote);
+        Particion nueva = particion("c", 2_000_000);
+        assertTrue(particionado.agregarParticion(nueva) > 0);
+        List<Particion> particiones = particionado.getParticiones();
+        particionado.close();
+        particionado = abrir(particiones);
+        dao = particionado;
+
+        List<Integer> movidos = nueva.dao().listarRegistros().stream().map(Registro::getId).toList();
+        long fallos = particionado.getFallosDelHilo();
+        for (int id : movidos) {
+            assertTrue(particionado.registroExiste(id));
+        }
+        assertFalse(particionado.registroExiste(1_500_000));
+        assertTrue(particionado.eliminarRegistro(new Registro(movidos.getFirst())));
+        assertEquals(movidos.size() - 1, particionado.eliminarRegistros(movidos));
+        assertEquals(fallos, particionado.getFallosDelHilo());
+        assertTrue(nueva.dao().listarRegistros().isEmpty());
+        assertEquals(120 - movidos.size(), particionado.listarRegistros().size());
+        for (int id : movidos) {
+            assertFalse(particionado.registroExiste(id));
+        }
+    }
+
+    @Test
+    void guardarConUnIdDeOtraParticionLanza() {
+        int usuario = 0;
+        while (!particionado.particionDe(usuario).equals("a")) {
+            usuario++;
+        }
+        Registro ajeno = registro(1, usuario);
+        ajeno.setId(1_000_005);
+
+        assertThrows(IllegalArgumentException.class, () -> particionado.guardarRegistro(ajeno));
+        assertThrows(IllegalArgumentException.class, () -> particionado.agregarRegistrosConId(List.of(ajeno)));
+    }
+
+    private static List<Registro> paginas(IRegistroDAO dao) {
+        List<Registro> todos = new ArrayList<>();
+        List<Registro> pagina;
+        int ultimo = 0;
+        while (!(pagina = dao.listarRegistrosDespuesDe(ultimo, 7)).isEmpty()) {
+            todos.addAll(pagina);
+            ultimo = pagina.getLast().getId();
+        }
+        return todos;
+    }
+
+    private static List<String> firmas(List<Registro> registros) {
+        return registros.stream()
+                .map(r -> r.getId() + ":" + r.getPeso() + ":" + r.getVersion() + ":" + r.getFecha() + ":" + r.getUsuario())
+                .toList();
+    }
+}
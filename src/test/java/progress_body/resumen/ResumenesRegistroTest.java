@@ -0,0 +1,175 @@
+package progress_body.resumen;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import progress_body.datos.BaseH2;
+import progress_body.datos.RegistroDAO;
+import progress_body.datos.RegistroDAOCache;
+import progress_body.dominio.Medida;
+import progress_body.dominio.Registro;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ejecuta el SQL de {@link ResumenesRegistro} y {@link EsquemaResumenes} sobre H2 en modo MySQL, con el
+ * esquema que crea {@link BaseH2}: los registros confirmados tarde con un ID menor se resumen igual, y la
+ * retención solo borra registros ya incorporados a las cubetas, a través del DAO que recibe.
+ */
+class ResumenesRegistroTest {
+
+    // Miércoles: la semana empieza el lunes 13 y el mes el día 1
+    private static final LocalDate DIA = LocalDate.of(2020, 1, 15);
+    private static final Timestamp DESDE = Timestamp.valueOf(DIA.withDayOfMonth(1).atStartOfDay());
+    private static final Timestamp HASTA = Timestamp.valueOf(DIA.plusMonths(1).atStartOfDay());
+
+    private BaseH2 base;
+
+    @BeforeEach
+    void crearBase() throws SQLException {
+        base = new BaseH2();
+    }
+
+    @AfterEach
+    void cerrarBase() throws SQLException {
+        base.close();
+    }
+
+    @Test
+    void unRegistroConfirmadoTardeConUnIdMenorSeResume() throws SQLException {
+        ResumenesRegistro resumenes = new ResumenesRegistro(base.getDataSource(), null);
+        insertar(1, 70, DIA);
+        insertar(10, 80, DIA);
+        assertEquals(2, resumenes.actualizar());
+
+        // Otro escritor confirma un ID menor que el mayor ya resumido
+        insertar(5, 90, DIA);
+        assertEquals(1, resumenes.actualizar());
+        assertEquals(0, resumenes.actualizar());
+
+        for (Nivel nivel : new Nivel[]{Nivel.DIA, Nivel.SEMANA, Nivel.MES}) {
+            List<Cubeta> cubetas = resumenes.consultar(0, nivel, DESDE, HASTA);
+            assertEquals(1, cubetas.size(), nivel.name());
+            Cubeta cubeta = cubetas.getFirst();
+            assertEquals(3, cubeta.cantidad(), nivel.name());
+            assertEquals(Timestamp.valueOf(nivel.inicio(DIA).atStartOfDay()), cubeta.inicio(), nivel.name());
+            assertEquals(70, cubeta.de(Medida.PESO).minimo(), nivel.name());
+            assertEquals(90, cubeta.de(Medida.PESO).maximo(), nivel.name());
+            assertEquals(80, cubeta.de(Medida.PESO).media(), 1e-9, nivel.name());
+        }
+    }
+
+    @Test
+    void laRetencionNoBorraRegistrosPendientes() throws SQLException {
+        insertar(1, 70, DIA);
+        insertar(10, 80, DIA);
+        // Un registro antiguo se confirma entre la actualización y el borrado
+        ResumenesRegistro resumenes = new ResumenesRegistro(base.getDataSource(), Period.ofDays(30)) {
+            @Override
+            public long actualizar() {
+                long incorporados = super.actualizar();
+                try {
+                    insertar(5, 90, DIA);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                return incorporados;
+            }
+        };
+
+        assertEquals(2, resumenes.aplicarRetencion(new RegistroDAO(base.getDataSource())));
+        assertEquals(1, contar("SELECT COUNT(*) FROM registro WHERE id = 5"));
+        assertEquals(2, resumenes.consultar(0, Nivel.DIA, DESDE, HASTA).getFirst().cantidad());
+
+        // La siguiente pasada lo resume y recién entonces lo borra
+        ResumenesRegistro siguiente = new ResumenesRegistro(base.getDataSource(), Period.ofDays(30));
+        assertEquals(1, siguiente.aplicarRetencion(new RegistroDAO(base.getDataSource())));
+        assertEquals(0, contar("SELECT COUNT(*) FROM registro"));
+        assertEquals(3, siguiente.consultar(0, Nivel.DIA, DESDE, HASTA).getFirst().cantidad());
+        // Antes del horizonte se consultan las cubetas aunque la resolución pida los registros
+        List<Cubeta> cubetas = siguiente.consultar(0, DESDE, HASTA, Duration.ZERO);
+        assertEquals(Nivel.DIA, cubetas.getFirst().nivel());
+        assertEquals(3, cubetas.getFirst().cantidad());
+    }
+
+    @Test
+    void laRetencionBorraPorElDAOYLaCacheDejaDeVerLosRegistros() throws SQLException {
+        insertar(1, 70, DIA);
+        insertar(2, 80, DIA);
+        RegistroDAOCache cache = new RegistroDAOCache(new RegistroDAO(base.getDataSource()), 16);
+        assertTrue(cache.registroExiste(1));
+        assertTrue(cache.buscarRegistro(new Registro(2)));
+
+        ResumenesRegistro resumenes = new ResumenesRegistro(base.getDataSource(), Period.ofDays(30));
+        assertEquals(2, resumenes.aplicarRetencion(cache));
+
+        assertFalse(cache.registroExiste(1));
+        assertFalse(cache.buscarRegistro(new Registro(2)));
+        assertEquals(2, resumenes.consultar(0, Nivel.DIA, DESDE, HASTA).getFirst().cantidad());
+    }
+
+    @Test
+    void recalcularSoloUsaLosRegistrosResumidos() throws SQLException {
+        ResumenesRegistro resumenes = new ResumenesRegistro(base.getDataSource(), null);
+        insertar(1, 70, DIA);
+        insertar(2, 80, DIA);
+        assertEquals(2, resumenes.actualizar());
+        base.ejecutar("UPDATE registro SET peso = 75 WHERE id = 2");
+        insertar(3, 90, DIA);
+
+        assertTrue(resumenes.recalcular(DIA, DIA.plusDays(1)));
+        Cubeta dia = resumenes.consultar(0, Nivel.DIA, DESDE, HASTA).getFirst();
+        assertEquals(2, dia.cantidad());
+        assertEquals(75, dia.de(Medida.PESO).maximo());
+
+        // El pendiente se suma una sola vez en la actualización
+        assertEquals(1, resumenes.actualizar());
+        assertEquals(3, resumenes.consultar(0, Nivel.DIA, DESDE, HASTA).getFirst().cantidad());
+    }
+
+    @Test
+    void elEsquemaMarcaComoResumidosLosRegistrosDeLaMarcaAnterior() throws SQLException {
+        // Estado de una versión anterior, sin la columna resumido, que había resumido hasta el ID 2
+        base.ejecutar("DROP INDEX idx_registro_resumido_id",
+                "ALTER TABLE registro DROP COLUMN resumido",
+                "DROP TABLE registro_resumen_estado");
+        insertar(1, 70, DIA);
+        insertar(2, 80, DIA);
+        insertar(3, 90, DIA);
+        base.ejecutar("CREATE TABLE registro_resumen_estado (id TINYINT NOT NULL, ultimo_id INT NOT NULL, "
+                        + "horizonte DATE NULL, PRIMARY KEY (id))",
+                "INSERT INTO registro_resumen_estado (id, ultimo_id) VALUES (1, 2)");
+
+        assertTrue(EsquemaResumenes.crearEsquema(base.getDataSource()));
+        assertTrue(EsquemaResumenes.crearEsquema(base.getDataSource()));
+        assertEquals(2, contar("SELECT COUNT(*) FROM registro WHERE resumido = " + ResumenesRegistro.RESUMIDO));
+        assertEquals(0, contar("SELECT ultimo_id FROM registro_resumen_estado"));
+        assertEquals(1, new ResumenesRegistro(base.getDataSource(), null).actualizar());
+    }
+
+    private void insertar(int id, double peso, LocalDate dia) throws SQLException {
+        base.ejecutar("INSERT INTO registro (id, peso, bicepIzquierdo, bicepDerecho, cintura, cuadriceps, pantorrillas, "
+                + "fecha, usuario) VALUES (" + id + ", " + peso + ", 30, 30, 80, 50, 35, '" + dia + " 10:00:00', 0)");
+    }
+
+    private long contar(String sql) throws SQLException {
+        try (Connection con = base.getDataSource().getConnection();
+             Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
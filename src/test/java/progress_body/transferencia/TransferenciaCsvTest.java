@@ -0,0 +1,146 @@
+package progress_body.transferencia;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import progress_body.datos.BaseH2;
+import progress_body.datos.FallasJdbc;
+import progress_body.datos.RegistroDAO;
+import progress_body.dominio.Registro;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exportación e importación CSV sobre bases H2 en modo MySQL.
+ */
+class TransferenciaCsvTest {
+
+    @TempDir
+    Path directorio;
+
+    private BaseH2 origen;
+    private BaseH2 destino;
+    private RegistroDAO dao;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        origen = new BaseH2();
+        destino = new BaseH2();
+        dao = new RegistroDAO(origen.getDataSource());
+        for (int i = 0; i < 20; i++) {
+            Registro registro = new Registro(70 + i, 30, 30.5, 80, 55, 37);
+            registro.setUsuario(i % 4);
+            Registro guardado = dao.agregarYObtener(registro);
+            if (i % 5 == 0) {
+                guardado.setPeso(90);
+                dao.modificarRegistro(guardado);
+            }
+        }
+    }
+
+    @AfterEach
+    void liberar() throws Exception {
+        origen.close();
+        destino.close();
+    }
+
+    @Test
+    void conservaUsuarioYVersionAlConservarIds() {
+        Path archivo = directorio.resolve("respaldo.csv");
+        assertEquals(20, ExportadorCsv.exportar(dao, archivo, null));
+
+        ResultadoImportacion resultado = new ImportadorCsv(destino.getDataSource(), 7, true).importar(archivo, null);
+
+        assertTrue(resultado.completa());
+        assertEquals(20, resultado.insertadas());
+        List<Registro> esperados = dao.listarRegistros();
+        List<Registro> importados = new RegistroDAO(destino.getDataSource()).listarRegistros();
+        assertEquals(esperados, importados);
+        for (int i = 0; i < esperados.size(); i++) {
+            assertEquals(esperados.get(i).getVersion(), importados.get(i).getVersion());
+        }
+    }
+
+    @Test
+    void conIdsNuevosConservaElUsuarioYEmpiezaEnLaVersionCero() {
+        Path archivo = directorio.resolve("respaldo.csv");
+        ExportadorCsv.exportar(dao, archivo, null);
+
+        new ImportadorCsv(destino.getDataSource(), 100, false).importar(archivo, null);
+
+        List<Registro> importados = new RegistroDAO(destino.getDataSource()).listarRegistros();
+        assertEquals(20, importados.size());
+        assertEquals(5, importados.stream().filter(r -> r.getUsuario() == 3).count());
+        assertTrue(importados.stream().allMatch(r -> r.getVersion() == 0));
+    }
+
+    @Test
+    void conIdsNuevosUnaImportacionInterrumpidaSeReanudaSinRepetirLotes() {
+        Path archivo = directorio.resolve("respaldo.csv");
+        ExportadorCsv.exportar(dao, archivo, null);
+        ImportadorCsv importador = new ImportadorCsv(destino.getDataSource(), 6, false);
+
+        // El proceso cae justo después de confirmar el segundo lote
+        int[] lotes = {0};
+        assertThrows(IllegalStateException.class, () -> importador.importar(archivo, progreso -> {
+            if (++lotes[0] == 2) {
+                throw new IllegalStateException("Caída simulada.");
+            }
+        }));
+        RegistroDAO importados = new RegistroDAO(destino.getDataSource());
+        assertEquals(12, importados.listarRegistros().size());
+
+        ResultadoImportacion resultado = importador.importar(archivo, null);
+
+        assertTrue(resultado.completa());
+        assertTrue(resultado.reanudada());
+        assertEquals(8, resultado.insertadas());
+        assertEquals(dao.listarRegistros().stream().map(Registro::getPeso).toList(),
+                importados.listarRegistros().stream().map(Registro::getPeso).toList());
+        // Terminada, el punto de control se borra y una nueva importación empieza desde el principio
+        assertFalse(importador.importar(archivo, null).reanudada());
+    }
+
+    @Test
+    void leeElFormatoAnteriorSinUsuarioNiVersion() throws Exception {
+        Path archivo = directorio.resolve("anterior.csv");
+        Files.writeString(archivo, """
+                id,peso,bicepIzquierdo,bicepDerecho,cintura,cuadriceps,pantorrillas,fecha
+                7,80.5,31.0,31.5,82.0,56.0,38.0,2024-03-01 10:00:00
+                8,81.5,31.0,31.5,82.0,56.0,38.0,
+                """);
+
+        ResultadoImportacion resultado = new ImportadorCsv(destino.getDataSource(), 100, true).importar(archivo, null);
+
+        assertEquals(2, resultado.insertadas());
+        assertEquals(0, resultado.rechazadas());
+        Registro leido = new Registro(7);
+        assertTrue(new RegistroDAO(destino.getDataSource()).buscarRegistro(leido));
+        assertEquals(0, leido.getUsuario());
+        assertEquals(80.5, leido.getPeso());
+    }
+
+    @Test
+    void unaLecturaCortadaNoReemplazaElRespaldoAnterior() throws Exception {
+        Path archivo = directorio.resolve("respaldo.csv");
+        ExportadorCsv.exportar(dao, archivo, null);
+        byte[] anterior = Files.readAllBytes(archivo);
+
+        RegistroDAO cortado = new RegistroDAO(FallasJdbc.cortarLecturasTras(origen.getDataSource(), 5));
+        assertEquals(-1, ExportadorCsv.exportar(cortado, archivo, null));
+
+        assertArrayEquals(anterior, Files.readAllBytes(archivo));
+        assertFalse(Files.exists(directorio.resolve("respaldo.csv.tmp")));
+        assertTrue(new String(anterior, StandardCharsets.US_ASCII).startsWith(FormatoCsv.ENCABEZADO + "\n"));
+    }
+}